@@ -3,6 +3,7 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.Security;
 import java.security.cert.CertificateEncodingException;
@@ -11,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mozilla.jss.asn1.ANY;
 import org.mozilla.jss.asn1.ASN1Util;
@@ -29,6 +31,7 @@ import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.pkcs11.KeyType;
 import org.mozilla.jss.pkcs11.PK11Cert;
 import org.mozilla.jss.pkcs11.PK11Module;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
 import org.mozilla.jss.pkcs11.PK11SecureRandom;
 import org.mozilla.jss.pkcs11.PK11Token;
 import org.mozilla.jss.provider.java.security.JSSMessageDigestSpi;
@@ -793,7 +796,11 @@ public final class CryptoManager implements TokenSupplier
             NoSuchItemOnTokenException,
             TokenException
     {
-        return importCertPackageNative(certPackage, nickname, false, false);
+        try {
+            return importCertPackageNative(certPackage, nickname, false, false);
+        } finally {
+            tokenObjectsChanged();
+        }
     }
 
     /**
@@ -830,7 +837,11 @@ public final class CryptoManager implements TokenSupplier
             NoSuchItemOnTokenException,
             TokenException
     {
-        return importCertPackageNative(certPackage, nickname, false, true);
+        try {
+            return importCertPackageNative(certPackage, nickname, false, true);
+        } finally {
+            tokenObjectsChanged();
+        }
     }
 
 
@@ -868,6 +879,8 @@ public final class CryptoManager implements TokenSupplier
             logger.error("importing CA certs caused NoSuchItemOnTokenException", e);
             throw new RuntimeException("Importing CA certs caused NoSuchItemOnToken"+
                 "Exception: " + e.getMessage(), e);
+        } finally {
+            tokenObjectsChanged();
         }
     }
 
@@ -890,7 +903,11 @@ public final class CryptoManager implements TokenSupplier
         if (nickname == null) {
             throw new InvalidNicknameException("Nickname must be non-null");
         }
-        return importCertToPermNative(cert,nickname);
+        try {
+            return importCertToPermNative(cert,nickname);
+        } finally {
+            tokenObjectsChanged();
+        }
     }
 
     /**
@@ -899,7 +916,11 @@ public final class CryptoManager implements TokenSupplier
      */
     public X509Certificate importDERCert(byte[] cert, CertificateUsage usage,
                                          boolean permanent, String nickname) {
-        return importDERCertNative(cert, usage.getEnumValue(), permanent, nickname);
+        try {
+            return importDERCertNative(cert, usage.getEnumValue(), permanent, nickname);
+        } finally {
+            tokenObjectsChanged();
+        }
     }
 
     private native X509Certificate importDERCertNative(byte[] cert, int usage, boolean permanent, String nickname);
@@ -922,6 +943,43 @@ public final class CryptoManager implements TokenSupplier
             NoSuchItemOnTokenException,
             TokenException;
 
+    /*============ Token object changes ********************************/
+
+    private AtomicLong tokenObjectsVersion = new AtomicLong();
+
+    private LookupCache lookupCache = new LookupCache(0);
+
+    /**
+     * Returns the cache of certificate and private key lookups. The cache
+     * is disabled by default.
+     */
+    public LookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    /**
+     * Returns a number that is incremented when certificates or keys are
+     * imported or deleted through JSS. Indexes of token objects, such as
+     * the aliases of the JSS KeyStore, compare it with the number they
+     * were built with to find out whether they are out of date.
+     */
+    public long getTokenObjectsVersion() {
+        return tokenObjectsVersion.get();
+    }
+
+    /**
+     * Records that certificates or keys have been imported or deleted,
+     * and flushes the lookup cache. Applications that modify the NSS
+     * database outside of JSS, e.g., with certutil, should call this
+     * method so that the indexes of token objects are rebuilt.
+     *
+     * @return The new version.
+     */
+    public long tokenObjectsChanged() {
+        lookupCache.flush();
+        return tokenObjectsVersion.incrementAndGet();
+    }
+
     /*============ CRL importing stuff ********************************/
 
     private static int TYPE_KRL = 0;
@@ -990,8 +1048,25 @@ public final class CryptoManager implements TokenSupplier
      * @exception TokenException If an error occurs in the security library.
      */
 
-    public native org.mozilla.jss.crypto.X509Certificate
+    public org.mozilla.jss.crypto.X509Certificate
     findCertByNickname(String nickname)
+        throws ObjectNotFoundException, TokenException
+    {
+        long generation = lookupCache.getGeneration();
+
+        X509Certificate cert = lookupCache.getCertificate(nickname);
+        if (cert != null) {
+            return cert;
+        }
+
+        cert = findCertByNicknameNative(nickname);
+        lookupCache.putCertificate(generation, nickname, cert);
+
+        return cert;
+    }
+
+    private native org.mozilla.jss.crypto.X509Certificate
+    findCertByNicknameNative(String nickname)
         throws ObjectNotFoundException, TokenException;
 
     /**
@@ -1007,7 +1082,18 @@ public final class CryptoManager implements TokenSupplier
         throws TokenException
     {
         assert(nickname!=null);
-        return findCertsByNicknameNative(nickname);
+
+        long generation = lookupCache.getGeneration();
+
+        X509Certificate[] certs = lookupCache.getCertificates(nickname);
+        if (certs != null) {
+            return certs;
+        }
+
+        certs = findCertsByNicknameNative(nickname);
+        lookupCache.putCertificates(generation, nickname, certs);
+
+        return certs;
     }
 
     /**
@@ -1098,13 +1184,54 @@ public final class CryptoManager implements TokenSupplier
         if(! (cert instanceof org.mozilla.jss.pkcs11.PK11Cert)) {
             throw new ObjectNotFoundException("Non-pkcs11 cert passed to PK11Finder");
         }
-        return findPrivKeyByCertNative(cert);
+
+        if (!lookupCache.isEnabled()) {
+            return findPrivKeyByCertNative(cert);
+        }
+
+        // the key is looked up on the token of the certificate
+        CryptoToken token = ((PK11Cert) cert).getOwningToken();
+
+        ByteBuffer encoding;
+        try {
+            encoding = ByteBuffer.wrap(cert.getEncoded());
+        } catch (CertificateEncodingException e) {
+            return findPrivKeyByCertNative(cert);
+        }
+
+        long generation = lookupCache.getGeneration();
+
+        org.mozilla.jss.crypto.PrivateKey privateKey = lookupCache.getPrivateKey(token, encoding);
+        if (privateKey != null) {
+            return privateKey;
+        }
+
+        privateKey = findPrivKeyByCertNative(cert);
+        lookupCache.putPrivateKey(generation, token, encoding, privateKey);
+
+        return privateKey;
     }
 
     protected native org.mozilla.jss.crypto.PrivateKey
     findPrivKeyByCertNative(org.mozilla.jss.crypto.X509Certificate cert)
         throws ObjectNotFoundException, TokenException;
 
+    /**
+     * Returns a new certificate object with its own native reference to
+     * the given certificate. Used by the lookup cache.
+     */
+    static native org.mozilla.jss.crypto.X509Certificate
+    duplicateCertNative(PK11Cert cert, String nickname)
+        throws TokenException;
+
+    /**
+     * Returns a new private key object with its own native reference to
+     * the given key. Used by the lookup cache.
+     */
+    static native org.mozilla.jss.crypto.PrivateKey
+    duplicatePrivKeyNative(PK11PrivKey privateKey)
+        throws TokenException;
+
     /////////////////////////////////////////////////////////////
     // Provide Pseudo-Random Number Generation
     /////////////////////////////////////////////////////////////
@@ -0,0 +1,374 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.crypto.X509Certificate;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the certificate and private key lookups of CryptoManager.
+ *
+ * <p>Applications look up the same nicknames, e.g., of the server
+ * certificate, over and over, and each lookup searches the NSS database.
+ * When the cache is enabled, {@link CryptoManager#findCertByNickname},
+ * {@link CryptoManager#findCertsByNickname} and
+ * {@link CryptoManager#findPrivKeyByCert} return the results of previous
+ * lookups. Failed lookups are not cached.
+ *
+ * <p>The cache is flushed when certificates or keys are imported or
+ * deleted through JSS (see {@link CryptoManager#tokenObjectsChanged()}).
+ * It should be flushed with {@link #flush()} after the NSS database has
+ * been modified outside of JSS.
+ *
+ * <p>The cache keeps its own copies of the certificates and keys. Each
+ * lookup answered from the cache returns a new copy with its own native
+ * reference, which the caller may close.
+ *
+ * <p>The cache is disabled by default. It can be enabled with:
+ *
+ * <pre>
+ * CryptoManager.getInstance().getLookupCache().setMaxSize(LookupCache.DEFAULT_MAX_SIZE);
+ * </pre>
+ */
+public final class LookupCache {
+
+    public static Logger logger = LoggerFactory.getLogger(LookupCache.class);
+
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private int maxSize;
+
+    // incremented on flush to discard lookups started before the flush
+    private long generation;
+
+    private final Map<String, X509Certificate> certs = createMap();
+    private final Map<String, X509Certificate[]> certArrays = createMap();
+    private final Map<PrivateKeyID, PrivateKey> privateKeys = createMap();
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong flushes = new AtomicLong();
+
+    /**
+     * @param maxSize The maximum number of entries of each lookup,
+     *            0 to disable the cache.
+     */
+    public LookupCache(int maxSize) {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid size: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    private <K, V> Map<K, V> createMap() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                release(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize The maximum number of entries of each lookup,
+     *            0 to disable the cache.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid size: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+
+        // remove the least recently used entries
+        trim(certs);
+        trim(certArrays);
+        trim(privateKeys);
+    }
+
+    private void trim(Map<?, ?> map) {
+        Iterator<?> i = map.values().iterator();
+        while (map.size() > maxSize && i.hasNext()) {
+            release(i.next());
+            i.remove();
+        }
+    }
+
+    private void clear(Map<?, ?> map) {
+        for (Object value : map.values()) {
+            release(value);
+        }
+        map.clear();
+    }
+
+    /**
+     * Returns a copy of a cached certificate with its own native
+     * reference, so that closing either of them does not affect the other.
+     */
+    private static X509Certificate copy(X509Certificate cert) {
+
+        if (!(cert instanceof PK11Cert)) {
+            return cert;
+        }
+
+        try {
+            return CryptoManager.duplicateCertNative((PK11Cert) cert, cert.getNickname());
+        } catch (TokenException e) {
+            throw new RuntimeException("Unable to copy certificate: " + e.getMessage(), e);
+        }
+    }
+
+    private static X509Certificate[] copy(X509Certificate[] certs) {
+        X509Certificate[] copies = new X509Certificate[certs.length];
+        for (int i = 0; i < certs.length; i++) {
+            copies[i] = copy(certs[i]);
+        }
+        return copies;
+    }
+
+    private static PrivateKey copy(PrivateKey privateKey) {
+
+        if (!(privateKey instanceof PK11PrivKey)) {
+            return privateKey;
+        }
+
+        try {
+            return CryptoManager.duplicatePrivKeyNative((PK11PrivKey) privateKey);
+        } catch (TokenException e) {
+            throw new RuntimeException("Unable to copy private key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Releases the native references of a copy owned by the cache.
+     */
+    private static void release(Object value) {
+
+        if (value instanceof X509Certificate[]) {
+            for (X509Certificate cert : (X509Certificate[]) value) {
+                release(cert);
+            }
+            return;
+        }
+
+        if (!(value instanceof PK11Cert) && !(value instanceof PK11PrivKey)) {
+            return;
+        }
+
+        try {
+            ((AutoCloseable) value).close();
+        } catch (Exception e) {
+            logger.warn("LookupCache: Unable to release " + value + ": " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the current generation of the cache. A lookup gets the
+     * generation before searching the NSS database and passes it to put(),
+     * so that a result found before a flush is not cached.
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns a copy of the cached value. The copy is made while holding
+     * the lock, so that the cached value cannot be released meanwhile.
+     */
+    private synchronized <K, V> V get(Map<K, V> map, K key, UnaryOperator<V> copier) {
+
+        if (maxSize == 0) {
+            return null;
+        }
+
+        V value = map.get(key);
+
+        if (value == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return copier.apply(value);
+    }
+
+    /**
+     * Caches a copy of the value, so that the caller keeps the ownership
+     * of the value itself.
+     */
+    private <K, V> void put(Map<K, V> map, long generation, K key, V value, UnaryOperator<V> copier) {
+
+        if (value == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (maxSize == 0 || generation != this.generation) {
+                return;
+            }
+        }
+
+        V copy = copier.apply(value);
+
+        synchronized (this) {
+            if (maxSize == 0 || generation != this.generation) {
+                release(copy);
+                return;
+            }
+
+            V previous = map.put(key, copy);
+            if (previous != null) {
+                release(previous);
+            }
+        }
+    }
+
+    X509Certificate getCertificate(String nickname) {
+        return get(certs, nickname, LookupCache::copy);
+    }
+
+    void putCertificate(long generation, String nickname, X509Certificate cert) {
+        put(certs, generation, nickname, cert, LookupCache::copy);
+    }
+
+    X509Certificate[] getCertificates(String nickname) {
+        return get(certArrays, nickname, LookupCache::copy);
+    }
+
+    void putCertificates(long generation, String nickname, X509Certificate[] certs) {
+        put(certArrays, generation, nickname, certs, LookupCache::copy);
+    }
+
+    /**
+     * Private keys are looked up on the token of the certificate, so the
+     * same certificate on another token may have another key.
+     */
+    PrivateKey getPrivateKey(CryptoToken token, ByteBuffer certEncoding) {
+        return get(privateKeys, new PrivateKeyID(token, certEncoding), LookupCache::copy);
+    }
+
+    void putPrivateKey(long generation, CryptoToken token, ByteBuffer certEncoding, PrivateKey privateKey) {
+        put(privateKeys, generation, new PrivateKeyID(token, certEncoding), privateKey, LookupCache::copy);
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void flush() {
+
+        if (maxSize > 0) {
+            logger.debug("LookupCache: Flushing cache");
+        }
+
+        generation++;
+        flushes.incrementAndGet();
+
+        clear(certs);
+        clear(certArrays);
+        clear(privateKeys);
+    }
+
+    /**
+     * @return The number of entries in the cache.
+     */
+    public synchronized int size() {
+        return certs.size() + certArrays.size() + privateKeys.size();
+    }
+
+    /**
+     * @return The number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that searched the NSS database while
+     *         the cache was enabled.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of times the cache has been flushed.
+     */
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * Resets the hit, miss and flush counts.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        flushes.set(0);
+    }
+
+    private static final class PrivateKeyID {
+
+        private final CryptoToken token;
+        private final ByteBuffer certEncoding;
+
+        PrivateKeyID(CryptoToken token, ByteBuffer certEncoding) {
+            this.token = token;
+            this.certEncoding = certEncoding;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(token, certEncoding);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PrivateKeyID)) {
+                return false;
+            }
+            PrivateKeyID other = (PrivateKeyID) obj;
+            return token.equals(other.token) && certEncoding.equals(other.certEncoding);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LookupCache[size=" + size() + ", maxSize=" + getMaxSize() +
+                ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+                ", flushes=" + getFlushCount() + "]";
+    }
+}
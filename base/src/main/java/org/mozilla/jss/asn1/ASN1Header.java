@@ -81,6 +81,11 @@ public class ASN1Header {
      */
     public static ASN1Header lookAhead(InputStream derStream)
             throws IOException, InvalidBERException {
+        if (derStream instanceof BERInputStream) {
+            // parsed once and cached by the cursor
+            return ((BERInputStream) derStream).peekHeader();
+        }
+
         if (!derStream.markSupported()) {
             throw new IOException("Mark not supported on this input stream");
         }
@@ -102,6 +107,36 @@ public class ASN1Header {
      */
     public ASN1Header(InputStream istream)
             throws InvalidBERException, IOException {
+
+        if (istream instanceof BERInputStream) {
+            // reuse the header parsed by lookAhead() at this position
+            ASN1Header head = ((BERInputStream) istream).readHeader();
+            tag = head.tag;
+            form = head.form;
+            contentLength = head.contentLength;
+            cachedEncoding = head.cachedEncoding;
+            return;
+        }
+
+        read(istream);
+    }
+
+    private ASN1Header() {
+    }
+
+    /**
+     * Parses a header from the input stream, consuming the identifier
+     * and length octets.
+     */
+    static ASN1Header parse(InputStream istream)
+            throws InvalidBERException, IOException {
+        ASN1Header head = new ASN1Header();
+        head.read(istream);
+        return head;
+    }
+
+    private void read(InputStream istream)
+            throws InvalidBERException, IOException {
         // default BAOS size is 32 bytes, which is plenty
         ByteArrayOutputStream encoding = new ByteArrayOutputStream();
         int inInt = istream.read();
@@ -320,6 +355,38 @@ public class ASN1Header {
         return cachedEncoding;
     }
 
+    /**
+     * Returns the length of the encoding of a definite-length header
+     * without encoding it.
+     *
+     * @param tag Tag.
+     * @param contentLength Content length, which must be &ge;0.
+     * @return The number of bytes in the header.
+     */
+    public static int getHeaderLength(Tag tag, long contentLength) {
+        int length = 1;
+
+        // long form tag: 7 bits per subsequent octet
+        long tagNum = tag.getNum();
+        if (tagNum > 30) {
+            do {
+                length++;
+                tagNum >>>= 7;
+            } while (tagNum != 0);
+        }
+
+        // long form length: number of octets plus one
+        length++;
+        if (contentLength > 127) {
+            do {
+                length++;
+                contentLength >>>= 8;
+            } while (contentLength != 0);
+        }
+
+        return length;
+    }
+
     /**
      * Converts an unsigned BigInteger to a minimal-length byte array.
      * This is necessary because BigInteger.toByteArray() attaches an extra
@@ -5,6 +5,7 @@ package org.mozilla.jss.asn1;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * An interface for decoding ASN1Values from their BER encodings.
@@ -52,4 +53,35 @@ public interface ASN1Template {
      */
     public ASN1Value decode(Tag implicitTag, InputStream istream)
             throws IOException, InvalidBERException;
+
+    /**
+     * Decodes an ASN1Value from a buffer without an implicit tag.
+     * The buffer is read in place through a {@link BERInputStream}, and
+     * its position is advanced past the decoded value.
+     *
+     * @param buffer Buffer.
+     * @return ASN.1 value.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     * @throws IOException If other error occurred.
+     */
+    public default ASN1Value decode(ByteBuffer buffer)
+            throws IOException, InvalidBERException {
+        return decode(new BERInputStream(buffer));
+    }
+
+    /**
+     * Decodes an ASN1Value from a buffer with the given implicit tag.
+     * The buffer is read in place through a {@link BERInputStream}, and
+     * its position is advanced past the decoded value.
+     *
+     * @param implicitTag Implicit tag.
+     * @param buffer Buffer.
+     * @return ASN.1 value.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     * @throws IOException If other error occurred.
+     */
+    public default ASN1Value decode(Tag implicitTag, ByteBuffer buffer)
+            throws IOException, InvalidBERException {
+        return decode(implicitTag, new BERInputStream(buffer));
+    }
 }
@@ -3,8 +3,6 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.asn1;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,9 +17,7 @@ public class ASN1Util {
     public static byte[] encode(Tag implicitTag, ASN1Value val) {
         try {
 
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            val.encode(implicitTag, bos);
-            return bos.toByteArray();
+            return DEROutputStream.encode(implicitTag, val);
 
         } catch (IOException e) {
             throw new RuntimeException("Unable to encode byte array: " + e.getMessage(), e);
@@ -32,7 +28,7 @@ public class ASN1Util {
             throws InvalidBERException {
         try {
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             return template.decode(bis);
 
         } catch (IOException e) {
@@ -46,7 +42,7 @@ public class ASN1Util {
             throws InvalidBERException {
         try {
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             return template.decode(implicitTag, bis);
 
         } catch (IOException e) {
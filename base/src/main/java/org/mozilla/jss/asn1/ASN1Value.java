@@ -40,4 +40,17 @@ public interface ASN1Value {
      */
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException;
+
+    /**
+     * Returns the length of this value's DER encoding using an implicit
+     * tag, without allocating the encoding.
+     *
+     * @param implicitTag Implicit tag.
+     * @return The length of the encoding, including the header.
+     * @throws IOException If an error occurred.
+     * @see DEROutputStream
+     */
+    public default long getEncodedLength(Tag implicitTag) throws IOException {
+        return new DEROutputStream(null).getEncodedLength(implicitTag, this);
+    }
 }
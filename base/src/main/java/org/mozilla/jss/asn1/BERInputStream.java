@@ -0,0 +1,151 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A cursor over a BER encoding held in memory.
+ *
+ * <p>The templates in this package decode from any InputStream that
+ * supports marking, but they look ahead at the header of every element
+ * (mark, parse, reset) and then parse it again when the element is
+ * decoded. When reading from this stream, the header parsed by
+ * {@link ASN1Header#lookAhead} is cached at its position and reused
+ * when the element is decoded, and SEQUENCE and SET templates use the
+ * position of the cursor instead of wrapping it in a counting stream.
+ *
+ * <p>The stream reads the buffer in place; the buffer's position is
+ * the position of the cursor, so it is advanced past the bytes that
+ * have been decoded. Direct and memory-mapped buffers are supported.
+ */
+public class BERInputStream extends InputStream {
+
+    private ByteBuffer buffer;
+    private int markPosition = -1;
+
+    // the header parsed at headerPosition by peekHeader()
+    private ASN1Header header;
+    private int headerPosition = -1;
+
+    public BERInputStream(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    public BERInputStream(byte[] data, int offset, int length) {
+        this(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * @param buffer The buffer to read from its current position to its
+     *      limit.
+     */
+    public BERInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return The position of the cursor in the underlying buffer.
+     */
+    public long getPosition() {
+        return buffer.position();
+    }
+
+    @Override
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        markPosition = buffer.position();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (markPosition < 0) {
+            throw new IOException("Stream has not been marked");
+        }
+        buffer.position(markPosition);
+    }
+
+    /**
+     * Returns a view of the next bytes without copying them, and moves
+     * the cursor past them.
+     */
+    ByteBuffer slice(int length) throws IOException {
+        if (length > buffer.remaining()) {
+            throw new EOFException();
+        }
+        int position = buffer.position();
+        ByteBuffer view = buffer.slice(position, length);
+        buffer.position(position + length);
+        return view;
+    }
+
+    /**
+     * Returns the header at the cursor without consuming it.
+     */
+    ASN1Header peekHeader() throws IOException, InvalidBERException {
+        int position = buffer.position();
+        if (header == null || headerPosition != position) {
+            header = ASN1Header.parse(this);
+            headerPosition = position;
+            buffer.position(position);
+        }
+        return header;
+    }
+
+    /**
+     * Returns the header at the cursor and moves the cursor past it.
+     */
+    ASN1Header readHeader() throws IOException, InvalidBERException {
+        ASN1Header head = peekHeader();
+        buffer.position(headerPosition + head.encode().length);
+        header = null;
+        headerPosition = -1;
+        return head;
+    }
+}
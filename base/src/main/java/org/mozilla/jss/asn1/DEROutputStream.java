@@ -0,0 +1,234 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An output stream for encoding ASN.1 values in a single pass.
+ *
+ * <p>A constructed value (SEQUENCE, SET or EXPLICIT) must write its
+ * header, which contains the length of its contents, before its contents.
+ * When a constructed value is encoded to this stream, the length of its
+ * contents is computed from the lengths of its elements without encoding
+ * them, and the elements are then encoded directly to the stream. The
+ * content lengths are memoized, so every nested value is measured once
+ * and written once, regardless of the nesting depth.
+ *
+ * <p>Other values are measured by encoding them into a buffer, and the
+ * buffered encoding is written when the value is reached, so a value
+ * whose encode() method builds a new SEQUENCE on every call is still
+ * encoded only once.
+ *
+ * <p>The memoized lengths and encodings are kept for the life of the
+ * stream, so the values must not be modified while they are being
+ * encoded to it.
+ */
+public class DEROutputStream extends FilterOutputStream {
+
+    // content lengths of the constructed values, by identity
+    private Map<ASN1Value, Long> contentLengths;
+
+    // buffered encodings of the other values, by identity
+    private Map<ASN1Value, Encoding> encodings;
+
+    private long count = 0;
+
+    /**
+     * The encoding of a value with the tag it was encoded with.
+     */
+    private static class Encoding {
+
+        Tag tag;
+        byte[] bytes;
+
+        Encoding(Tag tag, byte[] bytes) {
+            this.tag = tag;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * @param out The stream to write the encoding to.
+     */
+    public DEROutputStream(OutputStream out) {
+        this(out, new IdentityHashMap<>(), new IdentityHashMap<>());
+    }
+
+    private DEROutputStream(
+            OutputStream out,
+            Map<ASN1Value, Long> contentLengths,
+            Map<ASN1Value, Encoding> encodings) {
+        super(out);
+        this.contentLengths = contentLengths;
+        this.encodings = encodings;
+    }
+
+    /**
+     * Encodes a value into a byte array that is allocated once with the
+     * exact size of the encoding.
+     *
+     * @param implicitTag The tag to encode the value with.
+     * @param value The value.
+     * @return The DER encoding.
+     */
+    public static byte[] encode(Tag implicitTag, ASN1Value value) throws IOException {
+
+        DEROutputStream der = new DEROutputStream(null);
+        long length = der.getEncodedLength(implicitTag, value);
+
+        // values other than SET and EXPLICIT have been encoded already
+        Encoding encoding = der.encodings.remove(value);
+        if (encoding != null) {
+            return encoding.bytes;
+        }
+
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Encoding too large: " + length + " bytes");
+        }
+
+        ArrayOutputStream buffer = new ArrayOutputStream((int) length);
+        der.out = buffer;
+        value.encode(implicitTag, der);
+
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out != null) {
+            out.write(b);
+        }
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out != null) {
+            out.write(b, off, len);
+        }
+        count += len;
+    }
+
+    /**
+     * @return The number of bytes written to this stream.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the length of the DER encoding of a value, including its
+     * header, without writing anything to this stream.
+     *
+     * @param implicitTag The tag the value will be encoded with.
+     * @param value The value.
+     */
+    public long getEncodedLength(Tag implicitTag, ASN1Value value) throws IOException {
+
+        if (value instanceof SET || value instanceof EXPLICIT) {
+            long contentLength = getContentLength(value);
+            return ASN1Header.getHeaderLength(implicitTag, contentLength) + contentLength;
+        }
+
+        Encoding encoding = encodings.get(value);
+        if (encoding != null && encoding.tag.equals(implicitTag)) {
+            return encoding.bytes.length;
+        }
+
+        // Other values are measured by encoding them into a buffer, which
+        // is written by writeValue(). The buffer shares the memoized
+        // lengths and encodings, so values that wrap other values (e.g.,
+        // by building a SEQUENCE in their encode() method) are encoded
+        // once regardless of the nesting depth.
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        value.encode(implicitTag, new DEROutputStream(buffer, contentLengths, encodings));
+
+        byte[] bytes = buffer.toByteArray();
+        encodings.put(value, new Encoding(implicitTag, bytes));
+        return bytes.length;
+    }
+
+    /**
+     * Writes an element of a SET, SEQUENCE or EXPLICIT value, using the
+     * encoding buffered by getEncodedLength() if there is one.
+     */
+    void writeValue(Tag implicitTag, ASN1Value value) throws IOException {
+
+        Encoding encoding = encodings.get(value);
+        if (encoding == null || !encoding.tag.equals(implicitTag)) {
+            value.encode(implicitTag, this);
+            return;
+        }
+
+        // the buffer is no longer needed
+        encodings.remove(value);
+        write(encoding.bytes, 0, encoding.bytes.length);
+    }
+
+    /**
+     * Returns the length of the contents of a SET, SEQUENCE or EXPLICIT
+     * value, computing it on first use.
+     */
+    long getContentLength(ASN1Value value) throws IOException {
+
+        Long cached = contentLengths.get(value);
+        if (cached != null) {
+            return cached;
+        }
+
+        long contentLength;
+        if (value instanceof SET) {
+            contentLength = ((SET) value).getContentLength(this);
+        } else {
+            contentLength = ((EXPLICIT) value).getContentLength(this);
+        }
+
+        contentLengths.put(value, contentLength);
+        return contentLength;
+    }
+
+    /**
+     * Writes into a pre-sized array, which is returned without copying
+     * if the encoding fills it exactly.
+     */
+    private static class ArrayOutputStream extends OutputStream {
+
+        private byte[] buf;
+        private int count = 0;
+
+        ArrayOutputStream(int size) {
+            buf = new byte[size];
+        }
+
+        private void ensureCapacity(int size) {
+            if (size > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(size, buf.length * 2));
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        byte[] toByteArray() {
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
+}
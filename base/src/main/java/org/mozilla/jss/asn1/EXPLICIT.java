@@ -3,7 +3,6 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.asn1;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -65,13 +64,21 @@ public class EXPLICIT implements ASN1Value {
     @Override
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        content.encode(bos);
-        byte[] contentBytes = bos.toByteArray();
+        DEROutputStream der;
+        if (ostream instanceof DEROutputStream) {
+            der = (DEROutputStream) ostream;
+        } else {
+            der = new DEROutputStream(ostream);
+        }
+
         ASN1Header head = new ASN1Header(implicitTag, FORM,
-                contentBytes.length);
-        head.encode(ostream);
-        ostream.write(contentBytes);
+                der.getContentLength(this));
+        head.encode(der);
+        der.writeValue(content.getTag(), content);
+    }
+
+    long getContentLength(DEROutputStream der) throws IOException {
+        return der.getEncodedLength(content.getTag(), content);
     }
 
     public static Template getTemplate(Tag tag, ASN1Template content) {
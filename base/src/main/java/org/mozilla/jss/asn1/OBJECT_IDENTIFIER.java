@@ -7,8 +7,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.StringTokenizer;
-import java.util.Vector;
 
 public class OBJECT_IDENTIFIER implements ASN1Value {
 
@@ -163,6 +163,11 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
 
     private long[] numbers;
 
+    private volatile String dottedString;
+
+    // OIDs seen while decoding, shared by all threads
+    private static final OIDInterner<OBJECT_IDENTIFIER> interner = new OIDInterner<>();
+
     /**
      * Creates an OBJECT_IDENTIFIER from an array of longs, which constitute
      * the numbers that make up the OBJECT IDENTIFIER.
@@ -218,6 +223,14 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
             dottedOID = dottedOID.replaceAll(" ", ".");
         }
 
+        OBJECT_IDENTIFIER cached = interner.get(dottedOID);
+        if (cached != null) {
+            numbers = cached.numbers;
+            dottedString = cached.dottedString;
+            encodedContents = cached.encodedContents;
+            return;
+        }
+
         StringTokenizer stok = new StringTokenizer(dottedOID, ".");
         numbers = new long[stok.countTokens()];
         int i = 0;
@@ -228,8 +241,11 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
         checkLongArray(numbers);
     }
 
+    /**
+     * @return A copy of the numbers, since the instance may be shared.
+     */
     public long[] getNumbers() {
-        return numbers;
+        return numbers.clone();
     }
 
     @Override
@@ -295,18 +311,19 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
 
     @Override
     public String toString() {
-        String ret = "{" + String.valueOf(numbers[0]);
-        for (int i = 1; i < numbers.length; i++) {
-            ret = ret + " " + numbers[i];
-        }
-        ret += "}";
-        return ret;
+        return "{" + toDottedString().replace('.', ' ') + "}";
     }
 
     public String toDottedString() {
-        String ret = String.valueOf(numbers[0]);
-        for (int i = 1; i < numbers.length; i++) {
-            ret = ret + "." + numbers[i];
+        String ret = dottedString;
+        if (ret == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(numbers[0]);
+            for (int i = 1; i < numbers.length; i++) {
+                sb.append('.').append(numbers[i]);
+            }
+            ret = sb.toString();
+            dottedString = ret;
         }
         return ret;
     }
@@ -316,7 +333,7 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
         encode(TAG, ostream);
     }
 
-    private byte[] encodedContents = null;
+    private volatile byte[] encodedContents = null;
 
     /**
      * Gets the encoding of the contents, or a cached copy.
@@ -324,17 +341,30 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
      * this only needs to be computed once.
      */
     private byte[] getEncodedContents() {
-        if (encodedContents == null) {
-            encodedContents = computeEncodedContents();
+        byte[] contents = encodedContents;
+        if (contents == null) {
+            contents = computeEncodedContents();
+            encodedContents = contents;
         }
-        return encodedContents;
+        return contents;
     }
 
     // We cache our encoding for a given tag.  99% of the time, only
     // one tag will be used for an instance, so we will get a cache hit.
     // In the remaining 1%, we'll have to recompute the encoding.
-    byte[] cachedEncoding = null;
-    Tag tagForCache = null;
+    // The tag and the encoding are kept together so that instances
+    // can be shared between threads.
+    private volatile CachedEncoding cachedEncoding = null;
+
+    private static class CachedEncoding {
+        final Tag tag;
+        final byte[] encoding;
+
+        CachedEncoding(Tag tag, byte[] encoding) {
+            this.tag = tag;
+            this.encoding = encoding;
+        }
+    }
 
     /**
      * Returns the encoding for the given tag. If the encoding for
@@ -343,7 +373,8 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
      * Otherwise, the encoding will be recomputed.
      */
     private byte[] getEncoding(Tag tag) {
-        if (!tag.equals(tagForCache)) {
+        CachedEncoding cached = cachedEncoding;
+        if (cached == null || !tag.equals(cached.tag)) {
             // recompute for new tag
             ByteArrayOutputStream out = new ByteArrayOutputStream();
 
@@ -354,12 +385,13 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
                 throw new RuntimeException("Unable to encode ASN.1 header: " + e.getMessage(), e);
             }
 
-            out.write(getEncodedContents(), 0, getEncodedContents().length);
+            byte[] contents = getEncodedContents();
+            out.write(contents, 0, contents.length);
 
-            tagForCache = tag;
-            cachedEncoding = out.toByteArray();
+            cached = new CachedEncoding(tag, out.toByteArray());
+            cachedEncoding = cached;
         }
-        return cachedEncoding;
+        return cached.encoding;
     }
 
     /**
@@ -475,44 +507,25 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
                             " IDENTIFIER");
                 }
 
-                Vector<Long> numberV = new Vector<>();
-
-                // handle first byte, which contains first two numbers
-                byte b = readByte(istream);
-                remainingContent--;
-                long num = b % 40;
-                numberV.addElement(Long.valueOf(b % 40)); // second number
-                numberV.insertElementAt(Long.valueOf(b / 40), 0); // first number
-
-                // handle the rest of the numbers
-                while (remainingContent > 0) {
-                    num = 0;
-
-                    // keep reading until MSB == 0
-                    int bitcount = 0;
-                    do {
-                        if ((bitcount += 7) > 63) {
-                            // we're about to overflow our long
-                            throw new InvalidBERException("OBJECT IDENTIFIER " +
-                                    "element too long; max is 63 bits");
-                        }
-                        b = readByte(istream);
-                        remainingContent--;
-                        num <<= 7;
-                        num |= (b & 0x7f);
-                    } while ((b & 0x80) != 0);
-
-                    numberV.addElement(Long.valueOf(num));
+                if (remainingContent > Integer.MAX_VALUE) {
+                    throw new InvalidBERException("OBJECT IDENTIFIER too long");
                 }
+                byte[] contents = new byte[(int) remainingContent];
+                ASN1Util.readFully(contents, istream);
 
-                // convert Vector to array
-                long numbers[] = new long[numberV.size()];
-                for (int i = 0; i < numbers.length; i++) {
-                    numbers[i] = numberV.elementAt(i).longValue();
+                // well-known OIDs are shared instead of parsed again
+                OBJECT_IDENTIFIER oid = interner.get(contents, 0, contents.length);
+                if (oid != null) {
+                    return oid;
                 }
 
-                // create OBJECT_IDENTIFIER from array
-                return new OBJECT_IDENTIFIER(numbers);
+                oid = new OBJECT_IDENTIFIER(parseContents(contents));
+
+                // only share OIDs that were DER-encoded
+                if (!Arrays.equals(oid.getEncodedContents(), contents)) {
+                    return oid;
+                }
+                return interner.intern(oid.toDottedString(), oid.getEncodedContents(), oid);
 
             } catch (InvalidBERException e) {
                 throw new InvalidBERException(e, "OBJECT IDENTIFIER");
@@ -520,18 +533,53 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
         }
 
         /**
-         * Reads in a byte from the stream, throws an InvalidBERException
-         * if EOF is reached.
+         * Parses the numbers from the encoded contents.
          */
-        private static byte readByte(InputStream istream)
-                throws InvalidBERException, IOException {
-            int n = istream.read();
-            if (n == -1) {
-                throw new InvalidBERException("End-of-file reached while " +
-                        "decoding OBJECT IDENTIFIER");
+        private static long[] parseContents(byte[] contents)
+                throws InvalidBERException {
+
+            // the first byte holds two numbers, and each of the other
+            // numbers ends with a byte with MSB == 0
+            int count = 2;
+            for (int i = 1; i < contents.length; i++) {
+                if ((contents[i] & 0x80) == 0) {
+                    count++;
+                }
             }
-            assert ((n & 0xff) == n);
-            return (byte) n;
+            long[] numbers = new long[count];
+
+            // handle first byte, which contains first two numbers
+            byte b = contents[0];
+            numbers[0] = b / 40; // first number
+            numbers[1] = b % 40; // second number
+            int n = 2;
+
+            // handle the rest of the numbers
+            int i = 1;
+            while (i < contents.length) {
+                long num = 0;
+
+                // keep reading until MSB == 0
+                int bitcount = 0;
+                do {
+                    if ((bitcount += 7) > 63) {
+                        // we're about to overflow our long
+                        throw new InvalidBERException("OBJECT IDENTIFIER " +
+                                "element too long; max is 63 bits");
+                    }
+                    if (i == contents.length) {
+                        throw new InvalidBERException("End-of-contents reached " +
+                                "while decoding OBJECT IDENTIFIER");
+                    }
+                    b = contents[i++];
+                    num <<= 7;
+                    num |= (b & 0x7f);
+                } while ((b & 0x80) != 0);
+
+                numbers[n++] = num;
+            }
+
+            return numbers;
         }
 
     } // end of OBJECT_IDENTIFIER.Template
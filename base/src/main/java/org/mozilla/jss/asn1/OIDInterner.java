@@ -0,0 +1,141 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe, size-bounded table of object identifiers.
+ *
+ * <p>Certificates and CRLs use a small set of OIDs over and over, so
+ * decoders can look up an OID by the DER encoding of its contents (or by
+ * its dotted string) and reuse the instance, with its parsed arcs and
+ * encoding, instead of parsing it again. {@link OBJECT_IDENTIFIER} and
+ * {@link org.mozilla.jss.netscape.security.util.ObjectIdentifier} each
+ * keep a table of their own instances.
+ *
+ * <p>OIDs may come from untrusted input, so the table holds at most a
+ * fixed number of entries. When it is full it is cleared, and the OIDs
+ * in use are added again as they are decoded.
+ *
+ * @param <T> The OID class.
+ */
+public class OIDInterner<T> {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private int maxSize;
+
+    private Map<String, T> byString = new ConcurrentHashMap<>();
+    private Map<Key, T> byEncoding = new ConcurrentHashMap<>();
+
+    public OIDInterner() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of OIDs in the table.
+     */
+    public OIDInterner(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param dottedString The OID in dotted form, e.g., "2.5.29.15".
+     * @return The OID, or null if it is not in the table.
+     */
+    public T get(String dottedString) {
+        return byString.get(dottedString);
+    }
+
+    /**
+     * Looks up an OID by the DER encoding of its contents, i.e., without
+     * the tag and length. The array is not copied.
+     *
+     * @return The OID, or null if it is not in the table.
+     */
+    public T get(byte[] contents, int offset, int length) {
+        return byEncoding.get(new Key(contents, offset, length));
+    }
+
+    /**
+     * Adds an OID to the table, unless an equal OID is already there.
+     *
+     * @param dottedString The OID in dotted form.
+     * @param contents The DER encoding of the OID contents. The array
+     *      is kept by the table and must not be modified.
+     * @param oid The OID.
+     * @return The OID in the table.
+     */
+    public T intern(String dottedString, byte[] contents, T oid) {
+
+        if (byEncoding.size() >= maxSize) {
+            clear();
+        }
+
+        T existing = byEncoding.putIfAbsent(new Key(contents, 0, contents.length), oid);
+        if (existing != null) {
+            oid = existing;
+        }
+
+        byString.putIfAbsent(dottedString, oid);
+        return oid;
+    }
+
+    /**
+     * @return The number of OIDs in the table.
+     */
+    public int size() {
+        return byEncoding.size();
+    }
+
+    public void clear() {
+        byEncoding.clear();
+        byString.clear();
+    }
+
+    /**
+     * A range of a byte array, compared by contents.
+     */
+    private static class Key {
+
+        byte[] bytes;
+        int offset;
+        int length;
+        int hash;
+
+        Key(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(
+                    bytes, offset, offset + length,
+                    other.bytes, other.offset, other.offset + other.length);
+        }
+    }
+}
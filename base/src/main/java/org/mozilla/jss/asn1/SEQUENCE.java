@@ -8,6 +8,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -47,6 +48,32 @@ public class SEQUENCE extends SET {
 
         private ArrayList<Element> elements = new ArrayList<>();
 
+        private boolean lazy;
+
+        /**
+         * Enables or disables lazy decoding. When enabled, decoding a
+         * SEQUENCE only finds the boundaries of its elements; each element
+         * is decoded with its sub-template the first time it is accessed.
+         * Elements that have not been accessed are re-encoded from their
+         * original encoding. Elements with indefinite length encodings are
+         * always decoded immediately.
+         *
+         * <p>Errors in the encoding of an element are only detected when
+         * it is accessed, and are then thrown as a RuntimeException. When
+         * decoding from a {@link BERInputStream}, the undecoded elements
+         * refer to the underlying buffer, which must not be modified
+         * afterwards.
+         *
+         * @param lazy True to decode elements on first access.
+         */
+        public void setLazy(boolean lazy) {
+            this.lazy = lazy;
+        }
+
+        public boolean isLazy() {
+            return lazy;
+        }
+
         private void addElement(Element el) {
             elements.add(el);
         }
@@ -418,25 +445,77 @@ public class SEQUENCE extends SET {
                     ASN1Template t = e.getTemplate();
                     ASN1Value val;
 
-                    try (CountingStream countstream = new CountingStream(istream)) {
+                    if (lazy && lookAhead.getContentLength() != -1) {
+                        // only record the encoding of this element
+                        long len = lookAhead.getTotalLength();
+                        if (remainingContent != -1 && remainingContent < len) {
+                            throw new InvalidBERException("Item went " +
+                                    (len - remainingContent) + " bytes past the end of" +
+                                    " the SEQUENCE");
+                        }
+                        if (len > Integer.MAX_VALUE) {
+                            throw new InvalidBERException("Item too large: " + len + " bytes");
+                        }
 
-                        if (e.getImplicitTag() == null) {
-                            val = t.decode(countstream);
+                        ByteBuffer encoding;
+                        if (istream instanceof BERInputStream) {
+                            encoding = ((BERInputStream) istream).slice((int) len);
                         } else {
-                            val = t.decode(e.getImplicitTag(), countstream);
+                            byte[] data = new byte[(int) len];
+                            ASN1Util.readFully(data, istream);
+                            encoding = ByteBuffer.wrap(data);
                         }
 
-                        // Decrement remaining count
-                        long len = countstream.getNumRead();
                         if (remainingContent != -1) {
-                            if (remainingContent < len) {
-                                // this item went past the end of the SEQUENCE
-                                throw new InvalidBERException("Item went " +
-                                        (len - remainingContent) + " bytes past the end of" +
-                                        " the SEQUENCE");
-                            }
                             remainingContent -= len;
                         }
+
+                        if (e.producesOutput()) {
+                            seq.elements.addElement(new SET.Element(e.getImplicitTag(),
+                                    lookAhead.getTag(), t, encoding));
+                        }
+
+                        if (e.isRepeatable()) {
+                            repeatableElement = true;
+                            index--;
+                        }
+                        continue;
+                    }
+
+                    // A BERInputStream keeps track of its own position, so
+                    // it is passed to the element template directly.
+                    InputStream elementStream;
+                    CountingStream countstream = null;
+                    long start = 0;
+                    if (istream instanceof BERInputStream) {
+                        elementStream = istream;
+                        start = ((BERInputStream) istream).getPosition();
+                    } else {
+                        countstream = new CountingStream(istream);
+                        elementStream = countstream;
+                    }
+
+                    if (e.getImplicitTag() == null) {
+                        val = t.decode(elementStream);
+                    } else {
+                        val = t.decode(e.getImplicitTag(), elementStream);
+                    }
+
+                    // Decrement remaining count
+                    long len;
+                    if (countstream == null) {
+                        len = ((BERInputStream) istream).getPosition() - start;
+                    } else {
+                        len = countstream.getNumRead();
+                    }
+                    if (remainingContent != -1) {
+                        if (remainingContent < len) {
+                            // this item went past the end of the SEQUENCE
+                            throw new InvalidBERException("Item went " +
+                                    (len - remainingContent) + " bytes past the end of" +
+                                    " the SEQUENCE");
+                        }
+                        remainingContent -= len;
                     }
 
                     // Store this element in the SEQUENCE
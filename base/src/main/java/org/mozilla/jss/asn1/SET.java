@@ -4,11 +4,11 @@
 package org.mozilla.jss.asn1;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 /**
@@ -111,8 +111,7 @@ public class SET implements ASN1Value {
      * @return Tag.
      */
     public Tag tagAt(int index) {
-        Tag implicit = elements.elementAt(index).getImplicitTag();
-        return implicit == null ? elementAt(index).getTag() : implicit;
+        return elements.elementAt(index).getTag();
     }
 
     /**
@@ -235,25 +234,55 @@ public class SET implements ASN1Value {
      */
     public void BERencode(Tag implicitTag, OutputStream ostream)
             throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        // The content length is computed from the lengths of the elements,
+        // so the elements can be written directly to the output stream
+        // instead of being buffered.
+        DEROutputStream der;
+        if (ostream instanceof DEROutputStream) {
+            der = (DEROutputStream) ostream;
+        } else {
+            der = new DEROutputStream(ostream);
+        }
+
+        // write header
+        ASN1Header header = new ASN1Header(implicitTag, FORM,
+                der.getContentLength(this));
+        header.encode(der);
 
-        // compute contents
+        // write contents
         int size = elements.size();
         for (int i = 0; i < size; i++) {
-            ASN1Value el = elementAt(i);
+            Element e = elements.elementAt(i);
+            if (e.isLazy()) {
+                // not decoded, so the original encoding is still valid
+                e.writeEncoding(der);
+                continue;
+            }
+            ASN1Value el = e.getValue();
             if (el != null) {
-                el.encode(tagAt(i), bos);
+                der.writeValue(tagAt(i), el);
             }
         }
+    }
 
-        byte[] bytes = bos.toByteArray();
-
-        // write header
-        ASN1Header header = new ASN1Header(implicitTag, FORM, bytes.length);
-        header.encode(ostream);
-
-        // write contents
-        ostream.write(bytes);
+    /**
+     * Returns the total length of the encodings of the elements.
+     */
+    long getContentLength(DEROutputStream der) throws IOException {
+        long length = 0;
+        int size = elements.size();
+        for (int i = 0; i < size; i++) {
+            Element e = elements.elementAt(i);
+            if (e.isLazy()) {
+                length += e.getEncodingLength();
+                continue;
+            }
+            ASN1Value el = e.getValue();
+            if (el != null) {
+                length += der.getEncodedLength(tagAt(i), el);
+            }
+        }
+        return length;
     }
 
     // performs ascending lexicographic ordering
@@ -338,22 +367,81 @@ public class SET implements ASN1Value {
             this.implicitTag = implicitTag;
         }
 
+        /**
+         * Makes a new element that will be decoded from the given
+         * encoding with the given template on first access.
+         */
+        Element(Tag implicitTag, Tag tag, ASN1Template template, ByteBuffer encoding) {
+            this.implicitTag = implicitTag;
+            this.tag = tag;
+            this.template = template;
+            this.encoding = encoding;
+        }
+
         private ASN1Value val;
 
+        // Set until a lazily decoded element is decoded.
+        private Tag tag;
+        private ASN1Template template;
+        private ByteBuffer encoding;
+
         /**
          * Returns the value of this SET element.
          */
-        public ASN1Value getValue() {
+        public synchronized ASN1Value getValue() {
+            if (encoding != null) {
+                try {
+                    BERInputStream istream = new BERInputStream(encoding.duplicate());
+                    if (implicitTag == null) {
+                        val = template.decode(istream);
+                    } else {
+                        val = template.decode(implicitTag, istream);
+                    }
+                } catch (IOException | InvalidBERException e) {
+                    throw new RuntimeException("Unable to decode element: " + e.getMessage(), e);
+                }
+                tag = null;
+                template = null;
+                encoding = null;
+            }
             return val;
         }
 
+        /**
+         * Returns true if this element has not been decoded yet.
+         */
+        synchronized boolean isLazy() {
+            return encoding != null;
+        }
+
+        synchronized int getEncodingLength() {
+            return encoding.remaining();
+        }
+
+        synchronized void writeEncoding(OutputStream ostream) throws IOException {
+            ByteBuffer bb = encoding.duplicate();
+            if (bb.hasArray()) {
+                ostream.write(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+                return;
+            }
+            byte[] buf = new byte[Math.min(bb.remaining(), 8192)];
+            while (bb.hasRemaining()) {
+                int n = Math.min(buf.length, bb.remaining());
+                bb.get(buf, 0, n);
+                ostream.write(buf, 0, n);
+            }
+        }
+
         /**
          * Returns the tag that actually shows up in the encoding.
          * If there is an implicit tag, it will be used. Otherwise,
          * it will be the base tag for the value.
          */
-        public Tag getTag() {
-            return implicitTag == null ? val.getTag() : implicitTag;
+        public synchronized Tag getTag() {
+            if (implicitTag != null) {
+                return implicitTag;
+            }
+            return encoding != null ? tag : val.getTag();
         }
 
         private Tag implicitTag = null;
@@ -739,25 +827,40 @@ public class SET implements ASN1Value {
                     ASN1Template t = e.getTemplate();
                     ASN1Value val;
 
-                    try (CountingStream countstream = new CountingStream(istream)) {
+                    // A BERInputStream keeps track of its own position, so
+                    // it is passed to the element template directly.
+                    InputStream elementStream;
+                    CountingStream countstream = null;
+                    long start = 0;
+                    if (istream instanceof BERInputStream) {
+                        elementStream = istream;
+                        start = ((BERInputStream) istream).getPosition();
+                    } else {
+                        countstream = new CountingStream(istream);
+                        elementStream = countstream;
+                    }
 
-                        if (e.getImplicitTag() == null) {
-                            val = t.decode(countstream);
-                        } else {
-                            val = t.decode(e.getImplicitTag(), countstream);
-                        }
+                    if (e.getImplicitTag() == null) {
+                        val = t.decode(elementStream);
+                    } else {
+                        val = t.decode(e.getImplicitTag(), elementStream);
+                    }
 
-                        // Decrement remaining count
-                        long len = countstream.getNumRead();
-                        if (remainingContent != -1) {
-                            if (remainingContent < len) {
-                                // this item went past the end of the SET
-                                throw new InvalidBERException("Item went " +
-                                        (len - remainingContent) + " bytes past the end of" +
-                                        " the SET");
-                            }
-                            remainingContent -= len;
+                    // Decrement remaining count
+                    long len;
+                    if (countstream == null) {
+                        len = ((BERInputStream) istream).getPosition() - start;
+                    } else {
+                        len = countstream.getNumRead();
+                    }
+                    if (remainingContent != -1) {
+                        if (remainingContent < len) {
+                            // this item went past the end of the SET
+                            throw new InvalidBERException("Item went " +
+                                    (len - remainingContent) + " bytes past the end of" +
+                                    " the SET");
                         }
+                        remainingContent -= len;
                     }
 
                     // Store this element in the SET
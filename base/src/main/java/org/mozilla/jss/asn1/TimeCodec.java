@@ -0,0 +1,286 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+/**
+ * Parses and formats the contents of UTCTime and GeneralizedTime values.
+ *
+ * <p>The contents are parsed directly from the encoded bytes into seconds
+ * since the epoch, and formatted from seconds since the epoch, without
+ * creating Calendar or TimeZone objects. The methods are used by both
+ * {@link TimeBase} and the
+ * {@link org.mozilla.jss.netscape.security.util.DerInputStream} and
+ * {@link org.mozilla.jss.netscape.security.util.DerOutputStream} classes.
+ *
+ * <p>The accepted syntax is <code>YYMMDDhhmm[ss](Z|+hhmm|-hhmm)</code> for
+ * UTCTime and <code>YYYYMMDDhhmm[ss][.fff](Z|+hhmm|-hhmm)</code> for
+ * GeneralizedTime. A GeneralizedTime without a time zone is in local
+ * time. Fractions of seconds are ignored.
+ *
+ * <p>In strict mode, which is used for DER, the time must have a time
+ * zone, either <code>Z</code> or an offset, and a GeneralizedTime must
+ * not have fractions of seconds. Offsets are still accepted, as they
+ * were by the DerInputStream parsers, so that existing certificates and
+ * CRLs that use them can be read.
+ */
+public final class TimeCodec {
+
+    /**
+     * The length of a formatted UTCTime, <code>YYMMDDhhmmssZ</code>.
+     */
+    public static final int UTC_TIME_LENGTH = 13;
+
+    /**
+     * The length of a formatted GeneralizedTime,
+     * <code>YYYYMMDDhhmmssZ</code>.
+     */
+    public static final int GENERALIZED_TIME_LENGTH = 15;
+
+    private TimeCodec() {
+    }
+
+    /**
+     * Parses the contents of a UTCTime.
+     *
+     * @param pivot Two-digit years below this value are in the 2000s,
+     *      the others are in the 1900s.
+     * @return The number of seconds since the epoch.
+     * @exception DateTimeException If the contents are invalid.
+     */
+    public static long parseUTCTime(byte[] buf, int offset, int length, int pivot)
+            throws DateTimeException {
+        return parse(buf, offset, length, true, pivot, false);
+    }
+
+    /**
+     * Parses the contents of a UTCTime.
+     *
+     * @param pivot Two-digit years below this value are in the 2000s,
+     *      the others are in the 1900s.
+     * @param strict true to require a time zone. UTCTime always requires one.
+     * @return The number of seconds since the epoch.
+     * @exception DateTimeException If the contents are invalid.
+     */
+    public static long parseUTCTime(byte[] buf, int offset, int length, int pivot, boolean strict)
+            throws DateTimeException {
+        return parse(buf, offset, length, true, pivot, strict);
+    }
+
+    /**
+     * Parses the contents of a GeneralizedTime.
+     *
+     * @return The number of seconds since the epoch.
+     * @exception DateTimeException If the contents are invalid.
+     */
+    public static long parseGeneralizedTime(byte[] buf, int offset, int length)
+            throws DateTimeException {
+        return parse(buf, offset, length, false, 0, false);
+    }
+
+    /**
+     * Parses the contents of a GeneralizedTime.
+     *
+     * @param strict true to require a time zone and to reject fractions
+     *      of seconds.
+     * @return The number of seconds since the epoch.
+     * @exception DateTimeException If the contents are invalid.
+     */
+    public static long parseGeneralizedTime(byte[] buf, int offset, int length, boolean strict)
+            throws DateTimeException {
+        return parse(buf, offset, length, false, 0, strict);
+    }
+
+    private static long parse(byte[] buf, int offset, int length, boolean utc, int pivot,
+            boolean strict) throws DateTimeException {
+
+        int end = offset + length;
+        int i = offset;
+
+        int year;
+        if (utc) {
+            year = digits(buf, i, end, 0, 99, "year");
+            year += year < pivot ? 2000 : 1900;
+            i += 2;
+        } else {
+            year = digits(buf, i, end, 0, 99, "year") * 100 +
+                    digits(buf, i + 2, end, 0, 99, "year");
+            i += 4;
+        }
+
+        int month = digits(buf, i, end, 1, 12, "month");
+        i += 2;
+        int day = digits(buf, i, end, 1, 31, "day");
+        i += 2;
+        int hour = digits(buf, i, end, 0, 23, "hour");
+        i += 2;
+        int minute = digits(buf, i, end, 0, 59, "minute");
+        i += 2;
+
+        // seconds are optional
+        int second = 0;
+        if (i < end && isDigit(buf[i])) {
+            second = digits(buf, i, end, 0, 59, "second");
+            i += 2;
+        }
+
+        // GeneralizedTime may have fractions of seconds
+        if (!utc && i < end && (buf[i] == '.' || buf[i] == ',')) {
+            if (strict) {
+                throw new DateTimeException("Fraction of second not allowed");
+            }
+            i++;
+            if (i == end || !isDigit(buf[i])) {
+                throw new DateTimeException("Invalid fraction of second");
+            }
+            while (i < end && isDigit(buf[i])) {
+                i++;
+            }
+        }
+
+        // Days beyond the end of the month roll over into the next
+        // month, as they did with a lenient Calendar.
+        long epochDay = LocalDate.of(year, month, 1).toEpochDay() + day - 1;
+        long seconds = epochDay * 86400 + hour * 3600 + minute * 60 + second;
+
+        if (i == end) {
+            if (utc || strict) {
+                throw new DateTimeException("No time zone specified");
+            }
+            // no time zone, use local time
+            LocalDateTime local = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+            return local.atZone(ZoneId.systemDefault()).toEpochSecond();
+        }
+
+        byte zone = buf[i++];
+
+        if (zone == '+' || zone == '-') {
+            int hourOff = digits(buf, i, end, 0, 23, "hour offset");
+            int minOff = digits(buf, i + 2, end, 0, 59, "minute offset");
+            i += 4;
+
+            // the time is local time at the given offset from UTC
+            int offsetSeconds = (hourOff * 60 + minOff) * 60;
+            seconds += zone == '+' ? -offsetSeconds : offsetSeconds;
+
+        } else if (zone != 'Z') {
+            throw new DateTimeException("Invalid time zone: " + (char) (zone & 0xff));
+        }
+
+        if (i != end) {
+            throw new DateTimeException("Extra characters at end of time");
+        }
+
+        return seconds;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Parses two digits.
+     */
+    private static int digits(byte[] buf, int i, int end, int low, int high, String field)
+            throws DateTimeException {
+
+        if (i + 2 > end) {
+            throw new DateTimeException("Too few characters in time");
+        }
+
+        byte b1 = buf[i];
+        byte b2 = buf[i + 1];
+        if (!isDigit(b1) || !isDigit(b2)) {
+            throw new DateTimeException("Invalid " + field);
+        }
+
+        int val = (b1 - '0') * 10 + (b2 - '0');
+        if (val < low || val > high) {
+            throw new DateTimeException("Invalid " + field + ": " + val);
+        }
+        return val;
+    }
+
+    /**
+     * Formats a time as the contents of a UTCTime,
+     * <code>YYMMDDhhmmssZ</code>.
+     *
+     * @param epochSecond The number of seconds since the epoch.
+     */
+    public static byte[] formatUTCTime(long epochSecond) {
+        byte[] buf = new byte[UTC_TIME_LENGTH];
+        format(epochSecond, true, buf, 0);
+        return buf;
+    }
+
+    /**
+     * Formats a time as the contents of a GeneralizedTime,
+     * <code>YYYYMMDDhhmmssZ</code>.
+     *
+     * @param epochSecond The number of seconds since the epoch.
+     */
+    public static byte[] formatGeneralizedTime(long epochSecond) {
+        byte[] buf = new byte[GENERALIZED_TIME_LENGTH];
+        format(epochSecond, false, buf, 0);
+        return buf;
+    }
+
+    /**
+     * Formats a time into an array.
+     *
+     * @param utc true for UTCTime, false for GeneralizedTime.
+     * @return The position after the formatted time.
+     */
+    public static int format(long epochSecond, boolean utc, byte[] buf, int offset) {
+
+        LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        int year = time.getYear();
+        int i = offset;
+
+        if (!utc) {
+            putDigits(buf, i, (year % 10000) / 100);
+            i += 2;
+        }
+        putDigits(buf, i, year % 100);
+        i += 2;
+        putDigits(buf, i, time.getMonthValue());
+        i += 2;
+        putDigits(buf, i, time.getDayOfMonth());
+        i += 2;
+        putDigits(buf, i, time.getHour());
+        i += 2;
+        putDigits(buf, i, time.getMinute());
+        i += 2;
+        putDigits(buf, i, time.getSecond());
+        i += 2;
+        buf[i++] = 'Z';
+
+        return i;
+    }
+
+    private static void putDigits(byte[] buf, int i, int val) {
+        buf[i] = (byte) ('0' + val / 10);
+        buf[i + 1] = (byte) ('0' + val % 10);
+    }
+
+    /**
+     * @return The number of whole seconds since the epoch of a Date.
+     */
+    public static long toEpochSecond(Date date) {
+        return Math.floorDiv(date.getTime(), 1000L);
+    }
+
+    /**
+     * @return A new Date for a number of seconds since the epoch.
+     */
+    public static Date toDate(long epochSecond) {
+        return new Date(epochSecond * 1000L);
+    }
+}
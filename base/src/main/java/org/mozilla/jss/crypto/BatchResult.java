@@ -0,0 +1,70 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.crypto;
+
+/**
+ * The per-item results of a batch operation. Each item either has a
+ * result or an error; the failure of one item does not affect the
+ * others.
+ */
+public class BatchResult<T> {
+
+    private Object[] results;
+    private Exception[] errors;
+
+    public BatchResult(int size) {
+        results = new Object[size];
+        errors = new Exception[size];
+    }
+
+    /**
+     * @return The number of items in the batch.
+     */
+    public int size() {
+        return results.length;
+    }
+
+    /**
+     * @return The result of the given item, or null if it failed.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) results[index];
+    }
+
+    /**
+     * @return The error of the given item, or null if it succeeded.
+     */
+    public Exception getError(int index) {
+        return errors[index];
+    }
+
+    public boolean isSuccess(int index) {
+        return errors[index] == null;
+    }
+
+    /**
+     * @return The number of items that failed.
+     */
+    public int getErrorCount() {
+        int count = 0;
+        for (Exception e : errors) {
+            if (e != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void setResult(int index, T result) {
+        results[index] = result;
+        errors[index] = null;
+    }
+
+    public void setError(int index, Exception error) {
+        results[index] = null;
+        errors[index] = error;
+    }
+}
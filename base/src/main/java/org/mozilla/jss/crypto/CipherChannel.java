@@ -0,0 +1,170 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.crypto;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.BadPaddingException;
+
+/**
+ * A WritableByteChannel that runs the bytes written to it through an
+ * initialized {@link Cipher} before writing them to a target channel.
+ *
+ * <p>The channel is double-buffered: while the output of one chunk is
+ * being written to the target channel by a background thread, the
+ * caller can fill the next chunk and pass it through the cipher. This
+ * overlaps the native cipher operation with the target I/O. The cipher
+ * is finalized by {@link #close}, which also waits for all pending
+ * output and closes the target channel.
+ *
+ * <p>This class is not thread-safe; it must be written to by one thread
+ * at a time.
+ */
+public class CipherChannel implements WritableByteChannel {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private WritableByteChannel target;
+    private Cipher cipher;
+
+    private byte[] buf;
+    private int count = 0;
+
+    // writes the previous chunk while the next one is being filled
+    private ExecutorService writer;
+    private Future<?> pendingWrite;
+
+    private boolean open = true;
+
+    /**
+     * @param target The channel to write ciphertext (if encrypting) or
+     *      plaintext (if decrypting) to.
+     * @param cipher A cipher that has already been initialized for
+     *      encryption or decryption.
+     */
+    public CipherChannel(WritableByteChannel target, Cipher cipher) {
+        this(target, cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CipherChannel(WritableByteChannel target, Cipher cipher, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.target = target;
+        this.cipher = cipher;
+        this.buf = new byte[bufferSize];
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "CipherChannel writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            if (count == buf.length) {
+                byte[] output;
+                try {
+                    output = cipher.update(buf, 0, count);
+                } catch (TokenException e) {
+                    throw new IOException("Unable to process data: " + e.getMessage(), e);
+                }
+                count = 0;
+                submit(output);
+            }
+            int n = Math.min(src.remaining(), buf.length - count);
+            src.get(buf, count, n);
+            count += n;
+        }
+        return written;
+    }
+
+    /**
+     * Waits for the previous chunk to be written, then hands the
+     * given output to the writer thread.
+     */
+    private void submit(byte[] output) throws IOException {
+        awaitPendingWrite();
+        if (output.length == 0) {
+            return;
+        }
+        pendingWrite = writer.submit(() -> {
+            ByteBuffer bb = ByteBuffer.wrap(output);
+            while (bb.hasRemaining()) {
+                target.write(bb);
+            }
+            return null;
+        });
+    }
+
+    private void awaitPendingWrite() throws IOException {
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            pendingWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing data");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Unable to write data: " + cause.getMessage(), cause);
+        } finally {
+            pendingWrite = null;
+        }
+    }
+
+    /**
+     * Finalizes the cipher, writes the remaining output and closes the
+     * target channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+
+        try {
+            byte[] output;
+            try {
+                output = cipher.doFinal(buf, 0, count);
+            } catch (TokenException | IllegalBlockSizeException | BadPaddingException e) {
+                throw new IOException("Unable to process data: " + e.getMessage(), e);
+            }
+            count = 0;
+            submit(output);
+        } finally {
+            try {
+                awaitPendingWrite();
+            } finally {
+                writer.shutdown();
+                target.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.crypto;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.crypto.BadPaddingException;
+
+/**
+ * An InputStream that runs the bytes read from an underlying stream
+ * through an initialized {@link Cipher}.
+ *
+ * <p>Input is read and passed to the cipher in chunks of
+ * <code>bufferSize</code> bytes, so the number of native calls is
+ * proportional to the size of the data divided by the buffer size
+ * rather than to the number of <code>read</code> calls. The cipher is
+ * finalized when the underlying stream reaches end-of-file.
+ */
+public class CipherInputStream extends FilterInputStream {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private Cipher cipher;
+
+    // reused for every chunk read from the underlying stream
+    private byte[] inBuf;
+
+    // output of the last cipher operation, consumed by read()
+    private byte[] outBuf = new byte[0];
+    private int outPos = 0;
+
+    private boolean finalized = false;
+
+    /**
+     * @param in The stream to read plaintext (if encrypting) or
+     *      ciphertext (if decrypting) from.
+     * @param cipher A cipher that has already been initialized for
+     *      encryption or decryption.
+     */
+    public CipherInputStream(InputStream in, Cipher cipher) {
+        this(in, cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CipherInputStream(InputStream in, Cipher cipher, int bufferSize) {
+        super(in);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.cipher = cipher;
+        this.inBuf = new byte[bufferSize];
+    }
+
+    /**
+     * Refills the output buffer.
+     *
+     * @return false if there is no more output.
+     */
+    private boolean fill() throws IOException {
+        while (outPos >= outBuf.length) {
+            if (finalized) {
+                return false;
+            }
+
+            int n = readChunk();
+
+            try {
+                if (n < 0) {
+                    outBuf = cipher.doFinal();
+                    finalized = true;
+                } else {
+                    outBuf = cipher.update(inBuf, 0, n);
+                }
+            } catch (TokenException | IllegalBlockSizeException | BadPaddingException e) {
+                throw new IOException("Unable to process data: " + e.getMessage(), e);
+            }
+            outPos = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads up to a full buffer from the underlying stream.
+     *
+     * @return The number of bytes read, or -1 at end-of-file.
+     */
+    private int readChunk() throws IOException {
+        int total = 0;
+        while (total < inBuf.length) {
+            int n = in.read(inBuf, total, inBuf.length - total);
+            if (n < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return outBuf[outPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, outBuf.length - outPos);
+        System.arraycopy(outBuf, outPos, b, off, n);
+        outPos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long count = 0;
+        while (count < n && fill()) {
+            int step = (int) Math.min(n - count, outBuf.length - outPos);
+            outPos += step;
+            count += step;
+        }
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return outBuf.length - outPos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -0,0 +1,116 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.crypto;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.crypto.BadPaddingException;
+
+/**
+ * An OutputStream that runs the bytes written to it through an
+ * initialized {@link Cipher} before passing them to an underlying stream.
+ *
+ * <p>Writes are collected into chunks of <code>bufferSize</code> bytes
+ * before they are passed to the cipher, so small writes do not each
+ * cross into native code. The cipher is finalized by {@link #close}.
+ */
+public class CipherOutputStream extends FilterOutputStream {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private Cipher cipher;
+
+    private byte[] buf;
+    private int count = 0;
+
+    private boolean closed = false;
+
+    /**
+     * @param out The stream to write ciphertext (if encrypting) or
+     *      plaintext (if decrypting) to.
+     * @param cipher A cipher that has already been initialized for
+     *      encryption or decryption.
+     */
+    public CipherOutputStream(OutputStream out, Cipher cipher) {
+        this(out, cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CipherOutputStream(OutputStream out, Cipher cipher, int bufferSize) {
+        super(out);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.cipher = cipher;
+        this.buf = new byte[bufferSize];
+    }
+
+    private void processBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        try {
+            out.write(cipher.update(buf, 0, count));
+        } catch (TokenException e) {
+            throw new IOException("Unable to process data: " + e.getMessage(), e);
+        }
+        count = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) {
+            processBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buf.length) {
+                processBuffer();
+            }
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Passes any buffered input through the cipher and flushes the
+     * underlying stream. For block ciphers the cipher may retain a
+     * partial block until the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        processBuffer();
+        out.flush();
+    }
+
+    /**
+     * Finalizes the cipher, writes the remaining output and closes the
+     * underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            out.write(cipher.doFinal(buf, 0, count));
+            count = 0;
+        } catch (TokenException | IllegalBlockSizeException | BadPaddingException e) {
+            throw new IOException("Unable to process data: " + e.getMessage(), e);
+        } finally {
+            out.close();
+        }
+    }
+}
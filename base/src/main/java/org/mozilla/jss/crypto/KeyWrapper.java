@@ -117,4 +117,102 @@ public interface KeyWrapper {
         throws TokenException, IllegalStateException,
             InvalidAlgorithmParameterException;
 
+    /**
+     * Wraps a batch of symmetric keys with the key and parameters given
+     * to <code>initWrap</code>. A failure to wrap one key is recorded in
+     * the result and does not stop the others from being wrapped.
+     */
+    public default BatchResult<byte[]> wrapBatch(SymmetricKey[] toBeWrapped)
+        throws IllegalStateException, TokenException
+    {
+        BatchResult<byte[]> result = new BatchResult<>(toBeWrapped.length);
+        for (int i = 0; i < toBeWrapped.length; i++) {
+            try {
+                result.setResult(i, wrap(toBeWrapped[i]));
+            } catch (InvalidKeyException | TokenException e) {
+                result.setError(i, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wraps a batch of private keys with the key and parameters given
+     * to <code>initWrap</code>. A failure to wrap one key is recorded in
+     * the result and does not stop the others from being wrapped.
+     */
+    public default BatchResult<byte[]> wrapBatch(PrivateKey[] toBeWrapped)
+        throws IllegalStateException, TokenException
+    {
+        BatchResult<byte[]> result = new BatchResult<>(toBeWrapped.length);
+        for (int i = 0; i < toBeWrapped.length; i++) {
+            try {
+                result.setResult(i, wrap(toBeWrapped[i]));
+            } catch (InvalidKeyException | TokenException e) {
+                result.setError(i, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unwraps a batch of private keys with the key and parameters given
+     * to <code>initUnwrap</code>. A failure to unwrap one key is recorded
+     * in the result and does not stop the others from being unwrapped.
+     *
+     * @param publicKeys The public key of each wrapped private key.
+     * @param temporary Whether to create temporary instead of permanent
+     *  private key objects.
+     */
+    public default BatchResult<PrivateKey> unwrapPrivateBatch(byte[][] wrapped,
+        PrivateKey.Type type, PublicKey[] publicKeys, boolean temporary)
+        throws IllegalStateException, TokenException
+    {
+        if (publicKeys.length != wrapped.length) {
+            throw new IllegalArgumentException("Expected " + wrapped.length +
+                " public keys, got " + publicKeys.length);
+        }
+        BatchResult<PrivateKey> result = new BatchResult<>(wrapped.length);
+        for (int i = 0; i < wrapped.length; i++) {
+            try {
+                if (temporary) {
+                    result.setResult(i, unwrapTemporaryPrivate(wrapped[i], type, publicKeys[i]));
+                } else {
+                    result.setResult(i, unwrapPrivate(wrapped[i], type, publicKeys[i]));
+                }
+            } catch (InvalidKeyException | TokenException e) {
+                result.setError(i, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unwraps a batch of symmetric keys with the key and parameters given
+     * to <code>initUnwrap</code>. A failure to unwrap one key is recorded
+     * in the result and does not stop the others from being unwrapped.
+     *
+     * @param keyLength See {@link #unwrapSymmetric}.
+     * @param usage The operation the keys will be used for, or null to
+     *  allow all operations.
+     */
+    public default BatchResult<SymmetricKey> unwrapSymmetricBatch(byte[][] wrapped,
+        SymmetricKey.Type type, SymmetricKey.Usage usage, int keyLength)
+        throws IllegalStateException, TokenException,
+            InvalidAlgorithmParameterException
+    {
+        BatchResult<SymmetricKey> result = new BatchResult<>(wrapped.length);
+        for (int i = 0; i < wrapped.length; i++) {
+            try {
+                if (usage == null) {
+                    result.setResult(i, unwrapSymmetric(wrapped[i], type, keyLength));
+                } else {
+                    result.setResult(i, unwrapSymmetric(wrapped[i], type, usage, keyLength));
+                }
+            } catch (TokenException e) {
+                result.setError(i, e);
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,304 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.RC2ParameterSpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes a large stream by splitting it into segments that are
+ * encrypted or decrypted concurrently, each with its own cipher context
+ * on the same token. The key never leaves the token.
+ *
+ * <p>Only modes in which a segment can be processed without the output
+ * of the previous segment can be parallelized:
+ * <ul>
+ * <li>ECB encryption and decryption (without padding), where every block
+ *     is independent, and
+ * <li>CBC decryption (with or without padding), where the IV of a
+ *     segment is the last ciphertext block of the previous segment.
+ * </ul>
+ * CBC encryption is inherently sequential; use {@link CipherOutputStream}
+ * or {@link CipherChannel} instead.
+ *
+ * <p>The output is identical to processing the whole stream with a single
+ * {@link Cipher}. Segments are written to the output in order, and at most
+ * twice the parallelism worth of segments is held in memory at a time.
+ */
+public class ParallelCipher {
+
+    public static Logger logger = LoggerFactory.getLogger(ParallelCipher.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    private CryptoToken token;
+    private EncryptionAlgorithm algorithm;
+    private SymmetricKey key;
+    private AlgorithmParameterSpec params;
+    private boolean encrypt;
+
+    // algorithm used for all segments except the last one
+    private EncryptionAlgorithm segmentAlgorithm;
+
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param token The token on which the cipher operations are performed.
+     * @param algorithm The encryption algorithm; see
+     *      {@link #isParallelizable} for the supported modes.
+     * @param key The key, which must live on <code>token</code>.
+     * @param params The algorithm parameters (e.g., the IV), or null.
+     * @param encrypt true to encrypt, false to decrypt.
+     */
+    public ParallelCipher(CryptoToken token, EncryptionAlgorithm algorithm,
+            SymmetricKey key, AlgorithmParameterSpec params, boolean encrypt)
+            throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+
+        if (!isParallelizable(algorithm, encrypt)) {
+            throw new InvalidAlgorithmParameterException(algorithm + " cannot be " +
+                    (encrypt ? "encrypted" : "decrypted") + " in parallel");
+        }
+
+        this.token = token;
+        this.algorithm = algorithm;
+        this.key = key;
+        this.params = params;
+        this.encrypt = encrypt;
+
+        if (algorithm.isPadded()) {
+            // the padding only applies to the last segment
+            segmentAlgorithm = EncryptionAlgorithm.lookup(
+                    algorithm.getAlg().toString(),
+                    algorithm.getMode().toString(),
+                    EncryptionAlgorithm.Padding.NONE.toString(),
+                    algorithm.getKeyStrength());
+        } else {
+            segmentAlgorithm = algorithm;
+        }
+    }
+
+    /**
+     * @return true if the given algorithm can be processed by this class
+     *      in the given direction.
+     */
+    public static boolean isParallelizable(EncryptionAlgorithm algorithm, boolean encrypt) {
+        EncryptionAlgorithm.Mode mode = algorithm.getMode();
+        if (mode == EncryptionAlgorithm.Mode.ECB) {
+            return !algorithm.isPadded();
+        }
+        if (mode == EncryptionAlgorithm.Mode.CBC) {
+            return !encrypt;
+        }
+        return false;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the size of the segments that are processed concurrently.
+     * It must be a multiple of the block size of the algorithm.
+     */
+    public void setSegmentSize(int segmentSize) {
+        int blockSize = algorithm.getBlockSize();
+        if (segmentSize <= 0 || segmentSize % blockSize != 0) {
+            throw new IllegalArgumentException("Segment size must be a positive multiple of " +
+                    blockSize + ": " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of segments processed concurrently.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Reads the input stream until end-of-file, and writes the processed
+     * data to the output stream. Neither stream is closed.
+     *
+     * @return The number of bytes written to the output stream.
+     */
+    public long process(InputStream in, OutputStream out)
+            throws IOException, TokenException, IllegalBlockSizeException,
+            BadPaddingException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "ParallelCipher worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            return process(in, out, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long process(InputStream in, OutputStream out, ExecutorService executor)
+            throws IOException, TokenException, IllegalBlockSizeException,
+            BadPaddingException {
+
+        int blockSize = algorithm.getBlockSize();
+        byte[] iv = getIV(params);
+
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        int maxPending = parallelism * 2;
+        long total = 0;
+        int segments = 0;
+
+        // read one segment ahead to find out which one is the last
+        byte[] current = readSegment(in);
+        while (true) {
+            byte[] next = current.length < segmentSize ? null : readSegment(in);
+            boolean last = next == null || next.length == 0;
+
+            byte[] segment = current;
+            AlgorithmParameterSpec segmentParams = makeParams(iv);
+            EncryptionAlgorithm alg = last ? algorithm : segmentAlgorithm;
+            pending.add(executor.submit(() -> processSegment(alg, segmentParams, segment)));
+            segments++;
+
+            if (iv != null && segment.length >= blockSize) {
+                // CBC decryption: chain from the last ciphertext block
+                iv = Arrays.copyOfRange(segment, segment.length - blockSize, segment.length);
+            }
+
+            while (pending.size() >= maxPending || (last && !pending.isEmpty())) {
+                byte[] output = await(pending.removeFirst());
+                out.write(output);
+                total += output.length;
+            }
+
+            if (last) {
+                break;
+            }
+            current = next;
+        }
+
+        logger.debug("ParallelCipher: processed " + segments + " segment(s), " + total + " bytes");
+        return total;
+    }
+
+    private byte[] processSegment(EncryptionAlgorithm alg, AlgorithmParameterSpec segmentParams,
+            byte[] segment) throws Exception {
+
+        Cipher cipher = token.getCipherContext(alg);
+        try {
+            if (encrypt) {
+                cipher.initEncrypt(key, segmentParams);
+            } else {
+                cipher.initDecrypt(key, segmentParams);
+            }
+            return cipher.doFinal(segment);
+
+        } finally {
+            if (cipher instanceof AutoCloseable) {
+                ((AutoCloseable) cipher).close();
+            }
+        }
+    }
+
+    private byte[] await(Future<byte[]> future)
+            throws IOException, TokenException, IllegalBlockSizeException,
+            BadPaddingException {
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing data");
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TokenException) {
+                throw (TokenException) cause;
+            }
+            if (cause instanceof IllegalBlockSizeException) {
+                throw (IllegalBlockSizeException) cause;
+            }
+            if (cause instanceof BadPaddingException) {
+                throw (BadPaddingException) cause;
+            }
+            if (cause instanceof InvalidKeyException
+                    || cause instanceof InvalidAlgorithmParameterException
+                    || cause instanceof NoSuchAlgorithmException) {
+                throw new TokenException("Unable to initialize cipher: " + cause.getMessage(), cause);
+            }
+            throw new TokenException("Unable to process segment: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Reads up to one segment from the stream.
+     *
+     * @return The segment, which is shorter than the segment size only
+     *      at end-of-file.
+     */
+    private byte[] readSegment(InputStream in) throws IOException {
+        byte[] segment = new byte[segmentSize];
+        int total = 0;
+        while (total < segmentSize) {
+            int n = in.read(segment, total, segmentSize - total);
+            if (n < 0) {
+                return Arrays.copyOf(segment, total);
+            }
+            total += n;
+        }
+        return segment;
+    }
+
+    private static byte[] getIV(AlgorithmParameterSpec params) {
+        if (params instanceof IvParameterSpec) {
+            return ((IvParameterSpec) params).getIV();
+        }
+        if (params instanceof RC2ParameterSpec) {
+            return ((RC2ParameterSpec) params).getIV();
+        }
+        return null;
+    }
+
+    private AlgorithmParameterSpec makeParams(byte[] iv) {
+        if (iv == null) {
+            return params;
+        }
+        if (params instanceof RC2ParameterSpec) {
+            return new RC2ParameterSpec(((RC2ParameterSpec) params).getEffectiveKeyBits(), iv);
+        }
+        return new IVParameterSpec(iv);
+    }
+}
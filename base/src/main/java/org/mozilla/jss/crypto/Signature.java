@@ -9,6 +9,7 @@ import java.security.Provider;
 import java.security.PublicKey;
 import java.security.SignatureException;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.BitSet;
 
 /**
  * A class for producing and verifying digital signatures.
@@ -126,6 +127,44 @@ public class Signature {
         return engine.engineVerify(signature);
     }
 
+    /**
+     * Signs many pre-computed digests with the key the context was
+     * initialized with. This is only supported by raw signature algorithms
+     * (e.g., <code>SignatureAlgorithm.RSASignature</code>, for which each
+     * digest must be a DER-encoded DigestInfo). Unlike {@link #sign()},
+     * the context remains initialized for signing afterwards.
+     *
+     * @param digests The digests to be signed.
+     * @return The signatures, in the same order as the digests.
+     * @exception SignatureException If the context is not initialized for
+     *                signing, the algorithm is not a raw algorithm, or a
+     *                digest could not be signed.
+     * @exception TokenException If an error occurred on the token.
+     */
+    public byte[][] signBatch(byte[][] digests)
+            throws SignatureException, TokenException {
+        return engine.engineSignBatch(digests);
+    }
+
+    /**
+     * Verifies many signatures of pre-computed digests with the key the
+     * context was initialized with. This is only supported by raw
+     * signature algorithms. The context remains initialized for
+     * verification afterwards.
+     *
+     * @param digests The digests that were signed.
+     * @param signatures The signatures, one for each digest.
+     * @return A set containing the indices of the valid signatures.
+     * @exception SignatureException If the context is not initialized for
+     *                verification, the algorithm is not a raw algorithm, or
+     *                an error occurred while verifying.
+     * @exception TokenException If an error occurred on the token.
+     */
+    public BitSet verifyBatch(byte[][] digests, byte[][] signatures)
+            throws SignatureException, TokenException {
+        return engine.engineVerifyBatch(digests, signatures);
+    }
+
     /**
      * Provide more data for a signature or verification operation.
      *
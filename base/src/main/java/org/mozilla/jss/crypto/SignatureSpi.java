@@ -6,6 +6,7 @@ package org.mozilla.jss.crypto;
 import java.security.*;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.BitSet;
 
 /**
  * You don't need to use this unless you are hacking JSS.
@@ -39,4 +40,23 @@ public abstract class SignatureSpi {
 
 	public abstract void engineSetParameter(AlgorithmParameterSpec params)
 		throws InvalidAlgorithmParameterException, TokenException;
+
+	/**
+	 * Signs each of the given pre-computed digests. Engines that do not
+	 * support batch signing throw a SignatureException.
+	 */
+	public byte[][] engineSignBatch(byte[][] digests)
+		throws SignatureException, TokenException {
+		throw new SignatureException("Batch signing is not supported");
+	}
+
+	/**
+	 * Verifies each of the given signatures against the corresponding
+	 * pre-computed digest. Engines that do not support batch verification
+	 * throw a SignatureException.
+	 */
+	public BitSet engineVerifyBatch(byte[][] digests, byte[][] signatures)
+		throws SignatureException, TokenException {
+		throw new SignatureException("Batch verification is not supported");
+	}
 }
@@ -0,0 +1,475 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A thread-safe service for signing data with private keys.
+ *
+ * <p>A {@link Signature} context can only be used by one thread at a
+ * time. The service keeps, for each key and algorithm, a pool of idle
+ * signature contexts. A thread takes an idle context from the pool,
+ * signs with it and returns it to the pool. Keys are identified by their
+ * token and key ID, so different PrivateKey objects for the same key
+ * share a pool. The pools of the least recently used keys are discarded
+ * when there are more than {@link #DEFAULT_MAX_POOLS} (or the configured
+ * maximum).
+ *
+ * <p>Reusing a context saves looking up the signature algorithm on the
+ * token and, when the same PrivateKey object is used again, checking
+ * that the key is on the token and matches the algorithm. NSS signing
+ * contexts cannot be reset, so the native context is still created at the
+ * start of every operation.
+ *
+ * <p>The number of concurrent signing operations can be limited per
+ * token with {@link #setMaxConcurrency}. The service keeps statistics per
+ * token, available from {@link #getStats}.
+ */
+public class SigningService {
+
+    public static Logger logger = LoggerFactory.getLogger(SigningService.class);
+
+    /**
+     * The default maximum number of key and algorithm combinations
+     * for which idle contexts are kept.
+     */
+    public static final int DEFAULT_MAX_POOLS = 100;
+
+    // the key ID of each PrivateKey object, to avoid calling the token
+    // on every operation; the keys are weakly referenced
+    private Map<PrivateKey, KeyID> keyIDs = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // guarded by itself
+    private Map<ContextKey, ContextPool> pools;
+    private Map<CryptoToken, TokenStats> tokens = new ConcurrentHashMap<>();
+
+    private int maxIdleContexts;
+    private int maxPools;
+
+    /**
+     * Creates a service that keeps up to twice the number of available
+     * processors of idle contexts per key and algorithm.
+     */
+    public SigningService() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxIdleContexts The maximum number of idle contexts kept per
+     *      key and algorithm.
+     */
+    public SigningService(int maxIdleContexts) {
+        this(maxIdleContexts, DEFAULT_MAX_POOLS);
+    }
+
+    /**
+     * @param maxIdleContexts The maximum number of idle contexts kept per
+     *      key and algorithm.
+     * @param maxPools The maximum number of key and algorithm combinations
+     *      for which idle contexts are kept.
+     */
+    public SigningService(int maxIdleContexts, int maxPools) {
+        if (maxIdleContexts < 0) {
+            throw new IllegalArgumentException("Invalid number of contexts: " + maxIdleContexts);
+        }
+        if (maxPools < 0) {
+            throw new IllegalArgumentException("Invalid number of pools: " + maxPools);
+        }
+        this.maxIdleContexts = maxIdleContexts;
+        this.maxPools = maxPools;
+        this.pools = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContextKey, ContextPool> eldest) {
+                return size() > SigningService.this.maxPools;
+            }
+        };
+    }
+
+    /**
+     * Limits the number of concurrent signing operations on a token.
+     * Threads signing with keys on the token wait until one of the
+     * operations in progress finishes.
+     *
+     * @param max The maximum number of concurrent operations, or 0 for
+     *      no limit.
+     */
+    public void setMaxConcurrency(CryptoToken token, int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Invalid concurrency: " + max);
+        }
+        getTokenStats(token).setMaxConcurrency(max);
+    }
+
+    /**
+     * Signs data with the given key.
+     *
+     * @param key The private key, which lives on the token that will
+     *      perform the operation.
+     * @param algorithm The signature algorithm.
+     * @param data The data to be signed.
+     * @return The signature.
+     */
+    public byte[] sign(PrivateKey key, SignatureAlgorithm algorithm, byte[] data)
+            throws NoSuchAlgorithmException, InvalidKeyException,
+            SignatureException, TokenException {
+        return sign(key, algorithm, data, 0, data.length);
+    }
+
+    /**
+     * Signs part of an array with the given key.
+     */
+    public byte[] sign(PrivateKey key, SignatureAlgorithm algorithm,
+            byte[] data, int offset, int length)
+            throws NoSuchAlgorithmException, InvalidKeyException,
+            SignatureException, TokenException {
+
+        ContextPool pool = getPool(key, algorithm);
+        TokenStats stats = pool.stats;
+
+        long start = System.nanoTime();
+        Semaphore permit = stats.acquire();
+        try {
+            Signature signature = pool.contexts.poll();
+            if (signature == null) {
+                signature = pool.token.getSignatureContext(algorithm);
+                stats.contextsCreated.incrementAndGet();
+            } else {
+                pool.idle.decrementAndGet();
+            }
+
+            // a context that fails is discarded
+            signature.initSign(key);
+            signature.update(data, offset, length);
+            byte[] result = signature.sign();
+
+            if (pool.reserveIdle(maxIdleContexts)) {
+                pool.contexts.add(signature);
+            }
+
+            stats.completed(System.nanoTime() - start);
+            return result;
+
+        } catch (NoSuchAlgorithmException | InvalidKeyException
+                | SignatureException | TokenException | RuntimeException e) {
+            stats.failures.incrementAndGet();
+            throw e;
+
+        } finally {
+            stats.release(permit);
+        }
+    }
+
+    /**
+     * Discards the idle contexts of a key, e.g., after it has been
+     * removed from the token.
+     */
+    public void removeKey(PrivateKey key) throws TokenException {
+        KeyID keyID = getKeyID(key);
+        synchronized (pools) {
+            pools.keySet().removeIf(k -> k.keyID.equals(keyID));
+        }
+    }
+
+    /**
+     * @return The statistics for a token.
+     */
+    public Stats getStats(CryptoToken token) {
+        TokenStats stats = tokens.get(token);
+        return stats == null ? new Stats(0, 0, 0, 0, 0, 0, 0, 0) : stats.snapshot();
+    }
+
+    /**
+     * @return The number of key and algorithm combinations that have
+     *      a pool of idle contexts.
+     */
+    public int getPoolCount() {
+        synchronized (pools) {
+            return pools.size();
+        }
+    }
+
+    private ContextPool getPool(PrivateKey key, SignatureAlgorithm algorithm)
+            throws TokenException {
+        KeyID keyID = getKeyID(key);
+        ContextKey contextKey = new ContextKey(keyID, algorithm);
+        synchronized (pools) {
+            ContextPool pool = pools.get(contextKey);
+            if (pool == null) {
+                pool = new ContextPool(keyID.token, getTokenStats(keyID.token));
+                pools.put(contextKey, pool);
+            }
+            return pool;
+        }
+    }
+
+    private KeyID getKeyID(PrivateKey key) throws TokenException {
+        KeyID keyID = keyIDs.get(key);
+        if (keyID == null) {
+            keyID = new KeyID(key.getOwningToken(), ByteBuffer.wrap(key.getUniqueID()));
+            keyIDs.put(key, keyID);
+        }
+        return keyID;
+    }
+
+    private TokenStats getTokenStats(CryptoToken token) {
+        return tokens.computeIfAbsent(token, t -> new TokenStats());
+    }
+
+    /**
+     * Identifies a key by its token and key ID.
+     */
+    private static class KeyID {
+
+        CryptoToken token;
+        ByteBuffer id;
+
+        KeyID(CryptoToken token, ByteBuffer id) {
+            this.token = token;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(token, id);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof KeyID)) {
+                return false;
+            }
+            KeyID other = (KeyID) obj;
+            return token.equals(other.token) && id.equals(other.id);
+        }
+    }
+
+    /**
+     * Identifies a pool of contexts.
+     */
+    private static class ContextKey {
+
+        KeyID keyID;
+        SignatureAlgorithm algorithm;
+
+        ContextKey(KeyID keyID, SignatureAlgorithm algorithm) {
+            this.keyID = keyID;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(keyID, algorithm);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ContextKey)) {
+                return false;
+            }
+            ContextKey other = (ContextKey) obj;
+            return keyID.equals(other.keyID) && algorithm == other.algorithm;
+        }
+    }
+
+    private static class ContextPool {
+
+        CryptoToken token;
+        TokenStats stats;
+        ConcurrentLinkedQueue<Signature> contexts = new ConcurrentLinkedQueue<>();
+
+        // Upper bound of the number of contexts in the queue: a slot is
+        // reserved before a context is added and released after a context
+        // is removed, so the queue never holds more than the maximum.
+        AtomicInteger idle = new AtomicInteger();
+
+        ContextPool(CryptoToken token, TokenStats stats) {
+            this.token = token;
+            this.stats = stats;
+        }
+
+        /**
+         * Reserves a slot for an idle context.
+         *
+         * @return false if the pool is full.
+         */
+        boolean reserveIdle(int max) {
+            while (true) {
+                int n = idle.get();
+                if (n >= max) {
+                    return false;
+                }
+                if (idle.compareAndSet(n, n + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static class TokenStats {
+
+        volatile Semaphore limit;
+        volatile int maxConcurrency;
+
+        AtomicInteger waiting = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        AtomicLong operations = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        AtomicLong contextsCreated = new AtomicLong();
+        AtomicLong totalTime = new AtomicLong();
+        AtomicLong maxTime = new AtomicLong();
+
+        void setMaxConcurrency(int max) {
+            maxConcurrency = max;
+            limit = max == 0 ? null : new Semaphore(max);
+        }
+
+        /**
+         * Waits for a permit of the current limit.
+         *
+         * @return The semaphore the permit was acquired from, which must
+         *         be passed to release(), or null if there is no limit.
+         */
+        Semaphore acquire() throws TokenException {
+            Semaphore semaphore = limit;
+            if (semaphore != null) {
+                waiting.incrementAndGet();
+                try {
+                    semaphore.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TokenException("Interrupted while waiting for token", e);
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            }
+            active.incrementAndGet();
+            return semaphore;
+        }
+
+        /**
+         * Releases a permit to the semaphore it was acquired from, which
+         * may have been replaced by setMaxConcurrency() in the meantime.
+         */
+        void release(Semaphore semaphore) {
+            active.decrementAndGet();
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+
+        void completed(long time) {
+            operations.incrementAndGet();
+            totalTime.addAndGet(time);
+            maxTime.accumulateAndGet(time, Math::max);
+        }
+
+        Stats snapshot() {
+            return new Stats(maxConcurrency, waiting.get(), active.get(),
+                    operations.get(), failures.get(), contextsCreated.get(),
+                    totalTime.get(), maxTime.get());
+        }
+    }
+
+    /**
+     * A snapshot of the signing statistics of a token.
+     */
+    public static class Stats {
+
+        private int maxConcurrency;
+        private int waiting;
+        private int active;
+        private long operations;
+        private long failures;
+        private long contextsCreated;
+        private long totalTime;
+        private long maxTime;
+
+        Stats(int maxConcurrency, int waiting, int active, long operations,
+                long failures, long contextsCreated, long totalTime, long maxTime) {
+            this.maxConcurrency = maxConcurrency;
+            this.waiting = waiting;
+            this.active = active;
+            this.operations = operations;
+            this.failures = failures;
+            this.contextsCreated = contextsCreated;
+            this.totalTime = totalTime;
+            this.maxTime = maxTime;
+        }
+
+        /**
+         * @return The concurrency limit of the token, or 0 if there is none.
+         */
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        /**
+         * @return The number of threads waiting for the token.
+         */
+        public int getQueueDepth() {
+            return waiting;
+        }
+
+        /**
+         * @return The number of signing operations in progress.
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * @return The number of successful signing operations.
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The number of signature contexts created. A value close
+         *      to the number of operations means contexts are rarely reused.
+         *      The native context is created for every operation and is
+         *      not counted.
+         */
+        public long getContextsCreated() {
+            return contextsCreated;
+        }
+
+        /**
+         * @return The average latency of a signing operation, including
+         *      the time spent waiting for the token, in milliseconds.
+         */
+        public double getAverageLatency() {
+            return operations == 0 ? 0.0 : totalTime / 1e6 / operations;
+        }
+
+        /**
+         * @return The maximum latency of a signing operation in milliseconds.
+         */
+        public double getMaxLatency() {
+            return maxTime / 1e6;
+        }
+    }
+}
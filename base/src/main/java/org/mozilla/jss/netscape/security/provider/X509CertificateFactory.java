@@ -17,6 +17,7 @@
 // --- END COPYRIGHT BLOCK ---
 package org.mozilla.jss.netscape.security.provider;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.security.cert.CRL;
 import java.security.cert.CRLException;
@@ -25,8 +26,9 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactorySpi;
 import java.util.Collection;
 
+import org.mozilla.jss.netscape.security.util.DerValue;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
-import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertCache;
 import org.mozilla.jss.netscape.security.x509.X509ExtensionException;
 
 public class X509CertificateFactory extends CertificateFactorySpi {
@@ -34,7 +36,12 @@ public class X509CertificateFactory extends CertificateFactorySpi {
     @Override
     public Certificate engineGenerateCertificate(InputStream inStream)
             throws CertificateException {
-        return new X509CertImpl(inStream);
+        try {
+            DerValue val = new DerValue(inStream);
+            return X509CertCache.getInstance().get(val.toByteArray());
+        } catch (IOException e) {
+            throw new CertificateException("Unable to parse certificate data: " + e.getMessage(), e);
+        }
     }
 
     @Override
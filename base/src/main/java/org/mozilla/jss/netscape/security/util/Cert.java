@@ -28,6 +28,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import javax.security.auth.x500.X500Principal;
+
 import org.apache.commons.lang3.ArrayUtils;
 import org.mozilla.jss.crypto.SignatureAlgorithm;
 import org.mozilla.jss.netscape.security.pkcs.PKCS7;
@@ -238,6 +240,10 @@ public class Cert {
      * The result is a new array that contains the certificate chain
      * sorted from root to leaf. The input array is unchanged.
      *
+     * The input must not contain duplicates or branches. To build a
+     * chain from an arbitrary set of certificates use
+     * {@link org.mozilla.jss.netscape.security.x509.CertChainBuilder}.
+     *
      * @param certs input array of certificates
      * @return new array containing sorted certificates
      */
@@ -252,19 +258,19 @@ public class Cert {
         }
 
         // lookup map: subject DN -> cert
-        Map<String, java.security.cert.X509Certificate> certMap = new LinkedHashMap<>();
+        Map<X500Principal, java.security.cert.X509Certificate> certMap = new LinkedHashMap<>();
 
         // hierarchy map: subject DN -> issuer DN
-        Map<String, String> parentMap = new HashMap<>();
+        Map<X500Principal, X500Principal> parentMap = new HashMap<>();
 
         // reverse hierarchy map: issuer DN -> subject DN
-        Map<String, String> childMap = new HashMap<>();
+        Map<X500Principal, X500Principal> childMap = new HashMap<>();
 
         // build maps
         for (java.security.cert.X509Certificate cert : certs) {
 
-            String subjectDN = cert.getSubjectX500Principal().toString();
-            String issuerDN = cert.getIssuerX500Principal().toString();
+            X500Principal subjectDN = cert.getSubjectX500Principal();
+            X500Principal issuerDN = cert.getIssuerX500Principal();
 
             if (certMap.containsKey(subjectDN)) {
                 throw new Exception("Duplicate certificate: " + subjectDN);
@@ -285,19 +291,19 @@ public class Cert {
 
         if (logger.isDebugEnabled()) {
             logger.debug("Certificates:");
-            for (String subjectDN : certMap.keySet()) {
+            for (X500Principal subjectDN : certMap.keySet()) {
                 logger.debug(" - " + subjectDN);
 
-                String parent = parentMap.get(subjectDN);
+                X500Principal parent = parentMap.get(subjectDN);
                 if (parent != null) logger.debug("   parent: " + parent);
 
-                String child = childMap.get(subjectDN);
+                X500Principal child = childMap.get(subjectDN);
                 if (child != null) logger.debug("   child: " + child);
             }
         }
 
         // find leaf cert by removing certs that has a child
-        List<String> leafCerts = new ArrayList<>();
+        List<X500Principal> leafCerts = new ArrayList<>();
         leafCerts.addAll(certMap.keySet());
         leafCerts.removeAll(childMap.keySet());
 
@@ -307,7 +313,7 @@ public class Cert {
 
         if (leafCerts.size() > 1) {
             StringBuilder sb = new StringBuilder();
-            for (String subjectDN : leafCerts) {
+            for (X500Principal subjectDN : leafCerts) {
                 if (sb.length() > 0) sb.append(", ");
                 sb.append("[" + subjectDN + "]");
             }
@@ -318,7 +324,7 @@ public class Cert {
         LinkedList<java.security.cert.X509Certificate> chain = new LinkedList<>();
 
         // start from leaf
-        String current = leafCerts.get(0);
+        X500Principal current = leafCerts.get(0);
 
         while (current != null) {
 
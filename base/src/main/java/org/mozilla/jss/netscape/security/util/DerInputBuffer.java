@@ -20,6 +20,9 @@ package org.mozilla.jss.netscape.security.util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.DateTimeException;
+
+import org.mozilla.jss.asn1.TimeCodec;
 
 /**
  * DER input buffer ... this is the main abstraction in the DER library
@@ -96,6 +99,49 @@ class DerInputBuffer extends ByteArrayInputStream implements Cloneable {
         return true;
     }
 
+    /**
+     * Returns the OID whose encoded contents are the next len bytes
+     * of this buffer.
+     */
+    ObjectIdentifier getOID(int len) throws IOException {
+        if (len < 0 || len > available())
+            throw new IOException("X509.ObjectIdentifier() -- not enough data");
+        ObjectIdentifier oid = ObjectIdentifier.decode(buf, pos, len);
+        skip(len);
+        return oid;
+    }
+
+    /**
+     * Parses the next len bytes of this buffer as the contents of a
+     * UTCTime or GeneralizedTime. The time must have a time zone, Z or
+     * an offset, and no fractions of seconds.
+     *
+     * @return The number of seconds since the epoch.
+     */
+    long getTime(int len, boolean utc) throws IOException {
+        if (len < 0 || len > available())
+            throw new IOException("DER input, time short input");
+
+        long seconds;
+        try {
+            if (utc) {
+                /*
+                 * If YY <= 50, we assume 20YY;
+                 * if YY > 50, we assume 19YY, as per IETF-PKIX part I.
+                 */
+                seconds = TimeCodec.parseUTCTime(buf, pos, len, 51, true);
+            } else {
+                seconds = TimeCodec.parseGeneralizedTime(buf, pos, len, true);
+            }
+        } catch (DateTimeException e) {
+            throw new IOException("Parse " + (utc ? "UTC" : "Generalized") +
+                    " time, " + e.getMessage(), e);
+        }
+
+        skip(len);
+        return seconds;
+    }
+
     void truncate(int len) throws IOException {
         if (len > available())
             throw new IOException("insufficient data");
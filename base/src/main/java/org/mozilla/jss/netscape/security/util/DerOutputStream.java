@@ -24,13 +24,11 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.CharsetEncoder;
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
+
+import org.mozilla.jss.asn1.TimeCodec;
 
 /**
  * Output stream marshaling DER-encoded data. This is eventually provided
@@ -556,58 +554,12 @@ public class DerOutputStream
         }
     }
 
-    private void put2DateBytes(byte[] buffer, int value, int offset) {
-        int upper = value / 10;
-        int lower = value % 10;
-        buffer[offset] = (byte) ((byte) upper + (byte) '0');
-        buffer[offset + 1] = (byte) ((byte) lower + (byte) '0');
-    }
-
-    private Calendar gmtGregorianCalendar = null;
-
-    private Calendar getGMTGregorianCalendar() {
-        if (gmtGregorianCalendar == null) {
-            TimeZone tz = TimeZone.getTimeZone("GMT");
-            gmtGregorianCalendar = new GregorianCalendar(tz);
-        }
-        return (Calendar) gmtGregorianCalendar.clone();
-    }
-
     public byte[] getDateBytes(Date d, boolean UTC) {
-
-        byte[] datebytes;
-
         if (UTC) {
-            datebytes = new byte[13];
-        } else { // generalized time has 4 digits for yr
-            datebytes = new byte[15];
-        }
-
-        Calendar cal = getGMTGregorianCalendar();
-        cal.setTime(d);
-
-        int i = 0;
-        if (!UTC) {
-            put2DateBytes(datebytes, cal.get(Calendar.YEAR) / 100, i);
-            i += 2;
+            return TimeCodec.formatUTCTime(TimeCodec.toEpochSecond(d));
         }
-        put2DateBytes(datebytes, cal.get(Calendar.YEAR) % 100, i);
-        // Calendar's MONTH is zero-based
-        i += 2;
-        put2DateBytes(datebytes, cal.get(Calendar.MONTH) + 1, i);
-        i += 2;
-        put2DateBytes(datebytes, cal.get(Calendar.DAY_OF_MONTH), i);
-        i += 2;
-        put2DateBytes(datebytes, cal.get(Calendar.HOUR_OF_DAY), i);
-        i += 2;
-        put2DateBytes(datebytes, cal.get(Calendar.MINUTE), i);
-        i += 2;
-        put2DateBytes(datebytes, cal.get(Calendar.SECOND), i);
-        i += 2;
-        // datebytes[i] = 'Z';
-        datebytes[i] = (byte) 'Z';
-
-        return datebytes;
+        // generalized time has 4 digits for yr
+        return TimeCodec.formatGeneralizedTime(TimeCodec.toEpochSecond(d));
     }
 
     /**
@@ -651,13 +603,7 @@ public class DerOutputStream
         /*
          * Format the date.
          */
-        TimeZone tz = TimeZone.getTimeZone("GMT");
-
-        // This is way too slow to be usable (stevep)
-        String pattern = "yyyyMMddHHmmss'Z'";
-        SimpleDateFormat sdf = new SimpleDateFormat(pattern);
-        sdf.setTimeZone(tz);
-        byte[] gt = (sdf.format(d)).getBytes();
+        byte[] gt = getDateBytes(d, false); // UTC = false
 
         /*
          * Write the formatted date.
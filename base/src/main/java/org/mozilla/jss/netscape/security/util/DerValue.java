@@ -362,7 +362,7 @@ public class DerValue {
     public ObjectIdentifier getOID() throws IOException {
         if (tag != tag_ObjectId)
             throw new IOException("DerValue.getOID, not an OID " + tag);
-        return new ObjectIdentifier(buffer);
+        return buffer.getOID(buffer.available());
     }
 
     /**
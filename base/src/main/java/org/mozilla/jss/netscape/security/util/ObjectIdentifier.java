@@ -20,10 +20,11 @@ package org.mozilla.jss.netscape.security.util;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.StringTokenizer;
 
+import org.mozilla.jss.asn1.OIDInterner;
+
 /**
  * Represent an ISO Object Identifier.
  *
@@ -47,6 +48,9 @@ public final class ObjectIdentifier implements Serializable {
     /** use serialVersionUID from JDK 1.1. for interoperability */
     private static final long serialVersionUID = 8697030238860181294L;
 
+    private ObjectIdentifier() {
+    }
+
     /**
      * Constructs an object identifier from a string. This string
      * should be of the form 1.23.34.45.56 etc.
@@ -185,6 +189,30 @@ public final class ObjectIdentifier implements Serializable {
         initFromEncoding(new DerInputStream(buf), 0);
     }
 
+    /**
+     * Returns the OID with the given encoded contents (without the tag
+     * and length). OIDs that have been seen before are shared instead of
+     * being parsed again.
+     */
+    static ObjectIdentifier decode(byte[] buf, int offset, int len)
+            throws IOException {
+
+        ObjectIdentifier oid = interner.get(buf, offset, len);
+        if (oid != null) {
+            return oid;
+        }
+
+        oid = new ObjectIdentifier();
+        oid.initFromEncoding(new DerInputStream(buf, offset, len), 0);
+
+        // only share OIDs that were DER-encoded
+        byte[] contents = Arrays.copyOfRange(buf, offset, offset + len);
+        if (oid.componentLen < 2 || !Arrays.equals(oid.getEncodedContents(), contents)) {
+            return oid;
+        }
+        return interner.intern(oid.toString(), contents, oid);
+    }
+
     /*
      * Helper function -- get the OID from a stream, after tag and
      * length are verified.
@@ -262,6 +290,18 @@ public final class ObjectIdentifier implements Serializable {
      * n.b. the only public interface is DerOutputStream.putOID()
      */
     public void encode(DerOutputStream out) throws IOException {
+        out.write(DerValue.tag_ObjectId, getEncodedContents());
+    }
+
+    /*
+     * Returns the encoding of the components, which is computed once.
+     */
+    private byte[] getEncodedContents() {
+        byte[] contents = encodedContents;
+        if (contents != null) {
+            return contents;
+        }
+
         DerOutputStream bytes = new DerOutputStream();
         int i;
 
@@ -272,11 +312,9 @@ public final class ObjectIdentifier implements Serializable {
         for (i = 2; i < componentLen; i++)
             putComponentBigInt(bytes, components[i]);
 
-        /*
-         * Now that we've constructed the component, encode
-         * it in the stream we were given.
-         */
-        out.write(DerValue.tag_ObjectId, bytes);
+        contents = bytes.toByteArray();
+        encodedContents = contents;
+        return contents;
     }
 
     /*
@@ -399,6 +437,11 @@ public final class ObjectIdentifier implements Serializable {
      */
     @Override
     public String toString() {
+        String str = string;
+        if (str != null) {
+            return str;
+        }
+
         StringBuilder retval = new StringBuilder();
 
         int i;
@@ -408,7 +451,9 @@ public final class ObjectIdentifier implements Serializable {
                 retval.append(".");
             retval.append(components[i]);
         }
-        return retval.toString();
+        str = retval.toString();
+        string = str;
+        return str;
     }
 
     /*
@@ -419,6 +464,10 @@ public final class ObjectIdentifier implements Serializable {
     private BigInteger[] components; // path from root
     private int componentLen; // how much is used.
 
+    // computed on first use
+    private transient volatile byte[] encodedContents;
+    private transient volatile String string;
+
     private static final int ALLOCATION_QUANTUM = 5; // >= 2
 
     /**
@@ -431,8 +480,11 @@ public final class ObjectIdentifier implements Serializable {
      * Notes:
      * This function never returns null. IOException is raised
      * in error conditions.
+     *
+     * The OIDs are kept in a bounded table that is shared by all
+     * threads and also used when decoding OIDs.
      */
-    private static Map<String, ObjectIdentifier> mOIDs = new HashMap<>();
+    private static final OIDInterner<ObjectIdentifier> interner = new OIDInterner<>();
 
     public static ObjectIdentifier getObjectIdentifier(String oid)
             throws IOException {
@@ -443,7 +495,7 @@ public final class ObjectIdentifier implements Serializable {
 
         oid = oid.trim();
 
-        ObjectIdentifier thisOID = mOIDs.get(oid);
+        ObjectIdentifier thisOID = interner.get(oid);
         if (thisOID != null)
             return thisOID;
 
@@ -458,8 +510,7 @@ public final class ObjectIdentifier implements Serializable {
             throw new IOException("invalid oid " + oid);
         thisOID = new ObjectIdentifier(oid);
         if (thisOID.toString().equals(oid)) {
-            mOIDs.put(oid, thisOID);
-            return thisOID;
+            return interner.intern(oid, thisOID.getEncodedContents(), thisOID);
         }
         throw new IOException("invalid oid " + oid);
     }
@@ -27,7 +27,13 @@ import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
 import java.util.Vector;
+import java.util.function.Consumer;
 
 import org.mozilla.jss.netscape.security.util.DerInputStream;
 import org.mozilla.jss.netscape.security.util.DerOutputStream;
@@ -47,8 +53,34 @@ public class CRLExtensions extends Vector<Extension> {
     private static final long serialVersionUID = 365767738692986418L;
     private Hashtable<String, Extension> map;
 
+    // original encodings of the extensions that have not been decoded
+    // yet, by the undecoded Extension in the map and the vector
+    private IdentityHashMap<Extension, byte[]> pending;
+
     // Parse the encoded extension
     private void parseExtension(Extension ext) throws X509ExtensionException {
+        Extension crlExt = decodeExtension(ext);
+        map.put(getName(crlExt), crlExt);
+        addElement(crlExt);
+    }
+
+    /**
+     * Returns the name of an extension in the map.
+     */
+    private static String getName(Extension ext) {
+        if (ext instanceof CertAttrSet)
+            return ((CertAttrSet) ext).getName();
+        return ext.getExtensionId().toString();
+    }
+
+    /**
+     * Decodes an extension into an instance of the class registered for
+     * its OID.
+     *
+     * @return the decoded extension, or the extension itself if no class
+     *         is registered.
+     */
+    private Extension decodeExtension(Extension ext) throws X509ExtensionException {
         try {
             Class<?> extClass = OIDMap.getClass(ext.getExtensionId());
             if (extClass == null) { // Unsupported extension
@@ -56,9 +88,7 @@ public class CRLExtensions extends Vector<Extension> {
                     throw new IOException("Unsupported CRITICAL extension: "
                                           + ext.getExtensionId());
                 } else {
-                    map.put(ext.getExtensionId().toString(), ext);
-                    addElement(ext);
-                    return;
+                    return ext;
                 }
             }
             Class<?>[] params = { Boolean.class, Object.class };
@@ -72,9 +102,7 @@ public class CRLExtensions extends Vector<Extension> {
             }
             Object[] passed = new Object[] { Boolean.valueOf(ext.isCritical()),
                                                         value };
-            CertAttrSet crlExt = (CertAttrSet) cons.newInstance(passed);
-            map.put(crlExt.getName(), (Extension) crlExt);
-            addElement((Extension) crlExt);
+            return (Extension) cons.newInstance(passed);
 
         } catch (InvocationTargetException invk) {
             throw new X509ExtensionException(
@@ -101,14 +129,51 @@ public class CRLExtensions extends Vector<Extension> {
      */
     public CRLExtensions(DerInputStream in)
             throws CRLException, X509ExtensionException {
+        this(in, false);
+    }
+
+    /**
+     * Create the object from the passed DER stream, optionally without
+     * decoding the extensions.
+     *
+     * In lazy mode, the non-critical extensions with a registered class
+     * are kept in their encoded form and decoded one at a time when they
+     * are requested with get(). They are all decoded when the object is
+     * accessed as a Vector or with getElements(). Extensions that have
+     * not been decoded are encoded with their original encoding.
+     *
+     * @param in the DerInputStream to read the Extension from.
+     * @param lazy true to decode the extensions when they are requested.
+     * @exception CRLException on decoding errors.
+     * @exception X509ExtensionException on extension handling errors.
+     */
+    public CRLExtensions(DerInputStream in, boolean lazy)
+            throws CRLException, X509ExtensionException {
 
         map = new Hashtable<>();
         try {
             DerValue[] exts = in.getSequence(5);
 
             for (int i = 0; i < exts.length; i++) {
+
+                byte[] encoding = lazy ? exts[i].toByteArray() : null;
                 Extension ext = new Extension(exts[i]);
-                parseExtension(ext);
+
+                // critical extensions are always decoded, so that an invalid
+                // critical extension is rejected when the object is created
+                String name = lazy ? OIDMap.getExtensionName(ext.getExtensionId()) : null;
+                if (name == null || ext.isCritical()) {
+                    parseExtension(ext);
+                    continue;
+                }
+
+                // keep the undecoded extension in place of the decoded one
+                if (pending == null)
+                    pending = new IdentityHashMap<>();
+                pending.put(ext, encoding);
+
+                map.put(name, ext);
+                addElement(ext);
             }
         } catch (IOException e) {
             throw new CRLException("Parsing error: " + e.toString());
@@ -148,16 +213,20 @@ public class CRLExtensions extends Vector<Extension> {
      *            extension or a CRL extension.
      * @exception CRLException on encoding errors.
      */
-    public void encode(OutputStream out, boolean isExplicit)
+    public synchronized void encode(OutputStream out, boolean isExplicit)
             throws CRLException {
+        IdentityHashMap<Extension, byte[]> raw = pending;
         try (DerOutputStream tmp = new DerOutputStream()) {
             // #381559
             if (size() == 0)
                 return;
             DerOutputStream extOut = new DerOutputStream();
-            for (int i = 0; i < size(); i++) {
-                Object thisOne = elementAt(i);
-                if (thisOne instanceof CertAttrSet)
+            for (int i = 0; i < elementCount; i++) {
+                Object thisOne = elementData[i];
+                byte[] encoding = raw == null ? null : raw.get(thisOne);
+                if (encoding != null)
+                    extOut.write(encoding);
+                else if (thisOne instanceof CertAttrSet)
                     ((CertAttrSet) thisOne).encode(extOut);
                 else if (thisOne instanceof Extension)
                     ((Extension) thisOne).encode(extOut);
@@ -197,13 +266,71 @@ public class CRLExtensions extends Vector<Extension> {
             name = alias.substring(index + 1);
         } else
             name = alias;
-        Extension ext = map.get(name);
+        Extension ext = load(name);
         if (ext == null)
             throw new X509ExtensionException("No extension found with name: "
                                              + alias);
         return ext;
     }
 
+    private boolean isPending(Extension ext) {
+        return pending != null && pending.containsKey(ext);
+    }
+
+    /**
+     * Returns the extension with the specified name, decoding it if it
+     * has not been decoded yet.
+     */
+    private synchronized Extension load(String name) throws X509ExtensionException {
+        Extension ext = map.get(name);
+        return isPending(ext) ? load(ext) : ext;
+    }
+
+    /**
+     * Decodes an extension that has not been decoded yet, replacing it
+     * in the vector and in the map.
+     */
+    private synchronized Extension load(Extension ext) throws X509ExtensionException {
+
+        Extension crlExt = decodeExtension(ext);
+
+        for (int i = 0; i < elementCount; i++) {
+            if (elementData[i] == ext) {
+                super.set(i, crlExt);
+                break;
+            }
+        }
+
+        // the extension is not in the map if it has been replaced by
+        // another extension with the same name
+        String name = OIDMap.getExtensionName(ext.getExtensionId());
+        if (map.get(name) == ext) {
+            map.remove(name);
+            map.put(getName(crlExt), crlExt);
+        }
+
+        pending.remove(ext);
+        if (pending.isEmpty())
+            pending = null;
+
+        return crlExt;
+    }
+
+    /**
+     * Decodes all the extensions that have not been decoded yet.
+     */
+    private synchronized void loadAll() {
+        try {
+            for (int i = 0; pending != null && i < elementCount; i++) {
+                Extension ext = (Extension) elementData[i];
+                if (isPending(ext))
+                    load(ext);
+            }
+        } catch (X509ExtensionException e) {
+            throw new RuntimeException("Unable to decode extensions: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Set the extension value with this alias.
      *
@@ -222,12 +349,106 @@ public class CRLExtensions extends Vector<Extension> {
      *
      * @return an enumeration of the names of the extensions in this CRL.
      */
-    public Enumeration<Extension> getElements() {
+    public synchronized Enumeration<Extension> getElements() {
+        loadAll();
         return (map.elements());
     }
 
+    // Vector methods returning the extensions, which are decoded first
+
+    @Override
+    public synchronized Extension elementAt(int index) {
+        loadAll();
+        return super.elementAt(index);
+    }
+
+    @Override
+    public synchronized Extension get(int index) {
+        loadAll();
+        return super.get(index);
+    }
+
+    @Override
+    public synchronized Extension firstElement() {
+        loadAll();
+        return super.firstElement();
+    }
+
+    @Override
+    public synchronized Extension lastElement() {
+        loadAll();
+        return super.lastElement();
+    }
+
+    @Override
+    public synchronized Enumeration<Extension> elements() {
+        loadAll();
+        return super.elements();
+    }
+
+    @Override
+    public synchronized Iterator<Extension> iterator() {
+        loadAll();
+        return super.iterator();
+    }
+
+    @Override
+    public synchronized ListIterator<Extension> listIterator() {
+        loadAll();
+        return super.listIterator();
+    }
+
+    @Override
+    public synchronized ListIterator<Extension> listIterator(int index) {
+        loadAll();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public synchronized Spliterator<Extension> spliterator() {
+        loadAll();
+        return super.spliterator();
+    }
+
+    @Override
+    public synchronized void forEach(Consumer<? super Extension> action) {
+        loadAll();
+        super.forEach(action);
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        loadAll();
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a) {
+        loadAll();
+        return super.toArray(a);
+    }
+
+    @Override
+    public synchronized void copyInto(Object[] anArray) {
+        loadAll();
+        super.copyInto(anArray);
+    }
+
+    @Override
+    public synchronized List<Extension> subList(int fromIndex, int toIndex) {
+        loadAll();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public synchronized Object clone() {
+        loadAll();
+        return super.clone();
+    }
+
     @Override
     public synchronized int hashCode() {
+        loadAll();
         final int prime = 31;
         int result = super.hashCode();
         result = prime * result + ((map == null) ? 0 : map.hashCode());
@@ -238,6 +459,9 @@ public class CRLExtensions extends Vector<Extension> {
     public synchronized boolean equals(Object obj) {
         if (this == obj)
             return true;
+        loadAll();
+        if (obj instanceof CRLExtensions)
+            ((CRLExtensions) obj).loadAll();
         if (!super.equals(obj))
             return false;
         if (getClass() != obj.getClass())
@@ -0,0 +1,278 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.CRLException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local source of revocation information backed by CRLs.
+ *
+ * <p>The store keeps one CRL per issuer. CRL files are memory-mapped and
+ * verified when they are loaded, and the revoked serial numbers are kept
+ * in a sorted {@link RevokedCertificateIndex}, so a lookup is a binary
+ * search that does not depend on the network or on the size of the heap.
+ *
+ * <p>Only complete CRLs are supported: delta CRLs, CRLs with an
+ * issuingDistributionPoint extension, indirect CRLs, and CRLs with
+ * critical extensions that the store does not handle are rejected.
+ *
+ * <p>Loading a newer CRL for an issuer replaces the previous one
+ * atomically: lookups are not blocked, and see either the old or the new
+ * CRL. A CRL file should be updated by writing a new file and renaming it
+ * over the old one, since a mapped file must not be modified.
+ */
+public class CRLStore {
+
+    public static Logger logger = LoggerFactory.getLogger(CRLStore.class);
+
+    private Map<X500Principal, IssuerCRL> crls = new ConcurrentHashMap<>();
+
+    /**
+     * A revoked certificate found in the store.
+     */
+    public static class Revocation {
+
+        private BigInteger serialNumber;
+        private Date revocationDate;
+        private RevocationReason reason;
+
+        Revocation(BigInteger serialNumber, Date revocationDate, RevocationReason reason) {
+            this.serialNumber = serialNumber;
+            this.revocationDate = revocationDate;
+            this.reason = reason;
+        }
+
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        public Date getRevocationDate() {
+            return new Date(revocationDate.getTime());
+        }
+
+        /**
+         * @return The reason code, or null if the entry has none.
+         */
+        public RevocationReason getRevocationReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Revocation[serial=0x" + serialNumber.toString(16) +
+                    ", date=" + revocationDate + ", reason=" + reason + "]";
+        }
+    }
+
+    /**
+     * The current CRL of an issuer. Instances are not modified.
+     */
+    private static class IssuerCRL {
+
+        X509CRLReader reader;
+        RevokedCertificateIndex index; // null if there are no entries
+
+        IssuerCRL(X509CRLReader reader, RevokedCertificateIndex index) {
+            this.reader = reader;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Loads a CRL file, verifies it with the issuer's certificate, and
+     * replaces the current CRL of the issuer.
+     *
+     * @exception CRLException if the CRL is invalid, is not issued or
+     *                signed by the issuer, is not supported, or is older
+     *                than the current CRL of the issuer.
+     */
+    public void load(Path file, X509Certificate issuerCert) throws IOException, CRLException {
+
+        logger.info("CRLStore: Loading " + file);
+        X509CRLReader reader = X509CRLReader.open(file);
+
+        X500Principal issuer = getIssuer(reader);
+        if (!issuer.equals(issuerCert.getSubjectX500Principal())) {
+            throw new CRLException("CRL issuer does not match certificate: " + issuer);
+        }
+
+        try {
+            reader.verify(issuerCert.getPublicKey(), null);
+        } catch (GeneralSecurityException e) {
+            throw new CRLException("Unable to verify CRL: " + e.getMessage(), e);
+        }
+
+        put(issuer, reader);
+    }
+
+    /**
+     * Adds a CRL that has already been verified, replacing the current
+     * CRL of its issuer.
+     */
+    public void add(X509CRLImpl crl) throws CRLException {
+        X509CRLReader reader = new X509CRLReader(crl.getEncoded());
+        put(getIssuer(reader), reader);
+    }
+
+    private static X500Principal getIssuer(X509CRLReader reader) throws CRLException {
+        try {
+            return new X500Principal(reader.getIssuer().getEncoded());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new CRLException("Invalid CRL issuer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks that the CRL is a complete CRL for all the certificates of
+     * its issuer, and that the store handles all of its critical
+     * extensions.
+     */
+    private static void checkExtensions(X500Principal issuer, X509CRLReader reader) throws CRLException {
+
+        CRLExtensions extensions = reader.getExtensions();
+        if (extensions == null) {
+            return;
+        }
+
+        for (Extension ext : extensions) {
+            ObjectIdentifier id = ext.getExtensionId();
+
+            if (id.equals(PKIXExtensions.DeltaCRLIndicator_Id)) {
+                throw new CRLException("Delta CRLs are not supported: " + issuer);
+            }
+
+            if (id.equals(PKIXExtensions.IssuingDistributionPoint_Id)) {
+                // the CRL may not cover all certificates or reasons
+                throw new CRLException("Partitioned CRLs are not supported: " + issuer);
+            }
+
+            if (ext.isCritical()
+                    && !id.equals(PKIXExtensions.CRLNumber_Id)
+                    && !id.equals(PKIXExtensions.AuthorityKey_Id)
+                    && !id.equals(PKIXExtensions.IssuerAlternativeName_Id)) {
+                throw new CRLException("Unsupported critical CRL extension " + id + ": " + issuer);
+            }
+        }
+    }
+
+    private synchronized void put(X500Principal issuer, X509CRLReader reader) throws CRLException {
+
+        IssuerCRL current = crls.get(issuer);
+        if (current != null && reader.getThisUpdate().before(current.reader.getThisUpdate())) {
+            throw new CRLException("CRL is older than the current CRL of " + issuer);
+        }
+
+        checkExtensions(issuer, reader);
+
+        // build the index before replacing the current CRL
+        RevokedCertificateIndex index = reader.createRevokedCertificateIndex();
+
+        if (index != null && index.hasCertificateIssuers()) {
+            throw new CRLException("Indirect CRLs are not supported: " + issuer);
+        }
+
+        if (index != null && index.hasUnhandledCriticalEntryExtensions()) {
+            throw new CRLException("Unsupported critical CRL entry extension: " + issuer);
+        }
+
+        crls.put(issuer, new IssuerCRL(reader, index));
+
+        logger.info("CRLStore: Loaded CRL of " + issuer + " with " +
+                (index == null ? 0 : index.size()) + " revoked certificates");
+    }
+
+    /**
+     * Removes the CRL of an issuer.
+     */
+    public synchronized void remove(X500Principal issuer) {
+        crls.remove(issuer);
+    }
+
+    /**
+     * @return true if the store has a CRL for the issuer.
+     */
+    public boolean hasCRL(X500Principal issuer) {
+        return crls.containsKey(issuer);
+    }
+
+    /**
+     * @return The thisUpdate date of the CRL of the issuer, or null if
+     *         the store has no CRL for the issuer.
+     */
+    public Date getThisUpdate(X500Principal issuer) {
+        IssuerCRL crl = crls.get(issuer);
+        return crl == null ? null : crl.reader.getThisUpdate();
+    }
+
+    /**
+     * @return The nextUpdate date of the CRL of the issuer, or null if
+     *         the store has no CRL for the issuer or the CRL has no
+     *         nextUpdate.
+     */
+    public Date getNextUpdate(X500Principal issuer) {
+        IssuerCRL crl = crls.get(issuer);
+        return crl == null ? null : crl.reader.getNextUpdate();
+    }
+
+    /**
+     * Finds a revoked certificate.
+     *
+     * @return The revocation, or null if the certificate is not revoked
+     *         or the store has no CRL for the issuer.
+     */
+    public Revocation getRevocation(X500Principal issuer, BigInteger serialNumber) {
+
+        IssuerCRL crl = crls.get(issuer);
+        if (crl == null || crl.index == null) {
+            return null;
+        }
+
+        int i = crl.index.indexOf(serialNumber);
+        if (i < 0) {
+            return null;
+        }
+
+        return new Revocation(
+                serialNumber,
+                crl.index.getRevocationDate(i),
+                crl.index.getRevocationReason(i));
+    }
+
+    public boolean isRevoked(X500Principal issuer, BigInteger serialNumber) {
+        IssuerCRL crl = crls.get(issuer);
+        return crl != null && crl.index != null && crl.index.contains(serialNumber);
+    }
+
+    public boolean isRevoked(X509Certificate cert) {
+        return isRevoked(cert.getIssuerX500Principal(), cert.getSerialNumber());
+    }
+}
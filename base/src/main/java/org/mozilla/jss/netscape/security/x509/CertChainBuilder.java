@@ -0,0 +1,452 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds certificate chains from unordered sets of certificates.
+ *
+ * <p>The certificates are indexed by subject name and by subject key
+ * identifier, so the issuer of a certificate is found with a lookup on
+ * its issuer name and authority key identifier instead of a search, and
+ * a chain is built in time linear in the number of certificates.
+ *
+ * <p>Unlike {@link org.mozilla.jss.netscape.security.util.Cert#sortCertificateChain},
+ * the input may contain duplicates, cross-certificates, and certificates
+ * that are not part of the chain. If the issuer of a certificate is not
+ * in the input, it is looked up in a local store of intermediate
+ * certificates, so incomplete chains sent by peers can be completed.
+ */
+public class CertChainBuilder {
+
+    public static Logger logger = LoggerFactory.getLogger(CertChainBuilder.class);
+
+    private Index intermediates = new Index();
+
+    /**
+     * A certificate with its names and key identifiers.
+     */
+    private static class Entry {
+
+        X509Certificate cert;
+        X500Principal subject;
+        X500Principal issuer;
+        ByteBuffer ski; // null if the certificate has no SKI
+        ByteBuffer aki; // null if the certificate has no AKI key identifier
+
+        Entry(X509Certificate cert) {
+            this.cert = cert;
+            subject = cert.getSubjectX500Principal();
+            issuer = cert.getIssuerX500Principal();
+            ski = getSubjectKeyIdentifier(cert);
+            aki = getAuthorityKeyIdentifier(cert);
+        }
+
+        /**
+         * @return true if the certificate is issued by its own key, i.e.,
+         *         it is a root certificate.
+         */
+        boolean isSelfSigned() {
+            return subject.equals(issuer) && (ski == null || aki == null || ski.equals(aki));
+        }
+
+        /**
+         * @return true if the names and key identifiers of the
+         *         certificates allow the issuer to have issued this
+         *         certificate.
+         */
+        boolean isIssuedBy(Entry issuer) {
+            return this.issuer.equals(issuer.subject)
+                    && (aki == null || issuer.ski == null || aki.equals(issuer.ski));
+        }
+
+        @Override
+        public String toString() {
+            return subject.toString();
+        }
+    }
+
+    /**
+     * Certificates indexed by subject name and subject key identifier.
+     */
+    private static class Index {
+
+        Map<ByteBuffer, Entry> encodings = new HashMap<>();
+        List<Entry> entries = new ArrayList<>();
+        Map<X500Principal, List<Entry>> subjects = new HashMap<>();
+        Map<ByteBuffer, List<Entry>> keyIDs = new HashMap<>();
+
+        /**
+         * @return The entry of the certificate, or of an identical
+         *         certificate that has been added before.
+         */
+        Entry add(X509Certificate cert) throws CertificateException {
+
+            ByteBuffer encoding = ByteBuffer.wrap(cert.getEncoded());
+
+            Entry entry = encodings.get(encoding);
+            if (entry != null) {
+                logger.debug("CertChainBuilder: Duplicate certificate: " + entry.subject);
+                return entry;
+            }
+
+            entry = new Entry(cert);
+            encodings.put(encoding, entry);
+            entries.add(entry);
+
+            subjects.computeIfAbsent(entry.subject, k -> new ArrayList<>(1)).add(entry);
+
+            if (entry.ski != null) {
+                keyIDs.computeIfAbsent(entry.ski, k -> new ArrayList<>(1)).add(entry);
+            }
+
+            return entry;
+        }
+
+        /**
+         * Adds the possible issuers of a certificate to a list, the ones
+         * that match the authority key identifier first.
+         */
+        void findIssuers(Entry entry, List<Entry> issuers) {
+
+            if (entry.aki != null) {
+                for (Entry candidate : keyIDs.getOrDefault(entry.aki, Collections.emptyList())) {
+                    if (entry.isIssuedBy(candidate)) {
+                        issuers.add(candidate);
+                    }
+                }
+            }
+
+            for (Entry candidate : subjects.getOrDefault(entry.issuer, Collections.emptyList())) {
+
+                // the candidates with a matching SKI have been added above
+                if (entry.aki != null && candidate.ski != null) continue;
+
+                issuers.add(candidate);
+            }
+        }
+
+        void clear() {
+            encodings.clear();
+            entries.clear();
+            subjects.clear();
+            keyIDs.clear();
+        }
+    }
+
+    /**
+     * Adds a certificate to the local store of intermediate certificates.
+     */
+    public void addIntermediate(X509Certificate cert) throws CertificateException {
+        synchronized (intermediates) {
+            intermediates.add(cert);
+        }
+    }
+
+    /**
+     * Adds certificates to the local store of intermediate certificates.
+     */
+    public void addIntermediates(Collection<? extends X509Certificate> certs) throws CertificateException {
+        synchronized (intermediates) {
+            for (X509Certificate cert : certs) {
+                intermediates.add(cert);
+            }
+        }
+    }
+
+    /**
+     * @return The number of certificates in the local store of
+     *         intermediate certificates.
+     */
+    public int getIntermediateCount() {
+        synchronized (intermediates) {
+            return intermediates.entries.size();
+        }
+    }
+
+    /**
+     * Removes all certificates from the local store of intermediate
+     * certificates.
+     */
+    public void clearIntermediates() {
+        synchronized (intermediates) {
+            intermediates.clear();
+        }
+    }
+
+    /**
+     * Builds the chain of the leaf certificate of a set of certificates.
+     *
+     * <p>The leaf certificate is the certificate that did not issue any
+     * other certificate in the set. If there are several, the first
+     * certificate in the set is used if it is one of them, since TLS
+     * peers send their own certificate first.
+     *
+     * <p>From the leaf certificate, the chain follows the issuers until
+     * it reaches a self-signed certificate or a certificate whose issuer
+     * is neither in the set nor in the local store. If a certificate has
+     * several possible issuers, e.g., a CA certificate and its
+     * cross-certificate, the issuers that match the authority key
+     * identifier are preferred, then the ones that are currently valid,
+     * then the ones whose own issuer is known, then the ones in the set.
+     *
+     * @param certs The certificates in any order.
+     * @return The chain sorted from root to leaf.
+     * @exception CertificateException if the leaf certificate cannot be
+     *                determined.
+     */
+    public X509Certificate[] build(X509Certificate[] certs) throws CertificateException {
+
+        if (certs == null) {
+            return null;
+        }
+
+        if (certs.length == 0) {
+            return certs;
+        }
+
+        Index index = new Index();
+        for (X509Certificate cert : certs) {
+            index.add(cert);
+        }
+
+        // find leaf cert by removing certs that issued another cert
+        Set<Entry> issuers = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Entry> candidates = new ArrayList<>();
+
+        for (Entry entry : index.entries) {
+
+            if (entry.isSelfSigned()) continue;
+
+            candidates.clear();
+            index.findIssuers(entry, candidates);
+
+            for (Entry candidate : candidates) {
+                if (candidate != entry) issuers.add(candidate);
+            }
+        }
+
+        List<Entry> leafCerts = new ArrayList<>();
+        for (Entry entry : index.entries) {
+            if (!issuers.contains(entry)) leafCerts.add(entry);
+        }
+
+        if (leafCerts.isEmpty()) {
+            throw new CertificateException("Unable to find leaf certificate");
+        }
+
+        Entry leafCert = leafCerts.get(0);
+
+        if (leafCerts.size() > 1 && leafCert != index.entries.get(0)) {
+            StringBuilder sb = new StringBuilder();
+            for (Entry entry : leafCerts) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append("[" + entry + "]");
+            }
+            throw new CertificateException("Multiple leaf certificates: " + sb);
+        }
+
+        return build(index, leafCert);
+    }
+
+    private X509Certificate[] build(Index index, Entry leafCert) {
+
+        Date now = new Date();
+        List<Entry> chain = new ArrayList<>();
+        Set<Entry> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // start from leaf
+        Entry current = leafCert;
+
+        while (current != null) {
+
+            chain.add(current);
+            visited.add(current);
+
+            if (current.isSelfSigned()) break;
+
+            Entry issuer = findIssuer(index, current, visited, now);
+
+            if (issuer == null) {
+                synchronized (intermediates) {
+                    issuer = findIssuer(intermediates, current, visited, now);
+                }
+
+                if (issuer != null) {
+                    logger.debug("CertChainBuilder: Found issuer in local store: " + issuer);
+                }
+            }
+
+            if (issuer == null) {
+                logger.debug("CertChainBuilder: Incomplete chain, unknown issuer: " + current.issuer);
+            }
+
+            // follow issuer to root
+            current = issuer;
+        }
+
+        // sort from root to leaf
+        X509Certificate[] result = new X509Certificate[chain.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = chain.get(result.length - 1 - i).cert;
+        }
+
+        return result;
+    }
+
+    private Entry findIssuer(Index index, Entry entry, Set<Entry> visited, Date now) {
+
+        List<Entry> candidates = new ArrayList<>();
+        index.findIssuers(entry, candidates);
+
+        Entry issuer = null;
+        int issuerRank = -1;
+
+        for (Entry candidate : candidates) {
+
+            // skip certs already in the chain, e.g., cross-certificate loops
+            if (visited.contains(candidate)) continue;
+
+            // use an invalid cert only if there is no valid one
+            int rank = 0;
+            try {
+                candidate.cert.checkValidity(now);
+                rank += 2;
+            } catch (CertificateException e) {
+                // keep looking
+            }
+
+            // prefer a cert that leads further up, e.g., to the root
+            // instead of to the missing issuer of a cross-certificate
+            if (hasIssuer(index, candidate, visited)) {
+                rank += 1;
+            }
+
+            if (rank == 3) {
+                return candidate;
+            }
+
+            if (rank > issuerRank) {
+                issuer = candidate;
+                issuerRank = rank;
+            }
+        }
+
+        return issuer;
+    }
+
+    /**
+     * @return true if the certificate is self-signed or if one of its
+     *         possible issuers that is not in the chain yet is in the
+     *         set or in the local store.
+     */
+    private boolean hasIssuer(Index index, Entry entry, Set<Entry> visited) {
+
+        if (entry.isSelfSigned()) {
+            return true;
+        }
+
+        List<Entry> candidates = new ArrayList<>();
+        index.findIssuers(entry, candidates);
+
+        if (index != intermediates) {
+            synchronized (intermediates) {
+                intermediates.findIssuers(entry, candidates);
+            }
+        }
+
+        for (Entry candidate : candidates) {
+            if (candidate != entry && !visited.contains(candidate)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static ByteBuffer getSubjectKeyIdentifier(X509Certificate cert) {
+
+        byte[] extValue = cert.getExtensionValue(PKIXExtensions.SubjectKey_Id.toString());
+        if (extValue == null) {
+            return null;
+        }
+
+        try {
+            // SubjectKeyIdentifier ::= KeyIdentifier
+            byte[] value = new DerValue(extValue).getOctetString();
+            return ByteBuffer.wrap(new DerValue(value).getOctetString());
+
+        } catch (IOException e) {
+            logger.debug("CertChainBuilder: Invalid SKI in " + cert.getSubjectX500Principal() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ByteBuffer getAuthorityKeyIdentifier(X509Certificate cert) {
+
+        byte[] extValue = cert.getExtensionValue(PKIXExtensions.AuthorityKey_Id.toString());
+        if (extValue == null) {
+            return null;
+        }
+
+        try {
+            // AuthorityKeyIdentifier ::= SEQUENCE {
+            //     keyIdentifier [0] KeyIdentifier OPTIONAL, ... }
+            byte[] value = new DerValue(extValue).getOctetString();
+            DerValue val = new DerValue(value);
+
+            if (val.tag != DerValue.tag_Sequence) {
+                throw new IOException("Invalid encoding for AuthorityKeyIdentifierExtension");
+            }
+
+            while (val.data.available() != 0) {
+                DerValue opt = val.data.getDerValue();
+
+                if (opt.isContextSpecific((byte) 0) && !opt.isConstructed()) {
+                    opt.resetTag(DerValue.tag_OctetString);
+                    return ByteBuffer.wrap(opt.getOctetString());
+                }
+            }
+
+            return null;
+
+        } catch (IOException e) {
+            logger.debug("CertChainBuilder: Invalid AKI in " + cert.getSubjectX500Principal() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -26,14 +26,23 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
 import java.util.Vector;
+import java.util.function.Consumer;
 
 import org.mozilla.jss.netscape.security.util.DerInputStream;
 import org.mozilla.jss.netscape.security.util.DerOutputStream;
 import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
 
 /**
  * This class defines the Extensions attribute for the Certificate.
@@ -61,15 +70,44 @@ public class CertificateExtensions extends Vector<Extension>
 
     private LinkedHashMap<String, Extension> map;
 
+    // original encodings of the extensions that have not been decoded
+    // yet, by the undecoded Extension in the map and the vector
+    private IdentityHashMap<Extension, byte[]> pending;
+
+    // true if the extensions belong to a read-only X509CertInfo
+    private transient volatile boolean readOnly;
+
     // Parse the encoded extension
     public void parseExtension(Extension ext) throws IOException {
+        Extension certExt = decodeExtension(ext);
+        if (certExt != null) {
+            map.put(getName(certExt), certExt);
+            addElement(certExt);
+        }
+    }
+
+    /**
+     * Returns the name of an extension in the map.
+     */
+    private static String getName(Extension ext) {
+        if (ext instanceof CertAttrSet)
+            return ((CertAttrSet) ext).getName();
+        return ext.getExtensionId().toString();
+    }
+
+    /**
+     * Decodes an extension into an instance of the class registered for
+     * its OID.
+     *
+     * @return the decoded extension, the extension itself if no class is
+     *         registered, or null if the decoded extension has no name.
+     */
+    private Extension decodeExtension(Extension ext) throws IOException {
         try {
             @SuppressWarnings("unchecked")
             Class<CertAttrSet> extClass = (Class<CertAttrSet>) OIDMap.getClass(ext.getExtensionId());
             if (extClass == null) { // Unsupported extension
-                map.put(ext.getExtensionId().toString(), ext);
-                addElement(ext);
-                return;
+                return ext;
             }
             Class<?>[] params = { Boolean.class, Object.class };
             Constructor<CertAttrSet> cons = extClass.getConstructor(params);
@@ -85,9 +123,9 @@ public class CertificateExtensions extends Vector<Extension>
                     value };
             CertAttrSet certExt = cons.newInstance(passed);
             if (certExt != null && certExt.getName() != null) {
-                map.put(certExt.getName(), (Extension) certExt);
-                addElement((Extension) certExt);
+                return (Extension) certExt;
             }
+            return null;
 
         } catch (NoSuchMethodException e) {
             throw new IOException(e);
@@ -119,13 +157,50 @@ public class CertificateExtensions extends Vector<Extension>
      */
     public CertificateExtensions(DerInputStream in)
             throws IOException {
+        this(in, false);
+    }
+
+    /**
+     * Create the object from the passed DER stream, optionally without
+     * decoding the extensions.
+     *
+     * In lazy mode, the non-critical extensions with a registered class
+     * are kept in their encoded form and decoded one at a time when they
+     * are requested by name with get() or by OID with getExtension().
+     * They are all decoded when the object is accessed as a Vector, e.g.,
+     * with elementAt() or iterator(), or with getAttributes(). Extensions
+     * that have not been decoded are encoded with their original encoding.
+     *
+     * @param in the DerInputStream to read the Extension from.
+     * @param lazy true to decode the extensions when they are requested.
+     * @exception IOException on decoding errors.
+     */
+    public CertificateExtensions(DerInputStream in, boolean lazy)
+            throws IOException {
 
         map = new LinkedHashMap<>();
         DerValue[] exts = in.getSequence(5);
 
         for (int i = 0; i < exts.length; i++) {
+
+            byte[] encoding = lazy ? exts[i].toByteArray() : null;
             Extension ext = new Extension(exts[i]);
-            parseExtension(ext);
+
+            // critical extensions are always decoded, so that an invalid
+            // critical extension is rejected when the object is created
+            String name = lazy ? OIDMap.getExtensionName(ext.getExtensionId()) : null;
+            if (name == null || ext.isCritical()) {
+                parseExtension(ext);
+                continue;
+            }
+
+            // keep the undecoded extension in place of the decoded one
+            if (pending == null)
+                pending = new IdentityHashMap<>();
+            pending.put(ext, encoding);
+
+            map.put(name, ext);
+            addElement(ext);
         }
     }
 
@@ -189,13 +264,17 @@ public class CertificateExtensions extends Vector<Extension>
      * @exception IOException on errors.
      */
     @Override
-    public void encode(OutputStream out)
+    public synchronized void encode(OutputStream out)
             throws CertificateException, IOException {
+        IdentityHashMap<Extension, byte[]> raw = pending;
         try (DerOutputStream tmp = new DerOutputStream()) {
             DerOutputStream extOut = new DerOutputStream();
-            for (int i = 0; i < size(); i++) {
-                Object thisOne = elementAt(i);
-                if (thisOne instanceof CertAttrSet)
+            for (int i = 0; i < elementCount; i++) {
+                Object thisOne = elementData[i];
+                byte[] encoding = raw == null ? null : raw.get(thisOne);
+                if (encoding != null)
+                    extOut.write(encoding);
+                else if (thisOne instanceof CertAttrSet)
                     ((CertAttrSet) thisOne).encode(extOut);
                 else if (thisOne instanceof Extension)
                     ((Extension) thisOne).encode(extOut);
@@ -222,6 +301,8 @@ public class CertificateExtensions extends Vector<Extension>
      */
     @Override
     public void set(String name, Object obj) throws IOException {
+        if (readOnly)
+            throw new IOException("Certificate extensions are read-only");
         map.put(name, (Extension) obj);
         addElement((Extension) obj);
     }
@@ -234,13 +315,105 @@ public class CertificateExtensions extends Vector<Extension>
      */
     @Override
     public Object get(String name) throws IOException {
-        Object obj = map.get(name);
+        Object obj = load(name);
         if (obj == null) {
             throw new IOException("No extension found with name " + name);
         }
         return (obj);
     }
 
+    /**
+     * Get the extension with the specified OID.
+     *
+     * @param oid the OID of the extension.
+     * @return the extension, or null if not found.
+     * @exception IOException if the extension cannot be decoded.
+     */
+    public synchronized Extension getExtension(ObjectIdentifier oid) throws IOException {
+        for (Extension ext : map.values()) {
+            if (oid.equals(ext.getExtensionId())) {
+                return isPending(ext) ? load(ext) : ext;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a copy of the list of extensions without decoding them.
+     * The extensions that
+     * have not been decoded are returned as Extension objects, which only
+     * provide the OID, the criticality and the value.
+     */
+    synchronized Collection<Extension> getRawAttributes() {
+        return new ArrayList<>(map.values());
+    }
+
+    private boolean isPending(Extension ext) {
+        return pending != null && pending.containsKey(ext);
+    }
+
+    /**
+     * Returns the extension with the specified name, decoding it if it
+     * has not been decoded yet.
+     */
+    private synchronized Extension load(String name) throws IOException {
+        Extension ext = map.get(name);
+        return isPending(ext) ? load(ext) : ext;
+    }
+
+    /**
+     * Decodes an extension that has not been decoded yet, replacing it
+     * in the vector and in the map.
+     */
+    private synchronized Extension load(Extension ext) throws IOException {
+
+        Extension certExt = decodeExtension(ext);
+
+        for (int i = 0; i < elementCount; i++) {
+            if (elementData[i] == ext) {
+                if (certExt == null)
+                    super.removeElementAt(i);
+                else
+                    super.set(i, certExt);
+                break;
+            }
+        }
+
+        // the extension is not in the map if it has been replaced by
+        // another extension with the same name
+        String name = OIDMap.getExtensionName(ext.getExtensionId());
+        if (map.get(name) == ext) {
+            if (certExt != null && name.equals(getName(certExt))) {
+                map.put(name, certExt);
+            } else {
+                map.remove(name);
+                if (certExt != null)
+                    map.put(getName(certExt), certExt);
+            }
+        }
+
+        pending.remove(ext);
+        if (pending.isEmpty())
+            pending = null;
+
+        return certExt;
+    }
+
+    /**
+     * Decodes all the extensions that have not been decoded yet.
+     */
+    private synchronized void loadAll() {
+        try {
+            for (int i = 0; pending != null && i < elementCount; i++) {
+                Extension ext = (Extension) elementData[i];
+                if (isPending(ext) && load(ext) == null)
+                    i--; // removed
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to decode extensions: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Delete the attribute value.
      *
@@ -248,13 +421,35 @@ public class CertificateExtensions extends Vector<Extension>
      * @exception IOException if named extension is not found.
      */
     @Override
-    public void delete(String name) throws IOException {
+    public synchronized void delete(String name) throws IOException {
+        if (readOnly)
+            throw new IOException("Certificate extensions are read-only");
         Object obj = map.get(name);
         if (obj == null) {
             throw new IOException("No extension found with name " + name);
         }
         map.remove(name);
         removeElement(obj);
+
+        if (isPending((Extension) obj)) {
+            pending.remove(obj);
+            if (pending.isEmpty())
+                pending = null;
+        }
+    }
+
+    /**
+     * Makes set() and delete() throw an exception.
+     */
+    void setReadOnly() {
+        readOnly = true;
+    }
+
+    /**
+     * @return true if set() and delete() are not allowed.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
     }
 
     public Enumeration<String> getNames() {
@@ -265,7 +460,8 @@ public class CertificateExtensions extends Vector<Extension>
      * Return an enumeration of names of attributes existing within this
      * attribute.
      */
-    public Enumeration<Extension> getAttributes() {
+    public synchronized Enumeration<Extension> getAttributes() {
+        loadAll();
         return Collections.enumeration(map.values());
     }
 
@@ -282,8 +478,101 @@ public class CertificateExtensions extends Vector<Extension>
         return (NAME);
     }
 
+    // Vector methods returning the extensions, which are decoded first
+
+    @Override
+    public synchronized Extension elementAt(int index) {
+        loadAll();
+        return super.elementAt(index);
+    }
+
+    @Override
+    public synchronized Extension get(int index) {
+        loadAll();
+        return super.get(index);
+    }
+
+    @Override
+    public synchronized Extension firstElement() {
+        loadAll();
+        return super.firstElement();
+    }
+
+    @Override
+    public synchronized Extension lastElement() {
+        loadAll();
+        return super.lastElement();
+    }
+
+    @Override
+    public synchronized Enumeration<Extension> elements() {
+        loadAll();
+        return super.elements();
+    }
+
+    @Override
+    public synchronized Iterator<Extension> iterator() {
+        loadAll();
+        return super.iterator();
+    }
+
+    @Override
+    public synchronized ListIterator<Extension> listIterator() {
+        loadAll();
+        return super.listIterator();
+    }
+
+    @Override
+    public synchronized ListIterator<Extension> listIterator(int index) {
+        loadAll();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public synchronized Spliterator<Extension> spliterator() {
+        loadAll();
+        return super.spliterator();
+    }
+
+    @Override
+    public synchronized void forEach(Consumer<? super Extension> action) {
+        loadAll();
+        super.forEach(action);
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        loadAll();
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a) {
+        loadAll();
+        return super.toArray(a);
+    }
+
+    @Override
+    public synchronized void copyInto(Object[] anArray) {
+        loadAll();
+        super.copyInto(anArray);
+    }
+
+    @Override
+    public synchronized List<Extension> subList(int fromIndex, int toIndex) {
+        loadAll();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public synchronized Object clone() {
+        loadAll();
+        return super.clone();
+    }
+
     @Override
     public synchronized int hashCode() {
+        loadAll();
         final int prime = 31;
         int result = super.hashCode();
         result = prime * result + ((map == null) ? 0 : map.hashCode());
@@ -294,6 +583,9 @@ public class CertificateExtensions extends Vector<Extension>
     public synchronized boolean equals(Object obj) {
         if (this == obj)
             return true;
+        loadAll();
+        if (obj instanceof CertificateExtensions)
+            ((CertificateExtensions) obj).loadAll();
         if (!super.equals(obj))
             return false;
         if (getClass() != obj.getClass())
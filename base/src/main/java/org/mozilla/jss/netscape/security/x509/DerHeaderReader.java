@@ -0,0 +1,89 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the DER headers of a buffer without copying it, e.g., to find
+ * the location of the fields of a certificate or a CRL.
+ */
+class DerHeaderReader {
+
+    ByteBuffer buf;
+    int pos;
+    int end;
+
+    DerHeaderReader(ByteBuffer buf, int pos, int end) {
+        this.buf = buf;
+        this.pos = pos;
+        this.end = end;
+    }
+
+    int peekTag() throws IOException {
+        if (pos >= end) {
+            throw new IOException("Unexpected end of data");
+        }
+        return buf.get(pos);
+    }
+
+    /**
+     * Reads a tag and a length.
+     *
+     * @return The length of the contents.
+     */
+    int readHeader(byte tag) throws IOException {
+
+        if (peekTag() != tag) {
+            throw new IOException("Invalid tag " + buf.get(pos) + ", expected " + tag);
+        }
+        pos++;
+
+        if (pos >= end) {
+            throw new IOException("Unexpected end of data");
+        }
+        int len = buf.get(pos++) & 0xff;
+        if (len >= 0x80) {
+            int n = len & 0x7f;
+            if (n == 0 || n > 4 || pos + n > end) {
+                throw new IOException("Invalid length");
+            }
+            len = 0;
+            for (int i = 0; i < n; i++) {
+                len = (len << 8) | (buf.get(pos++) & 0xff);
+            }
+        }
+
+        if (len < 0 || len > end - pos) {
+            throw new IOException("Invalid length");
+        }
+        return len;
+    }
+
+    void skip(int n) {
+        pos += n;
+    }
+
+    /**
+     * Skips a value with any tag.
+     */
+    void skipValue() throws IOException {
+        skip(readHeader((byte) peekTag()));
+    }
+}
@@ -21,16 +21,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.PushbackReader;
-import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.jss.netscape.security.util.DerValue;
 import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
@@ -108,10 +111,16 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     @Override
     public X500Name parseDN(String dn, byte[] encodingOrder)
             throws IOException {
-        StringReader dn_reader = new StringReader(dn);
-        PushbackReader in = new PushbackReader(dn_reader, 5);
+        return new Parser(dn, encodingOrder).parseDN();
+    }
 
-        return parseDN(in, encodingOrder);
+    /**
+     * Like parseDN(String, byte[]) for a DN in any CharSequence, e.g.,
+     * a StringBuilder or a CharBuffer. The characters are not copied.
+     */
+    public X500Name parseDN(CharSequence dn, byte[] encodingOrder)
+            throws IOException {
+        return new Parser(dn, encodingOrder).parseDN();
     }
 
     /**
@@ -134,10 +143,7 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     @Override
     public RDN parseRDN(String rdn, byte[] encodingOrder)
             throws IOException {
-        StringReader rdn_reader = new StringReader(rdn);
-        PushbackReader in = new PushbackReader(rdn_reader, 5);
-
-        return parseRDN(in, null);
+        return new Parser(rdn, encodingOrder).parseRDN();
     }
 
     /**
@@ -159,10 +165,7 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     @Override
     public AVA parseAVA(String ava, byte[] encodingOrder)
             throws IOException {
-        StringReader ava_reader = new StringReader(ava);
-        PushbackReader in = new PushbackReader(ava_reader, 5);
-
-        return parseAVA(in, encodingOrder);
+        return new Parser(ava, encodingOrder).parseAVA();
     }
 
     //
@@ -464,6 +467,26 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
         return oid;
     }
 
+    /**
+     * Like parseAVAKeyword(String) but returns the OIDs of keywords
+     * found in the attribute map from a cache.
+     */
+    private ObjectIdentifier getKeywordOid(String keyword)
+            throws IOException {
+        ObjectIdentifier oid = keywordOids.get(keyword);
+        if (oid != null)
+            return oid;
+
+        oid = parseAVAKeyword(keyword);
+
+        // cache registered attributes only, so the cache does not
+        // grow with arbitrary OIDs
+        if (attrMap.getName(oid) != null && keywordOids.size() < MAX_CACHED_KEYWORDS)
+            keywordOids.put(keyword, oid);
+
+        return oid;
+    }
+
     /**
      * Converts a AVA value from a Ldap dn string to a
      * DerValue according the attribute type. For example, a value for
@@ -498,7 +521,7 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
                 throw new IllegalArgumentException(
                         "Unrecognized OID for AVA value conversion");
             } else {
-                valueConverter = new GenericValueConverter();
+                valueConverter = genericValueConverter;
             }
         }
         return valueConverter.getValue(avaValueString, encodingOrder);
@@ -524,7 +547,7 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
             throw new IllegalArgumentException(
                     "Unrecognized OID for AVA value conversion");
         } else {
-            valueConverter = new GenericValueConverter();
+            valueConverter = genericValueConverter;
         }
         return valueConverter.getValue(berValue);
     }
@@ -546,21 +569,15 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     public String encodeDN(X500Name x500name)
             throws IOException {
         RDN[] rdns = x500name.getNames();
-        // String fullname = null;
-        StringBuffer fullname = new StringBuffer();
-        String s;
-        int i;
-        if (rdns.length == 0)
-            return "";
-        i = rdns.length - 1;
-        fullname.append(encodeRDN(rdns[i--]));
-        while (i >= 0) {
-            s = encodeRDN(rdns[i--]);
-            fullname.append(",");
-            fullname.append(s);
+        StringBuilder sb = new StringBuilder(64);
+
+        for (int i = rdns.length - 1; i >= 0; i--) {
+            if (i < rdns.length - 1)
+                sb.append(',');
+            appendRDN(sb, rdns[i]);
         }
-        ;
-        return fullname.toString();
+
+        return sb.toString();
     }
 
     /**
@@ -575,20 +592,9 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     @Override
     public String encodeRDN(RDN rdn)
             throws IOException {
-        AVA[] avas = rdn.getAssertion();
-        // String relname = null;
-        StringBuffer relname = new StringBuffer();
-        String s;
-        int i = 0;
-
-        relname.append(encodeAVA(avas[i++]));
-        while (i < avas.length) {
-            s = encodeAVA(avas[i++]);
-            relname.append("+");
-            relname.append(s);
-        }
-        ;
-        return relname.toString();
+        StringBuilder sb = new StringBuilder(32);
+        appendRDN(sb, rdn);
+        return sb.toString();
     }
 
     /**
@@ -603,19 +609,37 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     @Override
     public String encodeAVA(AVA ava)
             throws IOException {
-        if (ava == null) {
-            return "";
-        }
-        ObjectIdentifier oid = ava.getOid();
-        DerValue value = ava.getValue();
-        String keyword, valueStr;
+        StringBuilder sb = new StringBuilder(32);
+        appendAVA(sb, ava);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a RDN in Ldap v3 DN string format to a StringBuilder.
+     */
+    protected void appendRDN(StringBuilder sb, RDN rdn)
+            throws IOException {
+        AVA[] avas = rdn.getAssertion();
 
-        // get attribute name
+        for (int i = 0; i < avas.length; i++) {
+            if (i > 0)
+                sb.append('+');
+            appendAVA(sb, avas[i]);
+        }
+    }
 
-        keyword = encodeOID(oid);
-        valueStr = encodeValue(value, oid);
+    /**
+     * Appends a AVA in Ldap v3 DN string format to a StringBuilder.
+     */
+    protected void appendAVA(StringBuilder sb, AVA ava)
+            throws IOException {
+        if (ava == null)
+            return;
 
-        return keyword + "=" + valueStr;
+        ObjectIdentifier oid = ava.getOid();
+        sb.append(encodeOID(oid));
+        sb.append('=');
+        appendValue(sb, ava.getValue(), oid);
     }
 
     /**
@@ -652,54 +676,52 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
      */
     public String encodeValue(DerValue attrValue, ObjectIdentifier oid)
             throws IOException {
-        /*
-         * Construct the value with as little copying and garbage
-         * production as practical.
-         */
-        StringBuffer retval = new StringBuffer(30);
-        int i;
-        String temp = null;
-        AVAValueConverter valueConverter;
+        StringBuilder sb = new StringBuilder(30);
+        appendValue(sb, attrValue, oid);
+        return sb.toString();
+    }
 
+    /**
+     * Like encodeValue(DerValue, ObjectIdentifier) but appends the value
+     * to a StringBuilder. Subclasses changing the value format should
+     * override this method, which is used by all encoding methods.
+     */
+    protected void appendValue(StringBuilder sb, DerValue attrValue, ObjectIdentifier oid)
+            throws IOException {
         X500NameAttrMap lAttrMap = attrMap;
 
         if (attrValue.tag == DerValue.tag_UTF8String) {
             lAttrMap = X500NameAttrMap.getDirDefault();
-
         }
 
-        valueConverter = lAttrMap.getValueConverter(oid);
+        AVAValueConverter valueConverter = lAttrMap.getValueConverter(oid);
         if (valueConverter == null) {
             if (acceptUnknownOids)
-                valueConverter = new GenericValueConverter();
+                valueConverter = genericValueConverter;
             else
                 throw new IOException(
                         "Unknown AVA type for encoding AVA value");
         }
 
         try {
-            temp = valueConverter.getAsString(attrValue);
+            String temp = valueConverter.getAsString(attrValue);
 
             if (temp == null) {
                 // convert to octothorpe form.
                 byte data[] = attrValue.toByteArray();
 
-                retval.append('#');
-                for (i = 0; i < data.length; i++) {
-                    retval.append(hexDigits.charAt((data[i] >> 4) & 0x0f));
-                    retval.append(hexDigits.charAt(data[i] & 0x0f));
+                sb.append('#');
+                for (int i = 0; i < data.length; i++) {
+                    sb.append(hexDigits.charAt((data[i] >> 4) & 0x0f));
+                    sb.append(hexDigits.charAt(data[i] & 0x0f));
                 }
 
             } else {
-
-                retval.append(encodeString(temp));
-
+                appendString(sb, temp);
             }
         } catch (IOException e) {
             throw new IllegalArgumentException("malformed AVA DER Value");
         }
-
-        return retval.toString();
     }
 
     /**
@@ -709,9 +731,18 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
      * @return a attribute value string in Ldap V3 DN string format.
      */
     public String encodeString(String valueStr) {
+        StringBuilder sb = new StringBuilder(valueStr.length() + 8);
+        appendString(sb, valueStr);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a raw value string in Ldap V3 DN string format to a
+     * StringBuilder.
+     */
+    private static void appendString(StringBuilder sb, String valueStr) {
         int i, j;
         int len;
-        StringBuffer retval = new StringBuffer();
 
         /*
          * generate string according to ldapv3 DN. escaping is used.
@@ -726,32 +757,23 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
 
         // escape spaces at the beginning of the string.
         for (i = 0; i <= j && valueStr.charAt(i) == ' '; i++) {
-            retval.append('\\');
-            retval.append(valueStr.charAt(i));
+            sb.append('\\');
+            sb.append(' ');
         }
 
         // escape special characters in the middle of the string.
         for (; i <= j; i++) {
-            if (valueStr.charAt(i) == '\\') {
-                retval.append('\\');
-                retval.append(valueStr.charAt(i));
-            } else if (specialChars.indexOf(valueStr.charAt(i)) != -1) {
-                retval.append('\\');
-                retval.append(valueStr.charAt(i));
-            } else if (valueStr.charAt(i) == '"') {
-                retval.append('\\');
-                retval.append(valueStr.charAt(i));
-            } else
-                retval.append(valueStr.charAt(i));
+            char c = valueStr.charAt(i);
+            if (c == '\\' || c == '"' || isSpecialChar(c))
+                sb.append('\\');
+            sb.append(c);
         }
 
         // esacape spaces at the end.
-        for (; i < valueStr.length(); i++) {
-            retval.append('\\');
-            retval.append(' ');
+        for (; i < len; i++) {
+            sb.append('\\');
+            sb.append(' ');
         }
-
-        return retval.toString();
     }
 
     //
@@ -785,6 +807,9 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
     protected X500NameAttrMap attrMap;
     protected boolean acceptUnknownOids;
 
+    // OIDs of the registered keywords seen by the parser
+    private Map<String, ObjectIdentifier> keywordOids = new ConcurrentHashMap<>();
+
     //
     // private and protected static variables & methods.
     //
@@ -801,6 +826,49 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
      */
     protected static final String hexDigits = "0123456789ABCDEFabcdef";
 
+    private static final int MAX_CACHED_KEYWORDS = 256;
+
+    private static final AVAValueConverter genericValueConverter = new GenericValueConverter();
+
+    private static boolean isSpecialChar(int c) {
+        switch (c) {
+        case ',':
+        case '+':
+        case '=':
+        case '<':
+        case '>':
+        case '#':
+        case ';':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean isValueEndChar(int c) {
+        return c == '+' || c == ',' || c == ';' || c == '>';
+    }
+
+    private static boolean isHexDigit(int c) {
+        return c >= '0' && c <= '9' || c >= 'A' && c <= 'F' || c >= 'a' && c <= 'f';
+    }
+
+    private static int hexValue(int c) {
+        return c <= '9' ? c - '0' : (c & ~0x20) - 'A' + 10;
+    }
+
+    /**
+     * Returns a range of characters without leading and trailing white
+     * space, like String.trim().
+     */
+    private static String trim(CharSequence cs, int start, int end) {
+        while (start < end && cs.charAt(start) <= ' ')
+            start++;
+        while (end > start && cs.charAt(end - 1) <= ' ')
+            end--;
+        return cs.subSequence(start, end).toString();
+    }
+
     /**
      * Parse a sequence of hex pairs, each pair a UTF8 byte to a java string.
      * For example, "4C75C48D" is "Luc", the last c with caron.
@@ -833,4 +901,250 @@ public class LdapV3DNStrConverter extends LdapDNStrConverter {
                     "Invalid hex pair in LDAP DN String.");
         }
     }
+
+    /**
+     * Parses a Ldap DN string in a CharSequence in a single pass.
+     *
+     * The parser keeps a position in the string instead of reading it
+     * through a PushbackReader, and follows the same rules as
+     * parseDN(PushbackReader, byte[]), parseRDN(PushbackReader, byte[])
+     * and parseAVA(PushbackReader, byte[]). Values without escaped
+     * characters are taken from the string directly; escaped values are
+     * collected in a buffer reused for all the values in the string.
+     */
+    private class Parser {
+
+        private CharSequence dn;
+        private int pos;
+        private byte[] encodingOrder;
+
+        private StringBuilder chars;
+        private byte[] bytes = new byte[16];
+
+        Parser(CharSequence dn, byte[] encodingOrder) {
+            this.dn = dn;
+            this.encodingOrder = encodingOrder;
+        }
+
+        private int read() {
+            return pos < dn.length() ? dn.charAt(pos++) : -1;
+        }
+
+        X500Name parseDN() throws IOException {
+            ArrayList<RDN> rdns = new ArrayList<>();
+            int c;
+
+            do {
+                rdns.add(parseRDN());
+                c = read();
+            } while (c == ',' || c == ';');
+
+            // the RDNs are in reverse order in the DN string
+            RDN[] names = new RDN[rdns.size()];
+            for (int i = 0, j = names.length - 1; j >= 0; i++, j--)
+                names[j] = rdns.get(i);
+            return new X500Name(names);
+        }
+
+        RDN parseRDN() throws IOException {
+            AVA ava = parseAVA();
+            int c = read();
+
+            if (c != '+') {
+                if (c != -1)
+                    pos--;
+                return new RDN(new AVA[] { ava });
+            }
+
+            ArrayList<AVA> avas = new ArrayList<>();
+            avas.add(ava);
+            do {
+                avas.add(parseAVA());
+                c = read();
+            } while (c == '+');
+
+            if (c != -1)
+                pos--;
+
+            return new RDN(avas.toArray(new AVA[avas.size()]));
+        }
+
+        AVA parseAVA() throws IOException {
+            int c;
+
+            // the keyword indicating the attribute's type
+            int start = pos;
+            while ((c = read()) != '=') {
+                if (c == -1)
+                    throw new IOException("Bad AVA format: Missing '='");
+            }
+            ObjectIdentifier oid = getKeywordOid(trim(dn, start, pos - 1));
+
+            // the value, stripping white space before and after the value
+            for (c = read(); c == ' '; c = read())
+                continue;
+            if (c == -1)
+                throw new IOException("Bad AVA format: Missing attribute value");
+
+            DerValue value;
+
+            if (c == '#') {
+                value = parseAVAValue(parseBerValue(), oid);
+
+            } else if (c == '"') {
+                if (pos == dn.length())
+                    throw new IOException("Bad AVA format: Missing attrValue");
+
+                value = parseAVAValue(parseStringValue(true), oid, encodingOrder);
+
+                // move to next non-white space
+                for (c = read(); c == ' '; c = read())
+                    continue;
+                if (c != -1 && !isValueEndChar(c))
+                    throw new IOException(
+                            "Bad AVA format: separator expected at end of ava.");
+                if (c != -1)
+                    pos--;
+
+            } else {
+                pos--;
+                value = parseAVAValue(parseStringValue(false), oid, encodingOrder);
+            }
+
+            return new AVA(oid, value);
+        }
+
+        /**
+         * Parses a value in octothorpe form, leaving the position at the
+         * separator after the value.
+         */
+        private byte[] parseBerValue() throws IOException {
+            int length = 0;
+            int c;
+
+            for (;;) {
+                c = read();
+                if (c == -1 || isValueEndChar(c))
+                    break;
+                int c2 = read();
+                if (!isHexDigit(c) || !isHexDigit(c2))
+                    throw new IOException("Bad AVA value: bad hex value.");
+                length = putByte(length, (hexValue(c) << 4) + hexValue(c2));
+            }
+
+            if (length == 0)
+                throw new IOException("bad AVA format: invalid hex value");
+
+            if (c != -1)
+                pos--;
+
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /**
+         * Parses a quoted or unquoted string value. An unquoted value is
+         * terminated by a separator, and the position is left at the
+         * separator. A quoted value is terminated by the closing quote,
+         * and the position is left after the quote.
+         */
+        private String parseStringValue(boolean quoted) throws IOException {
+            int start = pos;
+            int end = dn.length();
+            boolean escaped = false;
+            int c;
+
+            while ((c = read()) != -1) {
+
+                if (quoted ? c == '"' : isValueEndChar(c)) {
+                    end = pos - 1;
+                    if (!quoted)
+                        pos--;
+                    break;
+                }
+
+                if (c != '\\') {
+                    if (escaped)
+                        chars.append((char) c);
+                    continue;
+                }
+
+                if (!escaped) {
+                    // copy the value so far
+                    if (chars == null)
+                        chars = new StringBuilder();
+                    chars.setLength(0);
+                    chars.append(dn, start, pos - 1);
+                    escaped = true;
+                }
+
+                // expect escaping of special chars, space and CR.
+                if ((c = read()) == -1)
+                    throw new IOException("Bad AVA format: expecting " +
+                                          "escaped char.");
+
+                if (isSpecialChar(c) || c == '\n' ||
+                        c == '\\' || c == '"' || c == ' ') {
+                    chars.append((char) c);
+                } else if (isHexDigit(c)) {
+                    pos--;
+                    parseHexPairs();
+                } else {
+                    throw new IOException("Bad AVA format: " +
+                                          "invalid escaping");
+                }
+            }
+
+            return escaped ? trim(chars, 0, chars.length()) : trim(dn, start, end);
+        }
+
+        /**
+         * Parses a sequence of escaped hex pairs, each pair a UTF8 byte,
+         * starting after the first backslash.
+         */
+        private void parseHexPairs() throws IOException {
+            int length = 0;
+            int c;
+
+            do {
+                int c1 = read();
+                c = read();
+                if (!isHexDigit(c))
+                    throw new IOException("Bad AVA format: " +
+                            "invalid escaped hex pair");
+                length = putByte(length, (hexValue(c1) << 4) + hexValue(c));
+
+                // read ahead to next '\' hex-char if any.
+                if ((c = read()) == -1)
+                    break;
+                if (c != '\\') {
+                    pos--;
+                    break;
+                }
+                if ((c = read()) == -1)
+                    throw new IOException("Bad AVA format: " +
+                            "expecting escaped char.");
+                pos--;
+                if (!isHexDigit(c)) {
+                    pos--;
+                    break;
+                }
+            } while (true);
+
+            try {
+                CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+                chars.append(decoder.decode(ByteBuffer.wrap(bytes, 0, length)));
+
+            } catch (CharacterCodingException e) {
+                throw new IllegalArgumentException(
+                        "Invalid hex pair in LDAP DN String.");
+            }
+        }
+
+        private int putByte(int length, int b) {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length] = (byte) b;
+            return length + 1;
+        }
+    }
 }
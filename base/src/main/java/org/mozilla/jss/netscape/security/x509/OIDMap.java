@@ -116,6 +116,9 @@ public class OIDMap {
     private static final Hashtable<String, ObjectIdentifier> name2OID = new Hashtable<>();
     private static final Hashtable<String, String> name2Class = new Hashtable<>();
 
+    // NAME fields of the extension classes, "" if the class has none
+    private static final Hashtable<ObjectIdentifier, String> oid2ExtensionName = new Hashtable<>();
+
     // Initialize recognized extensions from EXTENSIONS_{OIDS/CLASSES} files
     static {
         loadNames();
@@ -275,6 +278,7 @@ public class OIDMap {
         oid2Name.put(objId, name);
         name2OID.put(name, objId);
         name2Class.put(name, className);
+        oid2ExtensionName.remove(objId);
     }
 
     /**
@@ -340,4 +344,31 @@ public class OIDMap {
                                    + name + " " +  e.getMessage(), e);
         }
     }
+
+    /**
+     * Return the value of the static NAME field of the class associated
+     * with the object identifier, i.e., the name under which a decoded
+     * extension is stored in CertificateExtensions and CRLExtensions.
+     *
+     * @param oid the object identifier of the extension.
+     * @return the name, or null if no class is registered for this oid
+     *         or the class has no NAME field.
+     */
+    public static String getExtensionName(ObjectIdentifier oid) {
+        String name = oid2ExtensionName.get(oid);
+        if (name != null)
+            return name.isEmpty() ? null : name;
+
+        try {
+            Class<?> extClass = getClass(oid);
+            name = extClass == null ? "" : (String) extClass.getField("NAME").get(null);
+
+        } catch (Exception e) {
+            logger.debug("OIDMap: No extension name for " + oid + ": " + e.getMessage());
+            name = "";
+        }
+
+        oid2ExtensionName.put(oid, name);
+        return name.isEmpty() ? null : name;
+    }
 }
@@ -84,21 +84,22 @@ public class RFC1779StrConverter extends LdapV3DNStrConverter {
     }
 
     /**
-     * Converts a attribute value as a DerValue to a string in a
-     * RFC1779 Ldap DN string.
+     * Appends a attribute value as a DerValue in a RFC1779 Ldap DN string
+     * to a StringBuilder. Values with new lines are quoted.
      *
+     * @param sb the StringBuilder to append to.
      * @param attrValue an attribute value.
      * @param oid ObjectIdentifier for the attribute.
-     * @return a string in RFC1779 syntax.
      * @exception IOException if an error occurs during the conversion.
      */
     @Override
-    public String encodeValue(DerValue attrValue, ObjectIdentifier oid)
+    protected void appendValue(StringBuilder sb, DerValue attrValue, ObjectIdentifier oid)
             throws IOException {
-        String s = super.encodeValue(attrValue, oid);
-        if (s.indexOf('\n') != -1)
-            return "\"" + s + "\"";
-        else
-            return s;
+        int start = sb.length();
+        super.appendValue(sb, attrValue, oid);
+        if (sb.indexOf("\n", start) != -1) {
+            sb.insert(start, '"');
+            sb.append('"');
+        }
     }
 }
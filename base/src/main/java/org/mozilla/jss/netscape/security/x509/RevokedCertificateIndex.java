@@ -0,0 +1,355 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.cert.CRLException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.mozilla.jss.asn1.TimeCodec;
+import org.mozilla.jss.netscape.security.util.DerValue;
+
+/**
+ * A compact, read-only index of the revoked certificates in a CRL.
+ *
+ * <p>Instead of a {@link RevokedCertImpl} per entry, the index keeps the
+ * serial numbers packed in a single byte array sorted by value, with the
+ * revocation dates and reason codes in parallel primitive arrays. A serial
+ * number is looked up by binary search. The full {@link RevokedCertificate}
+ * of an entry, including its extensions, is parsed from the encoded CRL
+ * only when it is requested.
+ *
+ * <p>The index refers to the encoded CRL, which must not be modified.
+ * The CRL can be in a byte array or in a ByteBuffer, e.g., a memory-mapped
+ * file.
+ */
+public class RevokedCertificateIndex {
+
+    // encoded CRL and location of the revokedCertificates SEQUENCE
+    private ByteBuffer buf;
+    private int offset;
+    private int length;
+
+    private int size;
+
+    // serial numbers (minimal two's complement) packed in order,
+    // serial i is at serialOffsets[i] .. serialOffsets[i + 1]
+    private byte[] serials;
+    private int[] serialOffsets;
+
+    private int[] entryOffsets;
+    private long[] revocationDates; // seconds since the epoch
+    private byte[] reasons; // -1 if the entry has no reason code
+
+    private boolean hasEntryExtensions;
+    private boolean hasCertificateIssuers;
+    private boolean hasUnhandledCriticalEntryExtensions;
+
+    /**
+     * Builds the index of a revokedCertificates SEQUENCE.
+     *
+     * @param buf The buffer holding the SEQUENCE.
+     * @param offset The position of the SEQUENCE.
+     */
+    public RevokedCertificateIndex(byte[] buf, int offset) throws IOException {
+        this(ByteBuffer.wrap(buf), offset);
+    }
+
+    /**
+     * Builds the index of a revokedCertificates SEQUENCE.
+     *
+     * @param buf The buffer holding the SEQUENCE, from position 0 to the
+     *            limit. The buffer is not copied.
+     * @param offset The position of the SEQUENCE.
+     */
+    public RevokedCertificateIndex(ByteBuffer buf, int offset) throws IOException {
+
+        this.buf = buf;
+        this.offset = offset;
+
+        RevokedEntryReader reader = new RevokedEntryReader(buf, offset, buf.limit());
+        int end = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+        this.length = end - offset;
+        reader.end = end;
+
+        // count the entries
+        int start = reader.pos;
+        int count = 0;
+        while (reader.pos < end) {
+            reader.skipValue();
+            count++;
+        }
+
+        // parse the entries in the order they appear,
+        // packing the serial numbers in the same order
+        int[] entryStarts = new int[count];
+        long[] dates = new long[count];
+        byte[] codes = new byte[count];
+        int[] starts = new int[count + 1];
+        int total = 0;
+
+        reader.pos = start;
+        for (int i = 0; reader.next(); i++) {
+            starts[i] = total;
+            total += reader.serialLength;
+            entryStarts[i] = reader.entryStart;
+            dates[i] = reader.revocationDate;
+            codes[i] = reader.reasonCode;
+            hasEntryExtensions |= reader.hasExtensions;
+            hasCertificateIssuers |= reader.hasCertificateIssuer;
+            hasUnhandledCriticalEntryExtensions |= reader.hasUnhandledCriticalExtension;
+        }
+        starts[count] = total;
+
+        byte[] packed = new byte[total];
+        reader.pos = start;
+        for (int i = 0; reader.next(); i++) {
+            buf.get(reader.serialStart, packed, starts[i], reader.serialLength);
+        }
+
+        // sort the entries by serial number
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        if (!isSorted(order, packed, starts)) {
+            mergeSort(order, new int[count], 0, count, packed, starts);
+        }
+
+        size = count;
+        serials = new byte[total];
+        serialOffsets = new int[count + 1];
+        entryOffsets = new int[count];
+        revocationDates = new long[count];
+        reasons = new byte[count];
+
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            int j = order[i];
+            int len = starts[j + 1] - starts[j];
+            System.arraycopy(packed, starts[j], serials, pos, len);
+            serialOffsets[i] = pos;
+            pos += len;
+            entryOffsets[i] = entryStarts[j];
+            revocationDates[i] = dates[j];
+            reasons[i] = codes[j];
+        }
+        serialOffsets[count] = pos;
+    }
+
+    /**
+     * Compares two serial numbers in minimal two's complement form.
+     */
+    private static int compare(byte[] a, int aOff, int aLen, byte[] b, int bOff, int bLen) {
+
+        boolean aNeg = a[aOff] < 0;
+        boolean bNeg = b[bOff] < 0;
+        if (aNeg != bNeg) {
+            return aNeg ? -1 : 1;
+        }
+
+        if (aLen != bLen) {
+            // a longer positive number is larger, a longer negative one smaller
+            return (aLen > bLen) != aNeg ? 1 : -1;
+        }
+
+        return Arrays.compareUnsigned(a, aOff, aOff + aLen, b, bOff, bOff + bLen);
+    }
+
+    private static int compare(int i, int j, byte[] packed, int[] starts) {
+        return compare(packed, starts[i], starts[i + 1] - starts[i],
+                packed, starts[j], starts[j + 1] - starts[j]);
+    }
+
+    private static boolean isSorted(int[] order, byte[] packed, int[] starts) {
+        for (int i = 1; i < order.length; i++) {
+            if (compare(order[i - 1], order[i], packed, starts) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void mergeSort(int[] order, int[] tmp, int from, int to,
+            byte[] packed, int[] starts) {
+
+        if (to - from < 2) {
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(order, tmp, from, mid, packed, starts);
+        mergeSort(order, tmp, mid, to, packed, starts);
+
+        if (compare(order[mid - 1], order[mid], packed, starts) <= 0) {
+            return;
+        }
+
+        System.arraycopy(order, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || i < mid && compare(tmp[i], tmp[j], packed, starts) <= 0) {
+                order[k] = tmp[i++];
+            } else {
+                order[k] = tmp[j++];
+            }
+        }
+    }
+
+    /**
+     * @return The number of revoked certificates.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if any entry has extensions.
+     */
+    public boolean hasEntryExtensions() {
+        return hasEntryExtensions;
+    }
+
+    /**
+     * @return true if any entry has a certificateIssuer extension, i.e.,
+     *         the CRL is an indirect CRL.
+     */
+    public boolean hasCertificateIssuers() {
+        return hasCertificateIssuers;
+    }
+
+    /**
+     * @return true if any entry has a critical extension other than
+     *         reasonCode, holdInstructionCode, invalidityDate and
+     *         certificateIssuer.
+     */
+    public boolean hasUnhandledCriticalEntryExtensions() {
+        return hasUnhandledCriticalEntryExtensions;
+    }
+
+    /**
+     * Finds a serial number.
+     *
+     * @return The index of the entry, or -1 if the serial number is not
+     *         in the CRL.
+     */
+    public int indexOf(BigInteger serialNumber) {
+
+        byte[] key = serialNumber.toByteArray();
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = serialOffsets[mid];
+            int c = compare(serials, start, serialOffsets[mid + 1] - start, key, 0, key.length);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(BigInteger serialNumber) {
+        return indexOf(serialNumber) >= 0;
+    }
+
+    /**
+     * @param index The index of an entry; entries are sorted by serial
+     *            number.
+     */
+    public BigInteger getSerialNumber(int index) {
+        int start = serialOffsets[index];
+        return new BigInteger(serials, start, serialOffsets[index + 1] - start);
+    }
+
+    /**
+     * @return The revocation date in seconds since the epoch.
+     */
+    public long getRevocationEpochSecond(int index) {
+        return revocationDates[index];
+    }
+
+    public Date getRevocationDate(int index) {
+        return TimeCodec.toDate(revocationDates[index]);
+    }
+
+    /**
+     * @return The reason code, or null if the entry has none.
+     */
+    public RevocationReason getRevocationReason(int index) {
+        byte code = reasons[index];
+        return code < 0 ? null : RevocationReason.valueOf(code);
+    }
+
+    /**
+     * Parses the full entry from the encoded CRL.
+     */
+    public RevokedCertificate getRevokedCertificate(int index)
+            throws CRLException, X509ExtensionException {
+
+        int start = entryOffsets[index];
+        try {
+            DerHeaderReader reader = new DerHeaderReader(buf, start, offset + length);
+            int end = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+            byte[] bytes = new byte[end - start];
+            buf.get(start, bytes);
+            return new RevokedCertImpl(new DerValue(bytes));
+
+        } catch (IOException e) {
+            throw new CRLException("Unable to parse revoked certificate: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The entry, or null if the serial number is not in the CRL.
+     */
+    public RevokedCertificate getRevokedCertificate(BigInteger serialNumber)
+            throws CRLException, X509ExtensionException {
+        int index = indexOf(serialNumber);
+        return index < 0 ? null : getRevokedCertificate(index);
+    }
+
+    /**
+     * Writes the original encoding of the revokedCertificates SEQUENCE.
+     */
+    public void encode(OutputStream out) throws IOException {
+
+        if (buf.hasArray()) {
+            out.write(buf.array(), buf.arrayOffset() + offset, length);
+            return;
+        }
+
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer src = buf.slice(offset, length);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+}
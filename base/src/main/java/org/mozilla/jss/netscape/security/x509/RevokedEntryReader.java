@@ -0,0 +1,184 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+
+import org.mozilla.jss.asn1.TimeCodec;
+import org.mozilla.jss.netscape.security.util.DerValue;
+
+/**
+ * Reads revoked certificate entries from a buffer without copying it.
+ * The fields of the current entry are updated by {@link #next}.
+ */
+class RevokedEntryReader extends DerHeaderReader {
+
+    private static final byte[] REASON_CODE_OID = { 0x55, 0x1d, 0x15 }; // 2.5.29.21
+    private static final byte[] HOLD_INSTRUCTION_CODE_OID = { 0x55, 0x1d, 0x17 }; // 2.5.29.23
+    private static final byte[] INVALIDITY_DATE_OID = { 0x55, 0x1d, 0x18 }; // 2.5.29.24
+    private static final byte[] CERTIFICATE_ISSUER_OID = { 0x55, 0x1d, 0x1d }; // 2.5.29.29
+
+    // current entry
+    int entryStart;
+    int entryEnd;
+    int serialStart; // without redundant leading bytes
+    int serialLength;
+    long revocationDate; // seconds since the epoch
+    byte reasonCode; // -1 if none
+    boolean hasExtensions;
+    boolean hasCertificateIssuer; // the entry belongs to an indirect CRL
+    boolean hasUnhandledCriticalExtension;
+
+    private byte[] timeBytes = new byte[32];
+
+    RevokedEntryReader(ByteBuffer buf, int pos, int end) {
+        super(buf, pos, end);
+    }
+
+    /**
+     * Reads the next entry of a revokedCertificates SEQUENCE.
+     *
+     * @return false if there are no more entries.
+     */
+    boolean next() throws IOException {
+
+        if (pos >= end) {
+            return false;
+        }
+
+        entryStart = pos;
+        entryEnd = readHeader(DerValue.tag_Sequence) + pos;
+
+        // serial number, without redundant leading bytes
+        int len = readHeader(DerValue.tag_Integer);
+        if (len == 0) {
+            throw new IOException("Invalid serial number in CRL entry");
+        }
+        int start = pos;
+        while (len > 1 &&
+                (buf.get(start) == 0 && buf.get(start + 1) >= 0 ||
+                 buf.get(start) == -1 && buf.get(start + 1) < 0)) {
+            start++;
+            len--;
+        }
+        serialStart = start;
+        serialLength = len;
+        pos = start + len;
+
+        // revocation date
+        boolean utc = peekTag() == DerValue.tag_UtcTime;
+        len = readHeader(utc ? DerValue.tag_UtcTime : DerValue.tag_GeneralizedTime);
+        if (len > timeBytes.length) {
+            throw new IOException("Invalid revocation date in CRL entry");
+        }
+        buf.get(pos, timeBytes, 0, len);
+        try {
+            if (utc) {
+                // YY <= 50 is 20YY, as in DerInputStream
+                revocationDate = TimeCodec.parseUTCTime(timeBytes, 0, len, 51, true);
+            } else {
+                revocationDate = TimeCodec.parseGeneralizedTime(timeBytes, 0, len, true);
+            }
+        } catch (DateTimeException e) {
+            throw new IOException("Invalid revocation date in CRL entry: " + e.getMessage(), e);
+        }
+        skip(len);
+
+        // entry extensions
+        reasonCode = -1;
+        hasCertificateIssuer = false;
+        hasUnhandledCriticalExtension = false;
+        hasExtensions = pos < entryEnd;
+        if (hasExtensions) {
+            readExtensions();
+        }
+
+        pos = entryEnd;
+        return true;
+    }
+
+    /**
+     * Reads the extensions of the entry: finds the reasonCode extension
+     * and flags the extensions that are not handled.
+     */
+    private void readExtensions() throws IOException {
+
+        int extsEnd = readHeader(DerValue.tag_Sequence) + pos;
+        if (extsEnd != entryEnd) {
+            throw new IOException("Invalid CRL entry extensions");
+        }
+
+        while (pos < extsEnd) {
+            int extEnd = readHeader(DerValue.tag_Sequence) + pos;
+
+            int oidLength = readHeader(DerValue.tag_ObjectId);
+            int oidStart = pos;
+            skip(oidLength);
+
+            boolean critical = false;
+            if (peekTag() == DerValue.tag_Boolean) {
+                if (readHeader(DerValue.tag_Boolean) != 1) {
+                    throw new IOException("Invalid critical flag in CRL entry extension");
+                }
+                critical = buf.get(pos) != 0;
+                skip(1);
+            }
+
+            if (isOID(oidStart, oidLength, REASON_CODE_OID)) {
+                readHeader(DerValue.tag_OctetString);
+                if (readHeader(DerValue.tag_Enumerated) != 1) {
+                    throw new IOException("Invalid reason code in CRL entry");
+                }
+                reasonCode = buf.get(pos);
+
+            } else if (isOID(oidStart, oidLength, CERTIFICATE_ISSUER_OID)) {
+                hasCertificateIssuer = true;
+
+            } else if (critical
+                    && !isOID(oidStart, oidLength, HOLD_INSTRUCTION_CODE_OID)
+                    && !isOID(oidStart, oidLength, INVALIDITY_DATE_OID)) {
+                hasUnhandledCriticalExtension = true;
+            }
+
+            pos = extEnd;
+        }
+    }
+
+    private boolean isOID(int oidStart, int oidLength, byte[] oid) {
+        if (oidLength != oid.length) {
+            return false;
+        }
+        for (int i = 0; i < oidLength; i++) {
+            if (buf.get(oidStart + i) != oid[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the serial number of the current entry.
+     */
+    byte[] getSerialBytes() {
+        byte[] bytes = new byte[serialLength];
+        buf.get(serialStart, bytes);
+        return bytes;
+    }
+}
@@ -22,9 +22,12 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Vector;
 
+import javax.security.auth.x500.X500Principal;
+
 import org.mozilla.jss.netscape.security.util.DerInputStream;
 import org.mozilla.jss.netscape.security.util.DerOutputStream;
 import org.mozilla.jss.netscape.security.util.DerValue;
@@ -286,12 +289,22 @@ public class X500Name implements Principal, GeneralNameInterface {
         }
     }
 
+    /**
+     * Returns a hash code of the DER encoding of the name. The hash code
+     * is computed once.
+     */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(names);
-        return result;
+        int h = hash;
+        if (h == 0) {
+            try {
+                h = Arrays.hashCode(getEncodedInternal());
+            } catch (IOException e) {
+                h = Arrays.hashCode(names);
+            }
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -303,7 +316,52 @@ public class X500Name implements Principal, GeneralNameInterface {
         if (getClass() != obj.getClass())
             return false;
         X500Name other = (X500Name) obj;
-        return Arrays.equals(names, other.names);
+        if (hash != 0 && other.hash != 0 && hash != other.hash)
+            return false;
+        try {
+            return Arrays.equals(getEncodedInternal(), other.getEncodedInternal());
+        } catch (IOException e) {
+            return Arrays.equals(names, other.names);
+        }
+    }
+
+    /**
+     * Returns the canonical form of the name, as defined by
+     * {@link X500Principal#CANONICAL}: attribute values are converted to
+     * UTF-8, case folded and normalized, and insignificant white space is
+     * removed. Names that match under the RFC 5280 name comparison rules
+     * have the same canonical form. The canonical form is computed once.
+     *
+     * @return the canonical form, or the hex encoding of the name if
+     *         the name cannot be converted.
+     */
+    public String getCanonicalName() {
+        String c = canonicalName;
+        if (c == null) {
+            byte[] encoded = null;
+            try {
+                encoded = getEncodedInternal();
+                c = new X500Principal(encoded).getName(X500Principal.CANONICAL);
+            } catch (IOException | IllegalArgumentException e) {
+                // only match the same encoding
+                c = "#" + (encoded == null ? "" : HexFormat.of().formatHex(encoded));
+            }
+            canonicalName = c;
+        }
+        return c;
+    }
+
+    /**
+     * Compares the canonical forms of two names, e.g., to match the
+     * issuer name of a certificate with the subject name of a CA
+     * certificate.
+     *
+     * @return true if the names match.
+     */
+    public boolean matches(X500Name other) {
+        if (other == null)
+            return false;
+        return equals(other) || getCanonicalName().equals(other.getCanonicalName());
     }
 
     /**
@@ -520,6 +578,11 @@ public class X500Name implements Principal, GeneralNameInterface {
     private String dn; // RFC 1779 style DN, or null
     private RDN[] names; // RDNs
 
+    // memoized DER encoding, canonical form and hash code
+    private transient volatile byte[] encoded;
+    private transient volatile String canonicalName;
+    private transient int hash;
+
     /**
      * Find the first instance of this attribute in a "top down"
      * search of all the attributes in the name.
@@ -591,21 +654,7 @@ public class X500Name implements Principal, GeneralNameInterface {
      */
     @Override
     public void encode(DerOutputStream out) throws IOException {
-        DerOutputStream tmp = new DerOutputStream();
-        int i;
-
-        int len = 0;
-        if (names == null) {
-            len = 0;
-        } else {
-            len = names.length;
-
-        }
-
-        for (i = 0; i < len; i++)
-            names[i].encode(tmp);
-
-        out.write(DerValue.tag_Sequence, tmp);
+        out.write(getEncodedInternal());
     }
 
     /**
@@ -615,6 +664,22 @@ public class X500Name implements Principal, GeneralNameInterface {
      *         null if no names are present.
      */
     public byte[] getEncoded() throws IOException {
+        return getEncodedInternal().clone();
+    }
+
+    /**
+     * Returns the memoized encoding, which must not be modified.
+     */
+    private byte[] getEncodedInternal() throws IOException {
+        byte[] e = encoded;
+        if (e == null) {
+            e = encodeNames();
+            encoded = e;
+        }
+        return e;
+    }
+
+    private byte[] encodeNames() throws IOException {
         try (DerOutputStream out = new DerOutputStream()) {
             DerOutputStream tmp = new DerOutputStream();
 
@@ -107,6 +107,7 @@ public class X509CRLImpl extends X509CRL {
     private Date thisUpdate = null;
     private Date nextUpdate = null;
     private Hashtable<BigInteger, RevokedCertificate> revokedCerts = new Hashtable<>();
+    private RevokedCertificateIndex revokedIndex = null; // compact entries
     private CRLExtensions extensions = null;
     private boolean entriesIncluded = true;
     private static final boolean IS_EXPLICIT = true;
@@ -138,11 +139,30 @@ public class X509CRLImpl extends X509CRL {
 
     public X509CRLImpl(byte[] crlData, boolean includeEntries)
             throws CRLException, X509ExtensionException {
+        this(crlData, includeEntries, false);
+    }
+
+    /**
+     * Unmarshals an X.509 CRL from its encoded form.
+     *
+     * If compactEntries is true, the revoked certificates are kept in a
+     * {@link RevokedCertificateIndex} instead of a RevokedCertImpl per
+     * entry, and the entries are only parsed when they are requested.
+     * This uses much less memory for large CRLs.
+     *
+     * @param crlData the encoded bytes, with no trailing padding.
+     * @param includeEntries false to skip the revoked certificates.
+     * @param compactEntries true to index the revoked certificates.
+     * @exception CRLException on parsing errors.
+     * @exception X509ExtensionException on extension handling errors.
+     */
+    public X509CRLImpl(byte[] crlData, boolean includeEntries, boolean compactEntries)
+            throws CRLException, X509ExtensionException {
         try {
             entriesIncluded = includeEntries;
             DerValue in = new DerValue(crlData);
 
-            parse(in, includeEntries);
+            parse(in, includeEntries, compactEntries);
             signedCRL = crlData;
         } catch (IOException e) {
             throw new CRLException("Parsing error: " + e.getMessage(), e);
@@ -347,7 +367,10 @@ public class X509CRLImpl extends X509CRL {
             if (nextUpdate != null)
                 tmp.putUTCTime(nextUpdate);
 
-            if (!revokedCerts.isEmpty()) {
+            if (revokedIndex != null) {
+                if (revokedIndex.size() > 0)
+                    revokedIndex.encode(tmp);
+            } else if (!revokedCerts.isEmpty()) {
                 for (Enumeration<RevokedCertificate> e = revokedCerts.elements(); e.hasMoreElements();)
                     ((RevokedCertImpl) e.nextElement()).encode(rCerts);
                 tmp.write(DerValue.tag_Sequence, rCerts);
@@ -541,12 +564,13 @@ public class X509CRLImpl extends X509CRL {
                 + "\n");
         if (nextUpdate != null)
             sb.append("Next Update: " + nextUpdate + "\n");
-        if (revokedCerts.isEmpty())
+        Set<RevokedCertificate> entries = getRevokedCertificates();
+        if (entries == null)
             sb.append("\nNO certificates have been revoked\n");
         else {
             sb.append("\nRevoked Certificates:\n");
-            for (Enumeration<RevokedCertificate> e = revokedCerts.elements(); e.hasMoreElements();)
-                sb.append(e.nextElement());
+            for (RevokedCertificate entry : entries)
+                sb.append(entry);
         }
         if (extensions != null) {
             for (int i = 0; i < extensions.size(); i++) {
@@ -569,6 +593,8 @@ public class X509CRLImpl extends X509CRL {
      *         false otherwise.
      */
     public boolean isRevoked(BigInteger serialNumber) {
+        if (revokedIndex != null)
+            return revokedIndex.contains(serialNumber);
         if (revokedCerts == null || revokedCerts.isEmpty())
             return false;
         return revokedCerts.containsKey(serialNumber);
@@ -671,11 +697,26 @@ public class X509CRLImpl extends X509CRL {
      */
     @Override
     public X509CRLEntry getRevokedCertificate(BigInteger serialNumber) {
+        if (revokedIndex != null) {
+            int index = revokedIndex.indexOf(serialNumber);
+            return index < 0 ? null : getIndexedEntry(index);
+        }
         if (revokedCerts == null || revokedCerts.isEmpty())
             return null;
         return revokedCerts.get(serialNumber);
     }
 
+    /**
+     * Parses an entry of the compact index.
+     */
+    private RevokedCertificate getIndexedEntry(int index) {
+        try {
+            return revokedIndex.getRevokedCertificate(index);
+        } catch (CRLException | X509ExtensionException e) {
+            throw new RuntimeException("Unable to parse revoked certificate: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Gets all the revoked certificates from the CRL.
      * A Set of RevokedCertificate.
@@ -686,6 +727,14 @@ public class X509CRLImpl extends X509CRL {
      */
     @Override
     public Set<RevokedCertificate> getRevokedCertificates() {
+        if (revokedIndex != null) {
+            if (revokedIndex.size() == 0)
+                return null;
+            Set<RevokedCertificate> certSet = new LinkedHashSet<>();
+            for (int i = 0; i < revokedIndex.size(); i++)
+                certSet.add(getIndexedEntry(i));
+            return certSet;
+        }
         if (revokedCerts == null || revokedCerts.isEmpty())
             return null;
         Set<RevokedCertificate> certSet = new LinkedHashSet<>(revokedCerts.values());
@@ -694,13 +743,29 @@ public class X509CRLImpl extends X509CRL {
 
     @SuppressWarnings("unchecked")
     public Hashtable<BigInteger, RevokedCertificate> getListOfRevokedCertificates() {
+        if (revokedIndex != null) {
+            Hashtable<BigInteger, RevokedCertificate> list = new Hashtable<>();
+            for (int i = 0; i < revokedIndex.size(); i++)
+                list.put(revokedIndex.getSerialNumber(i), getIndexedEntry(i));
+            return list;
+        }
         return revokedCerts == null ? null : (Hashtable<BigInteger, RevokedCertificate>) revokedCerts.clone();
     }
 
     public int getNumberOfRevokedCertificates() {
+        if (revokedIndex != null)
+            return revokedIndex.size();
         return revokedCerts == null ? -1 : revokedCerts.size();
     }
 
+    /**
+     * Returns the compact index of the revoked certificates, or null
+     * if the CRL was not parsed with compact entries.
+     */
+    public RevokedCertificateIndex getRevokedCertificateIndex() {
+        return revokedIndex;
+    }
+
     /**
      * Gets the DER encoded CRL information, the <code>tbsCertList</code> from this CRL.
      * This can be used to verify the signature independently.
@@ -965,10 +1030,10 @@ public class X509CRLImpl extends X509CRL {
      */
     private void parse(DerValue val)
             throws CRLException, IOException, X509ExtensionException {
-        parse(val, true);
+        parse(val, true, false);
     }
 
-    private void parse(DerValue val, boolean includeEntries)
+    private void parse(DerValue val, boolean includeEntries, boolean compactEntries)
             throws CRLException, IOException, X509ExtensionException {
         // check if can over write the certificate
         if (readOnly)
@@ -1055,12 +1120,25 @@ public class X509CRLImpl extends X509CRL {
         // revokedCertificates (optional)
         nextByte = (byte) derStrm.peekByte();
         if ((nextByte == DerValue.tag_SequenceOf) && ((nextByte & 0x0c0) != 0x080)) {
-            if (includeEntries) {
-                logger.info("X509CRLImpl: Parsing revoked certificates:");
-                DerValue[] badCerts = derStrm.getSequence(4);
-                for (int i = 0; i < badCerts.length; i++) {
-                    RevokedCertImpl entry = new RevokedCertImpl(badCerts[i]);
-                    logger.info("X509CRLImpl: - 0x" + entry.getSerialNumber().toString(16));
+            if (includeEntries && compactEntries) {
+                logger.info("X509CRLImpl: Indexing revoked certificates");
+                // the revoked certificates are at the same position
+                // from the end of tbsCertList
+                int offset = tbsCertList.length - derStrm.available();
+                revokedIndex = new RevokedCertificateIndex(tbsCertList, offset);
+                if (revokedIndex.hasEntryExtensions() && (version == 0))
+                    throw new CRLException("Invalid encoding, extensions" +
+                            " not supported in CRL v1 entries.");
+                derStrm.skipSequence(4);
+            } else if (includeEntries) {
+                logger.info("X509CRLImpl: Parsing revoked certificates");
+                // decode the entries one at a time instead of
+                // building an array of all of them first
+                DerValue badCerts = derStrm.getDerValue();
+                if (badCerts.tag != DerValue.tag_Sequence)
+                    throw new CRLException("Invalid encoding for revokedCertificates");
+                while (badCerts.data.available() > 0) {
+                    RevokedCertImpl entry = new RevokedCertImpl(badCerts.data.getDerValue());
                     if (entry.hasExtensions() && (version == 0))
                         throw new CRLException("Invalid encoding, extensions" +
                                 " not supported in CRL v1 entries.");
@@ -1068,6 +1146,7 @@ public class X509CRLImpl extends X509CRL {
                     revokedCerts.put(entry.getSerialNumber(),
                                      entry);
                 }
+                logger.debug("X509CRLImpl: - " + revokedCerts.size() + " revoked certificates");
             } else {
                 logger.info("X509CRLImpl: Skipping revoked certificates");
                 derStrm.skipSequence(4);
@@ -0,0 +1,436 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.CRLException;
+import java.util.Date;
+
+import org.mozilla.jss.asn1.TimeCodec;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads an X.509 CRL from a buffer without materializing its entries.
+ *
+ * <p>The constructor parses the fields of the CRL except the revoked
+ * certificates. The entries are then decoded one at a time by
+ * {@link #readEntries}, which passes each of them to a handler, so a CRL
+ * of any size can be checked or indexed in constant memory. The CRL can
+ * be read from a byte array, a ByteBuffer or a memory-mapped file.
+ *
+ * <p>The signature can be verified in the same pass over the data by
+ * passing a Signature initialized for verification to readEntries().
+ */
+public class X509CRLReader {
+
+    public static Logger logger = LoggerFactory.getLogger(X509CRLReader.class);
+
+    // the TBS bytes are passed to the verifier in chunks of this size
+    private static final int VERIFY_CHUNK_SIZE = 64 * 1024;
+
+    private ByteBuffer buf;
+
+    private int tbsStart;
+    private int tbsEnd;
+    private int revokedStart = -1; // revokedCertificates SEQUENCE
+    private int entriesStart = -1; // contents of revokedCertificates
+    private int entriesEnd = -1;
+
+    private int version;
+    private AlgorithmId infoSigAlgId;
+    private X500Name issuer;
+    private Date thisUpdate;
+    private Date nextUpdate;
+    private CRLExtensions extensions;
+
+    private AlgorithmId sigAlgId;
+    private byte[] signature;
+
+    /**
+     * Handles the entries of a CRL.
+     */
+    public interface EntryHandler {
+
+        /**
+         * Handles an entry. The entry is only valid during the call.
+         */
+        void handle(Entry entry) throws CRLException;
+    }
+
+    public X509CRLReader(byte[] crl) throws CRLException {
+        this(ByteBuffer.wrap(crl));
+    }
+
+    /**
+     * Parses the fields of a CRL. The buffer is not copied, and must not
+     * be modified while the reader is in use.
+     *
+     * @param buffer The CRL, from the current position to the limit.
+     */
+    public X509CRLReader(ByteBuffer buffer) throws CRLException {
+
+        buf = buffer.slice();
+
+        try {
+            parse();
+        } catch (IOException | X509ExtensionException e) {
+            throw new CRLException("Parsing error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a CRL file. The file is memory-mapped, not read into memory.
+     */
+    public static X509CRLReader open(Path path) throws IOException, CRLException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("CRL too large: " + size + " bytes");
+            }
+            // the mapping remains valid after the channel is closed
+            return new X509CRLReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private void parse() throws CRLException, IOException, X509ExtensionException {
+
+        DerHeaderReader reader = new DerHeaderReader(buf, 0, buf.limit());
+
+        int end = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+        if (end != buf.limit()) {
+            throw new CRLException("signed overrun, bytes = " + (buf.limit() - end));
+        }
+
+        // find the fields of tbsCertList
+        tbsStart = reader.pos;
+        tbsEnd = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+        int fieldsStart = reader.pos;
+        reader.end = tbsEnd;
+
+        if (reader.peekTag() == DerValue.tag_Integer) {
+            reader.skipValue(); // version
+        }
+        reader.skipValue(); // signature
+        reader.skipValue(); // issuer
+        reader.skipValue(); // thisUpdate
+
+        if (reader.pos < tbsEnd) {
+            int tag = reader.peekTag();
+            if (tag == DerValue.tag_UtcTime || tag == DerValue.tag_GeneralizedTime) {
+                reader.skipValue(); // nextUpdate
+            }
+        }
+        int fieldsEnd = reader.pos;
+
+        if (reader.pos < tbsEnd && reader.peekTag() == DerValue.tag_Sequence) {
+            revokedStart = reader.pos;
+            int len = reader.readHeader(DerValue.tag_Sequence);
+            entriesStart = reader.pos;
+            entriesEnd = reader.pos + len;
+            reader.skip(len);
+        }
+
+        int extensionsStart = reader.pos;
+
+        // parse the fields with the existing classes
+        DerInputStream derStrm = new DerInputStream(copy(fieldsStart, fieldsEnd));
+
+        version = 0;
+        if (derStrm.peekByte() == DerValue.tag_Integer) {
+            version = derStrm.getInteger().toInt();
+            if (version != 1) // i.e. v2
+                throw new CRLException("Invalid version");
+        }
+        infoSigAlgId = AlgorithmId.parse(derStrm.getDerValue());
+        issuer = new X500Name(derStrm);
+        thisUpdate = getTime(derStrm, "thisUpdate");
+        if (derStrm.available() > 0) {
+            nextUpdate = getTime(derStrm, "nextUpdate");
+        }
+
+        if (extensionsStart < tbsEnd) {
+            DerValue tmp = new DerValue(copy(extensionsStart, tbsEnd));
+            if (tmp.isConstructed() && tmp.isContextSpecific((byte) 0)) {
+                if (version == 0)
+                    throw new CRLException("Invalid encoding, extensions not" +
+                            " supported in CRL v1.");
+                extensions = new CRLExtensions(tmp.data, true);
+            }
+        }
+
+        // signatureAlgorithm and signatureValue
+        derStrm = new DerInputStream(copy(tbsEnd, end));
+        sigAlgId = AlgorithmId.parse(derStrm.getDerValue());
+        signature = derStrm.getBitString();
+        if (derStrm.available() != 0)
+            throw new CRLException("Signature field overrun");
+
+        if (!infoSigAlgId.equals(sigAlgId))
+            throw new CRLException("Signature algorithm mismatch");
+    }
+
+    private static Date getTime(DerInputStream derStrm, String name)
+            throws CRLException, IOException {
+        byte tag = (byte) derStrm.peekByte();
+        if (tag == DerValue.tag_UtcTime) {
+            return derStrm.getUTCTime();
+        } else if (tag == DerValue.tag_GeneralizedTime) {
+            return derStrm.getGeneralizedTime();
+        }
+        throw new CRLException("Invalid encoding for " + name + " (tag=" + tag + ")");
+    }
+
+    private byte[] copy(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        return bytes;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public X500Name getIssuer() {
+        return issuer;
+    }
+
+    public Date getThisUpdate() {
+        return new Date(thisUpdate.getTime());
+    }
+
+    /**
+     * @return the nextUpdate date, or null if not present.
+     */
+    public Date getNextUpdate() {
+        return nextUpdate == null ? null : new Date(nextUpdate.getTime());
+    }
+
+    /**
+     * @return the CRL extensions, or null if not present.
+     */
+    public CRLExtensions getExtensions() {
+        return extensions;
+    }
+
+    public AlgorithmId getSigAlgId() {
+        return sigAlgId;
+    }
+
+    public String getSigAlgName() {
+        return sigAlgId.getName();
+    }
+
+    public byte[] getSignature() {
+        return signature.clone();
+    }
+
+    /**
+     * @return A read-only view of the DER encoded tbsCertList.
+     */
+    public ByteBuffer getTBSCertList() {
+        return buf.slice(tbsStart, tbsEnd - tbsStart).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return true if the CRL has a revokedCertificates field.
+     */
+    public boolean hasEntries() {
+        return entriesStart >= 0;
+    }
+
+    /**
+     * Builds an index of the revoked certificates. The index refers to
+     * the buffer of this reader.
+     *
+     * @return The index, or null if the CRL has no revokedCertificates.
+     */
+    public RevokedCertificateIndex createRevokedCertificateIndex() throws CRLException {
+
+        if (revokedStart < 0) {
+            return null;
+        }
+
+        try {
+            RevokedCertificateIndex index = new RevokedCertificateIndex(buf, revokedStart);
+            if (index.hasEntryExtensions() && version == 0)
+                throw new CRLException("Invalid encoding, extensions" +
+                        " not supported in CRL v1 entries.");
+            return index;
+
+        } catch (IOException e) {
+            throw new CRLException("Parsing error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes the entries one at a time and passes them to a handler.
+     */
+    public void readEntries(EntryHandler handler) throws CRLException {
+        readEntries(handler, null);
+    }
+
+    /**
+     * Decodes the entries one at a time and passes them to a handler,
+     * while passing the tbsCertList to a signature verifier. After this
+     * method returns the signature can be checked with
+     * <code>verifier.verify(reader.getSignature())</code>.
+     *
+     * @param handler The handler, or null to only verify the signature.
+     * @param verifier A Signature initialized for verification, or null.
+     */
+    public void readEntries(EntryHandler handler, Signature verifier) throws CRLException {
+
+        int verified = tbsStart;
+
+        try {
+            if (entriesStart >= 0) {
+                RevokedEntryReader reader = new RevokedEntryReader(buf, entriesStart, entriesEnd);
+                Entry entry = new Entry(reader);
+
+                while (reader.next()) {
+                    if (reader.hasExtensions && version == 0)
+                        throw new CRLException("Invalid encoding, extensions" +
+                                " not supported in CRL v1 entries.");
+
+                    if (handler != null) {
+                        handler.handle(entry);
+                    }
+
+                    if (verifier != null && reader.entryEnd - verified >= VERIFY_CHUNK_SIZE) {
+                        verifier.update(buf.slice(verified, reader.entryEnd - verified));
+                        verified = reader.entryEnd;
+                    }
+                }
+            }
+
+            if (verifier != null) {
+                verifier.update(buf.slice(verified, tbsEnd - verified));
+            }
+
+        } catch (IOException e) {
+            throw new CRLException("Parsing error: " + e.getMessage(), e);
+
+        } catch (SignatureException e) {
+            throw new CRLException("Unable to verify CRL: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verifies the signature of the CRL without decoding the entries.
+     *
+     * @param sigProvider the name of the signature provider, or null.
+     */
+    public void verify(PublicKey key, String sigProvider)
+            throws CRLException, NoSuchAlgorithmException, InvalidKeyException,
+            NoSuchProviderException, SignatureException {
+
+        Signature verifier = sigProvider == null
+                ? Signature.getInstance(sigAlgId.getName())
+                : Signature.getInstance(sigAlgId.getName(), sigProvider);
+        verifier.initVerify(key);
+
+        readEntries(null, verifier);
+
+        if (!verifier.verify(signature)) {
+            throw new CRLException("Signature does not match.");
+        }
+    }
+
+    /**
+     * A revoked certificate entry. The serial number and the full entry
+     * are only created when requested.
+     */
+    public static class Entry {
+
+        private RevokedEntryReader reader;
+
+        Entry(RevokedEntryReader reader) {
+            this.reader = reader;
+        }
+
+        public BigInteger getSerialNumber() {
+            return new BigInteger(reader.getSerialBytes());
+        }
+
+        /**
+         * @return The serial number in two's complement form without
+         *         redundant leading bytes, as returned by
+         *         BigInteger.toByteArray().
+         */
+        public byte[] getSerialNumberBytes() {
+            return reader.getSerialBytes();
+        }
+
+        /**
+         * @return The revocation date in seconds since the epoch.
+         */
+        public long getRevocationEpochSecond() {
+            return reader.revocationDate;
+        }
+
+        public Date getRevocationDate() {
+            return TimeCodec.toDate(reader.revocationDate);
+        }
+
+        /**
+         * @return The reason code, or null if the entry has none.
+         */
+        public RevocationReason getRevocationReason() {
+            return reader.reasonCode < 0 ? null : RevocationReason.valueOf(reader.reasonCode);
+        }
+
+        public boolean hasExtensions() {
+            return reader.hasExtensions;
+        }
+
+        /**
+         * @return A read-only view of the DER encoded entry.
+         */
+        public ByteBuffer getEncoded() {
+            return reader.buf.slice(reader.entryStart, reader.entryEnd - reader.entryStart)
+                    .asReadOnlyBuffer();
+        }
+
+        /**
+         * Parses the full entry, including its extensions.
+         */
+        public RevokedCertificate getRevokedCertificate() throws CRLException {
+            byte[] bytes = new byte[reader.entryEnd - reader.entryStart];
+            reader.buf.get(reader.entryStart, bytes);
+            try {
+                return new RevokedCertImpl(new DerValue(bytes));
+            } catch (IOException | X509ExtensionException e) {
+                throw new CRLException("Unable to parse revoked certificate: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.CRLException;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates and signs an X.509 CRL without holding the revoked
+ * certificates in memory.
+ *
+ * <p>The entries are encoded as they are added and written to a spool
+ * file. When the CRL is signed, the tbsCertList is passed to the
+ * signature engine and the signed CRL is written to an output stream,
+ * both directly from the spool file, so the memory used does not depend
+ * on the number of entries.
+ *
+ * <p>The spool file is deleted when the writer is closed.
+ *
+ * <pre>
+ * try (X509CRLWriter writer = new X509CRLWriter(issuer, thisUpdate, nextUpdate)) {
+ *     writer.setExtensions(extensions);
+ *     writer.addEntries(entries);
+ *     writer.sign(privateKey, "SHA256withRSA", out);
+ * }
+ * </pre>
+ */
+public class X509CRLWriter implements AutoCloseable {
+
+    public static Logger logger = LoggerFactory.getLogger(X509CRLWriter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private X500Name issuer;
+    private Date thisUpdate;
+    private Date nextUpdate;
+    private CRLExtensions extensions;
+
+    private Path spoolFile;
+    private OutputStream spool;
+    private DerOutputStream entryOut = new DerOutputStream();
+
+    private long entriesLength;
+    private int entryCount;
+    private boolean entryExtensions;
+    private boolean signed;
+
+    private AlgorithmId sigAlgId;
+    private byte[] signature;
+
+    /**
+     * Creates a writer with a spool file in the default temporary
+     * directory.
+     *
+     * @param issuer the name of the CA issuing this CRL.
+     * @param thisUpdate the Date of this issue.
+     * @param nextUpdate the Date of the next CRL, or null.
+     */
+    public X509CRLWriter(X500Name issuer, Date thisUpdate, Date nextUpdate) throws IOException {
+        this(issuer, thisUpdate, nextUpdate, null);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param issuer the name of the CA issuing this CRL.
+     * @param thisUpdate the Date of this issue.
+     * @param nextUpdate the Date of the next CRL, or null.
+     * @param spoolDir the directory of the spool file, or null for
+     *            the default temporary directory.
+     */
+    public X509CRLWriter(X500Name issuer, Date thisUpdate, Date nextUpdate, Path spoolDir)
+            throws IOException {
+
+        this.issuer = issuer;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+
+        spoolFile = spoolDir == null
+                ? Files.createTempFile("crl", ".tmp")
+                : Files.createTempFile(spoolDir, "crl", ".tmp");
+        spool = new BufferedOutputStream(Files.newOutputStream(spoolFile), BUFFER_SIZE);
+    }
+
+    public void setExtensions(CRLExtensions extensions) {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Adds a revoked certificate. The entry is encoded immediately and
+     * is not referenced by the writer.
+     */
+    public void addEntry(RevokedCertificate entry)
+            throws CRLException, X509ExtensionException, IOException {
+
+        if (signed)
+            throw new CRLException("CRL already signed");
+
+        entryOut.reset();
+        ((RevokedCertImpl) entry).encode(entryOut);
+        entryOut.writeTo(spool);
+
+        entriesLength += entryOut.size();
+        entryCount++;
+
+        if (entry.hasExtensions())
+            entryExtensions = true;
+    }
+
+    /**
+     * Adds the revoked certificates returned by an iterator, e.g., from
+     * a database query, in the order they are returned.
+     */
+    public void addEntries(Iterator<? extends RevokedCertificate> entries)
+            throws CRLException, X509ExtensionException, IOException {
+        while (entries.hasNext()) {
+            addEntry(entries.next());
+        }
+    }
+
+    /**
+     * @return the number of revoked certificates added so far.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Signs the CRL and writes it to the output stream.
+     *
+     * @param key the private key used for signing.
+     * @param algorithm the name of the signature algorithm used.
+     * @param out the stream to write the signed CRL to.
+     */
+    public void sign(PrivateKey key, String algorithm, OutputStream out)
+            throws CRLException, IOException, NoSuchAlgorithmException, InvalidKeyException,
+            NoSuchProviderException, SignatureException, X509ExtensionException {
+        sign(key, algorithm, null, out);
+    }
+
+    /**
+     * Signs the CRL and writes it to the output stream.
+     *
+     * @param key the private key used for signing.
+     * @param algorithm the name of the signature algorithm used.
+     * @param provider the name of the provider, or null.
+     * @param out the stream to write the signed CRL to.
+     */
+    public void sign(PrivateKey key, String algorithm, String provider, OutputStream out)
+            throws CRLException, IOException, NoSuchAlgorithmException, InvalidKeyException,
+            NoSuchProviderException, SignatureException, X509ExtensionException {
+
+        if (signed)
+            throw new CRLException("CRL already signed");
+
+        spool.close();
+        signed = true;
+
+        Signature sigEngine = null;
+        if (provider == null)
+            sigEngine = Signature.getInstance(algorithm);
+        else
+            sigEngine = Signature.getInstance(algorithm, provider);
+
+        sigEngine.initSign(key);
+
+        // in case the name is reset
+        sigAlgId = AlgorithmId.get(sigEngine.getAlgorithm());
+
+        // tbsCertList fields before the revoked certificates,
+        // including the header of the revokedCertificates SEQUENCE
+        DerOutputStream head = new DerOutputStream();
+        if (extensions != null || entryExtensions) // v2 crl encode version
+            head.putInteger(new BigInt(1));
+        sigAlgId.encode(head);
+        issuer.encode(head);
+
+        // from 2050 should encode GeneralizedTime
+        head.putUTCTime(thisUpdate);
+
+        if (nextUpdate != null)
+            head.putUTCTime(nextUpdate);
+
+        if (entryCount > 0) {
+            head.write(DerValue.tag_Sequence);
+            head.putLength(checkLength(entriesLength));
+        }
+
+        // tbsCertList fields after the revoked certificates
+        DerOutputStream tail = new DerOutputStream();
+        if (extensions != null)
+            extensions.encode(tail, true);
+
+        long tbsLength = head.size() + entriesLength + tail.size();
+        DerOutputStream tbsHeader = new DerOutputStream();
+        tbsHeader.write(DerValue.tag_Sequence);
+        tbsHeader.putLength(checkLength(tbsLength));
+
+        // sign tbsCertList
+        sigEngine.update(tbsHeader.toByteArray());
+        sigEngine.update(head.toByteArray());
+        try (InputStream in = Files.newInputStream(spoolFile)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sigEngine.update(buf, 0, n);
+            }
+        }
+        sigEngine.update(tail.toByteArray());
+        signature = sigEngine.sign();
+
+        // signatureAlgorithm and signatureValue
+        DerOutputStream sigOut = new DerOutputStream();
+        sigAlgId.encode(sigOut);
+        sigOut.putBitString(signature);
+
+        long crlLength = tbsHeader.size() + tbsLength + sigOut.size();
+        DerOutputStream crlHeader = new DerOutputStream();
+        crlHeader.write(DerValue.tag_Sequence);
+        crlHeader.putLength(checkLength(crlLength));
+
+        // write the signed CRL
+        crlHeader.writeTo(out);
+        tbsHeader.writeTo(out);
+        head.writeTo(out);
+        Files.copy(spoolFile, out);
+        tail.writeTo(out);
+        sigOut.writeTo(out);
+        out.flush();
+
+        logger.info("X509CRLWriter: Signed CRL with " + entryCount + " revoked certificates");
+    }
+
+    private static int checkLength(long length) throws CRLException {
+        if (length > Integer.MAX_VALUE)
+            throw new CRLException("CRL too large: " + length + " bytes");
+        return (int) length;
+    }
+
+    /**
+     * @return the signature algorithm, or null if the CRL is not signed.
+     */
+    public AlgorithmId getSigAlgId() {
+        return sigAlgId;
+    }
+
+    /**
+     * @return the signature, or null if the CRL is not signed.
+     */
+    public byte[] getSignature() {
+        return signature == null ? null : signature.clone();
+    }
+
+    /**
+     * Deletes the spool file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            spool.close();
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded cache of parsed certificates keyed by the SHA-256
+ * digest of their encoding.
+ *
+ * <p>CA and intermediate certificates appear in most certificate chains,
+ * so the same encodings are parsed over and over. The cache returns a
+ * shared {@link X509CertImpl} for an encoding that has been parsed
+ * before. The certificates are held by soft references, so they can be
+ * reclaimed when memory is low, and the least recently used certificates
+ * are removed when the cache is full.
+ *
+ * <p>The cached certificates are shared, so they are read-only: the
+ * X509CertInfo returned by {@link X509CertImpl#getInfo()} and its
+ * extensions throw an exception on set() and delete(). A certificate
+ * can be modified by creating a new X509CertInfo from
+ * {@link X509CertInfo#getEncodedInfo()}.
+ *
+ * <p>The shared instance is used by the X509CertificateFactory provider
+ * and by PK11Cert. It can be disabled with:
+ *
+ * <pre>
+ * X509CertCache.getInstance().setMaxSize(0);
+ * </pre>
+ */
+public final class X509CertCache {
+
+    public static Logger logger = LoggerFactory.getLogger(X509CertCache.class);
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final X509CertCache instance = new X509CertCache(DEFAULT_MAX_SIZE);
+
+    private int maxSize;
+
+    private final Map<ByteBuffer, SoftReference<X509CertImpl>> certs =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, SoftReference<X509CertImpl>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+
+    /**
+     * @return The shared cache.
+     */
+    public static X509CertCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param maxSize The maximum number of certificates in the cache,
+     *            0 to disable the cache.
+     */
+    public X509CertCache(int maxSize) {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid size: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize The maximum number of certificates in the cache,
+     *            0 to disable the cache.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid size: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+
+        // remove the least recently used certificates
+        Iterator<ByteBuffer> i = certs.keySet().iterator();
+        while (certs.size() > maxSize && i.hasNext()) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    /**
+     * Returns the parsed certificate for an encoding, parsing it if it
+     * is not in the cache.
+     *
+     * @param der The encoded certificate. The array is not modified.
+     * @return The parsed certificate, shared and read-only if the cache
+     *         is enabled.
+     * @exception CertificateException on parsing errors.
+     */
+    public X509CertImpl get(byte[] der) throws CertificateException {
+
+        if (getMaxSize() == 0) {
+            return new X509CertImpl(der);
+        }
+
+        ByteBuffer key;
+        try {
+            key = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(der));
+        } catch (NoSuchAlgorithmException e) {
+            throw new CertificateException("Unable to compute certificate digest: " + e.getMessage(), e);
+        }
+
+        X509CertImpl cert;
+        synchronized (this) {
+            SoftReference<X509CertImpl> ref = certs.get(key);
+            cert = ref == null ? null : ref.get();
+        }
+
+        if (cert != null && cert.getEncodedBuffer().equals(ByteBuffer.wrap(der))) {
+            return cert;
+        }
+
+        // parse a copy, since the certificate keeps the array
+        cert = new X509CertImpl(der.clone());
+        cert.getInfo().setReadOnly();
+
+        synchronized (this) {
+            certs.put(key, new SoftReference<>(cert));
+        }
+
+        return cert;
+    }
+
+    /**
+     * @return The number of certificates in the cache, including those
+     *         reclaimed by the garbage collector.
+     */
+    public synchronized int size() {
+        return certs.size();
+    }
+
+    public synchronized void clear() {
+        certs.clear();
+    }
+}
@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -137,6 +138,13 @@ public class X509CertImpl extends X509Certificate
 
     // Certificate data, and its envelope
     private byte[] signedCert;
+
+    // location of tbsCertificate and subjectPublicKeyInfo in signedCert,
+    // -1 if unknown
+    private transient int tbsOffset = -1;
+    private transient int tbsLength;
+    private transient int spkiOffset = -1;
+    private transient int spkiLength;
     protected X509CertInfo info = null;
     protected AlgorithmId algId;
     protected byte[] signature;
@@ -168,6 +176,30 @@ public class X509CertImpl extends X509Certificate
         this(certData, null);
     }
 
+    /**
+     * Unmarshals a certificate from its encoded form. In lazy mode only
+     * the outer structure of the certificate is decoded by the
+     * constructor, and each attribute of the {@link X509CertInfo} is
+     * decoded when it is first accessed. This is useful when only a few
+     * fields of many certificates are used, e.g., the serial number and
+     * the validity.
+     *
+     * @param certData the encoded bytes, with no trailing padding.
+     * @param lazy if true, decode the certificate info lazily.
+     * @exception CertificateException on parsing and initialization errors.
+     */
+    public X509CertImpl(byte[] certData, boolean lazy)
+            throws CertificateException {
+        try {
+            DerValue in = new DerValue(certData);
+
+            parse(in, lazy);
+            setSignedCert(certData);
+        } catch (IOException e) {
+            throw new CertificateException(UNABLE_TO_PARSE_CERTIFICATE_DATA + e.getMessage(), e);
+        }
+    }
+
     /**
      * As a special optimization, this constructor acts as X509CertImpl(byte[])
      * except that it takes an X509CertInfo which it uses as a 'hint' for
@@ -189,7 +221,7 @@ public class X509CertImpl extends X509Certificate
             DerValue in = new DerValue(certData);
 
             parse(in);
-            signedCert = certData;
+            setSignedCert(certData);
         } catch (IOException e) {
             throw new CertificateException(UNABLE_TO_PARSE_CERTIFICATE_DATA + e.getMessage(), e);
         }
@@ -207,7 +239,7 @@ public class X509CertImpl extends X509Certificate
             DerValue val = new DerValue(in);
 
             parse(val);
-            signedCert = val.toByteArray();
+            setSignedCert(val.toByteArray());
         } catch (IOException e) {
             throw new CertificateException(UNABLE_TO_PARSE_CERTIFICATE_DATA + e.getMessage(), e);
         }
@@ -236,7 +268,7 @@ public class X509CertImpl extends X509Certificate
             throws CertificateException {
         try {
             parse(derVal);
-            signedCert = derVal.toByteArray();
+            setSignedCert(derVal.toByteArray());
         } catch (IOException e) {
             throw new CertificateException(UNABLE_TO_PARSE_CERTIFICATE_DATA + e.getMessage(), e);
         }
@@ -260,7 +292,7 @@ public class X509CertImpl extends X509Certificate
         DerValue val = new DerValue(in);
 
         parse(val);
-        signedCert = val.toByteArray();
+        setSignedCert(val.toByteArray());
     }
 
     /**
@@ -368,8 +400,13 @@ public class X509CertImpl extends X509Certificate
         sigVerf = Signature.getInstance(algId.getName(), sigProvider);
         sigVerf.initVerify(key);
 
-        byte[] rawCert = info.getEncodedInfo();
-        sigVerf.update(rawCert, 0, rawCert.length);
+        if (tbsOffset >= 0) {
+            // verify the original encoding without copying it
+            sigVerf.update(signedCert, tbsOffset, tbsLength);
+        } else {
+            byte[] rawCert = info.getEncodedInfo();
+            sigVerf.update(rawCert, 0, rawCert.length);
+        }
 
         if (!sigVerf.verify(signature)) {
             throw new SignatureException("Signature does not match");
@@ -449,7 +486,7 @@ public class X509CertImpl extends X509Certificate
 
             // Wrap the signed data in a SEQUENCE { data, algorithm, sig } // NOSONAR
             out.write(DerValue.tag_Sequence, tmp);
-            signedCert = out.toByteArray();
+            setSignedCert(out.toByteArray());
             readOnly = true;
 
         } catch (IOException e) {
@@ -569,10 +606,10 @@ public class X509CertImpl extends X509Certificate
                                     + " be of type X509CertInfo.");
                 }
                 info = (X509CertInfo) obj;
-                signedCert = null; //reset this as certificate data has changed
+                setSignedCert(null); //reset this as certificate data has changed
             } else {
                 info.set(attr.getSuffix(), obj);
-                signedCert = null; //reset this as certificate data has changed
+                setSignedCert(null); //reset this as certificate data has changed
             }
         } else {
             throw new CertificateException("Attribute name not recognized or " +
@@ -614,7 +651,7 @@ public class X509CertImpl extends X509Certificate
         } else if (id.equalsIgnoreCase(SIGNATURE)) {
             signature = null;
         } else if (id.equalsIgnoreCase(SIGNED_CERT)) {
-            signedCert = null;
+            setSignedCert(null);
         } else {
             throw new CertificateException("Attribute name not recognized or " +
                               "delete() not allowed for the same: " + id);
@@ -830,11 +867,66 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public byte[] getTBSCertificate() throws CertificateEncodingException {
+        if (tbsOffset >= 0)
+            return Arrays.copyOfRange(signedCert, tbsOffset, tbsOffset + tbsLength);
         if (info == null)
             throw new CertificateEncodingException("Uninitialized certificate");
         return info.getEncodedInfo();
     }
 
+    /**
+     * Returns a read-only view of the encoded form of this certificate,
+     * without copying it.
+     *
+     * @exception CertificateEncodingException if the certificate is not
+     *                encoded.
+     */
+    public ByteBuffer getEncodedBuffer() throws CertificateEncodingException {
+        if (signedCert == null)
+            throw new CertificateEncodingException(
+                          MISSING_CERTIFICATE_TO_ENCODE);
+        return ByteBuffer.wrap(signedCert).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the DER encoded <code>tbsCertificate</code>
+     * in the encoded form of this certificate, without copying it.
+     *
+     * @exception CertificateEncodingException if the certificate is not
+     *                encoded.
+     */
+    public ByteBuffer getTBSCertificateBuffer() throws CertificateEncodingException {
+        if (tbsOffset < 0)
+            return ByteBuffer.wrap(getTBSCertificate()).asReadOnlyBuffer();
+        return ByteBuffer.wrap(signedCert, tbsOffset, tbsLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the DER encoded
+     * <code>subjectPublicKeyInfo</code> in the encoded form of this
+     * certificate, without copying it.
+     *
+     * @return the subjectPublicKeyInfo, or null if the certificate is not
+     *         encoded.
+     */
+    public ByteBuffer getSubjectPublicKeyInfoBuffer() {
+        if (spkiOffset < 0)
+            return null;
+        return ByteBuffer.wrap(signedCert, spkiOffset, spkiLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the raw Signature bits, without
+     * copying them.
+     *
+     * @return the signature, or null if the certificate is not signed.
+     */
+    public ByteBuffer getSignatureBuffer() {
+        if (signature == null)
+            return null;
+        return ByteBuffer.wrap(signature).asReadOnlyBuffer();
+    }
+
     /**
      * Gets the raw Signature bits from the certificate.
      *
@@ -950,9 +1042,7 @@ public class X509CertImpl extends X509Certificate
             if (exts == null)
                 return null;
             Set<String> extSet = new LinkedHashSet<>();
-            Extension ex;
-            for (Enumeration<Extension> e = exts.getAttributes(); e.hasMoreElements();) {
-                ex = e.nextElement();
+            for (Extension ex : exts.getRawAttributes()) {
                 if (ex.isCritical())
                     extSet.add(ex.getExtensionId().toString());
             }
@@ -980,9 +1070,7 @@ public class X509CertImpl extends X509Certificate
                 return null;
 
             Set<String> extSet = new LinkedHashSet<>();
-            Extension ex;
-            for (Enumeration<Extension> e = exts.getAttributes(); e.hasMoreElements();) {
-                ex = e.nextElement();
+            for (Extension ex : exts.getRawAttributes()) {
                 if (!ex.isCritical())
                     extSet.add(ex.getExtensionId().toString());
             }
@@ -998,16 +1086,7 @@ public class X509CertImpl extends X509Certificate
                                          CertificateExtensions.NAME);
             if (exts == null)
                 return null;
-            ObjectIdentifier findOID = new ObjectIdentifier(oid);
-            Extension ex = null;
-            ObjectIdentifier inCertOID;
-            for (Enumeration<Extension> e = exts.getAttributes(); e.hasMoreElements();) {
-                ex = e.nextElement();
-                inCertOID = ex.getExtensionId();
-                if (inCertOID.equals(findOID)) {
-                    return ex;
-                }
-            }
+            return exts.getExtension(new ObjectIdentifier(oid));
         } catch (Exception e) {
         }
         return null;
@@ -1032,17 +1111,7 @@ public class X509CertImpl extends X509Certificate
                 if (exts == null)
                     return null;
 
-                ObjectIdentifier findOID = new ObjectIdentifier(oid);
-                Extension ex = null;
-                ObjectIdentifier inCertOID;
-                for (Enumeration<Extension> e = exts.getAttributes(); e.hasMoreElements();) {
-                    ex = e.nextElement();
-                    inCertOID = ex.getExtensionId();
-                    if (inCertOID.equals(findOID)) {
-                        certExt = ex;
-                        break;
-                    }
-                }
+                certExt = exts.getExtension(new ObjectIdentifier(oid));
             } else { // there's sub-class that can handle this extension
                 certExt = (Extension) this.get(extAlias);
             }
@@ -1143,6 +1212,10 @@ public class X509CertImpl extends X509Certificate
      * parts away for later verification.
      */
     private void parse(DerValue val) throws CertificateException, IOException {
+        parse(val, false);
+    }
+
+    private void parse(DerValue val, boolean lazy) throws CertificateException, IOException {
         // check if can over write the certificate
         if (readOnly)
             throw new CertificateParsingException(CANNOT_OVERWRITE_EXISTING_CERTIFICATE);
@@ -1173,7 +1246,51 @@ public class X509CertImpl extends X509Certificate
 
         // The CertificateInfo
         if (info == null) {
-            info = new X509CertInfo(seq[0]);
+            info = new X509CertInfo(seq[0], lazy);
+        }
+    }
+
+    /**
+     * Sets the encoded certificate and finds the location of
+     * tbsCertificate and subjectPublicKeyInfo in it.
+     */
+    private void setSignedCert(byte[] cert) {
+
+        signedCert = cert;
+        tbsOffset = -1;
+        spkiOffset = -1;
+
+        if (cert == null) {
+            return;
+        }
+
+        try {
+            DerHeaderReader reader = new DerHeaderReader(ByteBuffer.wrap(cert), 0, cert.length);
+            reader.end = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+
+            int start = reader.pos;
+            int end = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+            reader.end = end;
+
+            // version, serialNumber, signature, issuer, validity, subject
+            if (reader.peekTag() == (byte) 0xa0) {
+                reader.skipValue();
+            }
+            for (int i = 0; i < 5; i++) {
+                reader.skipValue();
+            }
+
+            int spkiStart = reader.pos;
+            reader.skipValue();
+
+            spkiOffset = spkiStart;
+            spkiLength = reader.pos - spkiStart;
+            tbsOffset = start;
+            tbsLength = end - start;
+
+        } catch (IOException e) {
+            // not DER, use the parsed fields
+            logger.debug("X509CertImpl: Unable to locate tbsCertificate: " + e.getMessage());
         }
     }
 
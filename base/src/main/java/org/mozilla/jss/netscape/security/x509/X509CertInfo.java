@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateParsingException;
@@ -119,9 +120,20 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     private static final int ATTR_SUBJECT_ID = 9;
     private static final int ATTR_EXTENSIONS = 10;
 
+    private static final String READ_ONLY = "Certificate info is read-only";
+
     // DER encoded CertificateInfo data
     private byte[] rawCertInfo = null;
 
+    // For lazy parsing, the location in rawCertInfo of each attribute,
+    // indexed by attribute number, and the attributes not decoded yet
+    private transient int[] attrStarts;
+    private transient int[] attrEnds;
+    private transient volatile int pending;
+
+    // true if the info is shared, e.g., by the X509CertCache
+    private transient volatile boolean readOnly;
+
     // The certificate attribute name to integer mapping stored here
     private static final Hashtable<String, Integer> map = new Hashtable<>();
     static {
@@ -166,6 +178,26 @@ public class X509CertInfo implements CertAttrSet, Serializable {
         }
     }
 
+    /**
+     * Unmarshals a certificate from its encoded form.
+     *
+     * @param cert the encoded bytes, with no trailing data.
+     * @param lazy if true, the attributes are decoded when they are
+     *            first accessed.
+     * @exception CertificateParsingException on parsing errors.
+     */
+    public X509CertInfo(byte[] cert, boolean lazy) throws CertificateParsingException {
+        this(toDerValue(cert), lazy);
+    }
+
+    private static DerValue toDerValue(byte[] cert) throws CertificateParsingException {
+        try {
+            return new DerValue(cert);
+        } catch (IOException e) {
+            throw new CertificateParsingException(e);
+        }
+    }
+
     /**
      * Unmarshal a certificate from its encoded form, parsing a DER value.
      * This form of constructor is used by agents which need to examine
@@ -175,8 +207,29 @@ public class X509CertInfo implements CertAttrSet, Serializable {
      * @exception CertificateParsingException on parsing errors.
      */
     public X509CertInfo(DerValue derVal) throws CertificateParsingException {
+        this(derVal, false);
+    }
+
+    /**
+     * Unmarshal a certificate from its encoded form, parsing a DER value.
+     *
+     * <p>In lazy mode only the version is decoded and the location of the
+     * other attributes is recorded. Each attribute is decoded when it is
+     * first accessed, so decoding errors in an attribute are reported by
+     * <code>get()</code> instead of the constructor.
+     *
+     * @param derVal the der value containing the encoded cert.
+     * @param lazy if true, the attributes are decoded when they are
+     *            first accessed.
+     * @exception CertificateParsingException on parsing errors.
+     */
+    public X509CertInfo(DerValue derVal, boolean lazy) throws CertificateParsingException {
         try {
-            parse(derVal);
+            if (lazy) {
+                parseLazily(derVal);
+            } else {
+                parse(derVal);
+            }
         } catch (IOException e) {
             throw new CertificateParsingException(e);
         }
@@ -192,6 +245,8 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     @Override
     public void decode(InputStream in)
             throws CertificateParsingException, IOException {
+        if (readOnly)
+            throw new CertificateParsingException(READ_ONLY);
         DerValue val = new DerValue(in);
 
         parse(val);
@@ -219,7 +274,8 @@ public class X509CertInfo implements CertAttrSet, Serializable {
      */
     public void encode(OutputStream out, boolean ignoreCache)
             throws IOException, CertificateException {
-        if (ignoreCache || (rawCertInfo == null)) {
+        // a read-only info cannot be out of date
+        if ((ignoreCache && !readOnly) || (rawCertInfo == null)) {
             DerOutputStream tmp = new DerOutputStream();
             emit(tmp);
             rawCertInfo = tmp.toByteArray();
@@ -267,7 +323,8 @@ public class X509CertInfo implements CertAttrSet, Serializable {
 
     public byte[] getEncodedInfo(boolean ignoreCache) throws CertificateEncodingException {
         try {
-            if (ignoreCache || (rawCertInfo == null)) {
+            // a read-only info cannot be out of date
+            if ((ignoreCache && !readOnly) || (rawCertInfo == null)) {
                 DerOutputStream tmp = new DerOutputStream();
                 emit(tmp);
                 rawCertInfo = tmp.toByteArray();
@@ -280,6 +337,30 @@ public class X509CertInfo implements CertAttrSet, Serializable {
         }
     }
 
+    /**
+     * Makes this info read-only, so that it can be shared. The set(),
+     * delete() and decode() methods throw an exception afterwards.
+     *
+     * @exception CertificateEncodingException if the info is not encoded.
+     */
+    void setReadOnly() throws CertificateEncodingException {
+        synchronized (this) {
+            if (rawCertInfo == null)
+                throw new CertificateEncodingException("Certificate info is not encoded");
+            readOnly = true;
+            if (extensions != null)
+                extensions.setReadOnly();
+        }
+    }
+
+    /**
+     * @return true if this info cannot be modified, e.g., because it
+     *         belongs to a certificate in the X509CertCache.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     /**
      * Compares two X509CertInfo objects. This is false if the
      * certificates are not both X.509 certs, otherwise it
@@ -336,6 +417,12 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     @Override
     public String toString() {
 
+        try {
+            loadAll();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to parse certificate: " + e.getMessage(), e);
+        }
+
         if (subject == null || pubKey == null || interval == null
                 || issuer == null || algId == null || serialNum == null) {
             throw new NullPointerException("X.509 cert is incomplete");
@@ -403,6 +490,9 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     @Override
     public void set(String name, Object val)
             throws CertificateException, IOException {
+        if (readOnly)
+            throw new CertificateException(READ_ONLY);
+
         X509AttributeName attrName = new X509AttributeName(name);
 
         int attr = attributeMap(attrName.getPrefix());
@@ -410,6 +500,9 @@ public class X509CertInfo implements CertAttrSet, Serializable {
             throw new CertificateException("Attribute name not recognized: "
                                            + name);
         }
+        // decode the attributes before rawCertInfo is discarded
+        loadAll();
+
         // set rawCertInfo to null, so that we are forced to re-encode
         rawCertInfo = null;
 
@@ -506,6 +599,9 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     @Override
     public void delete(String name)
             throws CertificateException, IOException {
+        if (readOnly)
+            throw new CertificateException(READ_ONLY);
+
         X509AttributeName attrName = new X509AttributeName(name);
 
         int attr = attributeMap(attrName.getPrefix());
@@ -513,6 +609,9 @@ public class X509CertInfo implements CertAttrSet, Serializable {
             throw new CertificateException("Attribute name not recognized: "
                                            + name);
         }
+        // decode the attributes before rawCertInfo is discarded
+        loadAll();
+
         // set rawCertInfo to null, so that we are forced to re-encode
         rawCertInfo = null;
 
@@ -609,6 +708,8 @@ public class X509CertInfo implements CertAttrSet, Serializable {
                           "Attribute name not recognized: " + name);
         }
 
+        load(attr);
+
         String suffix = attrName.getSuffix();
         boolean suffixIsNull = suffix == null;
 
@@ -713,11 +814,148 @@ public class X509CertInfo implements CertAttrSet, Serializable {
         }
     }
 
+    /*
+     * This routine finds the certificate information without decoding
+     * it, except for the version.
+     */
+    private void parseLazily(DerValue val)
+            throws CertificateParsingException, IOException {
+
+        if (val.tag != DerValue.tag_Sequence) {
+            throw new CertificateParsingException("signed fields invalid");
+        }
+        rawCertInfo = val.toByteArray();
+
+        DerHeaderReader reader = new DerHeaderReader(
+                ByteBuffer.wrap(rawCertInfo), 0, rawCertInfo.length);
+        reader.end = reader.readHeader(DerValue.tag_Sequence) + reader.pos;
+
+        attrStarts = new int[ATTR_EXTENSIONS + 1];
+        attrEnds = new int[ATTR_EXTENSIONS + 1];
+        int mask = 0;
+
+        // Version
+        if (isContextSpecific(reader.peekTag(), 0)) {
+            int start = reader.pos;
+            reader.skipValue();
+            version = new CertificateVersion(new DerValue(rawCertInfo, start, reader.pos - start));
+        }
+
+        // serial number, algorithm identifier, issuer, validity,
+        // subject and public key
+        for (int attr = ATTR_SERIAL; attr <= ATTR_KEY; attr++) {
+            mask |= locate(reader, attr);
+        }
+
+        // If more data available, make sure version is not v1.
+        if (reader.pos < reader.end) {
+            if (version.compare(CertificateVersion.V1) == 0) {
+                throw new CertificateParsingException("excess cert data");
+            }
+
+            if (isContextSpecific(reader.peekTag(), 1)) {
+                mask |= locate(reader, ATTR_ISSUER_ID);
+            }
+
+            if (reader.pos < reader.end && isContextSpecific(reader.peekTag(), 2)) {
+                mask |= locate(reader, ATTR_SUBJECT_ID);
+            }
+
+            if (reader.pos < reader.end) {
+                if (version.compare(CertificateVersion.V3) != 0) {
+                    throw new CertificateParsingException("excess cert data");
+                }
+                int tag = reader.peekTag();
+                if ((tag & 0x20) != 0 && isContextSpecific(tag, 3)) {
+                    mask |= locate(reader, ATTR_EXTENSIONS);
+                }
+            }
+        }
+
+        pending = mask;
+    }
+
+    private static boolean isContextSpecific(int tag, int number) {
+        return (tag & 0xc0) == 0x80 && (tag & 0x1f) == number;
+    }
+
+    private int locate(DerHeaderReader reader, int attr) throws IOException {
+        attrStarts[attr] = reader.pos;
+        reader.skipValue();
+        attrEnds[attr] = reader.pos;
+        return 1 << attr;
+    }
+
+    /**
+     * Decodes an attribute if it has not been decoded yet.
+     */
+    private void load(int attr) throws IOException {
+
+        int bit = 1 << attr;
+        if ((pending & bit) == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if ((pending & bit) == 0) {
+                return;
+            }
+
+            int start = attrStarts[attr];
+            int len = attrEnds[attr] - start;
+
+            switch (attr) {
+            case ATTR_SERIAL:
+                serialNum = new CertificateSerialNumber(new DerValue(rawCertInfo, start, len));
+                break;
+            case ATTR_ALGORITHM:
+                algId = new CertificateAlgorithmId(new DerInputStream(rawCertInfo, start, len));
+                break;
+            case ATTR_ISSUER:
+                issuer = new CertificateIssuerName(new DerInputStream(rawCertInfo, start, len));
+                break;
+            case ATTR_VALIDITY:
+                interval = new CertificateValidity(new DerInputStream(rawCertInfo, start, len));
+                break;
+            case ATTR_SUBJECT:
+                subject = new CertificateSubjectName(new DerInputStream(rawCertInfo, start, len));
+                break;
+            case ATTR_KEY:
+                pubKey = new CertificateX509Key(new DerInputStream(rawCertInfo, start, len));
+                break;
+            case ATTR_ISSUER_ID:
+                issuerUniqueId = new CertificateIssuerUniqueIdentity(new DerValue(rawCertInfo, start, len));
+                break;
+            case ATTR_SUBJECT_ID:
+                subjectUniqueId = new CertificateSubjectUniqueIdentity(new DerValue(rawCertInfo, start, len));
+                break;
+            case ATTR_EXTENSIONS:
+                extensions = new CertificateExtensions(new DerValue(rawCertInfo, start, len).data, true);
+                if (readOnly)
+                    extensions.setReadOnly();
+                break;
+            }
+
+            pending &= ~bit;
+        }
+    }
+
+    /**
+     * Decodes all attributes that have not been decoded yet.
+     */
+    private void loadAll() throws IOException {
+        for (int attr = ATTR_SERIAL; pending != 0 && attr <= ATTR_EXTENSIONS; attr++) {
+            load(attr);
+        }
+    }
+
     /*
      * Marshal the contents of a "raw" certificate into a DER sequence.
      */
     private void emit(DerOutputStream out)
             throws CertificateException, IOException {
+        loadAll();
+
         DerOutputStream tmp = new DerOutputStream();
 
         // version number, iff not V1
@@ -835,6 +1073,11 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     }
 
     public CertificateIssuerName getIssuerObj() {
+        try {
+            load(ATTR_ISSUER);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to parse certificate issuer: " + e.getMessage(), e);
+        }
         return issuer;
     }
 
@@ -867,6 +1110,11 @@ public class X509CertInfo implements CertAttrSet, Serializable {
     }
 
     public CertificateSubjectName getSubjectObj() {
+        try {
+            load(ATTR_SUBJECT);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to parse certificate subject: " + e.getMessage(), e);
+        }
         return subject;
     }
 
@@ -21,6 +21,7 @@ import java.util.Set;
 
 import org.mozilla.jss.crypto.CryptoToken;
 import org.mozilla.jss.crypto.X509Certificate;
+import org.mozilla.jss.netscape.security.x509.X509CertCache;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -136,7 +137,7 @@ public class PK11Cert
     public int getBasicConstraints() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getBasicConstraints();
@@ -149,7 +150,7 @@ public class PK11Cert
     public boolean[] getKeyUsage() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getKeyUsage();
@@ -162,7 +163,7 @@ public class PK11Cert
     public boolean[] getSubjectUniqueID() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getSubjectUniqueID();
@@ -175,7 +176,7 @@ public class PK11Cert
     public boolean[] getIssuerUniqueID() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getIssuerUniqueID();
@@ -188,7 +189,7 @@ public class PK11Cert
     public byte[] getSigAlgParams() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getSigAlgParams();
@@ -201,7 +202,7 @@ public class PK11Cert
     public String getSigAlgName() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getSigAlgName();
@@ -214,7 +215,7 @@ public class PK11Cert
     public String getSigAlgOID() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getSigAlgOID();
@@ -227,7 +228,7 @@ public class PK11Cert
     public byte[] getSignature() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getSignature();
@@ -240,7 +241,7 @@ public class PK11Cert
     public byte[] getTBSCertificate() throws CertificateEncodingException {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getTBSCertificate();
@@ -255,7 +256,7 @@ public class PK11Cert
     public Date getNotAfter() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getNotAfter();
@@ -268,7 +269,7 @@ public class PK11Cert
     public Date getNotBefore() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getNotBefore();
@@ -283,7 +284,7 @@ public class PK11Cert
     {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             x509.checkValidity();
@@ -302,7 +303,7 @@ public class PK11Cert
     {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             x509.checkValidity(date);
@@ -319,7 +320,7 @@ public class PK11Cert
     public String toString() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.toString();
@@ -335,7 +336,7 @@ public class PK11Cert
     {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             x509.verify(key);
@@ -361,7 +362,7 @@ public class PK11Cert
     {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             x509.verify(key, sigProvider);
@@ -384,7 +385,7 @@ public class PK11Cert
     public byte[] getExtensionValue(String oid) {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getExtensionValue(oid);
@@ -397,7 +398,7 @@ public class PK11Cert
     public Set<String> getCriticalExtensionOIDs() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getCriticalExtensionOIDs();
@@ -410,7 +411,7 @@ public class PK11Cert
     public Set<String> getNonCriticalExtensionOIDs() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.getNonCriticalExtensionOIDs();
@@ -423,7 +424,7 @@ public class PK11Cert
     public boolean hasUnsupportedCriticalExtension() {
         try {
             if (x509 == null) {
-                x509 = new X509CertImpl(getEncoded());
+                x509 = X509CertCache.getInstance().get(getEncoded());
             }
 
             return x509.hasUnsupportedCriticalExtension();
@@ -161,6 +161,10 @@ public final class PK11Cipher
     public byte[] update(byte[] bytes, int offset, int length)
         throws IllegalStateException, TokenException
     {
+        if( offset == 0 && length == bytes.length ) {
+            return update(bytes);
+        }
+
         byte[] sub = new byte[length];
 
         System.arraycopy( bytes, offset, sub, 0, length );
@@ -197,6 +201,10 @@ public final class PK11Cipher
         throws IllegalStateException, IllegalBlockSizeException,
         BadPaddingException, TokenException
     {
+        if( offset == 0 && length == bytes.length ) {
+            return doFinal(bytes);
+        }
+
         byte[] sub = new byte[length];
 
         System.arraycopy(bytes, offset, sub, 0, length);
@@ -15,6 +15,7 @@ import java.security.spec.DSAParameterSpec;
 import java.security.spec.ECGenParameterSpec;
 import java.security.spec.NamedParameterSpec;
 import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
 
 import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
@@ -364,6 +365,29 @@ public final class PK11KeyPairGenerator
     public KeyPair generateKeyPair()
         throws TokenException
     {
+        if(temporaryPairMode) {
+            return generateKeyPairOnToken();
+        }
+        try {
+            return generateKeyPairOnToken();
+        } finally {
+            // permanent keys were added to the token
+            PK11Store.notifyTokenObjectsChanged();
+        }
+    }
+
+    private KeyPair generateKeyPairOnToken()
+        throws TokenException
+    {
+        if(pool != null) {
+            if(canUsePool(pool)) {
+                KeyPair pair = pool.take();
+                return temporaryPairMode ? pair : PK11KeyPairPool.promote(pair);
+            }
+            // the generator has been reconfigured since the pool was set
+            logger.debug("PK11KeyPairGenerator: key pair pool does not match generator settings");
+        }
+
         if(algorithm == KeyPairAlgorithm.RSA) {
             if(params != null) {
                 RSAKeyGenParameterSpec rsaparams = (RSAKeyGenParameterSpec)params;
@@ -492,6 +516,106 @@ public final class PK11KeyPairGenerator
         }
     }
 
+    /**
+     * Makes generateKeyPair() take key pairs from a pool of pre-generated
+     * pairs instead of generating them. The pairs are promoted to permanent
+     * token objects unless this generator is in temporary mode.
+     *
+     * <p>The pool must generate the same key pairs as this generator:
+     * same token, key type and parameters, sensitivity, extractability
+     * and key usages. Pooled pairs are sensitive, so a generator in
+     * temporary mode must also be set to generate sensitive pairs. If the
+     * generator is reconfigured after the pool has been set so that they
+     * no longer match, key pairs are generated directly.
+     *
+     * @param pool The pool, or null to generate key pairs directly.
+     * @throws IllegalArgumentException If the pool generates different
+     *      key pairs.
+     */
+    public void setKeyPairPool(PK11KeyPairPool pool) {
+        if(pool != null && pool.getAlgorithm() != algorithm) {
+            throw new IllegalArgumentException("Key pair pool generates " +
+                pool.getAlgorithm() + " keys, not " + algorithm);
+        }
+        if(pool != null && !canUsePool(pool)) {
+            throw new IllegalArgumentException(
+                "Key pair pool does not match generator settings");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Returns true if the key pairs of the pool are the same as the ones
+     * this generator would generate. The temporary mode is not compared
+     * since pooled pairs are promoted to permanent token objects, but the
+     * sensitivity it implies is.
+     */
+    private boolean canUsePool(PK11KeyPairPool pool) {
+        PK11KeyPairGenerator other = pool.getGenerator();
+        return token.equals(other.token)
+            && algorithm == other.algorithm
+            && sameParams(getEffectiveParams(), other.getEffectiveParams())
+            && isSensitive() == other.isSensitive()
+            && extractablePairMode == other.extractablePairMode
+            && opFlags == other.opFlags
+            && opFlagsMask == other.opFlagsMask;
+    }
+
+    /**
+     * Returns the parameters generateKeyPair() uses, including the
+     * defaults if the generator has not been initialized.
+     */
+    private AlgorithmParameterSpec getEffectiveParams() {
+        if(params != null) {
+            return params;
+        }
+        if(algorithm == KeyPairAlgorithm.RSA) {
+            return new RSAKeyGenParameterSpec(DEFAULT_RSA_KEY_SIZE, DEFAULT_RSA_PUBLIC_EXPONENT);
+        } else if(algorithm == KeyPairAlgorithm.DSA) {
+            return PQG1024;
+        } else if(algorithm == KeyPairAlgorithm.MLDSA) {
+            return new NamedParameterSpec("ML-DSA-65");
+        } else if(algorithm == KeyPairAlgorithm.MLKEM) {
+            return new NamedParameterSpec("ML-KEM-768");
+        }
+        return null;
+    }
+
+    private static boolean sameParams(AlgorithmParameterSpec a, AlgorithmParameterSpec b) {
+        if(a == b) {
+            return true;
+        }
+        if(a instanceof RSAKeyGenParameterSpec && b instanceof RSAKeyGenParameterSpec) {
+            RSAKeyGenParameterSpec ra = (RSAKeyGenParameterSpec) a;
+            RSAKeyGenParameterSpec rb = (RSAKeyGenParameterSpec) b;
+            return ra.getKeysize() == rb.getKeysize()
+                && ra.getPublicExponent().equals(rb.getPublicExponent());
+        }
+        if(a instanceof DSAParameterSpec && b instanceof DSAParameterSpec) {
+            DSAParameterSpec da = (DSAParameterSpec) a;
+            DSAParameterSpec db = (DSAParameterSpec) b;
+            return da.getP().equals(db.getP())
+                && da.getQ().equals(db.getQ())
+                && da.getG().equals(db.getG());
+        }
+        if(a instanceof PK11ParameterSpec && b instanceof PK11ParameterSpec) {
+            // EC curve OIDs
+            return Arrays.equals(((PK11ParameterSpec) a).getEncoded(),
+                ((PK11ParameterSpec) b).getEncoded());
+        }
+        if(a instanceof NamedParameterSpec && b instanceof NamedParameterSpec) {
+            return ((NamedParameterSpec) a).getName().equals(((NamedParameterSpec) b).getName());
+        }
+        return false;
+    }
+
+    private boolean isSensitive() {
+        if(sensitivePairMode == -1) {
+            return !temporaryPairMode;
+        }
+        return sensitivePairMode == 1;
+    }
+
     /**
      * @return true if the keypair generation will be done on the
      *      internal token and then moved to this token.
@@ -931,4 +1055,7 @@ public final class PK11KeyPairGenerator
     //  0: unextractable
     // -1: unspecified (token dependent)
     private int extractablePairMode = -1;
+
+    // pre-generated key pairs, if set
+    private PK11KeyPairPool pool;
 }
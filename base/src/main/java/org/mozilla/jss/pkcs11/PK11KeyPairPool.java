@@ -0,0 +1,289 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.pkcs11;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.TokenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of key pairs generated in the background.
+ *
+ * <p>Key generation, especially for large RSA keys, can take a long and
+ * unpredictable amount of time. The pool generates temporary (session)
+ * key pairs of a fixed type in background threads until it holds the
+ * configured number of pairs, so that {@link #take} can usually return
+ * immediately. If the pool is empty, the pair is generated on the calling
+ * thread. A pair can be made permanent with {@link #promote}.
+ *
+ * <p>Pooled pairs are session objects: they are lost when the pool is
+ * closed or the application exits, and they are never written to the
+ * token unless they are promoted.
+ */
+public class PK11KeyPairPool implements AutoCloseable {
+
+    public static Logger logger = LoggerFactory.getLogger(PK11KeyPairPool.class);
+
+    private PK11KeyPairGenerator generator;
+    private KeyPairAlgorithm algorithm;
+    private int targetDepth;
+
+    private ConcurrentLinkedQueue<KeyPair> pairs = new ConcurrentLinkedQueue<>();
+    private AtomicInteger depth = new AtomicInteger();
+    private AtomicInteger inProgress = new AtomicInteger();
+
+    private ExecutorService executor;
+    private volatile boolean closed = false;
+
+    // statistics
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong generated = new AtomicLong();
+    private AtomicLong failures = new AtomicLong();
+    private AtomicLong totalRefillTime = new AtomicLong();
+    private volatile long lastRefillTime;
+
+    /**
+     * Creates a pool and starts filling it.
+     *
+     * @param token The token on which the key pairs are generated.
+     * @param algorithm The type of key pairs.
+     * @param params The key generation parameters (e.g.,
+     *      <code>RSAKeyGenParameterSpec</code> or
+     *      <code>ECGenParameterSpec</code>).
+     * @param targetDepth The number of key pairs to keep in the pool.
+     * @param threads The number of background threads generating pairs.
+     */
+    public PK11KeyPairPool(PK11Token token, KeyPairAlgorithm algorithm,
+            AlgorithmParameterSpec params, int targetDepth, int threads)
+            throws NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+            TokenException {
+
+        if (targetDepth <= 0) {
+            throw new IllegalArgumentException("Invalid pool depth: " + targetDepth);
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+
+        generator = new PK11KeyPairGenerator(token, algorithm);
+        generator.initialize(params, null);
+        generator.temporaryPairs(true);
+        // temporary pairs are insensitive by default, but the pairs
+        // may later be promoted to permanent keys
+        generator.sensitivePairs(true);
+
+        this.algorithm = algorithm;
+        this.targetDepth = targetDepth;
+
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "PK11KeyPairPool " + algorithm);
+            t.setDaemon(true);
+            return t;
+        });
+
+        refill();
+    }
+
+    public KeyPairAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the generator of the pooled pairs, which generators using
+     * the pool compare their settings with.
+     */
+    PK11KeyPairGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Returns a temporary key pair from the pool, or generates one on the
+     * calling thread if the pool is empty.
+     */
+    public KeyPair take() throws TokenException {
+        if (closed) {
+            throw new IllegalStateException("Key pair pool is closed");
+        }
+
+        KeyPair pair = pairs.poll();
+        if (pair != null) {
+            depth.decrementAndGet();
+            hits.incrementAndGet();
+            refill();
+            return pair;
+        }
+
+        misses.incrementAndGet();
+        refill();
+
+        logger.debug("PK11KeyPairPool: pool empty, generating " + algorithm + " key pair");
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Returns a key pair from the pool whose keys have been made
+     * permanent objects on the token.
+     */
+    public KeyPair takePermanent() throws TokenException {
+        return promote(take());
+    }
+
+    /**
+     * Copies the keys of a temporary key pair to permanent token objects.
+     *
+     * @return A key pair with the permanent private key and the
+     *      original public key.
+     */
+    public static KeyPair promote(KeyPair pair) throws TokenException {
+        if (!(pair.getPrivate() instanceof PK11PrivKey)) {
+            throw new TokenException("Key pair does not contain a PKCS #11 private key");
+        }
+        PK11PrivKey privKey = ((PK11PrivKey) pair.getPrivate()).toTokenKey();
+        return new KeyPair(pair.getPublic(), privKey);
+    }
+
+    /**
+     * Schedules background generation until the pool (including the
+     * pairs currently being generated) reaches the target depth.
+     */
+    private void refill() {
+        while (!closed) {
+            int pending = inProgress.get();
+            if (depth.get() + pending >= targetDepth) {
+                return;
+            }
+            if (!inProgress.compareAndSet(pending, pending + 1)) {
+                continue;
+            }
+            try {
+                executor.execute(this::generate);
+            } catch (RejectedExecutionException e) {
+                inProgress.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void generate() {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            KeyPair pair = generator.generateKeyPair();
+            if (closed) {
+                return;
+            }
+            pairs.add(pair);
+            depth.incrementAndGet();
+            success = true;
+
+        } catch (Throwable e) {
+            failures.incrementAndGet();
+            logger.warn("PK11KeyPairPool: unable to generate " + algorithm + " key pair: " + e.getMessage(), e);
+
+        } finally {
+            long time = System.nanoTime() - start;
+            lastRefillTime = time;
+            totalRefillTime.addAndGet(time);
+            generated.incrementAndGet();
+            inProgress.decrementAndGet();
+        }
+
+        // don't retry immediately after a failure; the next take() will
+        if (success) {
+            refill();
+        }
+    }
+
+    /**
+     * @return The number of key pairs currently in the pool.
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getTargetDepth() {
+        return targetDepth;
+    }
+
+    /**
+     * @return The number of key pairs currently being generated in the
+     *      background.
+     */
+    public int getInProgress() {
+        return inProgress.get();
+    }
+
+    /**
+     * @return The number of calls to take() served from the pool.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of calls to take() that had to generate a
+     *      key pair on the calling thread.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The fraction of calls to take() served from the pool.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return The number of failed background generations.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return The time spent generating the last background key pair,
+     *      in milliseconds.
+     */
+    public double getLastRefillLatency() {
+        return lastRefillTime / 1e6;
+    }
+
+    /**
+     * @return The average time spent generating a background key pair,
+     *      in milliseconds.
+     */
+    public double getAverageRefillLatency() {
+        long count = generated.get();
+        return count == 0 ? 0.0 : totalRefillTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Stops background generation and discards the pooled key pairs.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        pairs.clear();
+        depth.set(0);
+    }
+}
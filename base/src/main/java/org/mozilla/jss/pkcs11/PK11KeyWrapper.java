@@ -17,6 +17,7 @@ import javax.crypto.spec.OAEPParameterSpec;
 import javax.crypto.spec.RC2ParameterSpec;
 
 import org.mozilla.jss.crypto.Algorithm;
+import org.mozilla.jss.crypto.BatchResult;
 import org.mozilla.jss.crypto.EncryptionAlgorithm;
 import org.mozilla.jss.crypto.HMACAlgorithm;
 import org.mozilla.jss.crypto.IVParameterSpec;
@@ -331,6 +332,100 @@ public final class PK11KeyWrapper implements KeyWrapper {
         return sk;
     }
 
+    /**
+     * Wraps a batch of symmetric keys. When wrapping with a symmetric key,
+     * the whole batch is wrapped in a single native call that sets up the
+     * mechanism and its parameter only once.
+     */
+    @Override
+    public BatchResult<byte[]>
+    wrapBatch(SymmetricKey[] toBeWrapped)
+        throws IllegalStateException, TokenException
+    {
+        if( state != WRAP ) {
+            throw new IllegalStateException();
+        }
+        if( symKey == null || algorithm == KeyWrapAlgorithm.PLAINTEXT ) {
+            return KeyWrapper.super.wrapBatch(toBeWrapped);
+        }
+
+        BatchResult<byte[]> result = new BatchResult<>(toBeWrapped.length);
+        SymmetricKey[] keys = new SymmetricKey[toBeWrapped.length];
+        for( int i = 0; i < toBeWrapped.length; i++ ) {
+            try {
+                checkWrappee(toBeWrapped[i]);
+                keys[i] = toBeWrapped[i];
+            } catch( InvalidKeyException e ) {
+                result.setError(i, e);
+            }
+        }
+
+        String[] errors = new String[keys.length];
+        byte[][] wrapped = nativeWrapSymWithSymBatch(token, keys, symKey,
+                algorithm, IV, errors);
+
+        collectResults(result, keys, wrapped, errors);
+        return result;
+    }
+
+    /**
+     * Wraps a batch of private keys. When wrapping with a symmetric key,
+     * the whole batch is wrapped in a single native call that sets up the
+     * mechanism and its parameter only once.
+     */
+    @Override
+    public BatchResult<byte[]>
+    wrapBatch(PrivateKey[] toBeWrapped)
+        throws IllegalStateException, TokenException
+    {
+        if( state != WRAP ) {
+            throw new IllegalStateException();
+        }
+        if( symKey == null || algorithm == KeyWrapAlgorithm.PLAINTEXT ) {
+            return KeyWrapper.super.wrapBatch(toBeWrapped);
+        }
+
+        BatchResult<byte[]> result = new BatchResult<>(toBeWrapped.length);
+        PrivateKey[] keys = new PrivateKey[toBeWrapped.length];
+        for( int i = 0; i < toBeWrapped.length; i++ ) {
+            try {
+                checkWrappee(toBeWrapped[i]);
+                keys[i] = toBeWrapped[i];
+            } catch( InvalidKeyException e ) {
+                result.setError(i, e);
+            }
+        }
+
+        String[] errors = new String[keys.length];
+        byte[][] wrapped = nativeWrapPrivWithSymBatch(token, keys, symKey,
+                algorithm, IV, errors);
+
+        collectResults(result, keys, wrapped, errors);
+        return result;
+    }
+
+    /**
+     * Copies the output of a native batch operation into the result.
+     * Items that were not passed to native code (null inputs) already
+     * have their error set.
+     */
+    private static <T> void
+    collectResults(BatchResult<T> result, Object[] inputs, T[] outputs,
+            String[] errors)
+    {
+        for( int i = 0; i < inputs.length; i++ ) {
+            if( inputs[i] == null ) {
+                continue;
+            }
+            if( outputs[i] != null ) {
+                result.setResult(i, outputs[i]);
+            } else {
+                result.setError(i, new TokenException(errors[i] != null ?
+                    errors[i] : "Operation failed on token"));
+            }
+        }
+    }
+
     /**
      * Makes sure the key lives on the right token.
      */
@@ -383,6 +478,24 @@ public final class PK11KeyWrapper implements KeyWrapper {
         SymmetricKey wrappingKey, KeyWrapAlgorithm alg, byte[] IV)
             throws TokenException;
 
+    /**
+     * Wrap a batch of symmetrics with a symmetric
+     */
+    private static native byte[][]
+    nativeWrapSymWithSymBatch(PK11Token token, SymmetricKey[] toBeWrapped,
+        SymmetricKey wrappingKey, KeyWrapAlgorithm alg, byte[] IV,
+        String[] errors)
+            throws TokenException;
+
+    /**
+     * Wrap a batch of privates with a symmetric
+     */
+    private static native byte[][]
+    nativeWrapPrivWithSymBatch(PK11Token token, PrivateKey[] toBeWrapped,
+        SymmetricKey wrappingKey, KeyWrapAlgorithm alg, byte[] IV,
+        String[] errors)
+            throws TokenException;
+
     /**
      * Wrap a private with a public.
      * NOTE: This operation is not supported by the security library.
@@ -687,6 +800,51 @@ public final class PK11KeyWrapper implements KeyWrapper {
         return sk;
     }
 
+    /**
+     * Unwraps a batch of symmetric keys. When unwrapping with a symmetric
+     * key, the whole batch is unwrapped in a single native call that sets
+     * up the mechanism and its parameter only once.
+     */
+    @Override
+    public BatchResult<SymmetricKey>
+    unwrapSymmetricBatch(byte[][] wrapped, SymmetricKey.Type type,
+        SymmetricKey.Usage usage, int keyLen)
+        throws TokenException, IllegalStateException,
+            InvalidAlgorithmParameterException
+    {
+        if( state != UNWRAP ) {
+            throw new IllegalStateException();
+        }
+        if( symKey == null || algorithm == KeyWrapAlgorithm.PLAINTEXT ) {
+            return KeyWrapper.super.unwrapSymmetricBatch(wrapped, type, usage,
+                keyLen);
+        }
+
+        if( (! algorithm.isPadded()) && (type == SymmetricKey.RC4) ) {
+            if( keyLen <= 0 ) {
+                throw new InvalidAlgorithmParameterException(
+                    "RC4 keys wrapped in unpadded algorithms need key length"+
+                    " specified when unwrapping");
+            }
+        }
+
+        BatchResult<SymmetricKey> result = new BatchResult<>(wrapped.length);
+        for( int i = 0; i < wrapped.length; i++ ) {
+            if( wrapped[i] == null ) {
+                result.setError(i, new TokenException("Wrapped key is null"));
+            }
+        }
+
+        int usageEnum = usage == null ? -1 : usage.ordinal();
+        String[] errors = new String[wrapped.length];
+        SymmetricKey[] keys = nativeUnwrapSymWithSymBatch(token, symKey,
+                wrapped, algorithm, algFromType(type), keyLen, IV, usageEnum,
+                true /* temporary */, errors);
+
+        collectResults(result, wrapped, keys, errors);
+        return result;
+    }
+
     private static Algorithm
     algFromType(PrivateKey.Type type) {
         if (type == PrivateKey.RSA) {
@@ -752,6 +910,15 @@ public final class PK11KeyWrapper implements KeyWrapper {
         byte[] IV, int usageEnum, boolean temporary)
             throws TokenException;
 
+    /**
+     * Unwrap a batch of symmetrics with a symmetric.
+     */
+    private static native SymmetricKey[]
+    nativeUnwrapSymWithSymBatch(PK11Token token, SymmetricKey unwrappingKey,
+        byte[][] wrappedKeys, KeyWrapAlgorithm alg, Algorithm type, int keyLen,
+        byte[] IV, int usageEnum, boolean temporary, String[] errors)
+            throws TokenException;
+
     /**
      * Unwrap a symmetric with a private.
      */
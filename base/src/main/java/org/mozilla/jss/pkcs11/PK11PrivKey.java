@@ -112,6 +112,22 @@ public class PK11PrivKey extends org.mozilla.jss.pkcs11.PK11Key
      */
     public native void setTemporary(boolean isTemporary);
 
+    /**
+     * Copies a temporary (session) private key and its public key to
+     * permanent objects on the same token.
+     *
+     * @return The permanent copy of this private key.
+     */
+    public PK11PrivKey toTokenKey() throws TokenException {
+        try {
+            return toTokenKeyNative();
+        } finally {
+            PK11Store.notifyTokenObjectsChanged();
+        }
+    }
+
+    private native PK11PrivKey toTokenKeyNative() throws TokenException;
+
     /**
      * Imports a PrivateKeyInfo, storing it as a temporary PrivateKey
      * on the given token.
@@ -13,6 +13,7 @@ import java.security.SecureRandom;
 import java.security.SignatureException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.PSSParameterSpec;
+import java.util.BitSet;
 
 import org.mozilla.jss.crypto.Algorithm;
 import org.mozilla.jss.crypto.DigestAlgorithm;
@@ -107,25 +108,30 @@ public final class PK11Signature
 
         privKey = (PK11PrivKey) privateKey;
 
-        try {
-    		privKey.verifyKeyIsOnToken(token);
-        } catch(NoSuchItemOnTokenException e) {
-            throw new InvalidKeyException(e.toString());
-        }
+        // Re-initializing with the key that was already checked (e.g.,
+        // to sign again with the same context) skips the native checks.
+        if( privKey != checkedSignKey ) {
+            try {
+                privKey.verifyKeyIsOnToken(token);
+            } catch(NoSuchItemOnTokenException e) {
+                throw new InvalidKeyException(e.toString());
+            }
 
-        try {
-            if( KeyType.getKeyTypeFromAlgorithm(algorithm)
-                             != privKey.getKeyType())
-            {
-                throw new InvalidKeyException(
-                    "Key type is inconsistent with algorithm");
+            try {
+                if( KeyType.getKeyTypeFromAlgorithm(algorithm)
+                                 != privKey.getKeyType())
+                {
+                    throw new InvalidKeyException(
+                        "Key type is inconsistent with algorithm");
+                }
+            } catch( NoSuchAlgorithmException e ) {
+                throw new InvalidKeyException("Unknown algorithm: " + algorithm, e);
             }
-        } catch( NoSuchAlgorithmException e ) {
-            throw new InvalidKeyException("Unknown algorithm: " + algorithm, e);
         }
 
         // Finally, the key is OK
 		key = privKey;
+        checkedSignKey = privKey;
 
         // Now initialize the signature context
         if( ! raw ) {
@@ -348,6 +354,86 @@ public final class PK11Signature
         PublicKey key, byte[] hash, byte[] signature)
         throws SignatureException, TokenException;
 
+    @Override
+    public byte[][] engineSignBatch(byte[][] digests)
+        throws SignatureException, TokenException
+    {
+        if (digests == null) {
+            throw new SignatureException("No digests provided");
+        }
+        if (state != SIGN) {
+            throw new SignatureException(SIG_NOT_INITIALIZED);
+        }
+        if (!raw) {
+            throw new SignatureException("Batch signing requires a raw signature algorithm: " + algorithm);
+        }
+        if (key == null) {
+            throw new SignatureException(NO_KEY);
+        }
+        for (byte[] digest : digests) {
+            if (digest == null) {
+                throw new SignatureException("No digest provided");
+            }
+        }
+
+        // the context stays initialized so it can sign the next batch
+        return engineRawSignBatchNative(token, (PK11PrivKey)key, digests);
+    }
+
+    @Override
+    public BitSet engineVerifyBatch(byte[][] digests, byte[][] signatures)
+        throws SignatureException, TokenException
+    {
+        if (digests == null || signatures == null) {
+            throw new SignatureException("No digests or signatures provided");
+        }
+        if (digests.length != signatures.length) {
+            throw new SignatureException("Number of digests (" + digests.length +
+                ") does not match number of signatures (" + signatures.length + ")");
+        }
+        if (state != VERIFY) {
+            throw new SignatureException(SIG_NOT_INITIALIZED);
+        }
+        if (!raw) {
+            throw new SignatureException("Batch verification requires a raw signature algorithm: " + algorithm);
+        }
+        if (key == null) {
+            throw new SignatureException(NO_KEY);
+        }
+        for (int i = 0; i < digests.length; i++) {
+            if (digests[i] == null || signatures[i] == null) {
+                throw new SignatureException("No digest or signature provided");
+            }
+        }
+
+        boolean[] verified = engineRawVerifyBatchNative(token, (PK11PubKey)key,
+            digests, signatures);
+
+        BitSet result = new BitSet(verified.length);
+        for (int i = 0; i < verified.length; i++) {
+            if (verified[i]) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Performs raw signing of each of the given hashes with the given
+     * private key in a single native call.
+     */
+    private static native byte[][] engineRawSignBatchNative(PK11Token token,
+        PrivateKey key, byte[][] hashes)
+        throws SignatureException, TokenException;
+
+    /**
+     * Performs raw verification of each signature against the
+     * corresponding hash in a single native call.
+     */
+    private static native boolean[] engineRawVerifyBatchNative(PK11Token token,
+        PublicKey key, byte[][] hashes, byte[][] signatures)
+        throws SignatureException, TokenException;
+
 	protected native boolean engineVerifyNative(byte[] sigBytes)
 		throws SignatureException, TokenException;
 
@@ -431,6 +517,9 @@ public final class PK11Signature
     protected boolean raw=false; // raw signing only, no hashing
     protected ByteArrayOutputStream rawInput;
 
+    // the last signing key that passed the checks in engineInitSign()
+    private PK11PrivKey checkedSignKey;
+
     // states
     public static final int UNINITIALIZED = 0;
     public static final int SIGN = 1;
@@ -57,8 +57,22 @@ public final class PK11Store implements CryptoStore {
     }
 
     @Override
-    public native PrivateKey
+    public PrivateKey
     importPrivateKey(
+        byte[] key, PrivateKey.Type type, boolean temporary)
+        throws TokenException,KeyAlreadyImportedException {
+        if (temporary) {
+            return importPrivateKeyNative(key, type, true);
+        }
+        try {
+            return importPrivateKeyNative(key, type, false);
+        } finally {
+            tokenObjectsChanged();
+        }
+    }
+
+    protected native PrivateKey
+    importPrivateKeyNative(
         byte[] key, PrivateKey.Type type, boolean temporary)
         throws TokenException,KeyAlreadyImportedException;
 
@@ -144,7 +158,16 @@ public final class PK11Store implements CryptoStore {
 
 
     @Override
-    public native void deletePrivateKey(PrivateKey privateKey)
+    public void deletePrivateKey(PrivateKey privateKey)
+        throws NoSuchItemOnTokenException, TokenException {
+        try {
+            deletePrivateKeyNative(privateKey);
+        } finally {
+            tokenObjectsChanged();
+        }
+    }
+
+    protected native void deletePrivateKeyNative(PrivateKey privateKey)
         throws NoSuchItemOnTokenException, TokenException;
 
     @Override
@@ -177,7 +200,20 @@ public final class PK11Store implements CryptoStore {
         PrivateKey k);
 
     @Override
-    public native void importEncryptedPrivateKeyInfo(
+    public void importEncryptedPrivateKeyInfo(
+        KeyGenerator.CharToByteConverter conv,
+        Password pw,
+        String nickname,
+        PublicKey pubKey,
+        byte[] epkiBytes) {
+        try {
+            importEncryptedPrivateKeyInfoNative(conv, pw, nickname, pubKey, epkiBytes);
+        } finally {
+            tokenObjectsChanged();
+        }
+    }
+
+    protected native void importEncryptedPrivateKeyInfoNative(
         KeyGenerator.CharToByteConverter conv,
         Password pw,
         String nickname,
@@ -230,7 +266,16 @@ public final class PK11Store implements CryptoStore {
             throws TokenException;
 
     @Override
-    public native X509Certificate importCert(byte[] certBytes, String nickname)
+    public X509Certificate importCert(byte[] certBytes, String nickname)
+            throws TokenException {
+        try {
+            return importCertNative(certBytes, nickname);
+        } finally {
+            tokenObjectsChanged();
+        }
+    }
+
+    protected native X509Certificate importCertNative(byte[] certBytes, String nickname)
             throws TokenException;
 
     /**
@@ -244,7 +289,16 @@ public final class PK11Store implements CryptoStore {
 	// Currently have to use PK11_DeleteTokenObject + PK11_FindObjectForCert
 	// or maybe SEC_DeletePermCertificate.
     @Override
-    public native void deleteCert(X509Certificate cert)
+    public void deleteCert(X509Certificate cert)
+        throws NoSuchItemOnTokenException, TokenException {
+        try {
+            deleteCertNative(cert);
+        } finally {
+            tokenObjectsChanged();
+        }
+    }
+
+    protected native void deleteCertNative(X509Certificate cert)
         throws NoSuchItemOnTokenException, TokenException;
 
     /**
@@ -255,9 +309,39 @@ public final class PK11Store implements CryptoStore {
      * @exception TokenException General token error
      */
     @Override
-    public native void deleteCertOnly(X509Certificate cert)
+    public void deleteCertOnly(X509Certificate cert)
+        throws NoSuchItemOnTokenException, TokenException {
+        try {
+            deleteCertOnlyNative(cert);
+        } finally {
+            tokenObjectsChanged();
+        }
+    }
+
+    protected native void deleteCertOnlyNative(X509Certificate cert)
         throws NoSuchItemOnTokenException, TokenException;
 
+    /**
+     * Records that certificates or keys on this token have changed, so
+     * that the lookup cache and indexes of CryptoManager are updated.
+     */
+    protected void tokenObjectsChanged() {
+        notifyTokenObjectsChanged();
+    }
+
+    /**
+     * Records that certificates or keys on a token have changed outside
+     * of a PK11Store method, for example when a key pair is generated
+     * or a temporary key is made permanent.
+     */
+    static void notifyTokenObjectsChanged() {
+        try {
+            CryptoManager.getInstance().tokenObjectsChanged();
+        } catch (NotInitializedException e) {
+            // nothing has been cached or indexed
+        }
+    }
+
 	////////////////////////////////////////////////////////////
 	// Construction
 	////////////////////////////////////////////////////////////
@@ -0,0 +1,322 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Writes a <i>ContentInfo</i> containing a CMS <i>SignedData</i> without
+ * holding the content in memory.
+ *
+ * <p>The signers are added before the content is written. The content
+ * written to this stream is digested on the fly and written to the
+ * target stream as a constructed OCTET STRING in fixed-size segments.
+ * When the stream is closed, the content is signed and the certificates,
+ * CRLs and SignerInfos are written after it.
+ *
+ * <p>The SignedData, EncapsulatedContentInfo and content OCTET STRING are
+ * encoded with indefinite lengths, which is valid BER. The structure can
+ * be read back with {@link SignedDataParser} or decoded with
+ * {@link ContentInfo#getTemplate}.
+ */
+public class SignedDataOutputStream extends OutputStream {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private static final INTEGER VERSION = new INTEGER(3);
+
+    private OutputStream out;
+    private OBJECT_IDENTIFIER contentType;
+
+    private List<Signer> signers = new ArrayList<>();
+    private SET certificates;
+    private SET crls;
+
+    // one digest per distinct digest algorithm
+    private Map<DigestAlgorithm, MessageDigest> digests = new LinkedHashMap<>();
+    private SET digestAlgorithms = new SET();
+
+    private byte[] buf;
+    private int count = 0;
+
+    private boolean started = false;
+    private boolean closed = false;
+
+    /**
+     * @param out The stream to write the encoding to.
+     * @param contentType The type of the content, e.g.,
+     *      <code>ContentInfo.DATA</code>.
+     */
+    public SignedDataOutputStream(OutputStream out, OBJECT_IDENTIFIER contentType) {
+        this(out, contentType, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SignedDataOutputStream(OutputStream out, OBJECT_IDENTIFIER contentType,
+            int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.out = out;
+        this.contentType = contentType;
+        this.buf = new byte[segmentSize];
+    }
+
+    /**
+     * Adds a signer of the content. Signers must be added before the
+     * content is written.
+     *
+     * @param signerIdentifier The identifier of the signer's certificate.
+     * @param signingAlg The signature algorithm, e.g.,
+     *      <code>RSASignatureWithSHA256Digest</code>.
+     * @param signingKey The private key.
+     * @param signedAttributes Additional signed attributes, or null.
+     *      See {@link SignerInfo}.
+     * @param unsignedAttributes Unsigned attributes, or null.
+     */
+    public void addSigner(SignerIdentifier signerIdentifier, SignatureAlgorithm signingAlg,
+            PrivateKey signingKey, SET signedAttributes, SET unsignedAttributes)
+            throws NoSuchAlgorithmException {
+
+        if (started) {
+            throw new IllegalStateException("Signers must be added before the content");
+        }
+
+        DigestAlgorithm digestAlg;
+        AlgorithmIdentifier digestAlgID;
+        if (isMLDSA(signingAlg)) {
+            // same as SignerInfo: SHA-512 with absent parameters
+            digestAlg = DigestAlgorithm.SHA512;
+            digestAlgID = new AlgorithmIdentifier(digestAlg.toOID());
+        } else {
+            digestAlg = signingAlg.getDigestAlg();
+            digestAlgID = new AlgorithmIdentifier(digestAlg.toOID(), null);
+        }
+
+        if (!digests.containsKey(digestAlg)) {
+            digests.put(digestAlg, MessageDigest.getInstance(digestAlg.toString()));
+            digestAlgorithms.addElement(digestAlgID);
+        }
+
+        signers.add(new Signer(signerIdentifier, signingAlg, signingKey,
+                signedAttributes, unsignedAttributes, digestAlg));
+    }
+
+    /**
+     * Adds a certificate to the certificates field. Certificates are
+     * written after the content, so they can be added until the stream
+     * is closed.
+     */
+    public void addCertificate(Certificate cert) {
+        if (certificates == null) {
+            certificates = new SET();
+        }
+        certificates.addElement(cert);
+    }
+
+    /**
+     * Adds a CRL to the crls field. CRLs are written after the content,
+     * so they can be added until the stream is closed.
+     */
+    public void addCRL(ASN1Value crl) {
+        if (crls == null) {
+            crls = new SET();
+        }
+        crls.addElement(crl);
+    }
+
+    private static boolean isMLDSA(SignatureAlgorithm signingAlg) {
+        return signingAlg.equals(SignatureAlgorithm.MLDSA44) ||
+                signingAlg.equals(SignatureAlgorithm.MLDSA65) ||
+                signingAlg.equals(SignatureAlgorithm.MLDSA87);
+    }
+
+    /**
+     * Writes everything up to the start of the content.
+     */
+    private void start() throws IOException {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        // ContentInfo
+        writeIndefiniteHeader(SEQUENCE.TAG);
+        ContentInfo.SIGNED_DATA.encode(out);
+        writeIndefiniteHeader(new Tag(0));
+
+        // SignedData
+        writeIndefiniteHeader(SEQUENCE.TAG);
+        VERSION.encode(out);
+        digestAlgorithms.encode(out);
+
+        // EncapsulatedContentInfo
+        writeIndefiniteHeader(SEQUENCE.TAG);
+        contentType.encode(out);
+        writeIndefiniteHeader(new Tag(0));
+        new ASN1Header(OCTET_STRING.TAG, Form.CONSTRUCTED, -1).encode(out);
+    }
+
+    private void writeIndefiniteHeader(Tag tag) throws IOException {
+        new ASN1Header(tag, Form.CONSTRUCTED, -1).encode(out);
+    }
+
+    private void writeEOC() throws IOException {
+        out.write(0);
+        out.write(0);
+    }
+
+    /**
+     * Writes the buffered content as a primitive OCTET STRING segment.
+     */
+    private void writeSegment() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        new ASN1Header(OCTET_STRING.TAG, Form.PRIMITIVE, count).encode(out);
+        out.write(buf, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        start();
+
+        for (MessageDigest md : digests.values()) {
+            md.update(b, off, len);
+        }
+
+        while (len > 0) {
+            if (count == buf.length) {
+                writeSegment();
+            }
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the buffered content to the target stream as a complete
+     * segment. This does not flush the target stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (started && !closed) {
+            writeSegment();
+        }
+    }
+
+    /**
+     * Signs the content, writes the rest of the SignedData and closes the
+     * target stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            start();
+            writeSegment();
+            closed = true;
+
+            // end of content OCTET STRING, [0] EXPLICIT, EncapsulatedContentInfo
+            writeEOC();
+            writeEOC();
+            writeEOC();
+
+            if (certificates != null) {
+                certificates.encode(new Tag(0), out);
+            }
+            if (crls != null) {
+                crls.encode(new Tag(1), out);
+            }
+
+            // digest() resets the digest, so finish each one once for
+            // all the signers that use its algorithm
+            Map<DigestAlgorithm, byte[]> messageDigests = new HashMap<>();
+            for (Map.Entry<DigestAlgorithm, MessageDigest> entry : digests.entrySet()) {
+                messageDigests.put(entry.getKey(), entry.getValue().digest());
+            }
+
+            SET signerInfos = new SET();
+            for (Signer signer : signers) {
+                byte[] messageDigest = messageDigests.get(signer.digestAlg);
+                try {
+                    signerInfos.addElement(new SignerInfo(signer.signerIdentifier,
+                            signer.signedAttributes, signer.unsignedAttributes,
+                            contentType, messageDigest, signer.signingAlg,
+                            signer.signingKey));
+                } catch (Exception e) {
+                    throw new IOException("Unable to sign content: " + e.getMessage(), e);
+                }
+            }
+            signerInfos.encode(out);
+
+            // end of SignedData, [0] EXPLICIT, ContentInfo
+            writeEOC();
+            writeEOC();
+            writeEOC();
+
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private static class Signer {
+
+        SignerIdentifier signerIdentifier;
+        SignatureAlgorithm signingAlg;
+        PrivateKey signingKey;
+        SET signedAttributes;
+        SET unsignedAttributes;
+        DigestAlgorithm digestAlg;
+
+        Signer(SignerIdentifier signerIdentifier, SignatureAlgorithm signingAlg,
+                PrivateKey signingKey, SET signedAttributes, SET unsignedAttributes,
+                DigestAlgorithm digestAlg) {
+            this.signerIdentifier = signerIdentifier;
+            this.signingAlg = signingAlg;
+            this.signingKey = signingKey;
+            this.signedAttributes = signedAttributes;
+            this.unsignedAttributes = unsignedAttributes;
+            this.digestAlg = digestAlg;
+        }
+    }
+}
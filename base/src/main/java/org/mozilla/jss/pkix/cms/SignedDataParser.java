@@ -0,0 +1,452 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Reads a <i>ContentInfo</i> containing a CMS <i>SignedData</i> without
+ * holding the content in memory.
+ *
+ * <p>The constructor reads the structure up to the encapsulated content.
+ * The content is then read from {@link #getContentStream}, which digests
+ * it on the fly with every algorithm listed in the digestAlgorithms field.
+ * The certificates, CRLs and SignerInfos that follow the content are read
+ * when they are first requested; any unread content is skipped (and
+ * digested) at that point.
+ *
+ * <p>A signature can be verified with:
+ * <pre>
+ * SignedDataParser parser = new SignedDataParser(in);
+ * InputStream content = parser.getContentStream();
+ * // ... process the content ...
+ * for (int i = 0; i &lt; parser.getSignerInfos().size(); i++) {
+ *     SignerInfo si = (SignerInfo) parser.getSignerInfos().elementAt(i);
+ *     si.verify(parser.getDigest(si.getDigestAlgorithm()), parser.getContentType());
+ * }
+ * </pre>
+ */
+public class SignedDataParser {
+
+    private PositionInputStream in;
+
+    // end positions of the enclosing structures, -1 for indefinite length
+    private long contentInfoEnd;
+    private long explicitEnd;
+    private long signedDataEnd;
+    private long encapContentInfoEnd;
+    private long contentEnd;
+
+    private INTEGER version;
+    private SET digestAlgorithms;
+    private OBJECT_IDENTIFIER contentType;
+    private boolean hasContent;
+
+    private Map<DigestAlgorithm, MessageDigest> digests = new HashMap<>();
+    private Map<DigestAlgorithm, byte[]> results;
+
+    private ContentInputStream contentStream;
+
+    private SET certificates;
+    private SET crls;
+    private SET signerInfos;
+    private boolean done = false;
+
+    /**
+     * Reads the beginning of a SignedData.
+     *
+     * @param istream The input stream, which is positioned at the start
+     *      of a ContentInfo whose content type is <i>signedData</i>.
+     */
+    public SignedDataParser(InputStream istream)
+            throws IOException, InvalidBERException, NoSuchAlgorithmException {
+
+        if (!istream.markSupported()) {
+            istream = new BufferedInputStream(istream);
+        }
+        in = new PositionInputStream(istream);
+
+        // ContentInfo
+        contentInfoEnd = readConstructedHeader(SEQUENCE.TAG, "ContentInfo");
+        OBJECT_IDENTIFIER type = (OBJECT_IDENTIFIER) OBJECT_IDENTIFIER.getTemplate().decode(in);
+        if (!type.equals(ContentInfo.SIGNED_DATA)) {
+            throw new InvalidBERException("ContentInfo does not contain SignedData: " + type);
+        }
+        explicitEnd = readConstructedHeader(new Tag(0), "ContentInfo content");
+
+        // SignedData
+        signedDataEnd = readConstructedHeader(SEQUENCE.TAG, "SignedData");
+        version = (INTEGER) INTEGER.getTemplate().decode(in);
+        digestAlgorithms = (SET) new SET.OF_Template(AlgorithmIdentifier.getTemplate()).decode(in);
+
+        for (int i = 0; i < digestAlgorithms.size(); i++) {
+            AlgorithmIdentifier algID = (AlgorithmIdentifier) digestAlgorithms.elementAt(i);
+            DigestAlgorithm alg = DigestAlgorithm.fromOID(algID.getOID());
+            if (!digests.containsKey(alg)) {
+                digests.put(alg, MessageDigest.getInstance(alg.toString()));
+            }
+        }
+
+        // EncapsulatedContentInfo
+        encapContentInfoEnd = readConstructedHeader(SEQUENCE.TAG, "EncapsulatedContentInfo");
+        contentType = (OBJECT_IDENTIFIER) OBJECT_IDENTIFIER.getTemplate().decode(in);
+
+        // [0] EXPLICIT OCTET STRING OPTIONAL
+        hasContent = !atEnd(encapContentInfoEnd) &&
+                ASN1Header.lookAhead(in).getTag().equals(new Tag(0));
+        if (hasContent) {
+            contentEnd = readConstructedHeader(new Tag(0), "EncapsulatedContentInfo content");
+            contentStream = new ContentInputStream();
+        } else {
+            contentStream = null;
+            readEnd(encapContentInfoEnd, "EncapsulatedContentInfo");
+        }
+    }
+
+    public INTEGER getVersion() {
+        return version;
+    }
+
+    /**
+     * @return A SET of AlgorithmIdentifiers.
+     */
+    public SET getDigestAlgorithms() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * @return The type of the encapsulated content.
+     */
+    public OBJECT_IDENTIFIER getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return false if the content is detached.
+     */
+    public boolean hasContent() {
+        return hasContent;
+    }
+
+    /**
+     * Returns a stream of the encapsulated content, which is digested as
+     * it is read. If the content is detached, the stream is empty.
+     */
+    public InputStream getContentStream() {
+        if (contentStream == null) {
+            return InputStream.nullInputStream();
+        }
+        return contentStream;
+    }
+
+    /**
+     * Returns the digest of the content. The rest of the content is read
+     * if necessary.
+     *
+     * @param alg One of the algorithms in the digestAlgorithms field.
+     * @return The digest, or null if the content is detached.
+     */
+    public byte[] getDigest(DigestAlgorithm alg)
+            throws IOException, InvalidBERException, NoSuchAlgorithmException {
+        readTrailer();
+        if (!hasContent) {
+            return null;
+        }
+        byte[] digest = results.get(alg);
+        if (digest == null) {
+            throw new NoSuchAlgorithmException("Content not digested with " + alg);
+        }
+        return digest;
+    }
+
+    /**
+     * @return The certificates, or null if the field is absent.
+     */
+    public SET getCertificates() throws IOException, InvalidBERException {
+        readTrailer();
+        return certificates;
+    }
+
+    /**
+     * @return The CRLs as ANY values, or null if the field is absent.
+     */
+    public SET getCRLs() throws IOException, InvalidBERException {
+        readTrailer();
+        return crls;
+    }
+
+    /**
+     * @return A SET of SignerInfos.
+     */
+    public SET getSignerInfos() throws IOException, InvalidBERException {
+        readTrailer();
+        return signerInfos;
+    }
+
+    /**
+     * Reads the rest of the content and the fields that follow it.
+     */
+    private void readTrailer() throws IOException, InvalidBERException {
+        if (done) {
+            return;
+        }
+
+        if (contentStream != null) {
+            // skip the unread content, which still has to be digested
+            byte[] buf = new byte[8192];
+            while (contentStream.read(buf, 0, buf.length) != -1) {
+                // keep reading
+            }
+        }
+
+        results = new HashMap<>();
+        for (Map.Entry<DigestAlgorithm, MessageDigest> entry : digests.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().digest());
+        }
+
+        Tag tag = ASN1Header.lookAhead(in).getTag();
+        if (tag.equals(new Tag(0))) {
+            certificates = (SET) new SET.OF_Template(Certificate.getTemplate())
+                    .decode(new Tag(0), in);
+            tag = ASN1Header.lookAhead(in).getTag();
+        }
+        if (tag.equals(new Tag(1))) {
+            crls = (SET) new SET.OF_Template(ANY.getTemplate()).decode(new Tag(1), in);
+        }
+        signerInfos = (SET) new SET.OF_Template(SignerInfo.getTemplate()).decode(in);
+
+        readEnd(signedDataEnd, "SignedData");
+        readEnd(explicitEnd, "ContentInfo content");
+        readEnd(contentInfoEnd, "ContentInfo");
+
+        done = true;
+    }
+
+    /**
+     * Reads the header of a constructed value.
+     *
+     * @return The position of the end of the value, or -1 if it has an
+     *      indefinite length.
+     */
+    private long readConstructedHeader(Tag tag, String name)
+            throws IOException, InvalidBERException {
+        ASN1Header head = new ASN1Header(in);
+        if (!head.getTag().equals(tag) || head.getForm() != Form.CONSTRUCTED) {
+            throw new InvalidBERException("Invalid " + name + ": " + head.getTag());
+        }
+        long length = head.getContentLength();
+        return length == -1 ? -1 : in.getPosition() + length;
+    }
+
+    private boolean atEnd(long end) throws IOException, InvalidBERException {
+        if (end == -1) {
+            return ASN1Header.lookAhead(in).isEOC();
+        }
+        return in.getPosition() >= end;
+    }
+
+    /**
+     * Reads the end of a constructed value.
+     */
+    private void readEnd(long end, String name) throws IOException, InvalidBERException {
+        if (end == -1) {
+            ASN1Header head = new ASN1Header(in);
+            if (!head.isEOC()) {
+                throw new InvalidBERException("Missing end-of-contents after " + name);
+            }
+        } else if (in.getPosition() != end) {
+            throw new InvalidBERException("Invalid length of " + name);
+        }
+    }
+
+    /**
+     * Reads the contents of the (possibly constructed) content OCTET STRING
+     * and digests them.
+     */
+    private class ContentInputStream extends InputStream {
+
+        // end positions of the enclosing constructed OCTET STRINGs,
+        // -1 for indefinite length
+        private Deque<Long> levels = new ArrayDeque<>();
+
+        private long segmentRemaining = 0;
+        private boolean started = false;
+        private boolean eof = false;
+
+        /**
+         * Finds the next primitive segment.
+         *
+         * @return false at the end of the content.
+         */
+        private boolean nextSegment() throws IOException {
+            try {
+                if (!started) {
+                    started = true;
+                    if (readOctetStringHeader()) {
+                        return true;
+                    }
+                }
+
+                while (!levels.isEmpty()) {
+                    long end = levels.peek();
+                    if (end != -1 && in.getPosition() >= end) {
+                        if (in.getPosition() > end) {
+                            throw new InvalidBERException("Invalid length of content segment");
+                        }
+                        levels.pop();
+                        continue;
+                    }
+                    if (end == -1 && ASN1Header.lookAhead(in).isEOC()) {
+                        new ASN1Header(in);
+                        levels.pop();
+                        continue;
+                    }
+                    if (readOctetStringHeader()) {
+                        return true;
+                    }
+                }
+
+                // end of the content OCTET STRING
+                readEnd(contentEnd, "EncapsulatedContentInfo content");
+                readEnd(encapContentInfoEnd, "EncapsulatedContentInfo");
+                eof = true;
+                return false;
+
+            } catch (InvalidBERException e) {
+                throw new IOException("Invalid content: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Reads the header of an OCTET STRING segment.
+         *
+         * @return true if the segment is primitive.
+         */
+        private boolean readOctetStringHeader() throws IOException, InvalidBERException {
+            ASN1Header head = new ASN1Header(in);
+            if (!head.getTag().equals(OCTET_STRING.TAG)) {
+                throw new InvalidBERException("Invalid content segment: " + head.getTag());
+            }
+            long length = head.getContentLength();
+            if (head.getForm() == Form.PRIMITIVE) {
+                if (length == -1) {
+                    throw new InvalidBERException("Primitive content segment with indefinite length");
+                }
+                segmentRemaining = length;
+                return true;
+            }
+            levels.push(length == -1 ? -1 : in.getPosition() + length);
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (segmentRemaining == 0) {
+                if (eof || !nextSegment()) {
+                    return -1;
+                }
+            }
+
+            int n = in.read(b, off, (int) Math.min(len, segmentRemaining));
+            if (n == -1) {
+                throw new EOFException("End-of-file reached while reading content");
+            }
+            segmentRemaining -= n;
+
+            for (MessageDigest md : digests.values()) {
+                md.update(b, off, n);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Keeps track of the position in the underlying stream, including
+     * across mark() and reset().
+     */
+    private static class PositionInputStream extends FilterInputStream {
+
+        private long position = 0;
+        private long markPosition = 0;
+
+        PositionInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getPosition() {
+            return position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            in.mark(readlimit);
+            markPosition = position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            in.reset();
+            position = markPosition;
+        }
+    }
+}
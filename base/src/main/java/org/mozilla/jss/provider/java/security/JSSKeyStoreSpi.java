@@ -20,9 +20,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.jss.CryptoManager;
@@ -40,6 +41,7 @@ import org.mozilla.jss.crypto.TokenSupplierManager;
 import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.netscape.security.util.Utils;
 import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
 import org.mozilla.jss.pkcs11.PK11Token;
 import org.mozilla.jss.pkcs11.TokenProxy;
 import org.slf4j.Logger;
@@ -69,7 +71,13 @@ import org.slf4j.LoggerFactory;
  * with this nickname, or if there is a cert with this nickname and the cert
  * has an associated private key.
  *
- * <li>load updates the token in the keystore.
+ * <li>load updates the token in the keystore and rebuilds the alias index.
+ *
+ * <li>The aliases are indexed when they are first needed. The index is
+ * updated by the changes made through the keystore, and rebuilt after
+ * certificates or keys are imported or deleted through CryptoManager or
+ * another keystore. Changes made outside of JSS require a call to
+ * {@link #refreshAliases()} or {@link CryptoManager#tokenObjectsChanged()}.
  *
  * <li>store is a no-op.
  *
@@ -88,6 +96,26 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
     CryptoToken token;
     protected TokenProxy proxy;
 
+    // alias index: alias -> entry, replaced (not modified) on changes
+    private Map<String, AliasEntry> aliasIndex;
+
+    // token objects version the alias index is built with
+    private long aliasIndexVersion;
+
+    /**
+     * A certificate or private key in the alias index.
+     */
+    static class AliasEntry {
+
+        CryptoToken token;
+        PrivateKey privateKey; // null for certificates
+
+        AliasEntry(CryptoToken token, PrivateKey privateKey) {
+            this.token = token;
+            this.privateKey = privateKey;
+        }
+    }
+
     public JSSKeyStoreSpi() {
 
         logger.debug("JSSKeyStoreSpi: <init>()");
@@ -132,84 +160,189 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
     public Collection<String> getAliases() {
 
         logger.debug("JSSKeyStoreSpi: getAliases()");
-        Set<String> aliases = new LinkedHashSet<>();
+        return new LinkedHashSet<>(getAliasIndex().keySet());
+    }
+
+    /**
+     * Returns the alias index, building it if it does not exist or is out
+     * of date.
+     */
+    synchronized Map<String, AliasEntry> getAliasIndex() {
 
         try {
-            List<CryptoToken> tokens = new ArrayList<>();
             CryptoManager cm = CryptoManager.getInstance();
+            long version = cm.getTokenObjectsVersion();
+
+            if (aliasIndex == null || aliasIndexVersion != version) {
+                aliasIndex = loadAliases(cm);
+                aliasIndexVersion = version;
+            }
+
+            return aliasIndex;
+
+        } catch (NotInitializedException e) {
+            throw new RuntimeException(e);
+
+        } catch (TokenException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the index entry of an alias without building the index.
+     *
+     * @return The entry, or null if the alias or the index does not exist
+     *         or the index is out of date.
+     */
+    synchronized AliasEntry getAliasEntry(CryptoManager cm, String alias) {
+
+        if (aliasIndex == null || aliasIndexVersion != cm.getTokenObjectsVersion()) {
+            return null;
+        }
 
-            if (token == null) {
-                logger.debug("JSSKeyStoreSpi: getting aliases from all tokens");
+        return aliasIndex.get(alias);
+    }
+
+    Map<String, AliasEntry> loadAliases(CryptoManager cm) throws TokenException {
+
+        logger.debug("JSSKeyStoreSpi: loading aliases");
+        Map<String, AliasEntry> aliases = new LinkedHashMap<>();
+
+        List<CryptoToken> tokens = new ArrayList<>();
 
-                Enumeration<CryptoToken> e = cm.getAllTokens();
+        if (token == null) {
+            logger.debug("JSSKeyStoreSpi: getting aliases from all tokens");
 
-                while (e.hasMoreElements()) {
-                    CryptoToken t = e.nextElement();
+            CryptoToken internalCryptoToken = cm.getInternalCryptoToken();
+            Enumeration<CryptoToken> e = cm.getAllTokens();
 
-                    if (t == cm.getInternalCryptoToken()) {
-                        continue; // exclude crypto token
-                    }
+            while (e.hasMoreElements()) {
+                CryptoToken t = e.nextElement();
 
-                    tokens.add(t);
+                if (t == internalCryptoToken) {
+                    continue; // exclude crypto token
                 }
 
+                tokens.add(t);
+            }
+
+        } else {
+            logger.debug("JSSKeyStoreSpi: getting aliases from keystore token");
+            tokens.add(token);
+        }
+
+        CryptoToken internalKeyStorageToken = cm.getInternalKeyStorageToken();
+
+        for (CryptoToken token : tokens) {
+
+            String tokenName;
+            if (token == internalKeyStorageToken) {
+                tokenName = null;
+                logger.debug("JSSKeyStoreSpi: token: internal");
+
             } else {
-                logger.debug("JSSKeyStoreSpi: getting aliases from keystore token");
-                tokens.add(token);
+                tokenName = token.getName();
+                logger.debug("JSSKeyStoreSpi: token: " + tokenName);
             }
 
-            for (CryptoToken token : tokens) {
+            CryptoStore store = token.getCryptoStore();
 
-                String tokenName;
-                if (token == cm.getInternalKeyStorageToken()) {
-                    tokenName = null;
-                    logger.debug("JSSKeyStoreSpi: token: internal");
+            logger.debug("JSSKeyStoreSpi: - certificates:");
+            for (X509Certificate cert : store.getCertificates()) {
+                String nickname = cert.getNickname();
+                logger.debug("JSSKeyStoreSpi:   - " + nickname);
+                aliases.putIfAbsent(nickname, new AliasEntry(token, null));
+            }
 
+            logger.debug("JSSKeyStoreSpi: - private keys:");
+            for (PrivateKey privateKey : store.getPrivateKeys()) {
+                // convert key ID into hexadecimal
+                String keyID = Utils.HexEncode(privateKey.getUniqueID());
+                String nickname;
+                if (tokenName == null) {
+                    nickname = keyID;
                 } else {
-                    tokenName = token.getName();
-                    logger.debug("JSSKeyStoreSpi: token: " + tokenName);
+                    nickname = tokenName + ":" + keyID;
                 }
+                logger.debug("JSSKeyStoreSpi:   - " + nickname);
+                aliases.putIfAbsent(nickname, new AliasEntry(token, privateKey));
+            }
+        }
 
-                CryptoStore store = token.getCryptoStore();
+        return aliases;
+    }
 
-                logger.debug("JSSKeyStoreSpi: - certificates:");
-                for (X509Certificate cert : store.getCertificates()) {
-                    String nickname = cert.getNickname();
-                    logger.debug("JSSKeyStoreSpi:   - " + nickname);
-                    aliases.add(nickname);
-                }
+    /**
+     * Records a change made through this keystore. The change itself
+     * increments the token objects version. The alias index is updated if
+     * it was current before the change and there was no other change,
+     * otherwise it will be rebuilt when needed.
+     *
+     * @param previousVersion The token objects version before the change.
+     * @param alias The changed alias, or null if the change cannot be
+     *            tracked and the index has to be rebuilt.
+     * @param entry The new entry of the alias, or null if the alias has
+     *            been removed.
+     */
+    synchronized void updateAlias(CryptoManager cm, long previousVersion, String alias, AliasEntry entry) {
 
-                logger.debug("JSSKeyStoreSpi: - private keys:");
-                for (PrivateKey privateKey : store.getPrivateKeys()) {
-                    // convert key ID into hexadecimal
-                    String keyID = Utils.HexEncode(privateKey.getUniqueID());
-                    String nickname;
-                    if (tokenName == null) {
-                        nickname = keyID;
-                    } else {
-                        nickname = tokenName + ":" + keyID;
-                    }
-                    logger.debug("JSSKeyStoreSpi:   - " + nickname);
-                    aliases.add(nickname);
-                }
-            }
+        long version = cm.getTokenObjectsVersion();
 
-            return aliases;
+        // rebuild the index if it was out of date or has been changed elsewhere
+        if (aliasIndex == null || aliasIndexVersion != previousVersion
+                || version != previousVersion + 1 || alias == null) {
+            aliasIndex = null;
+            return;
+        }
 
-        } catch (NotInitializedException e) {
-            throw new RuntimeException(e);
+        Map<String, AliasEntry> aliases = new LinkedHashMap<>(aliasIndex);
 
-        } catch (TokenException e) {
-            throw new RuntimeException(e);
+        if (entry == null) {
+            aliases.remove(alias);
+        } else {
+            aliases.put(alias, entry);
+        }
+
+        aliasIndex = aliases;
+        aliasIndexVersion = version;
+    }
+
+    /**
+     * Checks that the private key of an index entry still exists on its
+     * token. The key ID is read from the token, which fails if the key
+     * has been deleted, e.g., with certutil.
+     */
+    boolean isKeyOnToken(String alias, AliasEntry entry) {
+
+        try {
+            if (entry.privateKey instanceof PK11PrivKey && entry.token instanceof PK11Token) {
+                ((PK11PrivKey) entry.privateKey).verifyKeyIsOnToken((PK11Token) entry.token);
+            }
+
+            String keyID = Utils.HexEncode(entry.privateKey.getUniqueID());
+            return keyID.equals(parseAlias(alias)[1]);
+
+        } catch (NoSuchItemOnTokenException | TokenException e) {
+            logger.debug("JSSKeyStoreSpi: unable to verify private key " + alias + ": " + e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Discards the alias index so that it is rebuilt from the tokens,
+     * e.g., after the NSS database has been modified outside of JSS.
+     */
+    public synchronized void refreshAliases() {
+        logger.debug("JSSKeyStoreSpi: refreshAliases()");
+        aliasIndex = null;
+    }
+
     @Override
     public boolean engineContainsAlias(String alias) {
 
         logger.debug("JSSKeyStoreSpi: engineContainsAlias(" + alias + ")");
 
-        return getAliases().contains(alias);
+        return getAliasIndex().containsKey(alias);
     }
 
     @Override
@@ -232,14 +365,38 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
 
                 CryptoStore store = token.getCryptoStore();
 
+                long version = manager.getTokenObjectsVersion();
+
                 logger.debug("JSSKeyStoreSpi: deleting cert: " + alias);
                 store.deleteCertOnly(cert);
+
+                try {
+                    manager.findCertByNickname(alias);
+                    // another cert has the same nickname
+                    updateAlias(manager, version, null, null);
+
+                } catch (ObjectNotFoundException e) {
+                    updateAlias(manager, version, alias, null);
+                }
+
                 return;
 
             } catch (ObjectNotFoundException e) {
                 logger.debug("JSSKeyStoreSpi: cert not found, searching for key");
             }
 
+            AliasEntry entry = getAliasEntry(manager, alias);
+            if (entry != null && entry.privateKey != null) {
+                if (isKeyOnToken(alias, entry)) {
+                    logger.debug("JSSKeyStoreSpi: found private key in index: " + alias);
+                    deleteKey(manager, alias, entry.token.getCryptoStore(), entry.privateKey);
+                    return;
+                }
+
+                logger.debug("JSSKeyStoreSpi: private key no longer on token: " + alias);
+                refreshAliases();
+            }
+
             String[] parts = parseAlias(alias);
             String tokenName = parts[0];
             String nickname = parts[1];
@@ -265,20 +422,7 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
                     continue;
                 }
 
-                try {
-                    logger.debug("JSSKeyStoreSpi: searching for public key: " + nickname);
-                    PublicKey publicKey = store.findPublicKey(privateKey);
-
-                    logger.debug("JSSKeyStoreSpi: deleting public key: " + nickname);
-                    store.deletePublicKey(publicKey);
-
-                } catch (ObjectNotFoundException e) {
-                    logger.debug("JSSKeyStoreSpi: public key not found: " + nickname);
-                }
-
-                logger.debug("JSSKeyStoreSpi: deleting private key: " + nickname);
-                store.deletePrivateKey(privateKey);
-
+                deleteKey(manager, alias, store, privateKey);
                 return;
             }
 
@@ -299,6 +443,31 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
         }
     }
 
+    void deleteKey(
+            CryptoManager manager,
+            String alias,
+            CryptoStore store,
+            PrivateKey privateKey) throws TokenException, NoSuchItemOnTokenException {
+
+        long version = manager.getTokenObjectsVersion();
+
+        try {
+            logger.debug("JSSKeyStoreSpi: searching for public key: " + alias);
+            PublicKey publicKey = store.findPublicKey(privateKey);
+
+            logger.debug("JSSKeyStoreSpi: deleting public key: " + alias);
+            store.deletePublicKey(publicKey);
+
+        } catch (ObjectNotFoundException e) {
+            logger.debug("JSSKeyStoreSpi: public key not found: " + alias);
+        }
+
+        logger.debug("JSSKeyStoreSpi: deleting private key: " + alias);
+        store.deletePrivateKey(privateKey);
+
+        updateAlias(manager, version, alias, null);
+    }
+
     @Override
     public Certificate engineGetCertificate(String alias) {
 
@@ -425,6 +594,18 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
         try {
             CryptoManager cm = CryptoManager.getInstance();
 
+            AliasEntry entry = getAliasEntry(cm, alias);
+            if (entry != null && entry.privateKey != null) {
+                if (isKeyOnToken(alias, entry)) {
+                    logger.debug("JSSKeyStoreSpi: found private key in index: " + alias);
+                    return entry.privateKey;
+                }
+
+                // the key has been removed outside of JSS
+                logger.debug("JSSKeyStoreSpi: private key no longer on token: " + alias);
+                refreshAliases();
+            }
+
             logger.debug("JSSKeyStoreSpi: searching for cert");
 
             try {
@@ -539,6 +720,7 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
         throws IOException
     {
         logger.debug("JSSKeyStoreSpi: engineLoad(stream, password)");
+        refreshAliases();
     }
 
     @Override
@@ -552,7 +734,11 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
         }
 
         JSSLoadStoreParameter jssParam = (JSSLoadStoreParameter) param;
-        token = jssParam.getToken();
+
+        synchronized (this) {
+            token = jssParam.getToken();
+            aliasIndex = null;
+        }
 
         try {
             logger.debug("JSSKeyStoreSpi: token: " + token.getName());
@@ -597,11 +783,24 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
 
         logger.debug("JSSKeyStoreSpi: engineSetKeyEntry(" + alias + ", key, password, chain)");
 
-        if( key instanceof SecretKeyFacade ) {
-            SecretKeyFacade skf = (SecretKeyFacade)key;
-            engineSetKeyEntryNative(alias, skf.key, password, chain);
-        } else {
-            engineSetKeyEntryNative(alias, key, password, chain);
+        CryptoManager cm;
+        try {
+            cm = CryptoManager.getInstance();
+        } catch (NotInitializedException e) {
+            throw new KeyStoreException(e);
+        }
+
+        try {
+            if( key instanceof SecretKeyFacade ) {
+                SecretKeyFacade skf = (SecretKeyFacade)key;
+                engineSetKeyEntryNative(alias, skf.key, password, chain);
+            } else {
+                engineSetKeyEntryNative(alias, key, password, chain);
+            }
+        } finally {
+            // the key is listed under its key ID, not the alias, so the
+            // alias index is rebuilt
+            cm.tokenObjectsChanged();
         }
     }
 
@@ -613,7 +812,7 @@ public class JSSKeyStoreSpi extends java.security.KeyStoreSpi {
 
         logger.debug("JSSKeyStoreSpi: engineSize()");
 
-        return getAliases().size();
+        return getAliasIndex().size();
     }
 
     @Override
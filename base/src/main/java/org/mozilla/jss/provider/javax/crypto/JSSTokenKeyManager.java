@@ -23,9 +23,21 @@ import java.net.Socket;
 import java.security.KeyStore;
 import java.security.Principal;
 import java.security.PrivateKey;
+import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
 
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NotInitializedException;
@@ -34,6 +46,22 @@ import org.mozilla.jss.pkcs11.PK11Cert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A key manager for the certificates and keys of a JSS KeyStore, or of the
+ * NSS database if there is no KeyStore.
+ *
+ * <p>The key entries, i.e., the aliases of certificates that have a private
+ * key, are indexed with their certificate chain, key type and issuers when
+ * they are first needed, so choosing an alias for a handshake is a map
+ * lookup. The index is rebuilt when certificates or keys are imported or
+ * deleted through JSS (see {@link CryptoManager#getTokenObjectsVersion()}),
+ * or after a call to {@link #refresh()}.
+ *
+ * <p>{@link #getCertificate(String)} looks up the certificate on every call
+ * and returns a new object, which may be closed by the caller. The
+ * certificates in the chains returned by {@link #getCertificateChain(String)}
+ * may be shared and must not be closed.
+ */
 public class JSSTokenKeyManager implements JSSKeyManager {
 
     final static Logger logger = LoggerFactory.getLogger(JSSTokenKeyManager.class);
@@ -42,6 +70,122 @@ public class JSSTokenKeyManager implements JSSKeyManager {
     private CryptoManager cm;
     private char[] password;
 
+    // index of key entries, replaced (not modified) on refresh
+    private KeyIndex index;
+
+    /**
+     * A certificate that has a private key, with its chain.
+     */
+    static class KeyEntry {
+
+        String alias;
+        PK11Cert cert;
+        X509Certificate[] chain; // from leaf to root
+        String keyType;
+        String sigAlgName;
+        Set<X500Principal> issuers = new LinkedHashSet<>();
+
+        boolean isValid(Date date) {
+            try {
+                cert.checkValidity(date);
+                return true;
+            } catch (CertificateException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Checks the key type as used by JSSE, e.g., RSA, EC, or EC_RSA
+         * for an EC key in a certificate signed with RSA.
+         */
+        boolean matchesSignatureType(String sigKeyType) {
+            return sigKeyType == null
+                    || sigAlgName.toUpperCase().contains("WITH" + sigKeyType.toUpperCase());
+        }
+    }
+
+    /**
+     * Key entries indexed by key type and by the issuer names in their
+     * chains, in alias order.
+     */
+    static class KeyIndex {
+
+        long version;
+        Map<String, KeyEntry> entries = new LinkedHashMap<>();
+        Map<String, List<KeyEntry>> keyTypes = new HashMap<>();
+        Map<String, Map<X500Principal, List<KeyEntry>>> issuers = new HashMap<>();
+
+        void add(KeyEntry entry) {
+
+            entries.put(entry.alias, entry);
+            keyTypes.computeIfAbsent(entry.keyType, k -> new ArrayList<>()).add(entry);
+
+            Map<X500Principal, List<KeyEntry>> map = issuers.computeIfAbsent(entry.keyType, k -> new HashMap<>());
+            for (X500Principal issuer : entry.issuers) {
+                map.computeIfAbsent(issuer, k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        /**
+         * Finds the key entries for a key type, issued directly or
+         * indirectly by one of the issuers.
+         *
+         * @param keyType The JSSE key type.
+         * @param issuers The accepted issuers, or null to accept any issuer.
+         * @return The matching entries, the valid ones first.
+         */
+        List<KeyEntry> find(String keyType, Principal[] issuers) {
+
+            if (keyType == null) {
+                return Collections.emptyList();
+            }
+
+            // split JSSE key type, e.g., EC_RSA
+            String sigKeyType = null;
+            int i = keyType.indexOf('_');
+            if (i >= 0) {
+                sigKeyType = keyType.substring(i + 1);
+                keyType = keyType.substring(0, i);
+            }
+
+            Collection<KeyEntry> candidates;
+
+            if (issuers == null || issuers.length == 0) {
+                candidates = keyTypes.getOrDefault(keyType, Collections.emptyList());
+
+            } else {
+                Map<X500Principal, List<KeyEntry>> map = this.issuers.getOrDefault(keyType, Collections.emptyMap());
+                Set<KeyEntry> set = new LinkedHashSet<>();
+
+                for (Principal issuer : issuers) {
+                    X500Principal principal = toX500Principal(issuer);
+                    if (principal == null) continue;
+                    set.addAll(map.getOrDefault(principal, Collections.emptyList()));
+                }
+
+                candidates = set;
+            }
+
+            Date now = new Date();
+            List<KeyEntry> valid = new ArrayList<>();
+            List<KeyEntry> invalid = new ArrayList<>();
+
+            for (KeyEntry entry : candidates) {
+
+                if (!entry.matchesSignatureType(sigKeyType)) continue;
+
+                if (entry.isValid(now)) {
+                    valid.add(entry);
+                } else {
+                    invalid.add(entry);
+                }
+            }
+
+            valid.addAll(invalid);
+            return valid;
+        }
+    }
+
     public JSSTokenKeyManager(KeyStore jssKeyStore, char[] password) {
         jks = jssKeyStore;
         this.password = password;
@@ -55,20 +199,184 @@ public class JSSTokenKeyManager implements JSSKeyManager {
         }
     }
 
+    static X500Principal toX500Principal(Principal principal) {
+
+        if (principal instanceof X500Principal x500Principal) {
+            return x500Principal;
+        }
+
+        try {
+            return new X500Principal(principal.getName());
+        } catch (IllegalArgumentException e) {
+            logger.debug("JSSKeyManager: Invalid issuer: " + principal.getName());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of key entries, building it if it does not exist
+     * or is out of date.
+     */
+    synchronized KeyIndex getIndex() {
+
+        long version = cm.getTokenObjectsVersion();
+
+        if (index == null || index.version != version) {
+            index = loadIndex();
+            index.version = version;
+        }
+
+        return index;
+    }
+
+    /**
+     * @return The index of key entries if it has been built and is up to
+     *         date, or null. The index is not built by this method.
+     */
+    synchronized KeyIndex getCurrentIndex() {
+
+        if (index == null || index.version != cm.getTokenObjectsVersion()) {
+            return null;
+        }
+
+        return index;
+    }
+
+    /**
+     * Discards the index of key entries so that it is rebuilt from the
+     * KeyStore or NSS database, e.g., after the NSS database has been
+     * modified outside of JSS.
+     */
+    public synchronized void refresh() {
+        logger.debug("JSSKeyManager: refresh()");
+        index = null;
+    }
+
+    KeyIndex loadIndex() {
+
+        logger.debug("JSSKeyManager: Loading key entries");
+        KeyIndex index = new KeyIndex();
+
+        try {
+            Collection<String> aliases = new LinkedHashSet<>();
+
+            if (jks == null) {
+                for (org.mozilla.jss.crypto.X509Certificate cert : cm.getPermCerts()) {
+                    aliases.add(cert.getNickname());
+                }
+
+            } else {
+                Enumeration<String> e = jks.aliases();
+                while (e.hasMoreElements()) {
+                    aliases.add(e.nextElement());
+                }
+            }
+
+            for (String alias : aliases) {
+
+                if (alias == null) continue;
+
+                KeyEntry entry;
+                try {
+                    entry = loadEntry(alias);
+                } catch (Exception e) {
+                    logger.warn("JSSKeyManager: Unable to load key entry " + alias + ": " + e.getMessage(), e);
+                    continue;
+                }
+
+                if (entry == null) continue;
+
+                logger.debug("JSSKeyManager: - " + alias + " (" + entry.keyType + ")");
+                index.add(entry);
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return The key entry of an alias, or null if the alias has no
+     *         certificate or no private key.
+     */
+    KeyEntry loadEntry(String alias) throws Exception {
+
+        org.mozilla.jss.crypto.X509Certificate cert = findCertificate(alias);
+
+        if (!(cert instanceof PK11Cert)) {
+            return null;
+        }
+
+        try {
+            cm.findPrivKeyByCert(cert);
+        } catch (ObjectNotFoundException e) {
+            return null;
+        }
+
+        KeyEntry entry = new KeyEntry();
+        entry.alias = alias;
+        entry.cert = (PK11Cert) cert;
+        entry.keyType = cert.getPublicKey().getAlgorithm();
+        entry.sigAlgName = entry.cert.getSigAlgName();
+
+        org.mozilla.jss.crypto.X509Certificate[] chain = cm.buildCertificateChain(cert);
+        entry.chain = new X509Certificate[chain.length];
+
+        for (int i = 0; i < chain.length; i++) {
+            X509Certificate c = (PK11Cert) chain[i];
+            entry.chain[i] = c;
+            entry.issuers.add(c.getIssuerX500Principal());
+        }
+
+        return entry;
+    }
+
     @Override
     public String chooseClientAlias(String[] keyTypes, Principal[] issuers, Socket socket) {
-        logger.debug("JSSKeyManager: chooseClientAlias() - not implemented");
+        logger.debug("JSSKeyManager: chooseClientAlias()");
+
+        if (keyTypes == null) {
+            return null;
+        }
+
+        KeyIndex index = getIndex();
+
+        for (String keyType : keyTypes) {
+            List<KeyEntry> entries = index.find(keyType, issuers);
+            if (!entries.isEmpty()) {
+                String alias = entries.get(0).alias;
+                logger.debug("JSSKeyManager: client alias: " + alias);
+                return alias;
+            }
+        }
+
         return null;
     }
 
     @Override
     public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
-        logger.debug("JSSKeyManager: chooseServerAlias() - not implemented");
-        return null;
+        logger.debug("JSSKeyManager: chooseServerAlias(" + keyType + ")");
+
+        List<KeyEntry> entries = getIndex().find(keyType, issuers);
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        String alias = entries.get(0).alias;
+        logger.debug("JSSKeyManager: server alias: " + alias);
+        return alias;
     }
 
     @Override
     public org.mozilla.jss.crypto.X509Certificate getCertificate(String alias) {
+        // the certificates in the index are shared, so the certificate is
+        // looked up again to return an object that the caller can close
+        return findCertificate(alias);
+    }
+
+    org.mozilla.jss.crypto.X509Certificate findCertificate(String alias) {
         try {
             if (jks == null) {
                 return cm.findCertByNickname(alias);
@@ -88,8 +396,16 @@ public class JSSTokenKeyManager implements JSSKeyManager {
     public X509Certificate[] getCertificateChain(String alias) {
         logger.debug("JSSKeyManager: getCertificateChain(" + alias + ")");
 
+        // use the index if it has already been built, but do not build it
+        // just to look up a single alias
+        KeyIndex index = getCurrentIndex();
+        KeyEntry entry = index == null ? null : index.entries.get(alias);
+        if (entry != null) {
+            return entry.chain.clone();
+        }
+
         try {
-            org.mozilla.jss.crypto.X509Certificate cert = getCertificate(alias);
+            org.mozilla.jss.crypto.X509Certificate cert = findCertificate(alias);
 
             if (cert == null) {
                 return null;
@@ -114,8 +430,23 @@ public class JSSTokenKeyManager implements JSSKeyManager {
 
     @Override
     public String[] getClientAliases(String keyType, Principal[] issuers) {
-        logger.debug("JSSKeyManager: getClientAliases() - not implemented");
-        return null;
+        logger.debug("JSSKeyManager: getClientAliases(" + keyType + ")");
+        return getAliases(keyType, issuers);
+    }
+
+    String[] getAliases(String keyType, Principal[] issuers) {
+
+        List<KeyEntry> entries = getIndex().find(keyType, issuers);
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        String[] aliases = new String[entries.size()];
+        for (int i = 0; i < aliases.length; i++) {
+            aliases[i] = entries.get(i).alias;
+        }
+
+        return aliases;
     }
 
     @Override
@@ -139,7 +470,7 @@ public class JSSTokenKeyManager implements JSSKeyManager {
 
     @Override
     public String[] getServerAliases(String keyType, Principal[] issuers) {
-        logger.debug("JSSKeyManager: getServerAliases() - not implemented");
-        return null;
+        logger.debug("JSSKeyManager: getServerAliases(" + keyType + ")");
+        return getAliases(keyType, issuers);
     }
 }
@@ -26,6 +26,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -38,7 +39,8 @@ import org.mozilla.jss.CertificateUsage;
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NotInitializedException;
 import org.mozilla.jss.crypto.ObjectNotFoundException;
-import org.mozilla.jss.netscape.security.util.Cert;
+import org.mozilla.jss.netscape.security.x509.CRLStore;
+import org.mozilla.jss.netscape.security.x509.CertChainBuilder;
 import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
 import org.mozilla.jss.netscape.security.x509.DNSName;
 import org.mozilla.jss.netscape.security.x509.GeneralName;
@@ -66,6 +68,9 @@ public class JSSTrustManager implements X509TrustManager {
     private String hostname;
     private boolean allowMissingExtendedKeyUsage = false;
     private boolean enableCertRevokeVerify = false;
+    private CRLStore crlStore;
+    private boolean allowExpiredCRLs = false;
+    private CertChainBuilder chainBuilder = new CertChainBuilder();
 
     public boolean isEnableCertRevokeVerify() {
         return enableCertRevokeVerify;
@@ -76,6 +81,44 @@ public class JSSTrustManager implements X509TrustManager {
     }
     private SSLCertificateApprovalCallback callback;
 
+    public CRLStore getCRLStore() {
+        return crlStore;
+    }
+
+    /**
+     * Sets a store of CRLs to check the revocation status of the
+     * certificates locally, in addition to or instead of NSS.
+     */
+    public void setCRLStore(CRLStore crlStore) {
+        this.crlStore = crlStore;
+    }
+
+    public boolean isAllowExpiredCRLs() {
+        return allowExpiredCRLs;
+    }
+
+    /**
+     * By default, a certificate is rejected if the CRL of its issuer in
+     * the CRL store has expired, since revoked certificates could be
+     * missing from it. This option allows expired CRLs to be used.
+     */
+    public void configureAllowExpiredCRLs(boolean allow) {
+        allowExpiredCRLs = allow;
+    }
+
+    public CertChainBuilder getChainBuilder() {
+        return chainBuilder;
+    }
+
+    /**
+     * Sets the builder used to sort the peer's certificate chain. The
+     * intermediate certificates added to the builder are used to
+     * complete chains that do not include them.
+     */
+    public void setChainBuilder(CertChainBuilder chainBuilder) {
+        this.chainBuilder = chainBuilder;
+    }
+
     public String getHostname() {
         return hostname;
     }
@@ -175,9 +218,8 @@ public class JSSTrustManager implements X509TrustManager {
 
         logger.debug("JSSTrustManager: checkCertChain(" + keyUsage + ")");
 
-        // sort cert chain from root to leaf
-        // TODO: resolve incomplete chain
-        certChain = Cert.sortCertificateChain(certChain);
+        // sort cert chain from root to leaf and resolve incomplete chain
+        certChain = chainBuilder.build(certChain);
 
         for (X509Certificate cert : certChain) {
             logger.debug("JSSTrustManager:  - " + cert.getSubjectX500Principal());
@@ -211,6 +253,7 @@ public class JSSTrustManager implements X509TrustManager {
         case ValidityStatus.UNTRUSTED_ISSUER -> throw new CertificateException("Untrusted issuer: " + subject);
         case ValidityStatus.BAD_CERT_DOMAIN -> throw new CertificateException("Bad certificate domain: " + subject);
         case ValidityStatus.REVOKED_CERTIFICATE -> throw new CertificateException("Revoked certificate: " + subject);
+        case ValidityStatus.SEC_ERROR_CRL_EXPIRED -> throw new CertificateException("Expired CRL for certificate: " + subject);
         default -> throw new CertificateException("Invalid certificate: " + subject);
         }
     }
@@ -222,6 +265,10 @@ public class JSSTrustManager implements X509TrustManager {
         if (!isTrustedPeer(certChain)) {
             checkIssuerTrusted(certChain, status);
 
+            if (crlStore != null) {
+                checkCRLs(certChain, status);
+            }
+
             if (enableCertRevokeVerify) {
                 // If the certificate is a trusted peer there is not check of the issuer and/or the certificate.
                 // If the issuer is not available, or it is a trusted peer, the revocation is not verified because 
@@ -325,6 +372,45 @@ public class JSSTrustManager implements X509TrustManager {
         logger.debug("JSSTrustManager: Trusted issuer: " + issuer.getSubjectX500Principal());
     }
 
+    public void checkCRLs(X509Certificate[] certChain, ValidityStatus status) throws Exception {
+
+        Date now = new Date();
+
+        for (int i = 0; i < certChain.length; i++) {
+            X509Certificate cert = certChain[i];
+            int depth = certChain.length - 1 - i;
+
+            X500Principal issuer = cert.getIssuerX500Principal();
+            logger.debug("JSSTrustManager: Checking CRL for cert 0x" + cert.getSerialNumber().toString(16));
+
+            if (!crlStore.hasCRL(issuer)) {
+                logger.debug("JSSTrustManager: No CRL for issuer: " + issuer);
+                continue;
+            }
+
+            Date nextUpdate = crlStore.getNextUpdate(issuer);
+            if (nextUpdate != null && nextUpdate.before(now)) {
+                if (allowExpiredCRLs) {
+                    logger.warn("JSSTrustManager: CRL of " + issuer + " expired on " + nextUpdate);
+                } else {
+                    logger.debug("JSSTrustManager: CRL of " + issuer + " expired on " + nextUpdate);
+                    status.addReason(ValidityStatus.SEC_ERROR_CRL_EXPIRED, cert, depth);
+                }
+            }
+
+            CRLStore.Revocation revocation = crlStore.getRevocation(issuer, cert.getSerialNumber());
+            if (revocation == null) {
+                continue;
+            }
+
+            logger.debug("JSSTrustManager: Revoked cert: " + cert.getSubjectX500Principal());
+            logger.debug("JSSTrustManager: - date: " + revocation.getRevocationDate());
+            logger.debug("JSSTrustManager: - reason: " + revocation.getRevocationReason());
+
+            status.addReason(ValidityStatus.REVOKED_CERTIFICATE, cert, depth);
+        }
+    }
+
     public void checkValidityDates(X509Certificate[] certChain, ValidityStatus status) throws Exception {
 
         for (int i = 0; i < certChain.length; i++) {
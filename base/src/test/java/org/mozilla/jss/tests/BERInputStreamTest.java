@@ -0,0 +1,212 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BERInputStream;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.Tag;
+
+public class BERInputStreamTest {
+
+    // SEQUENCE { INTEGER 5, OCTET STRING "abcd" } with indefinite lengths
+    // and a constructed OCTET STRING
+    private static final byte[] INDEFINITE = {
+            0x30, (byte) 0x80,
+                0x02, 0x01, 0x05,
+                0x24, (byte) 0x80,
+                    0x04, 0x02, 'a', 'b',
+                    0x04, 0x02, 'c', 'd',
+                0x00, 0x00,
+            0x00, 0x00
+    };
+
+    // SEQUENCE { [0] EXPLICIT SEQUENCE { INTEGER 1, INTEGER 2 },
+    //            SEQUENCE { OCTET STRING "xy" } }
+    // with a non-minimal length on the innermost SEQUENCE
+    private static final byte[] NESTED = {
+            0x30, 0x17,
+                (byte) 0xa0, 0x09,
+                    0x30, (byte) 0x81, 0x06,
+                        0x02, 0x01, 0x01,
+                        0x02, 0x01, 0x02,
+                0x30, 0x0a,
+                    0x24, (byte) 0x80,
+                        0x04, 0x01, 'x',
+                        0x04, 0x01, 'y',
+                    0x00, 0x00
+    };
+
+    private static ASN1Template indefiniteTemplate() {
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(OCTET_STRING.getTemplate());
+        return template;
+    }
+
+    private static ASN1Template nestedTemplate() {
+        SEQUENCE.Template integers = new SEQUENCE.Template();
+        integers.addElement(INTEGER.getTemplate());
+        integers.addElement(INTEGER.getTemplate());
+
+        SEQUENCE.Template strings = new SEQUENCE.Template();
+        strings.addElement(OCTET_STRING.getTemplate());
+
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(new EXPLICIT.Template(new Tag(0), integers));
+        template.addElement(strings);
+        return template;
+    }
+
+    private static void checkIndefinite(ASN1Value value) {
+        SEQUENCE seq = (SEQUENCE) value;
+        Assertions.assertEquals(2, seq.size());
+        Assertions.assertEquals(BigInteger.valueOf(5), seq.elementAt(0));
+        Assertions.assertArrayEquals("abcd".getBytes(),
+                ((OCTET_STRING) seq.elementAt(1)).toByteArray());
+    }
+
+    private static void checkNested(ASN1Value value) {
+        SEQUENCE seq = (SEQUENCE) value;
+        Assertions.assertEquals(2, seq.size());
+
+        SEQUENCE integers = (SEQUENCE) ((EXPLICIT) seq.elementAt(0)).getContent();
+        Assertions.assertEquals(BigInteger.valueOf(1), integers.elementAt(0));
+        Assertions.assertEquals(BigInteger.valueOf(2), integers.elementAt(1));
+
+        SEQUENCE strings = (SEQUENCE) seq.elementAt(1);
+        Assertions.assertArrayEquals("xy".getBytes(),
+                ((OCTET_STRING) strings.elementAt(0)).toByteArray());
+    }
+
+    /**
+     * Returns a buffer holding the encoding between padding bytes,
+     * positioned at the start of the encoding.
+     */
+    private static ByteBuffer wrap(byte[] encoding, boolean direct) {
+        byte[] padded = new byte[encoding.length + 6];
+        Arrays.fill(padded, (byte) 0xff);
+        System.arraycopy(encoding, 0, padded, 3, encoding.length);
+
+        ByteBuffer buffer = direct
+                ? ByteBuffer.allocateDirect(padded.length)
+                : ByteBuffer.allocate(padded.length);
+        buffer.put(padded);
+        buffer.position(3);
+        return buffer;
+    }
+
+    @Test
+    public void testIndefiniteLength() throws Exception {
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer buffer = wrap(INDEFINITE, direct);
+            checkIndefinite(indefiniteTemplate().decode(buffer));
+            Assertions.assertEquals(3 + INDEFINITE.length, buffer.position());
+        }
+
+        // the same value is decoded from a stream
+        checkIndefinite(indefiniteTemplate().decode(new ByteArrayInputStream(INDEFINITE)));
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer buffer = wrap(NESTED, direct);
+            checkNested(nestedTemplate().decode(buffer));
+            Assertions.assertEquals(3 + NESTED.length, buffer.position());
+        }
+
+        checkNested(nestedTemplate().decode(new ByteArrayInputStream(NESTED)));
+        checkNested(ASN1Util.decode(nestedTemplate(), NESTED));
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        SEQUENCE.Template template = (SEQUENCE.Template) indefiniteTemplate();
+        template.setLazy(true);
+        checkIndefinite(template.decode(ByteBuffer.wrap(INDEFINITE)));
+
+        template = (SEQUENCE.Template) nestedTemplate();
+        template.setLazy(true);
+        checkNested(template.decode(ByteBuffer.wrap(NESTED)));
+    }
+
+    @Test
+    public void testConsecutiveValues() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEFINITE.length + NESTED.length);
+        buffer.put(INDEFINITE).put(NESTED).flip();
+
+        checkIndefinite(indefiniteTemplate().decode(buffer));
+        Assertions.assertEquals(INDEFINITE.length, buffer.position());
+
+        checkNested(nestedTemplate().decode(buffer));
+        Assertions.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        for (byte[] encoding : new byte[][] { INDEFINITE, NESTED }) {
+            ASN1Template template = encoding == INDEFINITE ? indefiniteTemplate() : nestedTemplate();
+            for (int length = 0; length < encoding.length; length++) {
+                ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(encoding, length));
+                try {
+                    template.decode(buffer);
+                    Assertions.fail("Truncated encoding of " + length + " bytes was decoded");
+                } catch (InvalidBERException | IOException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedDefiniteLength() throws Exception {
+        // the SEQUENCE claims more content than the buffer holds
+        byte[] encoding = { 0x30, 0x08, 0x02, 0x01, 0x01, 0x02, 0x01, 0x02 };
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(INTEGER.getTemplate());
+
+        try {
+            template.decode(ByteBuffer.wrap(encoding));
+            Assertions.fail("Truncated SEQUENCE was decoded");
+        } catch (InvalidBERException | IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMarkReset() throws Exception {
+        BERInputStream stream = new BERInputStream(NESTED, 2, NESTED.length - 2);
+        Assertions.assertEquals(2, stream.getPosition());
+        Assertions.assertTrue(stream.markSupported());
+        Assertions.assertThrows(IOException.class, () -> stream.reset());
+
+        stream.mark(0);
+        EXPLICIT.Template template = new EXPLICIT.Template(new Tag(0), new SEQUENCE.OF_Template(INTEGER.getTemplate()));
+        template.decode(stream);
+        Assertions.assertEquals(13, stream.getPosition());
+
+        stream.reset();
+        Assertions.assertEquals(2, stream.getPosition());
+        Assertions.assertEquals(0xa0, stream.read());
+        Assertions.assertEquals(NESTED.length - 3, stream.available());
+
+        Assertions.assertEquals(NESTED.length - 3, stream.skip(100));
+        Assertions.assertEquals(-1, stream.read());
+        Assertions.assertEquals(-1, stream.read(new byte[1], 0, 1));
+    }
+}
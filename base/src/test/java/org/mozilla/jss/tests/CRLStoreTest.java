@@ -0,0 +1,193 @@
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CRLException;
+import java.util.Date;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.CRLStore;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerExtension;
+import org.mozilla.jss.netscape.security.x509.DeltaCRLIndicatorExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.GeneralName;
+import org.mozilla.jss.netscape.security.x509.GeneralNames;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+public class CRLStoreTest {
+
+    private static final String ISSUER = "CN=CA Signing Certificate,O=EXAMPLE";
+
+    // an unknown extension with a NULL value
+    private static final ObjectIdentifier UNKNOWN_OID = new ObjectIdentifier("1.2.3.4.5");
+    private static final byte[] NULL_VALUE = { 0x04, 0x02, 0x05, 0x00 };
+
+    // whole seconds, since CRL dates have no fractions
+    private static final long NOW = System.currentTimeMillis() / 1000 * 1000;
+
+    private static KeyPair keyPair;
+
+    private static KeyPair getKeyPair() throws Exception {
+        if (keyPair == null) {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+            kpg.initialize(2048);
+            keyPair = kpg.generateKeyPair();
+        }
+        return keyPair;
+    }
+
+    private static Date date(long days) {
+        return new Date(NOW + days * 24 * 3600 * 1000);
+    }
+
+    private static RevokedCertificate entry(long serial, RevocationReason reason) throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        return new RevokedCertImpl(BigInteger.valueOf(serial), date(-2), exts);
+    }
+
+    private static X509CRLImpl createCRL(Date thisUpdate, Date nextUpdate,
+            RevokedCertificate[] entries, CRLExtensions exts) throws Exception {
+        X509CRLImpl crl = new X509CRLImpl(new X500Name(ISSUER), thisUpdate, nextUpdate, entries, exts);
+        crl.sign(getKeyPair().getPrivate(), "SHA256withRSA");
+        return crl;
+    }
+
+    @Test
+    public void testRevocationLookup() throws Exception {
+        CRLStore store = new CRLStore();
+        X500Principal issuer = new X500Principal(ISSUER);
+
+        Assertions.assertFalse(store.hasCRL(issuer));
+        Assertions.assertNull(store.getRevocation(issuer, BigInteger.ONE));
+
+        store.add(createCRL(date(-1), date(1), new RevokedCertificate[] {
+                entry(300, RevocationReason.KEY_COMPROMISE),
+                entry(1, RevocationReason.SUPERSEDED),
+                new RevokedCertImpl(BigInteger.valueOf(20), date(-2))
+        }, null));
+
+        Assertions.assertTrue(store.hasCRL(issuer));
+        Assertions.assertEquals(date(1), store.getNextUpdate(issuer));
+
+        CRLStore.Revocation revocation = store.getRevocation(issuer, BigInteger.valueOf(300));
+        Assertions.assertNotNull(revocation);
+        Assertions.assertEquals(BigInteger.valueOf(300), revocation.getSerialNumber());
+        Assertions.assertEquals(date(-2), revocation.getRevocationDate());
+        Assertions.assertEquals(RevocationReason.KEY_COMPROMISE, revocation.getRevocationReason());
+
+        Assertions.assertEquals(RevocationReason.SUPERSEDED,
+                store.getRevocation(issuer, BigInteger.ONE).getRevocationReason());
+        Assertions.assertNull(store.getRevocation(issuer, BigInteger.valueOf(20)).getRevocationReason());
+
+        Assertions.assertTrue(store.isRevoked(issuer, BigInteger.valueOf(20)));
+        Assertions.assertFalse(store.isRevoked(issuer, BigInteger.valueOf(2)));
+        Assertions.assertFalse(store.isRevoked(new X500Principal("CN=Other CA"), BigInteger.ONE));
+    }
+
+    @Test
+    public void testReplacement() throws Exception {
+        CRLStore store = new CRLStore();
+        X500Principal issuer = new X500Principal(ISSUER);
+
+        store.add(createCRL(date(-2), date(1), new RevokedCertificate[] {
+                entry(1, RevocationReason.CERTIFICATE_HOLD)
+        }, null));
+
+        X509CRLImpl newer = createCRL(date(-1), date(2), new RevokedCertificate[] {
+                entry(2, RevocationReason.KEY_COMPROMISE)
+        }, null);
+        store.add(newer);
+
+        // the certificate on hold has been released
+        Assertions.assertFalse(store.isRevoked(issuer, BigInteger.ONE));
+        Assertions.assertTrue(store.isRevoked(issuer, BigInteger.valueOf(2)));
+        Assertions.assertEquals(date(-1), store.getThisUpdate(issuer));
+
+        // an older CRL does not replace the current one
+        X509CRLImpl older = createCRL(date(-3), date(1), new RevokedCertificate[] {
+                entry(3, RevocationReason.KEY_COMPROMISE)
+        }, null);
+        Assertions.assertThrows(CRLException.class, () -> store.add(older));
+        Assertions.assertFalse(store.isRevoked(issuer, BigInteger.valueOf(3)));
+        Assertions.assertEquals(date(-1), store.getThisUpdate(issuer));
+
+        // a CRL without entries replaces one with entries
+        store.add(createCRL(date(0), date(2), null, null));
+        Assertions.assertTrue(store.hasCRL(issuer));
+        Assertions.assertFalse(store.isRevoked(issuer, BigInteger.valueOf(2)));
+
+        store.remove(issuer);
+        Assertions.assertFalse(store.hasCRL(issuer));
+    }
+
+    @Test
+    public void testDeltaCRL() throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(DeltaCRLIndicatorExtension.NAME, new DeltaCRLIndicatorExtension(1));
+
+        X509CRLImpl crl = createCRL(date(-1), date(1), null, exts);
+        CRLStore store = new CRLStore();
+
+        Assertions.assertThrows(CRLException.class, () -> store.add(crl));
+        Assertions.assertFalse(store.hasCRL(new X500Principal(ISSUER)));
+    }
+
+    @Test
+    public void testCriticalCRLExtension() throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set("unknown", new Extension(UNKNOWN_OID, true, NULL_VALUE));
+
+        X509CRLImpl crl = createCRL(date(-1), date(1), null, exts);
+        CRLStore store = new CRLStore();
+
+        Assertions.assertThrows(CRLException.class, () -> store.add(crl));
+
+        // non-critical extensions are ignored
+        exts = new CRLExtensions();
+        exts.set("unknown", new Extension(UNKNOWN_OID, false, NULL_VALUE));
+
+        store.add(createCRL(date(-1), date(1), null, exts));
+        Assertions.assertTrue(store.hasCRL(new X500Principal(ISSUER)));
+    }
+
+    @Test
+    public void testIndirectCRL() throws Exception {
+        GeneralNames names = new GeneralNames();
+        names.addElement(new GeneralName(new X500Name("CN=Other CA")));
+
+        CRLExtensions entryExts = new CRLExtensions();
+        entryExts.set(CertificateIssuerExtension.NAME, new CertificateIssuerExtension(names));
+
+        X509CRLImpl crl = createCRL(date(-1), date(1), new RevokedCertificate[] {
+                new RevokedCertImpl(BigInteger.ONE, date(-2), entryExts)
+        }, null);
+        CRLStore store = new CRLStore();
+
+        Assertions.assertThrows(CRLException.class, () -> store.add(crl));
+    }
+
+    @Test
+    public void testCriticalEntryExtension() throws Exception {
+        CRLExtensions entryExts = new CRLExtensions();
+        entryExts.set("unknown", new Extension(UNKNOWN_OID, true, NULL_VALUE));
+
+        X509CRLImpl crl = createCRL(date(-1), date(1), new RevokedCertificate[] {
+                new RevokedCertImpl(BigInteger.ONE, date(-2), entryExts)
+        }, null);
+        CRLStore store = new CRLStore();
+
+        Assertions.assertThrows(CRLException.class, () -> store.add(crl));
+    }
+}
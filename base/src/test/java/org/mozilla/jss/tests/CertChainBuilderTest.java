@@ -0,0 +1,198 @@
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.AuthorityKeyIdentifierExtension;
+import org.mozilla.jss.netscape.security.x509.CertChainBuilder;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateExtensions;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.KeyIdentifier;
+import org.mozilla.jss.netscape.security.x509.SubjectKeyIdentifierExtension;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+public class CertChainBuilderTest {
+
+    private static final long DAY = 86400000L;
+    private static final long NOW = System.currentTimeMillis() / 1000 * 1000;
+
+    private static long serial = 1;
+
+    private static KeyPair rootKey;
+    private static KeyPair otherRootKey;
+    private static KeyPair caKey;
+    private static KeyPair leafKey;
+
+    private static KeyPair createKeyPair() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        return kpg.generateKeyPair();
+    }
+
+    private static void init() throws Exception {
+        if (rootKey == null) {
+            rootKey = createKeyPair();
+            otherRootKey = createKeyPair();
+            caKey = createKeyPair();
+            leafKey = createKeyPair();
+        }
+    }
+
+    private static X509Certificate createCert(String subject, KeyPair subjectKey, byte[] ski,
+            String issuer, KeyPair issuerKey, byte[] aki, long notAfter) throws Exception {
+
+        CertificateExtensions exts = new CertificateExtensions();
+        if (ski != null) {
+            exts.set(SubjectKeyIdentifierExtension.NAME, new SubjectKeyIdentifierExtension(ski));
+        }
+        if (aki != null) {
+            exts.set(AuthorityKeyIdentifierExtension.NAME,
+                    new AuthorityKeyIdentifierExtension(new KeyIdentifier(aki), null, null));
+        }
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+        info.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(BigInteger.valueOf(serial++)));
+        info.set(X509CertInfo.ISSUER, new CertificateIssuerName(new X500Name(issuer)));
+        info.set(X509CertInfo.SUBJECT, new CertificateSubjectName(new X500Name(subject)));
+        info.set(X509CertInfo.VALIDITY, new CertificateValidity(new Date(NOW - DAY), new Date(notAfter)));
+        info.set(X509CertInfo.ALGORITHM_ID, new CertificateAlgorithmId(AlgorithmId.get("SHA256withRSA")));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(X509Key.parse(
+                new DerValue(subjectKey.getPublic().getEncoded()))));
+        info.set(X509CertInfo.EXTENSIONS, exts);
+
+        X509CertImpl cert = new X509CertImpl(info);
+        cert.sign(issuerKey.getPrivate(), "SHA256withRSA");
+        return new X509CertImpl(cert.getEncoded());
+    }
+
+    private static X509Certificate createRoot() throws Exception {
+        init();
+        return createCert("CN=Root CA", rootKey, new byte[] { 1 }, "CN=Root CA", rootKey, new byte[] { 1 }, NOW + DAY);
+    }
+
+    private static X509Certificate createCA(long notAfter) throws Exception {
+        init();
+        return createCert("CN=Sub CA", caKey, new byte[] { 2 }, "CN=Root CA", rootKey, new byte[] { 1 }, notAfter);
+    }
+
+    private static X509Certificate createLeaf() throws Exception {
+        init();
+        return createCert("CN=Server", leafKey, new byte[] { 3 }, "CN=Sub CA", caKey, new byte[] { 2 }, NOW + DAY);
+    }
+
+    @Test
+    public void testUnorderedChain() throws Exception {
+        X509Certificate root = createRoot();
+        X509Certificate ca = createCA(NOW + DAY);
+        X509Certificate leaf = createLeaf();
+        X509Certificate[] expected = { root, ca, leaf };
+
+        CertChainBuilder builder = new CertChainBuilder();
+        Assertions.assertArrayEquals(expected, builder.build(new X509Certificate[] { ca, leaf, root }));
+        Assertions.assertArrayEquals(expected, builder.build(new X509Certificate[] { leaf, root, ca }));
+        Assertions.assertArrayEquals(expected, builder.build(new X509Certificate[] { root, ca, leaf }));
+
+        // duplicates are collapsed
+        Assertions.assertArrayEquals(expected, builder.build(new X509Certificate[] {
+                leaf, ca, new X509CertImpl(ca.getEncoded()), root, root }));
+
+        // an unrelated self-signed certificate is ignored if the leaf is first
+        X509Certificate other = createCert("CN=Other Root", otherRootKey, new byte[] { 4 },
+                "CN=Other Root", otherRootKey, new byte[] { 4 }, NOW + DAY);
+        Assertions.assertArrayEquals(expected, builder.build(new X509Certificate[] { leaf, other, ca, root }));
+
+        // several leaf certificates, none of them first
+        Assertions.assertThrows(CertificateException.class,
+                () -> builder.build(new X509Certificate[] { ca, leaf, other, root }));
+
+        Assertions.assertNull(builder.build(null));
+        Assertions.assertEquals(0, builder.build(new X509Certificate[0]).length);
+        Assertions.assertArrayEquals(new X509Certificate[] { root }, builder.build(new X509Certificate[] { root }));
+    }
+
+    @Test
+    public void testCrossCertificate() throws Exception {
+        X509Certificate root = createRoot();
+        X509Certificate ca = createCA(NOW + DAY);
+        X509Certificate leaf = createLeaf();
+
+        // the sub CA cross-certified by another root
+        X509Certificate cross = createCert("CN=Sub CA", caKey, new byte[] { 2 },
+                "CN=Other Root", otherRootKey, new byte[] { 4 }, NOW + DAY);
+
+        // the issuer that leads to a known root is preferred
+        CertChainBuilder builder = new CertChainBuilder();
+        X509Certificate[] chain = builder.build(new X509Certificate[] { leaf, cross, ca, root });
+        Assertions.assertArrayEquals(new X509Certificate[] { root, ca, leaf }, chain);
+
+        chain = builder.build(new X509Certificate[] { leaf, root, ca, cross });
+        Assertions.assertArrayEquals(new X509Certificate[] { root, ca, leaf }, chain);
+
+        // the chain ends at a certificate with an unknown issuer
+        chain = builder.build(new X509Certificate[] { leaf, cross });
+        Assertions.assertArrayEquals(new X509Certificate[] { cross, leaf }, chain);
+
+        // or continues with an issuer from the local store
+        builder.addIntermediate(root);
+        chain = builder.build(new X509Certificate[] { leaf, cross, ca });
+        Assertions.assertArrayEquals(new X509Certificate[] { root, ca, leaf }, chain);
+    }
+
+    @Test
+    public void testExpiredIssuer() throws Exception {
+        X509Certificate root = createRoot();
+        X509Certificate expired = createCA(NOW - 1000);
+        X509Certificate ca = createCA(NOW + DAY);
+        X509Certificate leaf = createLeaf();
+
+        // a currently valid issuer is preferred
+        CertChainBuilder builder = new CertChainBuilder();
+        X509Certificate[] chain = builder.build(new X509Certificate[] { leaf, expired, ca, root });
+        Assertions.assertArrayEquals(new X509Certificate[] { root, ca, leaf }, chain);
+
+        // an expired issuer is used if there is no other one
+        chain = builder.build(new X509Certificate[] { leaf, expired, root });
+        Assertions.assertArrayEquals(new X509Certificate[] { root, expired, leaf }, chain);
+    }
+
+    @Test
+    public void testIntermediates() throws Exception {
+        X509Certificate root = createRoot();
+        X509Certificate ca = createCA(NOW + DAY);
+        X509Certificate leaf = createLeaf();
+
+        CertChainBuilder builder = new CertChainBuilder();
+        Assertions.assertArrayEquals(new X509Certificate[] { leaf }, builder.build(new X509Certificate[] { leaf }));
+
+        // missing issuers are taken from the local store
+        builder.addIntermediates(Arrays.asList(ca, root));
+        builder.addIntermediate(ca);
+        Assertions.assertEquals(2, builder.getIntermediateCount());
+
+        Assertions.assertArrayEquals(new X509Certificate[] { root, ca, leaf },
+                builder.build(new X509Certificate[] { leaf }));
+
+        builder.clearIntermediates();
+        Assertions.assertEquals(0, builder.getIntermediateCount());
+        Assertions.assertArrayEquals(new X509Certificate[] { leaf }, builder.build(new X509Certificate[] { leaf }));
+    }
+}
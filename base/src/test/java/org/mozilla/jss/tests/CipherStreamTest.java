@@ -0,0 +1,353 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks that ParallelCipher, CipherInputStream,
+ * CipherOutputStream and CipherChannel give the same output as a single
+ * Cipher processing all the data at once, for sizes that do not align to
+ * the segment or buffer size.
+ */
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.Cipher;
+import org.mozilla.jss.crypto.CipherChannel;
+import org.mozilla.jss.crypto.CipherInputStream;
+import org.mozilla.jss.crypto.CipherOutputStream;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.IVParameterSpec;
+import org.mozilla.jss.crypto.KeyGenAlgorithm;
+import org.mozilla.jss.crypto.KeyGenerator;
+import org.mozilla.jss.crypto.ParallelCipher;
+import org.mozilla.jss.crypto.SymmetricKey;
+
+public class CipherStreamTest {
+
+    private static final int SEGMENT_SIZE = 64;
+    private static final int BLOCK_SIZE = 16;
+
+    // sizes around the segment boundaries
+    private static final int[] SIZES = {
+            1, 15, 16, 17,
+            SEGMENT_SIZE - BLOCK_SIZE, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1,
+            SEGMENT_SIZE + BLOCK_SIZE, 2 * SEGMENT_SIZE - BLOCK_SIZE, 2 * SEGMENT_SIZE,
+            3 * SEGMENT_SIZE + 5, 20 * SEGMENT_SIZE + BLOCK_SIZE, 50 * SEGMENT_SIZE - 7
+    };
+
+    private static CryptoToken token;
+    private static SymmetricKey key;
+    private static IVParameterSpec iv;
+    private static Random random = new Random(1234);
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.CipherStreamTest <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        token = cm.getInternalCryptoToken();
+
+        KeyGenerator kg = token.getKeyGenerator(KeyGenAlgorithm.AES);
+        kg.initialize(128);
+        key = kg.generate();
+
+        byte[] ivBytes = new byte[BLOCK_SIZE];
+        random.nextBytes(ivBytes);
+        iv = new IVParameterSpec(ivBytes);
+
+        testParallelCipher();
+        testStreams();
+        testChannel();
+
+        System.out.println("CipherStreamTest: PASS");
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Processes the data with a single cipher context.
+     */
+    private static byte[] process(EncryptionAlgorithm alg, IVParameterSpec params,
+            boolean encrypt, byte[] data) throws Exception {
+        Cipher cipher = token.getCipherContext(alg);
+        if (encrypt) {
+            cipher.initEncrypt(key, params);
+        } else {
+            cipher.initDecrypt(key, params);
+        }
+        return cipher.doFinal(data);
+    }
+
+    private static byte[] processParallel(EncryptionAlgorithm alg, IVParameterSpec params,
+            boolean encrypt, byte[] data) throws Exception {
+        ParallelCipher cipher = new ParallelCipher(token, alg, key, params, encrypt);
+        cipher.setSegmentSize(SEGMENT_SIZE);
+        cipher.setParallelism(3);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long total = cipher.process(new ByteArrayInputStream(data), out);
+        check(total == out.size(), "Wrong output size: " + total);
+        return out.toByteArray();
+    }
+
+    public static void testParallelCipher() throws Exception {
+
+        for (int size : SIZES) {
+            // unpadded modes need whole blocks
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+            byte[] data = randomBytes(blocks);
+
+            // ECB in both directions
+            byte[] ciphertext = process(EncryptionAlgorithm.AES_128_ECB, null, true, data);
+            check(Arrays.equals(ciphertext, processParallel(EncryptionAlgorithm.AES_128_ECB, null, true, data)),
+                    "ECB encryption differs for " + blocks + " bytes");
+            check(Arrays.equals(data, processParallel(EncryptionAlgorithm.AES_128_ECB, null, false, ciphertext)),
+                    "ECB decryption differs for " + blocks + " bytes");
+
+            // CBC decryption chains the IV from the previous segment
+            ciphertext = process(EncryptionAlgorithm.AES_128_CBC, iv, true, data);
+            check(Arrays.equals(data, processParallel(EncryptionAlgorithm.AES_128_CBC, iv, false, ciphertext)),
+                    "CBC decryption differs for " + blocks + " bytes");
+
+            // the padding may end a full segment or be alone in the last one
+            data = randomBytes(size);
+            ciphertext = process(EncryptionAlgorithm.AES_128_CBC_PAD, iv, true, data);
+            check(Arrays.equals(data, processParallel(EncryptionAlgorithm.AES_128_CBC_PAD, iv, false, ciphertext)),
+                    "CBC_PAD decryption differs for " + size + " bytes");
+        }
+
+        // a wrong IV only changes the first block of each chain
+        byte[] data = randomBytes(4 * SEGMENT_SIZE);
+        byte[] ciphertext = process(EncryptionAlgorithm.AES_128_CBC, iv, true, data);
+        byte[] decrypted = processParallel(EncryptionAlgorithm.AES_128_CBC,
+                new IVParameterSpec(new byte[BLOCK_SIZE]), false, ciphertext);
+        check(!Arrays.equals(Arrays.copyOf(data, BLOCK_SIZE), Arrays.copyOf(decrypted, BLOCK_SIZE)),
+                "Wrong IV was not used");
+        check(Arrays.equals(Arrays.copyOfRange(data, BLOCK_SIZE, data.length),
+                Arrays.copyOfRange(decrypted, BLOCK_SIZE, decrypted.length)),
+                "Segments are not chained from the ciphertext");
+
+        // CBC encryption is sequential
+        for (EncryptionAlgorithm alg : new EncryptionAlgorithm[] {
+                EncryptionAlgorithm.AES_128_CBC, EncryptionAlgorithm.AES_128_CBC_PAD }) {
+            try {
+                new ParallelCipher(token, alg, key, iv, true);
+                throw new Exception("Parallel " + alg + " encryption was accepted");
+            } catch (InvalidAlgorithmParameterException e) {
+                // expected
+            }
+        }
+
+        // a segment size must be whole blocks
+        try {
+            new ParallelCipher(token, EncryptionAlgorithm.AES_128_ECB, key, null, true)
+                    .setSegmentSize(SEGMENT_SIZE + 1);
+            throw new Exception("Unaligned segment size was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns the data in pieces of various sizes.
+     */
+    private static class ChoppyInputStream extends InputStream {
+
+        private byte[] data;
+        private int pos;
+        private int piece;
+
+        ChoppyInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= data.length) {
+                return -1;
+            }
+            piece = piece % 7 + 1;
+            int n = Math.min(Math.min(len, piece), data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    public static void testStreams() throws Exception {
+
+        for (int size : SIZES) {
+            byte[] data = randomBytes(size);
+            byte[] expected = process(EncryptionAlgorithm.AES_128_CBC_PAD, iv, true, data);
+
+            // encrypt with odd-sized writes and a buffer that is not
+            // a multiple of the block size
+            Cipher cipher = token.getCipherContext(EncryptionAlgorithm.AES_128_CBC_PAD);
+            cipher.initEncrypt(key, iv);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (CipherOutputStream cos = new CipherOutputStream(out, cipher, 50)) {
+                int pos = 0;
+                for (int n = 1; pos < data.length; n = n % 9 + 1) {
+                    if (n == 1) {
+                        cos.write(data[pos++]);
+                        continue;
+                    }
+                    int len = Math.min(n, data.length - pos);
+                    cos.write(data, pos, len);
+                    pos += len;
+                    if (n == 5) {
+                        cos.flush();
+                    }
+                }
+            }
+            check(Arrays.equals(expected, out.toByteArray()),
+                    "CipherOutputStream output differs for " + size + " bytes");
+
+            // decrypt from a stream that returns short reads
+            cipher = token.getCipherContext(EncryptionAlgorithm.AES_128_CBC_PAD);
+            cipher.initDecrypt(key, iv);
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            try (CipherInputStream cis = new CipherInputStream(new ChoppyInputStream(expected), cipher, 33)) {
+                byte[] b = new byte[11];
+                while (true) {
+                    int c = cis.read();
+                    if (c < 0) {
+                        break;
+                    }
+                    decrypted.write(c);
+                    int n = cis.read(b, 0, b.length);
+                    if (n < 0) {
+                        break;
+                    }
+                    decrypted.write(b, 0, n);
+                }
+                check(cis.read() == -1, "Data after end of stream");
+            }
+            check(Arrays.equals(data, decrypted.toByteArray()),
+                    "CipherInputStream output differs for " + size + " bytes");
+        }
+    }
+
+    /**
+     * A slow channel that accepts a few bytes per write and checks that
+     * it is never written to by two threads at once.
+     */
+    private static class SlowChannel implements WritableByteChannel {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicBoolean writing = new AtomicBoolean();
+        volatile boolean overlapped;
+        volatile boolean open = true;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!writing.compareAndSet(false, true)) {
+                overlapped = true;
+            }
+            try {
+                Thread.sleep(1);
+                int n = Math.min(src.remaining(), 13);
+                byte[] b = new byte[n];
+                src.get(b);
+                synchronized (out) {
+                    out.write(b);
+                }
+                return n;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                writing.set(false);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        byte[] toByteArray() {
+            synchronized (out) {
+                return out.toByteArray();
+            }
+        }
+    }
+
+    private static byte[] processChannel(boolean encrypt, byte[] data) throws Exception {
+
+        Cipher cipher = token.getCipherContext(EncryptionAlgorithm.AES_128_CBC_PAD);
+        if (encrypt) {
+            cipher.initEncrypt(key, iv);
+        } else {
+            cipher.initDecrypt(key, iv);
+        }
+
+        SlowChannel target = new SlowChannel();
+        CipherChannel channel = new CipherChannel(target, cipher, 40);
+        int pos = 0;
+        for (int n = 3; pos < data.length; n = n % 29 + 3) {
+            int len = Math.min(n, data.length - pos);
+            check(channel.write(ByteBuffer.wrap(data, pos, len)) == len, "Wrong write count");
+            pos += len;
+        }
+        channel.close();
+
+        check(!channel.isOpen(), "Channel is still open");
+        check(!target.isOpen(), "Target channel is still open");
+        check(!target.overlapped, "Concurrent writes to target channel");
+        return target.toByteArray();
+    }
+
+    public static void testChannel() throws Exception {
+
+        for (int size : SIZES) {
+            byte[] data = randomBytes(size);
+            byte[] expected = process(EncryptionAlgorithm.AES_128_CBC_PAD, iv, true, data);
+
+            byte[] ciphertext = processChannel(true, data);
+            check(Arrays.equals(expected, ciphertext),
+                    "CipherChannel encryption differs for " + size + " bytes");
+            check(Arrays.equals(data, processChannel(false, ciphertext)),
+                    "CipherChannel decryption differs for " + size + " bytes");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks the alias selection of JSSTokenKeyManager with the
+ * certificates created by GenerateTestCert.
+ */
+package org.mozilla.jss.tests;
+
+import java.security.Principal;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.provider.javax.crypto.JSSTokenKeyManager;
+
+public class JSSTokenKeyManagerTest {
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.JSSTokenKeyManagerTest <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        JSSTokenKeyManager km = new JSSTokenKeyManager(null, null);
+
+        // single alias lookups
+        check(km.getCertificate("Unknown_Cert") == null, "Unknown alias has a certificate");
+
+        PK11Cert cert1 = (PK11Cert) km.getCertificate("Server_RSA");
+        PK11Cert cert2 = (PK11Cert) km.getCertificate("Server_RSA");
+        check(cert1 != null, "Missing Server_RSA certificate");
+        check(cert1 != cert2, "getCertificate() returned a shared certificate");
+
+        // closing a returned certificate does not affect the others
+        byte[] encoded = cert2.getEncoded();
+        cert1.close();
+        check(Arrays.equals(encoded, cert2.getEncoded()), "Certificate changed after close");
+
+        X509Certificate[] chain = km.getCertificateChain("Server_RSA");
+        check(chain != null && chain.length >= 2, "Invalid Server_RSA chain");
+        check(chain[0].getSubjectX500Principal().equals(cert2.getSubjectX500Principal()),
+                "Chain does not start with the leaf certificate");
+        X509Certificate caRSA = chain[chain.length - 1];
+
+        // alias selection with the index
+        String alias = km.chooseServerAlias("RSA", new Principal[] { caRSA.getSubjectX500Principal() }, null);
+        check(alias != null, "No RSA alias issued by " + caRSA.getSubjectX500Principal());
+
+        X509Certificate[] aliasChain = km.getCertificateChain(alias);
+        check(aliasChain[0].getPublicKey().getAlgorithm().equals("RSA"), "Alias " + alias + " is not RSA");
+        check(aliasChain[aliasChain.length - 1].equals(caRSA), "Alias " + alias + " not issued by RSA CA");
+
+        check(km.chooseServerAlias("EC", new Principal[] { caRSA.getSubjectX500Principal() }, null) == null,
+                "EC alias issued by the RSA CA");
+
+        String[] ecAliases = km.getServerAliases("EC", null);
+        check(ecAliases != null, "No EC aliases");
+        List<String> ecList = Arrays.asList(ecAliases);
+        check(ecList.contains("Server_ECDSA"), "Server_ECDSA not in EC aliases: " + ecList);
+        check(!ecList.contains("Server_RSA"), "Server_RSA in EC aliases: " + ecList);
+
+        // EC_RSA is an EC key signed with RSA, which the test DB does not have
+        check(km.getServerAliases("EC_RSA", null) == null, "Unexpected EC_RSA aliases");
+
+        check(km.chooseServerAlias(null, null, null) == null, "Alias for null key type");
+
+        // lookups still work after the index is discarded
+        km.refresh();
+        check(km.getCertificate("Server_ECDSA") != null, "Missing Server_ECDSA certificate");
+        check(km.chooseServerAlias("EC", null, null) != null, "No EC alias after refresh");
+
+        System.out.println("JSSTokenKeyManagerTest: PASS");
+    }
+}
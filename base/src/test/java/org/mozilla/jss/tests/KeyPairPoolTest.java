@@ -0,0 +1,182 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks that PK11KeyPairGenerator takes key pairs from a
+ * PK11KeyPairPool only when the pool generates the same key pairs, and
+ * that promoted key pairs are permanent token objects.
+ */
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoStore;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.Policy;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.pkcs11.PK11KeyPairGenerator;
+import org.mozilla.jss.pkcs11.PK11KeyPairPool;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
+import org.mozilla.jss.pkcs11.PK11Token;
+
+public class KeyPairPoolTest {
+
+    private static final int KEY_SIZE = Math.max(Policy.RSA_MINIMUM_KEY_SIZE, 2048);
+
+    private static PK11Token token;
+    private static CryptoStore store;
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.KeyPairPoolTest <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    private static boolean isOnToken(PrivateKey privateKey) throws Exception {
+        byte[] id = privateKey.getUniqueID();
+        for (PrivateKey key : store.getPrivateKeys()) {
+            if (Arrays.equals(id, key.getUniqueID())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PK11KeyPairGenerator createGenerator(AlgorithmParameterSpec params)
+            throws Exception {
+        PK11KeyPairGenerator generator = new PK11KeyPairGenerator(token, KeyPairAlgorithm.RSA);
+        generator.initialize(params, null);
+        return generator;
+    }
+
+    private static void checkRejected(PK11KeyPairGenerator generator, PK11KeyPairPool pool,
+            String message) throws Exception {
+        try {
+            generator.setKeyPairPool(pool);
+            throw new Exception(message);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void waitForDepth(PK11KeyPairPool pool, int depth) throws Exception {
+        long deadline = System.currentTimeMillis() + 120000;
+        while (pool.getDepth() < depth) {
+            check(System.currentTimeMillis() < deadline, "Pool was not filled: " + pool.getDepth());
+            Thread.sleep(10);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+
+        token = (PK11Token) cm.getInternalKeyStorageToken();
+        token.login(new FilePasswordCallback(args[1]));
+        store = token.getCryptoStore();
+
+        RSAKeyGenParameterSpec params = new RSAKeyGenParameterSpec(KEY_SIZE, RSAKeyGenParameterSpec.F4);
+
+        try (PK11KeyPairPool pool = new PK11KeyPairPool(token, KeyPairAlgorithm.RSA, params, 2, 1)) {
+
+            waitForDepth(pool, 2);
+
+            // pooled pairs are temporary
+            KeyPair pair = pool.take();
+            check(pool.getHits() == 1, "Pair was not taken from the pool");
+            check(!isOnToken((PrivateKey) pair.getPrivate()), "Pooled key is permanent");
+
+            // a promoted pair is permanent
+            KeyPair promoted = PK11KeyPairPool.promote(pair);
+            PrivateKey promotedKey = (PrivateKey) promoted.getPrivate();
+            check(promotedKey instanceof PK11PrivKey, "Promoted key is not a PKCS #11 key");
+            check(Arrays.equals(((PrivateKey) pair.getPrivate()).getUniqueID(), promotedKey.getUniqueID()),
+                    "Promoted key is another key");
+            check(isOnToken(promotedKey), "Promoted key is not on the token");
+            check(promoted.getPublic() == pair.getPublic(), "Promoted pair has another public key");
+            store.deletePrivateKey(promotedKey);
+
+            // a generator with the same settings takes permanent pairs
+            // from the pool
+            waitForDepth(pool, 1);
+            long hits = pool.getHits();
+            PK11KeyPairGenerator generator = createGenerator(params);
+            generator.setKeyPairPool(pool);
+            pair = generator.generateKeyPair();
+            check(pool.getHits() == hits + 1, "Matching generator did not use the pool");
+            check(isOnToken((PrivateKey) pair.getPrivate()), "Key from generator is not permanent");
+            store.deletePrivateKey((PrivateKey) pair.getPrivate());
+
+            // the default parameters are compared too
+            if (KEY_SIZE == 2048) {
+                new PK11KeyPairGenerator(token, KeyPairAlgorithm.RSA).setKeyPairPool(pool);
+            }
+
+            // a temporary sensitive generator takes temporary pairs
+            waitForDepth(pool, 1);
+            hits = pool.getHits();
+            PK11KeyPairGenerator temporary = createGenerator(params);
+            temporary.temporaryPairs(true);
+            temporary.sensitivePairs(true);
+            temporary.setKeyPairPool(pool);
+            pair = temporary.generateKeyPair();
+            check(pool.getHits() == hits + 1, "Temporary generator did not use the pool");
+            check(!isOnToken((PrivateKey) pair.getPrivate()), "Temporary key is permanent");
+
+            // generators with other settings cannot use the pool
+            checkRejected(createGenerator(new RSAKeyGenParameterSpec(KEY_SIZE + 1024, RSAKeyGenParameterSpec.F4)),
+                    pool, "Pool accepted by generator with another key size");
+            checkRejected(createGenerator(new RSAKeyGenParameterSpec(KEY_SIZE, BigInteger.valueOf(65539))),
+                    pool, "Pool accepted by generator with another public exponent");
+
+            PK11KeyPairGenerator insensitive = createGenerator(params);
+            insensitive.temporaryPairs(true);
+            checkRejected(insensitive, pool, "Pool accepted by insensitive generator");
+
+            PK11KeyPairGenerator extractable = createGenerator(params);
+            extractable.extractablePairs(true);
+            checkRejected(extractable, pool, "Pool accepted by extractable generator");
+
+            checkRejected(new PK11KeyPairGenerator(token, KeyPairAlgorithm.EC), pool,
+                    "Pool accepted by EC generator");
+
+            // a generator reconfigured after the pool was set generates
+            // its own pairs
+            waitForDepth(pool, 1);
+            hits = pool.getHits();
+            long misses = pool.getMisses();
+            generator = createGenerator(params);
+            generator.temporaryPairs(true);
+            generator.sensitivePairs(true);
+            generator.setKeyPairPool(pool);
+            generator.initialize(new RSAKeyGenParameterSpec(KEY_SIZE + 1024, RSAKeyGenParameterSpec.F4), null);
+            pair = generator.generateKeyPair();
+            check(pool.getHits() == hits && pool.getMisses() == misses,
+                    "Reconfigured generator used the pool");
+            check(((RSAPublicKey) pair.getPublic()).getModulus().bitLength() == KEY_SIZE + 1024,
+                    "Reconfigured generator used the old key size");
+
+            // a pair taken directly from the pool can be made permanent
+            promoted = pool.takePermanent();
+            check(isOnToken((PrivateKey) promoted.getPrivate()), "Pair from takePermanent() is not permanent");
+            store.deletePrivateKey((PrivateKey) promoted.getPrivate());
+        }
+
+        System.out.println("KeyPairPoolTest: PASS");
+    }
+}
@@ -0,0 +1,103 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks that the alias index of the JSS KeyStore follows
+ * the changes made to the token.
+ */
+package org.mozilla.jss.tests;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.List;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoStore;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.Policy;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.netscape.security.util.Utils;
+
+public class KeyStoreAliasIndexTest {
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.KeyStoreAliasIndexTest <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+
+        CryptoToken token = cm.getInternalKeyStorageToken();
+        token.login(new FilePasswordCallback(args[1]));
+        cm.setThreadToken(token);
+
+        KeyStore ks = KeyStore.getInstance("PKCS11", "Mozilla-JSS");
+        ks.load(null, null);
+
+        // builds the index
+        List<String> aliases = Collections.list(ks.aliases());
+        check(aliases.contains("Server_RSA"), "Missing Server_RSA alias: " + aliases);
+        check(ks.containsAlias("Server_ECDSA"), "Missing Server_ECDSA alias");
+        check(!ks.containsAlias("Unknown_Alias"), "Unexpected alias");
+        check(ks.getKey("Server_RSA", null) != null, "Missing Server_RSA key");
+
+        // a new permanent key
+        KeyPairGenerator kpg = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        kpg.initialize(Policy.RSA_MINIMUM_KEY_SIZE);
+        KeyPair pair = kpg.genKeyPair();
+        PrivateKey privateKey = (PrivateKey) pair.getPrivate();
+        String keyID = Utils.HexEncode(privateKey.getUniqueID());
+
+        // the key generation updates the index
+        check(ks.containsAlias(keyID), "Missing key alias: " + keyID);
+
+        Key key = ks.getKey(keyID, null);
+        check(key instanceof PrivateKey, "Missing private key: " + keyID);
+        check(keyID.equals(Utils.HexEncode(((PrivateKey) key).getUniqueID())), "Wrong private key");
+
+        // the deletion updates the index
+        ks.deleteEntry(keyID);
+        check(!ks.containsAlias(keyID), "Deleted key still in aliases: " + keyID);
+        check(ks.getKey(keyID, null) == null, "Deleted key still found: " + keyID);
+
+        check(ks.containsAlias("Server_RSA"), "Missing Server_RSA alias after deletion");
+
+        // the import updates the index
+        int size = ks.size();
+        java.security.KeyPairGenerator jdkKpg = java.security.KeyPairGenerator.getInstance("RSA", "SunRsaSign");
+        jdkKpg.initialize(Policy.RSA_MINIMUM_KEY_SIZE);
+        byte[] encoded = jdkKpg.genKeyPair().getPrivate().getEncoded();
+
+        CryptoStore store = token.getCryptoStore();
+        PrivateKey importedKey = store.importPrivateKey(encoded, PrivateKey.Type.RSA);
+        String importedKeyID = Utils.HexEncode(importedKey.getUniqueID());
+
+        check(ks.containsAlias(importedKeyID), "Missing imported key alias: " + importedKeyID);
+        check(Collections.list(ks.aliases()).contains(importedKeyID),
+                "Missing imported key in aliases: " + importedKeyID);
+        check(ks.isKeyEntry(importedKeyID), "Imported key is not a key entry: " + importedKeyID);
+        check(ks.size() == size + 1, "Wrong size after import: " + ks.size());
+
+        store.deletePrivateKey(importedKey);
+        check(!ks.containsAlias(importedKeyID), "Deleted key still in aliases: " + importedKeyID);
+        check(ks.size() == size, "Wrong size after deletion: " + ks.size());
+
+        System.out.println("KeyStoreAliasIndexTest: PASS");
+    }
+}
@@ -0,0 +1,199 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks that a batch of keys wrapped and unwrapped with a
+ * symmetric key in a single native call gives the same keys as wrapping
+ * them one at a time, and that the failure of one key is reported only
+ * for that key.
+ */
+package org.mozilla.jss.tests;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.BatchResult;
+import org.mozilla.jss.crypto.Cipher;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.IVParameterSpec;
+import org.mozilla.jss.crypto.KeyGenAlgorithm;
+import org.mozilla.jss.crypto.KeyGenerator;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.KeyWrapAlgorithm;
+import org.mozilla.jss.crypto.KeyWrapper;
+import org.mozilla.jss.crypto.Policy;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SymmetricKey;
+
+public class KeyWrappingBatch {
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.KeyWrappingBatch <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+
+        CryptoToken token = cm.getInternalKeyStorageToken();
+        token.login(new FilePasswordCallback(args[1]));
+
+        testSymmetricKeys(token);
+        testPrivateKeys(token);
+
+        System.out.println("KeyWrappingBatch: PASS");
+    }
+
+    public static void testSymmetricKeys(CryptoToken token) throws Exception {
+
+        KeyGenerator kg = token.getKeyGenerator(KeyGenAlgorithm.AES);
+        kg.initialize(256);
+        SymmetricKey wrapper = kg.generate();
+
+        KeyGenerator des3kg = token.getKeyGenerator(KeyGenAlgorithm.DES3);
+
+        // AES/ECB/NoPadding cannot wrap the 24-byte DES3 key, so the
+        // token fails on that item only
+        SymmetricKey[] keys = {
+                kg.generate(),
+                des3kg.generate(),
+                kg.generate(),
+                null,
+                kg.generate()
+        };
+
+        KeyWrapper keyWrap = token.getKeyWrapper(KeyWrapAlgorithm.AES_ECB);
+        keyWrap.initWrap(wrapper, null);
+        BatchResult<byte[]> wrapped = keyWrap.wrapBatch(keys);
+
+        check(wrapped.size() == keys.length, "Wrong batch size: " + wrapped.size());
+        check(wrapped.getErrorCount() == 2, "Wrong number of errors: " + wrapped.getErrorCount());
+        check(!wrapped.isSuccess(1) && wrapped.get(1) == null, "DES3 key was wrapped");
+        check(wrapped.getError(1) != null, "Missing error for DES3 key");
+        check(!wrapped.isSuccess(3) && wrapped.getError(3) != null, "Missing error for null key");
+
+        // the batch gives the same output as wrapping each key
+        for (int i : new int[] { 0, 2, 4 }) {
+            check(wrapped.isSuccess(i), "Unable to wrap key " + i + ": " + wrapped.getError(i));
+            check(Arrays.equals(wrapped.get(i), keyWrap.wrap(keys[i])),
+                    "Batch and single wrapping differ for key " + i);
+        }
+
+        // the unwrapping fails on the truncated and missing keys only
+        byte[][] wrappedKeys = {
+                wrapped.get(0),
+                Arrays.copyOf(wrapped.get(2), 5),
+                wrapped.get(2),
+                null,
+                wrapped.get(4)
+        };
+
+        keyWrap.initUnwrap(wrapper, null);
+        BatchResult<SymmetricKey> unwrapped = keyWrap.unwrapSymmetricBatch(
+                wrappedKeys, SymmetricKey.AES, SymmetricKey.Usage.DECRYPT, 0);
+
+        check(unwrapped.size() == keys.length, "Wrong batch size: " + unwrapped.size());
+        check(unwrapped.getErrorCount() == 2, "Wrong number of errors: " + unwrapped.getErrorCount());
+        check(!unwrapped.isSuccess(1) && unwrapped.getError(1) != null, "Truncated key was unwrapped");
+        check(!unwrapped.isSuccess(3) && unwrapped.getError(3) != null, "Missing error for null key");
+
+        byte[] plaintext = new byte[EncryptionAlgorithm.AES_256_ECB.getBlockSize() * 2];
+        Arrays.fill(plaintext, (byte) 0x5a);
+
+        for (int i : new int[] { 0, 2, 4 }) {
+            check(unwrapped.isSuccess(i), "Unable to unwrap key " + i + ": " + unwrapped.getError(i));
+
+            Cipher encryptor = token.getCipherContext(EncryptionAlgorithm.AES_256_ECB);
+            encryptor.initEncrypt(keys[i]);
+            byte[] ciphertext = encryptor.doFinal(plaintext);
+
+            Cipher decryptor = token.getCipherContext(EncryptionAlgorithm.AES_256_ECB);
+            decryptor.initDecrypt(unwrapped.get(i));
+            check(Arrays.equals(plaintext, decryptor.doFinal(ciphertext)),
+                    "Unwrapped key " + i + " does not match the original key");
+        }
+
+        // with an IV
+        IVParameterSpec iv = new IVParameterSpec(new byte[16]);
+        keyWrap = token.getKeyWrapper(KeyWrapAlgorithm.AES_CBC_PAD);
+        keyWrap.initWrap(wrapper, iv);
+        SymmetricKey[] desKeys = { des3kg.generate(), des3kg.generate() };
+        wrapped = keyWrap.wrapBatch(desKeys);
+
+        check(wrapped.getErrorCount() == 0, "Unable to wrap DES3 keys: " + wrapped.getError(0));
+        for (int i = 0; i < desKeys.length; i++) {
+            check(Arrays.equals(wrapped.get(i), keyWrap.wrap(desKeys[i])),
+                    "Batch and single wrapping with IV differ for key " + i);
+        }
+
+        keyWrap.initUnwrap(wrapper, iv);
+        unwrapped = keyWrap.unwrapSymmetricBatch(
+                new byte[][] { wrapped.get(0), wrapped.get(1) }, SymmetricKey.DES3, null, 0);
+        check(unwrapped.getErrorCount() == 0, "Unable to unwrap DES3 keys: " + unwrapped.getError(0));
+    }
+
+    public static void testPrivateKeys(CryptoToken token) throws Exception {
+
+        KeyGenerator kg = token.getKeyGenerator(KeyGenAlgorithm.AES);
+        kg.initialize(256);
+        SymmetricKey wrapper = kg.generate();
+
+        KeyPairGenerator kpg = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        kpg.initialize(Policy.RSA_MINIMUM_KEY_SIZE);
+        kpg.temporaryPairs(true);
+        kpg.extractablePairs(true);
+
+        KeyPair[] pairs = { kpg.genKeyPair(), kpg.genKeyPair() };
+        PrivateKey[] keys = {
+                (PrivateKey) pairs[0].getPrivate(),
+                null,
+                (PrivateKey) pairs[1].getPrivate()
+        };
+
+        KeyWrapper keyWrap = token.getKeyWrapper(KeyWrapAlgorithm.AES_KEY_WRAP_PAD);
+        keyWrap.initWrap(wrapper, null);
+        BatchResult<byte[]> wrapped = keyWrap.wrapBatch(keys);
+
+        check(wrapped.getErrorCount() == 1, "Wrong number of errors: " + wrapped.getErrorCount());
+        check(!wrapped.isSuccess(1) && wrapped.getError(1) != null, "Missing error for null key");
+        check(wrapped.isSuccess(0), "Unable to wrap key 0: " + wrapped.getError(0));
+        check(wrapped.isSuccess(2), "Unable to wrap key 2: " + wrapped.getError(2));
+
+        // the first wrapped key is corrupted
+        byte[] corrupted = wrapped.get(0).clone();
+        corrupted[corrupted.length / 2] ^= 0x01;
+
+        byte[][] wrappedKeys = { corrupted, wrapped.get(0), wrapped.get(2) };
+        PublicKey[] publicKeys = { pairs[0].getPublic(), pairs[0].getPublic(), pairs[1].getPublic() };
+
+        keyWrap.initUnwrap(wrapper, null);
+        BatchResult<PrivateKey> unwrapped = keyWrap.unwrapPrivateBatch(
+                wrappedKeys, PrivateKey.RSA, publicKeys, true);
+
+        check(unwrapped.getErrorCount() == 1, "Wrong number of errors: " + unwrapped.getErrorCount());
+        check(!unwrapped.isSuccess(0) && unwrapped.getError(0) != null, "Corrupted key was unwrapped");
+
+        check(unwrapped.isSuccess(1), "Unable to unwrap key 1: " + unwrapped.getError(1));
+        check(Arrays.equals(keys[0].getUniqueID(), unwrapped.get(1).getUniqueID()),
+                "Unwrapped key 1 does not match the original key");
+
+        check(unwrapped.isSuccess(2), "Unable to unwrap key 2: " + unwrapped.getError(2));
+        check(Arrays.equals(keys[2].getUniqueID(), unwrapped.get(2).getUniqueID()),
+                "Unwrapped key 2 does not match the original key");
+    }
+}
@@ -0,0 +1,114 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.BasicConstraintsExtension;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLNumberExtension;
+import org.mozilla.jss.netscape.security.x509.CertificateExtensions;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.KeyUsageExtension;
+import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
+import org.mozilla.jss.netscape.security.x509.SubjectKeyIdentifierExtension;
+
+public class LazyExtensionsTest {
+
+    // an extension value that is a NULL instead of the expected type
+    private static final byte[] NULL_VALUE = { 0x04, 0x02, 0x05, 0x00 };
+
+    private static byte[] encode(CertificateExtensions exts) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exts.encode(out);
+        return out.toByteArray();
+    }
+
+    private static CertificateExtensions decode(byte[] encoding, boolean lazy) throws Exception {
+        // skip the [3] EXPLICIT tag
+        DerValue val = new DerValue(encoding);
+        return new CertificateExtensions(val.data, lazy);
+    }
+
+    private static CertificateExtensions createExtensions() throws Exception {
+        CertificateExtensions exts = new CertificateExtensions();
+        exts.set(KeyUsageExtension.NAME, new KeyUsageExtension(true, new boolean[] { true, true }));
+        exts.set(BasicConstraintsExtension.NAME, new BasicConstraintsExtension(true, 1));
+        exts.set(SubjectKeyIdentifierExtension.NAME, new SubjectKeyIdentifierExtension(new byte[] { 1, 2, 3 }));
+        return exts;
+    }
+
+    @Test
+    public void testLazyDecoding() throws Exception {
+        byte[] encoding = encode(createExtensions());
+        CertificateExtensions exts = decode(encoding, true);
+
+        // re-encoded from the original encodings
+        Assertions.assertArrayEquals(encoding, encode(exts));
+
+        Object ski = exts.get(SubjectKeyIdentifierExtension.NAME);
+        Assertions.assertTrue(ski instanceof SubjectKeyIdentifierExtension);
+        Assertions.assertSame(ski, exts.getExtension(PKIXExtensions.SubjectKey_Id));
+
+        // the Vector view decodes all extensions
+        Assertions.assertTrue(exts.elementAt(1) instanceof BasicConstraintsExtension);
+        Assertions.assertArrayEquals(encoding, encode(exts));
+        Assertions.assertArrayEquals(encoding, encode(decode(encoding, false)));
+    }
+
+    @Test
+    public void testInvalidCriticalExtension() throws Exception {
+        CertificateExtensions exts = new CertificateExtensions();
+        exts.set(KeyUsageExtension.NAME, new Extension(PKIXExtensions.KeyUsage_Id, true, NULL_VALUE));
+        byte[] encoding = encode(exts);
+
+        // critical extensions are decoded when the object is created
+        Assertions.assertThrows(Exception.class, () -> decode(encoding, true));
+        Assertions.assertThrows(Exception.class, () -> decode(encoding, false));
+    }
+
+    @Test
+    public void testInvalidNonCriticalExtension() throws Exception {
+        CertificateExtensions exts = new CertificateExtensions();
+        exts.set(KeyUsageExtension.NAME, new Extension(PKIXExtensions.KeyUsage_Id, false, NULL_VALUE));
+        byte[] encoding = encode(exts);
+
+        // non-critical extensions are decoded when they are requested
+        CertificateExtensions lazy = decode(encoding, true);
+        Assertions.assertArrayEquals(encoding, encode(lazy));
+        Assertions.assertThrows(Exception.class, () -> lazy.get(KeyUsageExtension.NAME));
+    }
+
+    @Test
+    public void testCRLExtensions() throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLNumberExtension.NAME, new CRLNumberExtension(BigInteger.valueOf(42)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exts.encode(out, false);
+        byte[] encoding = out.toByteArray();
+
+        CRLExtensions lazy = new CRLExtensions(new DerInputStream(encoding), true);
+
+        out = new ByteArrayOutputStream();
+        lazy.encode(out, false);
+        Assertions.assertArrayEquals(encoding, out.toByteArray());
+
+        CRLNumberExtension crlNumber = (CRLNumberExtension) lazy.get(CRLNumberExtension.NAME);
+        Assertions.assertEquals(BigInteger.valueOf(42), crlNumber.get(CRLNumberExtension.NUMBER));
+
+        // an invalid critical CRL extension is rejected when parsed
+        exts = new CRLExtensions();
+        exts.set(CRLNumberExtension.NAME, new Extension(PKIXExtensions.CRLNumber_Id, true, NULL_VALUE));
+
+        out = new ByteArrayOutputStream();
+        exts.encode(out, false);
+        byte[] invalid = out.toByteArray();
+
+        Assertions.assertThrows(Exception.class,
+                () -> new CRLExtensions(new DerInputStream(invalid), true));
+    }
+}
@@ -0,0 +1,152 @@
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.BasicConstraintsExtension;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateExtensions;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.KeyUsageExtension;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+public class LazyX509CertInfoTest {
+
+    // whole seconds, since certificate dates have no fractions
+    private static final long NOW = System.currentTimeMillis() / 1000 * 1000;
+
+    private static KeyPair keyPair;
+
+    private static byte[] createCert() throws Exception {
+
+        if (keyPair == null) {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+            kpg.initialize(2048);
+            keyPair = kpg.generateKeyPair();
+        }
+
+        CertificateExtensions exts = new CertificateExtensions();
+        exts.set(KeyUsageExtension.NAME, new KeyUsageExtension(true, new boolean[] { true, true }));
+        exts.set(BasicConstraintsExtension.NAME, new BasicConstraintsExtension(true, 1));
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+        info.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(BigInteger.valueOf(12345)));
+        info.set(X509CertInfo.ISSUER, new CertificateIssuerName(new X500Name("CN=CA,O=EXAMPLE")));
+        info.set(X509CertInfo.SUBJECT, new CertificateSubjectName(new X500Name("CN=Server,O=EXAMPLE")));
+        info.set(X509CertInfo.VALIDITY, new CertificateValidity(new Date(NOW), new Date(NOW + 86400000L)));
+        info.set(X509CertInfo.ALGORITHM_ID, new CertificateAlgorithmId(AlgorithmId.get("SHA256withRSA")));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(X509Key.parse(
+                new DerValue(keyPair.getPublic().getEncoded()))));
+        info.set(X509CertInfo.EXTENSIONS, exts);
+
+        X509CertImpl cert = new X509CertImpl(info);
+        cert.sign(keyPair.getPrivate(), "SHA256withRSA");
+        return cert.getEncoded();
+    }
+
+    @Test
+    public void testLazyCertificate() throws Exception {
+        byte[] der = createCert();
+        X509CertImpl eager = new X509CertImpl(der);
+        X509CertImpl lazy = new X509CertImpl(der, true);
+
+        // single fields without decoding the others
+        Assertions.assertEquals(BigInteger.valueOf(12345), lazy.getSerialNumber());
+        Assertions.assertEquals(new Date(NOW + 86400000L), lazy.getNotAfter());
+
+        Assertions.assertEquals(eager.getVersion(), lazy.getVersion());
+        Assertions.assertEquals(eager.getNotBefore(), lazy.getNotBefore());
+        Assertions.assertEquals(eager.getIssuerDN(), lazy.getIssuerDN());
+        Assertions.assertEquals(eager.getSubjectDN(), lazy.getSubjectDN());
+        Assertions.assertEquals(eager.getPublicKey(), lazy.getPublicKey());
+        Assertions.assertEquals(eager.getSigAlgName(), lazy.getSigAlgName());
+        Assertions.assertEquals(eager.getBasicConstraints(), lazy.getBasicConstraints());
+        Assertions.assertArrayEquals(eager.getKeyUsage(), lazy.getKeyUsage());
+
+        Assertions.assertArrayEquals(der, lazy.getEncoded());
+        Assertions.assertArrayEquals(eager.getTBSCertificate(), lazy.getTBSCertificate());
+        Assertions.assertEquals(eager, lazy);
+        Assertions.assertEquals(eager.toString(), lazy.toString());
+
+        lazy.verify(keyPair.getPublic(), "SunRsaSign");
+    }
+
+    @Test
+    public void testLazyInfo() throws Exception {
+        byte[] tbs = new X509CertImpl(createCert()).getTBSCertificate();
+        X509CertInfo eager = new X509CertInfo(tbs);
+        X509CertInfo lazy = new X509CertInfo(tbs, true);
+
+        Assertions.assertEquals(eager, lazy);
+        Assertions.assertEquals(eager.hashCode(), lazy.hashCode());
+
+        for (String name : new String[] {
+                X509CertInfo.VERSION, X509CertInfo.SERIAL_NUMBER, X509CertInfo.ALGORITHM_ID,
+                X509CertInfo.ISSUER, X509CertInfo.VALIDITY, X509CertInfo.SUBJECT, X509CertInfo.KEY,
+                X509CertInfo.ISSUER_ID, X509CertInfo.SUBJECT_ID }) {
+            Object value = lazy.get(name);
+            Assertions.assertEquals(String.valueOf(eager.get(name)), String.valueOf(value), name);
+            // decoded only once
+            Assertions.assertSame(value, lazy.get(name));
+        }
+
+        // re-encoded from the original encoding
+        Assertions.assertArrayEquals(tbs, lazy.getEncodedInfo());
+        Assertions.assertArrayEquals(tbs, lazy.getEncodedInfo(true));
+    }
+
+    @Test
+    public void testModification() throws Exception {
+        byte[] tbs = new X509CertImpl(createCert()).getTBSCertificate();
+        X509CertInfo eager = new X509CertInfo(tbs);
+        X509CertInfo lazy = new X509CertInfo(tbs, true);
+
+        CertificateSerialNumber serial = new CertificateSerialNumber(BigInteger.TEN);
+        eager.set(X509CertInfo.SERIAL_NUMBER, serial);
+        lazy.set(X509CertInfo.SERIAL_NUMBER, serial);
+
+        // the other attributes are kept
+        Assertions.assertArrayEquals(eager.getEncodedInfo(true), lazy.getEncodedInfo(true));
+        Assertions.assertEquals(eager.get(X509CertInfo.SUBJECT).toString(),
+                lazy.get(X509CertInfo.SUBJECT).toString());
+
+        lazy = new X509CertInfo(tbs, true);
+        lazy.delete(X509CertInfo.EXTENSIONS);
+        Assertions.assertNull(lazy.get(X509CertInfo.EXTENSIONS));
+        Assertions.assertNotNull(lazy.get(X509CertInfo.KEY));
+    }
+
+    @Test
+    public void testInvalidAttribute() throws Exception {
+        byte[] tbs = new X509CertImpl(createCert()).getTBSCertificate();
+
+        // replace the UTCTime tag of notBefore with an OCTET STRING tag
+        int pos = 0;
+        while (!(tbs[pos] == 0x17 && tbs[pos + 1] == 0x0d)) {
+            pos++;
+        }
+        tbs[pos] = 0x04;
+
+        Assertions.assertThrows(Exception.class, () -> new X509CertInfo(tbs));
+
+        // the lazy info only fails when the validity is requested
+        X509CertInfo lazy = new X509CertInfo(tbs, true);
+        Assertions.assertNotNull(lazy.get(X509CertInfo.SERIAL_NUMBER));
+        Assertions.assertThrows(Exception.class, () -> lazy.get(X509CertInfo.VALIDITY));
+    }
+}
@@ -0,0 +1,135 @@
+package org.mozilla.jss.tests;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AVA;
+import org.mozilla.jss.netscape.security.x509.LdapV3DNStrConverter;
+import org.mozilla.jss.netscape.security.x509.RDN;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X500NameAttrMap;
+
+public class LdapV3DNStrConverterTest {
+
+    private static final String[] DNS = {
+        "CN=Server,OU=Test,O=EXAMPLE,C=US",
+        "cn=server, ou=test ,  o=example",
+        "CN=Server+UID=server,O=EXAMPLE",
+        "CN=Smith\\, John,O=EXAMPLE",
+        "CN=\"Smith, John\",O=EXAMPLE",
+        "CN=\\23hash\\20,O=EXAMPLE",
+        "CN=caf\\C3\\A9,O=EXAMPLE",
+        "CN=#0c06536572766572,O=EXAMPLE",
+        "OID.2.5.4.3=Server,1.2.3.4=value,O=EXAMPLE",
+        "E=admin@example.com,CN=Server",
+    };
+
+    private static final String[] INVALID_DNS = {
+        "CN",
+        "CN=",
+        "CN=Server,FOO=bar",
+        "CN=#0c0",
+        "CN=\"Server\"x",
+        "CN=Serv\\er",
+    };
+
+    private static X500Name parseReader(LdapV3DNStrConverter converter, String dn) throws IOException {
+        return converter.parseDN(new PushbackReader(new StringReader(dn), 64));
+    }
+
+    @Test
+    public void testParseDN() throws Exception {
+        LdapV3DNStrConverter converter = new LdapV3DNStrConverter();
+
+        for (String dn : DNS) {
+            // the String parser matches the Reader parser
+            X500Name name = converter.parseDN(dn);
+            Assertions.assertArrayEquals(parseReader(converter, dn).getEncoded(), name.getEncoded());
+            Assertions.assertArrayEquals(name.getEncoded(),
+                    converter.parseDN(new StringBuilder(dn), null).getEncoded());
+        }
+
+        X500Name name = converter.parseDN("CN=Smith\\, John+UID=jsmith,O=EXAMPLE");
+        Assertions.assertEquals(2, name.getNamesLength());
+        Assertions.assertEquals("Smith, John", name.getCommonName());
+        Assertions.assertEquals("jsmith", name.getUserID());
+        Assertions.assertEquals("EXAMPLE", name.getOrganization());
+
+        Assertions.assertEquals("café", converter.parseDN("CN=caf\\C3\\A9").getCommonName());
+    }
+
+    @Test
+    public void testInvalidDN() throws Exception {
+        LdapV3DNStrConverter converter = new LdapV3DNStrConverter();
+
+        for (String dn : INVALID_DNS) {
+            Assertions.assertThrows(IOException.class, () -> converter.parseDN(dn), dn);
+            Assertions.assertThrows(IOException.class, () -> parseReader(converter, dn), dn);
+        }
+
+        // unknown OIDs are only accepted if enabled
+        LdapV3DNStrConverter strict = new LdapV3DNStrConverter(X500NameAttrMap.getDefault(), false);
+        Assertions.assertThrows(IOException.class, () -> strict.parseDN("1.2.3.4=value"));
+        Assertions.assertNotNull(strict.parseDN("2.5.4.3=value"));
+    }
+
+    @Test
+    public void testKeywords() throws Exception {
+        LdapV3DNStrConverter converter = new LdapV3DNStrConverter();
+
+        // cached keywords keep resolving with any spelling
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(X500Name.commonName_oid, converter.parseAVAKeyword("cn"));
+            Assertions.assertEquals(X500Name.commonName_oid, converter.parseAVAKeyword("CN"));
+            Assertions.assertEquals(X500Name.commonName_oid, converter.parseAVAKeyword("Cn"));
+            Assertions.assertEquals(X500Name.commonName_oid, converter.parseAVAKeyword("OID.2.5.4.3"));
+        }
+        Assertions.assertThrows(IOException.class, () -> converter.parseAVAKeyword("FOO"));
+
+        // unregistered OIDs
+        for (int i = 0; i < 1000; i++) {
+            X500Name name = converter.parseDN("1.2.3." + i + "=value");
+            Assertions.assertEquals("1.2.3." + i + "=value", converter.encodeDN(name));
+        }
+    }
+
+    @Test
+    public void testEncodingOrder() throws Exception {
+        LdapV3DNStrConverter converter = new LdapV3DNStrConverter();
+        byte[] utf8 = { DerValue.tag_UTF8String };
+
+        X500Name name = converter.parseDN("CN=Server", utf8);
+        Assertions.assertEquals(DerValue.tag_UTF8String, name.getNames()[0].getAssertion()[0].getValue().tag);
+
+        RDN rdn = converter.parseRDN("CN=Server", utf8);
+        Assertions.assertEquals(DerValue.tag_UTF8String, rdn.getAssertion()[0].getValue().tag);
+
+        AVA ava = converter.parseAVA("CN=Server", new byte[] { DerValue.tag_PrintableString });
+        Assertions.assertEquals(DerValue.tag_PrintableString, ava.getValue().tag);
+    }
+
+    @Test
+    public void testEncodeDN() throws Exception {
+        LdapV3DNStrConverter converter = new LdapV3DNStrConverter();
+
+        Assertions.assertEquals("CN=Server,OU=Test,O=EXAMPLE,C=US",
+                converter.encodeDN(converter.parseDN("cn=Server, ou=Test, o=EXAMPLE, c=US")));
+        Assertions.assertEquals("CN=Smith\\, John,O=EXAMPLE",
+                converter.encodeDN(converter.parseDN("CN=\"Smith, John\",O=EXAMPLE")));
+
+        // formatting and parsing are inverse operations
+        for (String dn : DNS) {
+            X500Name name = converter.parseDN(dn);
+            String encoded = converter.encodeDN(name);
+            Assertions.assertEquals(name, converter.parseDN(encoded), encoded);
+            Assertions.assertEquals(encoded, name.toLdapDNString());
+        }
+
+        RDN rdn = converter.parseRDN("CN=Server+UID=server");
+        Assertions.assertEquals("CN=Server+UID=server", converter.encodeRDN(rdn));
+    }
+}
@@ -0,0 +1,115 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks the lookup cache of CryptoManager with the
+ * certificates created by GenerateTestCert.
+ */
+package org.mozilla.jss.tests;
+
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.LookupCache;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.X509Certificate;
+import org.mozilla.jss.pkcs11.PK11Cert;
+import org.mozilla.jss.pkcs11.PK11PrivKey;
+
+public class LookupCacheTest {
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.LookupCacheTest <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        LookupCache cache = manager.getLookupCache();
+        cache.setMaxSize(LookupCache.DEFAULT_MAX_SIZE);
+        cache.flush();
+        cache.resetStatistics();
+
+        try {
+            // the first lookup is a miss
+            PK11Cert cert1 = (PK11Cert) manager.findCertByNickname("Server_RSA");
+            check(cache.getMissCount() == 1, "Unexpected misses: " + cache);
+            check(cache.size() == 1, "Unexpected size: " + cache);
+
+            // later lookups return new objects from the cache
+            PK11Cert cert2 = (PK11Cert) manager.findCertByNickname("Server_RSA");
+            PK11Cert cert3 = (PK11Cert) manager.findCertByNickname("Server_RSA");
+            check(cache.getHitCount() == 2, "Unexpected hits: " + cache);
+            check(cert1 != cert2 && cert2 != cert3, "Cached certificate is shared");
+            check("Server_RSA".equals(cert2.getNickname()), "Invalid nickname: " + cert2.getNickname());
+
+            // closing a returned certificate does not affect the cache
+            byte[] encoded = cert1.getEncoded();
+            cert1.close();
+            cert2.close();
+            check(Arrays.equals(encoded, cert3.getEncoded()), "Certificate changed after close");
+            check(Arrays.equals(encoded, manager.findCertByNickname("Server_RSA").getEncoded()),
+                    "Cached certificate changed after close");
+
+            X509Certificate[] certs1 = manager.findCertsByNickname("Server_ECDSA");
+            X509Certificate[] certs2 = manager.findCertsByNickname("Server_ECDSA");
+            check(certs1.length == 1 && certs2.length == 1, "Invalid Server_ECDSA certificates");
+            check(certs1[0] != certs2[0], "Cached certificate array is shared");
+
+            // private keys
+            PrivateKey key1 = manager.findPrivKeyByCert(cert3);
+            PrivateKey key2 = manager.findPrivKeyByCert(cert3);
+            check(key1 != key2, "Cached private key is shared");
+            check(Arrays.equals(key1.getUniqueID(), key2.getUniqueID()), "Different private keys");
+
+            ((PK11PrivKey) key1).close();
+            PrivateKey key3 = manager.findPrivKeyByCert(cert3);
+            check(Arrays.equals(key2.getUniqueID(), key3.getUniqueID()), "Private key changed after close");
+
+            // token changes flush the cache
+            long flushes = cache.getFlushCount();
+            manager.tokenObjectsChanged();
+            check(cache.size() == 0, "Cache not flushed: " + cache);
+            check(cache.getFlushCount() == flushes + 1, "Unexpected flushes: " + cache);
+
+            long misses = cache.getMissCount();
+            check(Arrays.equals(encoded, manager.findCertByNickname("Server_RSA").getEncoded()),
+                    "Invalid certificate after flush");
+            check(cache.getMissCount() == misses + 1, "Unexpected misses after flush: " + cache);
+
+            // the least recently used entries are removed
+            manager.findCertByNickname("Server_ECDSA");
+            cache.setMaxSize(1);
+            check(cache.size() == 1, "Cache not trimmed: " + cache);
+
+            // failed lookups are not cached
+            try {
+                manager.findCertByNickname("Unknown_Cert");
+                throw new Exception("Found unknown certificate");
+            } catch (org.mozilla.jss.crypto.ObjectNotFoundException e) {
+                // expected
+            }
+            check(cache.size() == 1, "Failed lookup cached: " + cache);
+
+        } finally {
+            cache.setMaxSize(0);
+        }
+
+        check(!cache.isEnabled() && cache.size() == 0, "Cache not disabled: " + cache);
+
+        System.out.println("LookupCacheTest: PASS");
+    }
+}
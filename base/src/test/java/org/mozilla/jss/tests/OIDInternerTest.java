@@ -0,0 +1,116 @@
+package org.mozilla.jss.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OIDInterner;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+
+public class OIDInternerTest {
+
+    // contents of 2.5.29.15
+    private static final byte[] KEY_USAGE = { 0x55, 0x1d, 0x0f };
+
+    @Test
+    public void testLookup() throws Exception {
+        OIDInterner<String> interner = new OIDInterner<>();
+
+        Assertions.assertNull(interner.get("2.5.29.15"));
+        Assertions.assertNull(interner.get(KEY_USAGE, 0, KEY_USAGE.length));
+
+        String oid = new String("keyUsage");
+        Assertions.assertSame(oid, interner.intern("2.5.29.15", KEY_USAGE, oid));
+        Assertions.assertSame(oid, interner.get("2.5.29.15"));
+
+        // lookup by a range of a larger array
+        byte[] der = { 0x06, 0x03, 0x55, 0x1d, 0x0f, 0x00 };
+        Assertions.assertSame(oid, interner.get(der, 2, 3));
+        Assertions.assertNull(interner.get(der, 2, 2));
+
+        // an equal OID is not replaced
+        Assertions.assertSame(oid, interner.intern("2.5.29.15", KEY_USAGE.clone(), new String("other")));
+        Assertions.assertEquals(1, interner.size());
+    }
+
+    @Test
+    public void testBound() throws Exception {
+        OIDInterner<String> interner = new OIDInterner<>(2);
+
+        interner.intern("1.2.1", new byte[] { 0x2a, 0x01 }, "a");
+        interner.intern("1.2.2", new byte[] { 0x2a, 0x02 }, "b");
+        Assertions.assertEquals(2, interner.size());
+
+        // a full table is cleared
+        interner.intern("1.2.3", new byte[] { 0x2a, 0x03 }, "c");
+        Assertions.assertEquals(1, interner.size());
+        Assertions.assertNull(interner.get("1.2.1"));
+        Assertions.assertEquals("c", interner.get("1.2.3"));
+
+        interner.clear();
+        Assertions.assertEquals(0, interner.size());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new OIDInterner<String>(0));
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        OIDInterner<Object> interner = new OIDInterner<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(() -> interner.intern("2.5.29.15", KEY_USAGE.clone(), new Object()));
+            }
+
+            Object first = null;
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                if (first == null) {
+                    first = future.get();
+                }
+                Assertions.assertSame(first, future.get());
+            }
+
+            Assertions.assertSame(first, interner.get("2.5.29.15"));
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOIDClasses() throws Exception {
+        // decoded OIDs are equal to the ones created from strings
+        OBJECT_IDENTIFIER oid = new OBJECT_IDENTIFIER("2.5.29.15");
+        OBJECT_IDENTIFIER decoded = (OBJECT_IDENTIFIER) ASN1Util.decode(
+                OBJECT_IDENTIFIER.getTemplate(), ASN1Util.encode(oid));
+        Assertions.assertEquals(oid, decoded);
+        Assertions.assertEquals("2.5.29.15", decoded.toDottedString());
+
+        // the numbers of a shared instance cannot be modified
+        decoded.getNumbers()[3] = 99;
+        Assertions.assertEquals(oid, decoded);
+        Assertions.assertEquals(15, new OBJECT_IDENTIFIER("2.5.29.15").getNumbers()[3]);
+
+        ObjectIdentifier netscapeOID = ObjectIdentifier.getObjectIdentifier("2.5.29.15");
+        Assertions.assertSame(netscapeOID, ObjectIdentifier.getObjectIdentifier("2.5.29.15"));
+
+        DerOutputStream out = new DerOutputStream();
+        out.putOID(netscapeOID);
+        ObjectIdentifier decodedOID = new DerInputStream(out.toByteArray()).getOID();
+        Assertions.assertEquals(netscapeOID, decodedOID);
+        Assertions.assertEquals("2.5.29.15", decodedOID.toString());
+
+        Assertions.assertThrows(Exception.class, () -> ObjectIdentifier.getObjectIdentifier("3.1"));
+    }
+}
@@ -0,0 +1,125 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRLEntry;
+import java.util.Date;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificateIndex;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+public class RevokedCertificateIndexTest {
+
+    // whole seconds, since CRL dates have no fractions
+    private static final long NOW = System.currentTimeMillis() / 1000 * 1000;
+
+    // unsorted, including zero, multi-byte serial numbers and
+    // serial numbers that need a leading zero byte
+    private static final BigInteger[] SERIALS = {
+            BigInteger.valueOf(300),
+            BigInteger.ONE,
+            new BigInteger("123456789012345678901234567890"),
+            BigInteger.ZERO,
+            BigInteger.valueOf(65535),
+            BigInteger.valueOf(255),
+            BigInteger.valueOf(128)
+    };
+
+    private static byte[] createCRL() throws Exception {
+
+        RevokedCertificate[] entries = new RevokedCertificate[SERIALS.length];
+        for (int i = 0; i < SERIALS.length; i++) {
+            Date date = new Date(NOW - i * 1000L);
+            if (i % 2 == 0) {
+                CRLExtensions exts = new CRLExtensions();
+                exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(RevocationReason.KEY_COMPROMISE));
+                entries[i] = new RevokedCertImpl(SERIALS[i], date, exts);
+            } else {
+                entries[i] = new RevokedCertImpl(SERIALS[i], date);
+            }
+        }
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        KeyPair keyPair = kpg.generateKeyPair();
+
+        X509CRLImpl crl = new X509CRLImpl(new X500Name("CN=CA Signing Certificate,O=EXAMPLE"),
+                new Date(NOW), new Date(NOW + 86400000L), entries, null);
+        crl.sign(keyPair.getPrivate(), "SHA256withRSA");
+        return crl.getEncoded();
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        byte[] der = createCRL();
+        X509CRLImpl crl = new X509CRLImpl(der, true, true);
+
+        RevokedCertificateIndex index = crl.getRevokedCertificateIndex();
+        Assertions.assertNotNull(index);
+        Assertions.assertEquals(SERIALS.length, index.size());
+        Assertions.assertEquals(SERIALS.length, crl.getNumberOfRevokedCertificates());
+        Assertions.assertTrue(index.hasEntryExtensions());
+        Assertions.assertFalse(index.hasCertificateIssuers());
+        Assertions.assertFalse(index.hasUnhandledCriticalEntryExtensions());
+
+        // entries are sorted by serial number
+        for (int i = 1; i < index.size(); i++) {
+            Assertions.assertTrue(index.getSerialNumber(i - 1).compareTo(index.getSerialNumber(i)) < 0);
+        }
+
+        for (int i = 0; i < SERIALS.length; i++) {
+            int n = index.indexOf(SERIALS[i]);
+            Assertions.assertTrue(n >= 0, "Missing serial " + SERIALS[i]);
+            Assertions.assertEquals(SERIALS[i], index.getSerialNumber(n));
+            Assertions.assertEquals(new Date(NOW - i * 1000L), index.getRevocationDate(n));
+            Assertions.assertEquals((NOW - i * 1000L) / 1000, index.getRevocationEpochSecond(n));
+
+            RevocationReason reason = i % 2 == 0 ? RevocationReason.KEY_COMPROMISE : null;
+            Assertions.assertEquals(reason, index.getRevocationReason(n));
+
+            RevokedCertificate entry = index.getRevokedCertificate(SERIALS[i]);
+            Assertions.assertEquals(SERIALS[i], entry.getSerialNumber());
+            Assertions.assertEquals(i % 2 == 0, entry.hasExtensions());
+
+            Assertions.assertTrue(crl.isRevoked(SERIALS[i]));
+        }
+
+        for (BigInteger serial : new BigInteger[] {
+                BigInteger.TWO, BigInteger.valueOf(-1), BigInteger.valueOf(256), BigInteger.valueOf(1L << 40) }) {
+            Assertions.assertEquals(-1, index.indexOf(serial));
+            Assertions.assertFalse(index.contains(serial));
+            Assertions.assertNull(index.getRevokedCertificate(serial));
+        }
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        byte[] der = createCRL();
+
+        // the compact and the default parsing find the same entries
+        X509CRLImpl compact = new X509CRLImpl(der, true, true);
+        X509CRLImpl full = new X509CRLImpl(der);
+
+        Assertions.assertEquals(full.getRevokedCertificates().size(), compact.getRevokedCertificates().size());
+        for (RevokedCertificate entry : full.getRevokedCertificates()) {
+            X509CRLEntry other = compact.getRevokedCertificate(entry.getSerialNumber());
+            Assertions.assertNotNull(other);
+            Assertions.assertEquals(entry.getRevocationDate(), other.getRevocationDate());
+        }
+
+        // the index writes the original encoding
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compact.encodeInfo(out);
+        Assertions.assertArrayEquals(full.getTBSCertList(), out.toByteArray());
+    }
+}
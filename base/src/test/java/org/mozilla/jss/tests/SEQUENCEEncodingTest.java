@@ -0,0 +1,161 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+
+public class SEQUENCEEncodingTest {
+
+    /**
+     * A value that builds a new SEQUENCE on every encode() call, like
+     * many of the PKIX classes, and counts the calls.
+     */
+    private static class Wrapper implements ASN1Value {
+
+        ASN1Value content;
+        int encodeCount;
+
+        Wrapper(ASN1Value content) {
+            this.content = content;
+        }
+
+        @Override
+        public Tag getTag() {
+            return SEQUENCE.TAG;
+        }
+
+        @Override
+        public void encode(OutputStream ostream) throws IOException {
+            encode(SEQUENCE.TAG, ostream);
+        }
+
+        @Override
+        public void encode(Tag implicitTag, OutputStream ostream) throws IOException {
+            encodeCount++;
+            SEQUENCE seq = new SEQUENCE();
+            seq.addElement(content);
+            seq.encode(implicitTag, ostream);
+        }
+    }
+
+    private SEQUENCE createSequence() {
+        SEQUENCE seq = new SEQUENCE();
+        for (int i = 0; i < 20; i++) {
+            SEQUENCE inner = new SEQUENCE();
+            inner.addElement(new INTEGER(i * 1000));
+            inner.addElement(new OCTET_STRING(new byte[i * 20]));
+            inner.addElement(null);
+
+            SET set = new SET();
+            set.addElement(new INTEGER(2));
+            set.addElement(new INTEGER(1));
+            inner.addElement(new EXPLICIT(new Tag(i), set));
+            inner.addElement(new Tag(40 + i), new OCTET_STRING(new byte[5]));
+
+            seq.addElement(inner);
+        }
+        seq.addElement(new OBJECT_IDENTIFIER("1.2.840.113549.1.1.11"));
+        return seq;
+    }
+
+    @Test
+    public void testEncodedLength() throws Exception {
+        SEQUENCE seq = createSequence();
+        byte[] encoded = ASN1Util.encode(seq);
+        Assertions.assertEquals(encoded.length, seq.getEncodedLength(SEQUENCE.TAG));
+    }
+
+    @Test
+    public void testEncodeToStream() throws Exception {
+        SEQUENCE seq = createSequence();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        seq.encode(bos);
+
+        Assertions.assertArrayEquals(bos.toByteArray(), ASN1Util.encode(seq));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(new EXPLICIT.Template(new Tag(3), OCTET_STRING.getTemplate()));
+
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new INTEGER(300));
+        seq.addElement(new EXPLICIT(new Tag(3), new OCTET_STRING(new byte[200])));
+
+        byte[] encoded = ASN1Util.encode(seq);
+        SEQUENCE decoded = (SEQUENCE) ASN1Util.decode(template, encoded);
+
+        Assertions.assertArrayEquals(encoded, ASN1Util.encode(decoded));
+    }
+
+    @Test
+    public void testLazyDecoding() throws Exception {
+        SEQUENCE.Template innerTemplate = new SEQUENCE.Template();
+        innerTemplate.addElement(INTEGER.getTemplate());
+
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addOptionalElement(new Tag(1), OCTET_STRING.getTemplate());
+        template.addElement(innerTemplate);
+        template.setLazy(true);
+
+        SEQUENCE inner = new SEQUENCE();
+        inner.addElement(new INTEGER(7));
+
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new INTEGER(300));
+        seq.addElement(new Tag(1), new OCTET_STRING(new byte[3]));
+        seq.addElement(inner);
+
+        byte[] encoded = ASN1Util.encode(seq);
+        SEQUENCE decoded = (SEQUENCE) ASN1Util.decode(template, encoded);
+
+        // re-encoded from the original encoding
+        Assertions.assertArrayEquals(encoded, ASN1Util.encode(decoded));
+        Assertions.assertEquals(new Tag(1), decoded.tagAt(1));
+
+        Assertions.assertEquals(new INTEGER(300), decoded.elementAt(0));
+        Assertions.assertEquals(1, ((SEQUENCE) decoded.elementAt(2)).size());
+        Assertions.assertArrayEquals(encoded, ASN1Util.encode(decoded));
+    }
+
+    @Test
+    public void testNestedWrappers() throws Exception {
+        Wrapper[] wrappers = new Wrapper[20];
+        ASN1Value value = new INTEGER(1);
+        for (int i = 0; i < wrappers.length; i++) {
+            wrappers[i] = new Wrapper(new EXPLICIT(new Tag(i), value));
+            value = wrappers[i];
+        }
+
+        byte[] encoded = ASN1Util.encode(value);
+
+        // each wrapper is encoded once regardless of the nesting depth
+        for (Wrapper wrapper : wrappers) {
+            Assertions.assertEquals(1, wrapper.encodeCount);
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        value.encode(bos);
+        Assertions.assertArrayEquals(encoded, bos.toByteArray());
+
+        for (Wrapper wrapper : wrappers) {
+            Assertions.assertEquals(2, wrapper.encodeCount);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program checks that signing and verifying a batch of digests
+ * gives the same results as signing and verifying each message with a
+ * single-shot signature context.
+ */
+package org.mozilla.jss.tests;
+
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.Policy;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+
+public class SigBatchTest {
+
+    // DER encoding of a DigestInfo with SHA-256, without the digest
+    private static final byte[] SHA256_DIGEST_INFO_PREFIX = {
+            0x30, 0x31, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86,
+            0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x01, 0x05,
+            0x00, 0x04, 0x20
+    };
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.SigBatchTest <dbdir> <pwfile>");
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception(message);
+        }
+    }
+
+    private static byte[] digestInfo(byte[] message) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(message);
+        byte[] info = Arrays.copyOf(SHA256_DIGEST_INFO_PREFIX,
+                SHA256_DIGEST_INFO_PREFIX.length + digest.length);
+        System.arraycopy(digest, 0, info, SHA256_DIGEST_INFO_PREFIX.length, digest.length);
+        return info;
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        CryptoToken token = cm.getInternalKeyStorageToken();
+
+        KeyPairGenerator kpg = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        kpg.initialize(Policy.RSA_MINIMUM_KEY_SIZE);
+        kpg.temporaryPairs(true);
+        KeyPair keyPair = kpg.genKeyPair();
+        PrivateKey privateKey = (PrivateKey) keyPair.getPrivate();
+        PublicKey publicKey = keyPair.getPublic();
+
+        int count = 5;
+        byte[][] messages = new byte[count][];
+        byte[][] digests = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            messages[i] = ("message " + i).getBytes();
+            digests[i] = digestInfo(messages[i]);
+        }
+
+        Signature signer = token.getSignatureContext(SignatureAlgorithm.RSASignature);
+        signer.initSign(privateKey);
+        byte[][] signatures = signer.signBatch(digests);
+        check(signatures.length == count, "Wrong number of signatures: " + signatures.length);
+
+        // PKCS #1 v1.5 signatures are deterministic, so each signature
+        // must equal the single-shot signature of the message
+        Signature single = token.getSignatureContext(SignatureAlgorithm.RSASignatureWithSHA256Digest);
+        for (int i = 0; i < count; i++) {
+            single.initSign(privateKey);
+            single.update(messages[i]);
+            check(Arrays.equals(signatures[i], single.sign()),
+                    "Batch and single-shot signatures differ for message " + i);
+        }
+
+        // the context remains initialized for the next batch
+        byte[][] again = signer.signBatch(new byte[][] { digests[1] });
+        check(Arrays.equals(signatures[1], again[0]), "Second batch differs");
+
+        Signature verifier = token.getSignatureContext(SignatureAlgorithm.RSASignature);
+        verifier.initVerify(publicKey);
+
+        BitSet valid = verifier.verifyBatch(digests, signatures);
+        check(valid.cardinality() == count, "Valid signatures were rejected: " + valid);
+
+        // a signature of another message and a corrupted signature
+        byte[][] mismatched = signatures.clone();
+        mismatched[1] = signatures[2];
+        mismatched[3] = signatures[3].clone();
+        mismatched[3][mismatched[3].length - 1] ^= 0x01;
+
+        valid = verifier.verifyBatch(digests, mismatched);
+
+        BitSet expected = new BitSet();
+        expected.set(0, count);
+        expected.clear(1);
+        expected.clear(3);
+        check(expected.equals(valid), "Wrong valid signatures: " + valid);
+
+        // the batch result agrees with single-shot verification
+        Signature singleVerifier = token.getSignatureContext(SignatureAlgorithm.RSASignatureWithSHA256Digest);
+        for (int i = 0; i < count; i++) {
+            singleVerifier.initVerify(publicKey);
+            singleVerifier.update(messages[i]);
+            check(singleVerifier.verify(mismatched[i]) == valid.get(i),
+                    "Batch and single-shot verification differ for message " + i);
+        }
+
+        // batches require a raw algorithm
+        try {
+            single.initSign(privateKey);
+            single.signBatch(digests);
+            throw new Exception("Batch signing with a digest algorithm succeeded");
+        } catch (SignatureException e) {
+            // expected
+        }
+
+        System.out.println("SigBatchTest: PASS");
+    }
+}
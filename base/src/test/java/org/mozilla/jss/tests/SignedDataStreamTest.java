@@ -0,0 +1,108 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+/* This program signs data with SignedDataOutputStream and verifies it
+ * with SignedDataParser.
+ */
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.KeyPairAlgorithm;
+import org.mozilla.jss.crypto.KeyPairGenerator;
+import org.mozilla.jss.crypto.Policy;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.pkix.cms.ContentInfo;
+import org.mozilla.jss.pkix.cms.SignedDataOutputStream;
+import org.mozilla.jss.pkix.cms.SignedDataParser;
+import org.mozilla.jss.pkix.cms.SignerIdentifier;
+import org.mozilla.jss.pkix.cms.SignerInfo;
+
+public class SignedDataStreamTest {
+
+    public static void usage() {
+        System.out.println(
+                "Usage: java org.mozilla.jss.tests.SignedDataStreamTest <dbdir> <pwfile>");
+    }
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 2) {
+            usage();
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+
+        CryptoToken token = manager.getInternalKeyStorageToken();
+
+        KeyPairGenerator kpgen = token.getKeyPairGenerator(KeyPairAlgorithm.RSA);
+        kpgen.initialize(Policy.RSA_MINIMUM_KEY_SIZE);
+        kpgen.temporaryPairs(true);
+
+        // two signers with the same digest algorithm
+        KeyPair[] keyPairs = new KeyPair[] { kpgen.genKeyPair(), kpgen.genKeyPair() };
+
+        byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (SignedDataOutputStream sdos = new SignedDataOutputStream(bos, ContentInfo.DATA, 4096)) {
+            for (int i = 0; i < keyPairs.length; i++) {
+                sdos.addSigner(
+                        SignerIdentifier.createSubjectKeyIdentifier(new OCTET_STRING(new byte[] { (byte) i })),
+                        SignatureAlgorithm.RSASignatureWithSHA256Digest,
+                        (PrivateKey) keyPairs[i].getPrivate(),
+                        null,
+                        null);
+            }
+            sdos.write(content);
+        }
+
+        SignedDataParser parser = new SignedDataParser(new ByteArrayInputStream(bos.toByteArray()));
+
+        ByteArrayOutputStream parsed = new ByteArrayOutputStream();
+        try (InputStream in = parser.getContentStream()) {
+            in.transferTo(parsed);
+        }
+
+        if (!Arrays.equals(content, parsed.toByteArray())) {
+            throw new Exception("Content does not match");
+        }
+
+        byte[] digest = parser.getDigest(DigestAlgorithm.SHA256);
+        if (!Arrays.equals(MessageDigest.getInstance("SHA-256").digest(content), digest)) {
+            throw new Exception("Digest does not match");
+        }
+
+        SET signerInfos = parser.getSignerInfos();
+        if (signerInfos.size() != keyPairs.length) {
+            throw new Exception("Unexpected number of SignerInfos: " + signerInfos.size());
+        }
+
+        for (int i = 0; i < signerInfos.size(); i++) {
+            SignerInfo si = (SignerInfo) signerInfos.elementAt(i);
+            int index = si.getSignerIdentifier().getSubjectKeyIdentifier().toByteArray()[0];
+
+            // throws an exception if the signature of the digest is invalid
+            si.verify(digest, ContentInfo.DATA, keyPairs[index].getPublic());
+            System.out.println("Verified signer " + index);
+        }
+
+        System.out.println("SignedDataStreamTest: PASS");
+    }
+}
@@ -0,0 +1,374 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.crypto.SigningService;
+import org.mozilla.jss.crypto.TokenException;
+
+public class SigningServiceTest {
+
+    static final SignatureAlgorithm ALGORITHM = SignatureAlgorithm.RSASignatureWithSHA256Digest;
+
+    /**
+     * A token whose signature contexts return the key ID followed by
+     * the data, and record how many signing operations run at once.
+     */
+    static class TestToken implements InvocationHandler {
+
+        CryptoToken proxy = (CryptoToken) Proxy.newProxyInstance(
+                CryptoToken.class.getClassLoader(), new Class<?>[] { CryptoToken.class }, this);
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        // blocks the signing operations while set
+        volatile CountDownLatch gate;
+        volatile boolean failing;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "getSignatureContext":
+                return new TestSignature(this);
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "TestToken";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    static class TestSignature extends Signature {
+
+        TestToken token;
+        PrivateKey key;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        TestSignature(TestToken token) {
+            this.token = token;
+        }
+
+        @Override
+        public void initSign(PrivateKey key) {
+            this.key = key;
+            data.reset();
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            data.write(b, off, len);
+        }
+
+        @Override
+        public byte[] sign() throws SignatureException {
+            int n = token.active.incrementAndGet();
+            token.maxActive.accumulateAndGet(n, Math::max);
+            try {
+                CountDownLatch gate = token.gate;
+                if (gate != null && !gate.await(10, TimeUnit.SECONDS)) {
+                    throw new SignatureException("Timed out");
+                }
+                if (token.failing) {
+                    throw new SignatureException("Signing failed");
+                }
+                return expected(key.getUniqueID(), data.toByteArray());
+
+            } catch (InterruptedException | TokenException e) {
+                throw new SignatureException(e);
+
+            } finally {
+                token.active.decrementAndGet();
+            }
+        }
+    }
+
+    static PrivateKey createKey(TestToken token, byte[] id) {
+        return (PrivateKey) Proxy.newProxyInstance(
+                PrivateKey.class.getClassLoader(),
+                new Class<?>[] { PrivateKey.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getOwningToken":
+                        return token.proxy;
+                    case "getUniqueID":
+                        return id.clone();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "TestKey" + Arrays.toString(id);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    static byte[] expected(byte[] id, byte[] data) {
+        byte[] result = Arrays.copyOf(id, id.length + data.length);
+        System.arraycopy(data, 0, result, id.length, data.length);
+        return result;
+    }
+
+    static void waitFor(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assertions.fail("Timed out");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testSign() throws Exception {
+
+        TestToken token = new TestToken();
+        PrivateKey key = createKey(token, new byte[] { 1 });
+        SigningService service = new SigningService();
+
+        byte[] data = { 10, 11, 12 };
+        Assertions.assertArrayEquals(expected(new byte[] { 1 }, data), service.sign(key, ALGORITHM, data));
+        Assertions.assertArrayEquals(expected(new byte[] { 1 }, new byte[] { 11 }),
+                service.sign(key, ALGORITHM, data, 1, 1));
+
+        SigningService.Stats stats = service.getStats(token.proxy);
+        Assertions.assertEquals(2, stats.getOperations());
+        Assertions.assertEquals(0, stats.getFailures());
+        Assertions.assertEquals(1, stats.getContextsCreated());
+        Assertions.assertEquals(0, stats.getActive());
+        Assertions.assertEquals(0, stats.getQueueDepth());
+        Assertions.assertEquals(0, stats.getMaxConcurrency());
+
+        Assertions.assertEquals(0, service.getStats(new TestToken().proxy).getOperations());
+    }
+
+    @Test
+    public void testKeyID() throws Exception {
+
+        TestToken token = new TestToken();
+        SigningService service = new SigningService();
+
+        // different objects for the same key share a pool
+        service.sign(createKey(token, new byte[] { 1 }), ALGORITHM, new byte[] { 0 });
+        service.sign(createKey(token, new byte[] { 1 }), ALGORITHM, new byte[] { 0 });
+        Assertions.assertEquals(1, service.getPoolCount());
+        Assertions.assertEquals(1, service.getStats(token.proxy).getContextsCreated());
+
+        // the same key ID on another token is another key
+        TestToken token2 = new TestToken();
+        service.sign(createKey(token2, new byte[] { 1 }), ALGORITHM, new byte[] { 0 });
+        service.sign(createKey(token, new byte[] { 2 }), ALGORITHM, new byte[] { 0 });
+        Assertions.assertEquals(3, service.getPoolCount());
+        Assertions.assertEquals(2, service.getStats(token.proxy).getContextsCreated());
+        Assertions.assertEquals(1, service.getStats(token2.proxy).getContextsCreated());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        TestToken token = new TestToken();
+        PrivateKey key1 = createKey(token, new byte[] { 1 });
+        PrivateKey key2 = createKey(token, new byte[] { 2 });
+        PrivateKey key3 = createKey(token, new byte[] { 3 });
+        SigningService service = new SigningService(4, 2);
+
+        service.sign(key1, ALGORITHM, new byte[] { 0 });
+        service.sign(key2, ALGORITHM, new byte[] { 0 });
+        service.sign(key1, ALGORITHM, new byte[] { 0 });
+        Assertions.assertEquals(2, service.getStats(token.proxy).getContextsCreated());
+
+        // key2 is the least recently used key
+        service.sign(key3, ALGORITHM, new byte[] { 0 });
+        Assertions.assertEquals(2, service.getPoolCount());
+
+        service.sign(key1, ALGORITHM, new byte[] { 0 });
+        Assertions.assertEquals(3, service.getStats(token.proxy).getContextsCreated());
+
+        service.sign(key2, ALGORITHM, new byte[] { 0 });
+        Assertions.assertEquals(4, service.getStats(token.proxy).getContextsCreated());
+        Assertions.assertEquals(2, service.getPoolCount());
+
+        service.removeKey(createKey(token, new byte[] { 2 }));
+        Assertions.assertEquals(1, service.getPoolCount());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+
+        TestToken token = new TestToken();
+        PrivateKey key = createKey(token, new byte[] { 1 });
+        SigningService service = new SigningService();
+
+        service.sign(key, ALGORITHM, new byte[] { 0 });
+
+        token.failing = true;
+        Assertions.assertThrows(SignatureException.class, () -> service.sign(key, ALGORITHM, new byte[] { 0 }));
+        token.failing = false;
+
+        // the failed context is discarded
+        service.sign(key, ALGORITHM, new byte[] { 0 });
+
+        SigningService.Stats stats = service.getStats(token.proxy);
+        Assertions.assertEquals(2, stats.getOperations());
+        Assertions.assertEquals(1, stats.getFailures());
+        Assertions.assertEquals(2, stats.getContextsCreated());
+        Assertions.assertEquals(0, stats.getActive());
+    }
+
+    @Test
+    public void testMaxConcurrency() throws Exception {
+
+        TestToken token = new TestToken();
+        PrivateKey key = createKey(token, new byte[] { 1 });
+        SigningService service = new SigningService();
+        service.setMaxConcurrency(token.proxy, 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            token.gate = new CountDownLatch(1);
+
+            Future<byte[]> first = executor.submit(() -> service.sign(key, ALGORITHM, new byte[] { 0 }));
+            waitFor(() -> token.active.get() == 1);
+
+            Future<byte[]> second = executor.submit(() -> service.sign(key, ALGORITHM, new byte[] { 0 }));
+            waitFor(() -> service.getStats(token.proxy).getQueueDepth() == 1);
+
+            SigningService.Stats stats = service.getStats(token.proxy);
+            Assertions.assertEquals(1, stats.getMaxConcurrency());
+            Assertions.assertEquals(1, stats.getActive());
+            Assertions.assertEquals(1, token.active.get());
+
+            token.gate.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        SigningService.Stats stats = service.getStats(token.proxy);
+        Assertions.assertEquals(2, stats.getOperations());
+        Assertions.assertEquals(0, stats.getActive());
+        Assertions.assertEquals(0, stats.getQueueDepth());
+        Assertions.assertEquals(1, token.maxActive.get());
+    }
+
+    @Test
+    public void testChangeMaxConcurrency() throws Exception {
+
+        TestToken token = new TestToken();
+        PrivateKey key = createKey(token, new byte[] { 1 });
+        SigningService service = new SigningService();
+        service.setMaxConcurrency(token.proxy, 1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            token.gate = new CountDownLatch(1);
+            Future<byte[]> first = executor.submit(() -> service.sign(key, ALGORITHM, new byte[] { 0 }));
+            waitFor(() -> token.active.get() == 1);
+
+            // the permit of the operation in progress goes back to the
+            // old semaphore and does not raise the new limit
+            service.setMaxConcurrency(token.proxy, 1);
+            token.gate.countDown();
+            first.get(10, TimeUnit.SECONDS);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        token.gate = null;
+        token.maxActive.set(0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(pool.submit(() -> service.sign(key, ALGORITHM, new byte[] { 0 })));
+            }
+            for (Future<byte[]> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Assertions.assertEquals(1, token.maxActive.get());
+        Assertions.assertEquals(101, service.getStats(token.proxy).getOperations());
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+
+        TestToken token = new TestToken();
+        PrivateKey[] keys = {
+                createKey(token, new byte[] { 1 }),
+                createKey(token, new byte[] { 2 }),
+                createKey(token, new byte[] { 3 })
+        };
+        SigningService service = new SigningService();
+        service.setMaxConcurrency(token.proxy, 2);
+
+        int threads = 8;
+        int operations = 200;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < operations; i++) {
+                        PrivateKey key = keys[(thread + i) % keys.length];
+                        byte[] data = { (byte) thread, (byte) i };
+                        byte[] signature = service.sign(key, ALGORITHM, data);
+                        Assertions.assertArrayEquals(expected(key.getUniqueID(), data), signature);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        SigningService.Stats stats = service.getStats(token.proxy);
+        Assertions.assertEquals(threads * operations, stats.getOperations());
+        Assertions.assertEquals(0, stats.getFailures());
+        Assertions.assertEquals(0, stats.getActive());
+        Assertions.assertEquals(0, stats.getQueueDepth());
+        Assertions.assertTrue(token.maxActive.get() <= 2, "Too many operations: " + token.maxActive.get());
+
+        // no more than 2 contexts of a key are used at the same time
+        Assertions.assertTrue(stats.getContextsCreated() <= 2 * keys.length,
+                "Too many contexts: " + stats.getContextsCreated());
+        Assertions.assertTrue(stats.getAverageLatency() <= stats.getMaxLatency());
+    }
+}
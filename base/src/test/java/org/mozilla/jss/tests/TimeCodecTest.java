@@ -0,0 +1,122 @@
+package org.mozilla.jss.tests;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.TimeCodec;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+
+public class TimeCodecTest {
+
+    // 2024-02-29 12:34:56 UTC
+    private static final long TIME = LocalDateTime.of(2024, 2, 29, 12, 34, 56).toEpochSecond(ZoneOffset.UTC);
+
+    private static long parseUTCTime(String s, boolean strict) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        return TimeCodec.parseUTCTime(b, 0, b.length, 50, strict);
+    }
+
+    private static long parseGeneralizedTime(String s, boolean strict) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        return TimeCodec.parseGeneralizedTime(b, 0, b.length, strict);
+    }
+
+    private static byte[] encode(byte tag, String s) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        byte[] der = new byte[b.length + 2];
+        der[0] = tag;
+        der[1] = (byte) b.length;
+        System.arraycopy(b, 0, der, 2, b.length);
+        return der;
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        Assertions.assertEquals("240229123456Z",
+                new String(TimeCodec.formatUTCTime(TIME), StandardCharsets.US_ASCII));
+        Assertions.assertEquals("20240229123456Z",
+                new String(TimeCodec.formatGeneralizedTime(TIME), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testUTCTime() throws Exception {
+        Assertions.assertEquals(TIME, parseUTCTime("240229123456Z", true));
+        Assertions.assertEquals(TIME, parseUTCTime("240229123456Z", false));
+        Assertions.assertEquals(TIME - 56, parseUTCTime("2402291234Z", true));
+
+        // pivot year
+        Assertions.assertEquals(1999, LocalDateTime.ofEpochSecond(
+                parseUTCTime("990101000000Z", true), 0, ZoneOffset.UTC).getYear());
+        Assertions.assertEquals(2049, LocalDateTime.ofEpochSecond(
+                parseUTCTime("490101000000Z", true), 0, ZoneOffset.UTC).getYear());
+
+        // offsets are accepted in both modes
+        Assertions.assertEquals(TIME, parseUTCTime("240229143456+0200", false));
+        Assertions.assertEquals(TIME, parseUTCTime("240229103456-0200", false));
+        Assertions.assertEquals(TIME, parseUTCTime("240229143456+0200", true));
+
+        // UTCTime always needs a time zone
+        Assertions.assertThrows(DateTimeException.class, () -> parseUTCTime("240229123456", false));
+
+        Assertions.assertThrows(DateTimeException.class, () -> parseUTCTime("241329123456Z", false));
+        Assertions.assertThrows(DateTimeException.class, () -> parseUTCTime("240229243456Z", false));
+        Assertions.assertThrows(DateTimeException.class, () -> parseUTCTime("2402291234567Z", false));
+        Assertions.assertThrows(DateTimeException.class, () -> parseUTCTime("24022912345", false));
+    }
+
+    @Test
+    public void testGeneralizedTime() throws Exception {
+        Assertions.assertEquals(TIME, parseGeneralizedTime("20240229123456Z", true));
+
+        // fractions of seconds are ignored in lenient mode
+        Assertions.assertEquals(TIME, parseGeneralizedTime("20240229123456.789Z", false));
+        Assertions.assertThrows(DateTimeException.class, () -> parseGeneralizedTime("20240229123456.789Z", true));
+        Assertions.assertThrows(DateTimeException.class, () -> parseGeneralizedTime("20240229123456.Z", false));
+
+        // a time without a zone is local time in lenient mode
+        long local = LocalDateTime.of(2024, 2, 29, 12, 34, 56).atZone(ZoneId.systemDefault()).toEpochSecond();
+        Assertions.assertEquals(local, parseGeneralizedTime("20240229123456", false));
+        Assertions.assertThrows(DateTimeException.class, () -> parseGeneralizedTime("20240229123456", true));
+
+        Assertions.assertEquals(TIME, parseGeneralizedTime("20240229133456+0100", false));
+        Assertions.assertEquals(TIME, parseGeneralizedTime("20240229133456+0100", true));
+    }
+
+    @Test
+    public void testDerInputStream() throws Exception {
+        DerInputStream in = new DerInputStream(encode((byte) 0x17, "240229123456Z"));
+        Assertions.assertEquals(TIME, in.getUTCTimeEpochSecond());
+
+        in = new DerInputStream(encode((byte) 0x18, "20240229123456Z"));
+        Assertions.assertEquals(TimeCodec.toDate(TIME), in.getGeneralizedTime());
+
+        // a time zone is required and fractions are rejected
+        DerInputStream fraction = new DerInputStream(encode((byte) 0x18, "20240229123456.5Z"));
+        Assertions.assertThrows(Exception.class, () -> fraction.getGeneralizedTime());
+
+        DerInputStream local = new DerInputStream(encode((byte) 0x18, "20240229123456"));
+        Assertions.assertThrows(Exception.class, () -> local.getGeneralizedTime());
+
+        // offsets are applied, as they were before
+        in = new DerInputStream(encode((byte) 0x17, "240229143456+0200"));
+        Assertions.assertEquals(TimeCodec.toDate(TIME), in.getUTCTime());
+
+        in = new DerInputStream(encode((byte) 0x18, "20240229103456-0200"));
+        Assertions.assertEquals(TIME, in.getGeneralizedTimeEpochSecond());
+
+        // round trip through DerOutputStream
+        DerOutputStream out = new DerOutputStream();
+        out.putGeneralizedTime(TimeCodec.toDate(TIME));
+        Assertions.assertEquals(TIME, new DerInputStream(out.toByteArray()).getGeneralizedTimeEpochSecond());
+
+        out = new DerOutputStream();
+        out.putUTCTime(TimeCodec.toDate(TIME));
+        Assertions.assertEquals(TIME, new DerInputStream(out.toByteArray()).getUTCTimeEpochSecond());
+    }
+}
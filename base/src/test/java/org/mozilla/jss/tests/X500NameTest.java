@@ -0,0 +1,74 @@
+package org.mozilla.jss.tests;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+public class X500NameTest {
+
+    private static final String DN = "CN=Server,OU=Test,O=EXAMPLE";
+
+    @Test
+    public void testEqualsAndHashCode() throws Exception {
+        X500Name name1 = new X500Name(DN);
+        X500Name name2 = new X500Name(DN);
+        X500Name decoded = new X500Name(name1.getEncoded());
+
+        Assertions.assertEquals(name1, name2);
+        Assertions.assertEquals(name1, decoded);
+        Assertions.assertEquals(name1.hashCode(), name2.hashCode());
+        Assertions.assertEquals(name1.hashCode(), decoded.hashCode());
+
+        Assertions.assertNotEquals(name1, new X500Name("CN=Other,OU=Test,O=EXAMPLE"));
+        Assertions.assertNotEquals(name1, new X500Name("OU=Test,O=EXAMPLE"));
+
+        // equal names work as map keys
+        Map<X500Name, String> map = new HashMap<>();
+        map.put(name1, "value");
+        Assertions.assertEquals("value", map.get(decoded));
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        X500Name name = new X500Name(DN);
+        byte[] encoded = name.getEncoded();
+        byte[] copy = encoded.clone();
+
+        Assertions.assertEquals(new X500Principal(DN), new X500Principal(encoded));
+
+        // getEncoded() returns a copy of the cached encoding
+        encoded[encoded.length - 1] ^= 1;
+        Assertions.assertArrayEquals(copy, name.getEncoded());
+
+        DerOutputStream out = new DerOutputStream();
+        name.encode(out);
+        Assertions.assertArrayEquals(name.getEncoded(), out.toByteArray());
+        Assertions.assertEquals(name, new X500Name(out.toByteArray()));
+    }
+
+    @Test
+    public void testCanonicalName() throws Exception {
+        X500Name printable = new X500Name(DN, new byte[] { DerValue.tag_PrintableString });
+        X500Name utf8 = new X500Name("cn=server,  ou=TEST, o=Example",
+                new byte[] { DerValue.tag_UTF8String });
+
+        // different encodings of the same name
+        Assertions.assertNotEquals(printable, utf8);
+        Assertions.assertEquals(printable.getCanonicalName(), utf8.getCanonicalName());
+        Assertions.assertEquals(new X500Principal(DN).getName(X500Principal.CANONICAL),
+                printable.getCanonicalName());
+
+        Assertions.assertTrue(printable.matches(utf8));
+        Assertions.assertTrue(utf8.matches(printable));
+        Assertions.assertTrue(printable.matches(printable));
+        Assertions.assertFalse(printable.matches(new X500Name("CN=Server,O=EXAMPLE")));
+        Assertions.assertFalse(printable.matches(null));
+    }
+}
@@ -0,0 +1,177 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CRLException;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLNumberExtension;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificateIndex;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+import org.mozilla.jss.netscape.security.x509.X509CRLReader;
+import org.mozilla.jss.netscape.security.x509.X509CRLWriter;
+
+public class X509CRLStreamTest {
+
+    private static final String ISSUER = "CN=CA Signing Certificate,O=EXAMPLE";
+
+    // whole seconds, since CRL dates have no fractions
+    private static final long NOW = System.currentTimeMillis() / 1000 * 1000;
+
+    private static final int ENTRIES = 1000;
+
+    private static KeyPair keyPair;
+
+    private static KeyPair getKeyPair() throws Exception {
+        if (keyPair == null) {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+            kpg.initialize(2048);
+            keyPair = kpg.generateKeyPair();
+        }
+        return keyPair;
+    }
+
+    private static List<RevokedCertificate> createEntries() throws Exception {
+        List<RevokedCertificate> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            Date date = new Date(NOW - i * 1000L);
+            if (i % 3 == 0) {
+                CRLExtensions exts = new CRLExtensions();
+                exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(RevocationReason.SUPERSEDED));
+                entries.add(new RevokedCertImpl(BigInteger.valueOf(1000 + i), date, exts));
+            } else {
+                entries.add(new RevokedCertImpl(BigInteger.valueOf(1000 + i), date));
+            }
+        }
+        return entries;
+    }
+
+    private static CRLExtensions createExtensions() throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLNumberExtension.NAME, new CRLNumberExtension(BigInteger.valueOf(7)));
+        return exts;
+    }
+
+    private static byte[] write(List<RevokedCertificate> entries) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (X509CRLWriter writer = new X509CRLWriter(
+                new X500Name(ISSUER), new Date(NOW), new Date(NOW + 86400000L))) {
+            writer.setExtensions(createExtensions());
+            writer.addEntries(entries.iterator());
+            Assertions.assertEquals(entries.size(), writer.getEntryCount());
+            writer.sign(getKeyPair().getPrivate(), "SHA256withRSA", out);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testWriter() throws Exception {
+        List<RevokedCertificate> entries = createEntries();
+        byte[] der = write(entries);
+
+        X509CRLImpl crl = new X509CRLImpl(der);
+        Assertions.assertEquals(new X500Name(ISSUER), crl.getIssuerDN());
+        Assertions.assertEquals(new Date(NOW), crl.getThisUpdate());
+        Assertions.assertEquals(ENTRIES, crl.getNumberOfRevokedCertificates());
+
+        for (RevokedCertificate entry : entries) {
+            X509CRLEntry parsed = crl.getRevokedCertificate(entry.getSerialNumber());
+            Assertions.assertNotNull(parsed);
+            Assertions.assertEquals(entry.getRevocationDate(), parsed.getRevocationDate());
+            Assertions.assertEquals(entry.hasExtensions(), parsed.hasExtensions());
+        }
+
+        // same encoding as a CRL built in memory, which does not keep
+        // the order of multiple entries
+        List<RevokedCertificate> single = entries.subList(0, 1);
+        X509CRLImpl expected = new X509CRLImpl(new X500Name(ISSUER), new Date(NOW),
+                new Date(NOW + 86400000L), single.toArray(new RevokedCertificate[0]), createExtensions());
+        expected.sign(getKeyPair().getPrivate(), "SHA256withRSA");
+        Assertions.assertArrayEquals(expected.getEncoded(), write(single));
+    }
+
+    @Test
+    public void testReader() throws Exception {
+        List<RevokedCertificate> entries = createEntries();
+        byte[] der = write(entries);
+
+        X509CRLReader reader = new X509CRLReader(der);
+        Assertions.assertEquals(1, reader.getVersion());
+        Assertions.assertEquals(new X500Name(ISSUER), reader.getIssuer());
+        Assertions.assertEquals(new Date(NOW), reader.getThisUpdate());
+        Assertions.assertEquals(new Date(NOW + 86400000L), reader.getNextUpdate());
+        Assertions.assertEquals("SHA256withRSA", reader.getSigAlgName());
+        Assertions.assertTrue(reader.hasEntries());
+
+        CRLNumberExtension crlNumber = (CRLNumberExtension) reader.getExtensions().get(CRLNumberExtension.NAME);
+        Assertions.assertEquals(BigInteger.valueOf(7), crlNumber.get(CRLNumberExtension.NUMBER));
+
+        // the entries are read in order
+        int[] count = { 0 };
+        reader.readEntries(entry -> {
+            int i = count[0]++;
+            Assertions.assertEquals(BigInteger.valueOf(1000 + i), entry.getSerialNumber());
+            Assertions.assertEquals(new Date(NOW - i * 1000L), entry.getRevocationDate());
+            Assertions.assertEquals(i % 3 == 0, entry.hasExtensions());
+            Assertions.assertEquals(i % 3 == 0 ? RevocationReason.SUPERSEDED : null, entry.getRevocationReason());
+            if (i == 0) {
+                Assertions.assertEquals(entries.get(0).getSerialNumber(),
+                        entry.getRevokedCertificate().getSerialNumber());
+            }
+        });
+        Assertions.assertEquals(ENTRIES, count[0]);
+
+        reader.verify(getKeyPair().getPublic(), null);
+
+        RevokedCertificateIndex index = reader.createRevokedCertificateIndex();
+        Assertions.assertEquals(ENTRIES, index.size());
+        Assertions.assertTrue(index.contains(BigInteger.valueOf(1500)));
+        Assertions.assertFalse(index.contains(BigInteger.valueOf(999)));
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        byte[] der = write(createEntries());
+
+        Path path = Files.createTempFile("crl", ".der");
+        try {
+            try (OutputStream out = Files.newOutputStream(path)) {
+                out.write(der);
+            }
+
+            X509CRLReader reader = X509CRLReader.open(path);
+            reader.verify(getKeyPair().getPublic(), null);
+            Assertions.assertEquals(ENTRIES, reader.createRevokedCertificateIndex().size());
+
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testInvalidSignature() throws Exception {
+        byte[] der = write(new ArrayList<>());
+        der[der.length - 1] ^= 1;
+
+        X509CRLReader reader = new X509CRLReader(der);
+        Assertions.assertFalse(reader.hasEntries());
+        Assertions.assertNull(reader.createRevokedCertificateIndex());
+        Assertions.assertThrows(CRLException.class, () -> reader.verify(getKeyPair().getPublic(), null));
+    }
+}
@@ -0,0 +1,162 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CertificateException;
+import java.util.Date;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.BasicConstraintsExtension;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateExtensions;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertCache;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+public class X509CertCacheTest {
+
+    private static KeyPair keyPair;
+
+    private static byte[] createCert(long serial) throws Exception {
+
+        if (keyPair == null) {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+            kpg.initialize(2048);
+            keyPair = kpg.generateKeyPair();
+        }
+
+        X500Name name = new X500Name("CN=Test " + serial + ",O=EXAMPLE");
+        Date now = new Date();
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+        info.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(BigInteger.valueOf(serial)));
+        info.set(X509CertInfo.ISSUER, new CertificateIssuerName(name));
+        info.set(X509CertInfo.SUBJECT, new CertificateSubjectName(name));
+        info.set(X509CertInfo.VALIDITY, new CertificateValidity(now, new Date(now.getTime() + 86400000L)));
+        info.set(X509CertInfo.ALGORITHM_ID, new CertificateAlgorithmId(AlgorithmId.get("SHA256withRSA")));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(X509Key.parse(
+                new org.mozilla.jss.netscape.security.util.DerValue(keyPair.getPublic().getEncoded()))));
+
+        CertificateExtensions exts = new CertificateExtensions();
+        exts.set(BasicConstraintsExtension.NAME, new BasicConstraintsExtension(true, 1));
+        info.set(X509CertInfo.EXTENSIONS, exts);
+
+        X509CertImpl cert = new X509CertImpl(info);
+        cert.sign(keyPair.getPrivate(), "SHA256withRSA");
+        return cert.getEncoded();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        X509CertCache cache = new X509CertCache(0);
+        byte[] der = createCert(1);
+
+        X509CertImpl cert1 = cache.get(der);
+        X509CertImpl cert2 = cache.get(der);
+
+        Assertions.assertNotSame(cert1, cert2);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertArrayEquals(der, cert1.getEncoded());
+    }
+
+    @Test
+    public void testSharedCertificates() throws Exception {
+        X509CertCache cache = new X509CertCache(10);
+        byte[] der = createCert(1);
+
+        X509CertImpl cert1 = cache.get(der);
+        Assertions.assertSame(cert1, cache.get(der.clone()));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(BigInteger.ONE, cert1.getSerialNumber());
+
+        // the cache keeps its own copy of the encoding
+        der[der.length - 1] ^= 1;
+        Assertions.assertNotSame(cert1, cache.get(der));
+        der[der.length - 1] ^= 1;
+        Assertions.assertArrayEquals(der, cert1.getEncoded());
+
+        cache.clear();
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertNotSame(cert1, cache.get(der));
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        X509CertCache cache = new X509CertCache(10);
+        byte[] der = createCert(1);
+
+        X509CertImpl cert = cache.get(der);
+        X509CertInfo info = cert.getInfo();
+        Assertions.assertTrue(info.isReadOnly());
+
+        // the shared certificate cannot be modified
+        Assertions.assertThrows(CertificateException.class, () -> info.set(X509CertInfo.SERIAL_NUMBER,
+                new CertificateSerialNumber(BigInteger.TEN)));
+        Assertions.assertThrows(CertificateException.class, () -> info.delete(X509CertInfo.EXTENSIONS));
+        Assertions.assertThrows(CertificateException.class,
+                () -> info.decode(new ByteArrayInputStream(info.getEncodedInfo())));
+        Assertions.assertThrows(CertificateException.class, () -> cert.set(
+                X509CertImpl.NAME + "." + X509CertImpl.INFO, new X509CertInfo(info.getEncodedInfo())));
+
+        CertificateExtensions exts = (CertificateExtensions) info.get(X509CertInfo.EXTENSIONS);
+        Assertions.assertTrue(exts.isReadOnly());
+        Assertions.assertThrows(IOException.class, () -> exts.delete(BasicConstraintsExtension.NAME));
+        Assertions.assertThrows(IOException.class, () -> exts.set(BasicConstraintsExtension.NAME,
+                new BasicConstraintsExtension(false, 0)));
+
+        Assertions.assertEquals(BigInteger.ONE, cert.getSerialNumber());
+        Assertions.assertEquals(1, cert.getBasicConstraints());
+        Assertions.assertArrayEquals(cert.getTBSCertificate(), info.getEncodedInfo(true));
+        Assertions.assertSame(cert, cache.get(der));
+
+        // a copy of the info can be modified
+        X509CertInfo copy = new X509CertInfo(info.getEncodedInfo());
+        Assertions.assertFalse(copy.isReadOnly());
+        copy.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(BigInteger.TEN));
+        Assertions.assertEquals(BigInteger.ONE, cert.getSerialNumber());
+
+        // certificates are not shared when the cache is disabled
+        Assertions.assertFalse(new X509CertCache(0).get(der).getInfo().isReadOnly());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        X509CertCache cache = new X509CertCache(2);
+        byte[] der1 = createCert(1);
+        byte[] der2 = createCert(2);
+        byte[] der3 = createCert(3);
+
+        X509CertImpl cert1 = cache.get(der1);
+        X509CertImpl cert2 = cache.get(der2);
+
+        // cert1 becomes the most recently used
+        Assertions.assertSame(cert1, cache.get(der1));
+
+        cache.get(der3);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertSame(cert1, cache.get(der1));
+        Assertions.assertNotSame(cert2, cache.get(der2));
+
+        // shrinking removes the least recently used certificates
+        cache.setMaxSize(1);
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(1, cache.getMaxSize());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cache.setMaxSize(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new X509CertCache(-1));
+    }
+}
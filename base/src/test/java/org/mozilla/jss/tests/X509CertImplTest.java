@@ -0,0 +1,124 @@
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SignatureException;
+import java.security.cert.CertificateEncodingException;
+import java.util.Date;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+public class X509CertImplTest {
+
+    // verify with the JDK provider since JSS is not initialized
+    private static final String PROVIDER = "SunRsaSign";
+
+    private static final long NOW = System.currentTimeMillis();
+
+    private static KeyPair keyPair;
+
+    private static KeyPair getKeyPair() throws Exception {
+        if (keyPair == null) {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+            kpg.initialize(2048);
+            keyPair = kpg.generateKeyPair();
+        }
+        return keyPair;
+    }
+
+    private static X509CertInfo createInfo(long serial) throws Exception {
+
+        X500Name name = new X500Name("CN=Test " + serial + ",O=EXAMPLE");
+        Date now = new Date(NOW);
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+        info.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(BigInteger.valueOf(serial)));
+        info.set(X509CertInfo.ISSUER, new CertificateIssuerName(name));
+        info.set(X509CertInfo.SUBJECT, new CertificateSubjectName(name));
+        info.set(X509CertInfo.VALIDITY, new CertificateValidity(now, new Date(now.getTime() + 86400000L)));
+        info.set(X509CertInfo.ALGORITHM_ID, new CertificateAlgorithmId(AlgorithmId.get("SHA256withRSA")));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(X509Key.parse(
+                new DerValue(getKeyPair().getPublic().getEncoded()))));
+        return info;
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testBuffers() throws Exception {
+        X509CertImpl signed = new X509CertImpl(createInfo(1));
+        signed.sign(getKeyPair().getPrivate(), "SHA256withRSA");
+        byte[] der = signed.getEncoded();
+
+        X509CertImpl cert = new X509CertImpl(der);
+
+        // the views are the fields of the original encoding
+        ByteBuffer tbs = cert.getTBSCertificateBuffer();
+        Assertions.assertTrue(tbs.isReadOnly());
+        Assertions.assertArrayEquals(cert.getTBSCertificate(), toArray(tbs));
+        Assertions.assertArrayEquals(new X509CertInfo(cert.getTBSCertificate()).getEncodedInfo(), toArray(tbs));
+
+        ByteBuffer spki = cert.getSubjectPublicKeyInfoBuffer();
+        Assertions.assertArrayEquals(getKeyPair().getPublic().getEncoded(), toArray(spki));
+        Assertions.assertArrayEquals(cert.getPublicKey().getEncoded(), toArray(spki));
+
+        Assertions.assertArrayEquals(der, toArray(cert.getEncodedBuffer()));
+        Assertions.assertArrayEquals(cert.getSignature(), toArray(cert.getSignatureBuffer()));
+
+        cert.verify(getKeyPair().getPublic(), PROVIDER);
+
+        // the signature covers the original encoding
+        der[der.length - 1] ^= 1;
+        X509CertImpl invalid = new X509CertImpl(der);
+        Assertions.assertThrows(SignatureException.class,
+                () -> invalid.verify(getKeyPair().getPublic(), PROVIDER));
+    }
+
+    @Test
+    public void testModifiedCertificate() throws Exception {
+        X509CertImpl cert = new X509CertImpl(createInfo(1));
+
+        // not encoded yet
+        Assertions.assertNull(cert.getSubjectPublicKeyInfoBuffer());
+        Assertions.assertArrayEquals(createInfo(1).getEncodedInfo(), cert.getTBSCertificate());
+        Assertions.assertThrows(CertificateEncodingException.class,
+                () -> cert.verify(getKeyPair().getPublic(), PROVIDER));
+
+        // set() clears the encoding
+        cert.set(X509CertImpl.NAME + "." + X509CertImpl.INFO, createInfo(2));
+        Assertions.assertThrows(CertificateEncodingException.class, () -> cert.getEncodedBuffer());
+        Assertions.assertArrayEquals(createInfo(2).getEncodedInfo(), cert.getTBSCertificate());
+
+        // and sign() locates the fields of the new encoding
+        cert.sign(getKeyPair().getPrivate(), "SHA256withRSA");
+        cert.verify(getKeyPair().getPublic(), PROVIDER);
+
+        Assertions.assertEquals(BigInteger.valueOf(2), cert.getSerialNumber());
+        Assertions.assertArrayEquals(cert.getTBSCertificate(), toArray(cert.getTBSCertificateBuffer()));
+        Assertions.assertArrayEquals(new X509CertImpl(cert.getEncoded()).getTBSCertificate(),
+                cert.getTBSCertificate());
+        Assertions.assertArrayEquals(getKeyPair().getPublic().getEncoded(),
+                toArray(cert.getSubjectPublicKeyInfoBuffer()));
+    }
+}
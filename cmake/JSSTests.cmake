@@ -161,6 +161,66 @@ macro(jss_tests)
         NAME "JUnit_ChainSortingTest"
         COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.ChainSortingTest"
     )
+    jss_test_java(
+        NAME "JUnit_SEQUENCEEncodingTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.SEQUENCEEncodingTest"
+    )
+    jss_test_java(
+        NAME "JUnit_CRLStoreTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.CRLStoreTest"
+    )
+    jss_test_java(
+        NAME "JUnit_LazyExtensionsTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.LazyExtensionsTest"
+    )
+    jss_test_java(
+        NAME "JUnit_TimeCodecTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.TimeCodecTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X509CertCacheTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.X509CertCacheTest"
+    )
+    jss_test_java(
+        NAME "JUnit_OIDInternerTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.OIDInternerTest"
+    )
+    jss_test_java(
+        NAME "JUnit_RevokedCertificateIndexTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.RevokedCertificateIndexTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X509CRLStreamTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.X509CRLStreamTest"
+    )
+    jss_test_java(
+        NAME "JUnit_LazyX509CertInfoTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.LazyX509CertInfoTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X500NameTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.X500NameTest"
+    )
+    jss_test_java(
+        NAME "JUnit_LdapV3DNStrConverterTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.LdapV3DNStrConverterTest"
+    )
+    jss_test_java(
+        NAME "JUnit_CertChainBuilderTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.CertChainBuilderTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X509CertImplTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.X509CertImplTest"
+    )
+    jss_test_java(
+        NAME "JUnit_SigningServiceTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.SigningServiceTest"
+    )
+    jss_test_java(
+        NAME "JUnit_BERInputStreamTest"
+        COMMAND "org.mozilla.jss.tests.TestRunner" "org.mozilla.jss.tests.BERInputStreamTest"
+    )
     jss_test_java(
         NAME "Generate_known_RSA_cert_pair"
         COMMAND "org.mozilla.jss.tests.GenerateTestCert" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" "20" "localhost" "SHA-256/RSA" "CA_RSA" "Server_RSA" "Client_RSA"
@@ -193,6 +253,16 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.ListCACerts" "${RESULTS_NSSDB_OUTPUT_DIR}" "Verbose"
         DEPENDS "Generate_known_ECDSA_cert_pair"
     )
+    jss_test_java(
+        NAME "JSSTokenKeyManager"
+        COMMAND "org.mozilla.jss.tests.JSSTokenKeyManagerTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "List_CA_certs"
+    )
+    jss_test_java(
+        NAME "LookupCache"
+        COMMAND "org.mozilla.jss.tests.LookupCacheTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "List_CA_certs"
+    )
     jss_test_java(
         NAME "SSLClientAuth"
         COMMAND "org.mozilla.jss.tests.SSLClientAuth" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" "${JSS_TEST_PORT_CLIENTAUTH}" "50"
@@ -213,11 +283,21 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.CrossHMACTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "Cipher_Streams"
+        COMMAND "org.mozilla.jss.tests.CipherStreamTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     jss_test_java(
         NAME "KeyWrapping"
         COMMAND "org.mozilla.jss.tests.JCAKeyWrap" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "KeyWrappingBatch"
+        COMMAND "org.mozilla.jss.tests.KeyWrappingBatch" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     if(WITH_MLKEM)
         jss_test_java(
             NAME "KeyEncapsulating"
@@ -258,6 +338,16 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.SigTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "JSS_Signature_Batch"
+        COMMAND "org.mozilla.jss.tests.SigBatchTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+    jss_test_java(
+        NAME "SignedData_Stream"
+        COMMAND "org.mozilla.jss.tests.SignedDataStreamTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     jss_test_java(
         NAME "Secret_Decoder_Ring"
         COMMAND "org.mozilla.jss.tests.TestSDR" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
@@ -293,6 +383,16 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.KeyStoreTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" getAliases
         DEPENDS "List_CA_certs" "X509CertTest" "Secret_Key_Generation" "Symmetric_Key_Deriving" "SSLClientAuth"
     )
+    jss_test_java(
+        NAME "KeyPairPool"
+        COMMAND "org.mozilla.jss.tests.KeyPairPoolTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "KeyStoreTest"
+    )
+    jss_test_java(
+        NAME "KeyStoreAliasIndex"
+        COMMAND "org.mozilla.jss.tests.KeyStoreAliasIndexTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "KeyStoreTest"
+    )
     jss_test_java(
         NAME "JSSProvider"
         COMMAND "org.mozilla.jss.tests.JSSProvider" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
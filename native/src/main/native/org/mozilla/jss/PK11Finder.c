@@ -45,7 +45,7 @@ Java_org_mozilla_jss_CryptoManager_verifyCertificateNowNative3(JNIEnv *env,
  *
  */
 JNIEXPORT jobject JNICALL
-Java_org_mozilla_jss_CryptoManager_findCertByNickname
+Java_org_mozilla_jss_CryptoManager_findCertByNicknameNative
   (JNIEnv *env, jobject this, jstring nickname)
 {
     const char *nick = NULL;
@@ -292,6 +292,80 @@ finish:
     return Key;
 }
 
+/***********************************************************************
+ *
+ * CryptoManager. d u p l i c a t e C e r t N a t i v e
+ *
+ * Returns a new PK11Cert with its own references to the certificate
+ * and the slot of the given one, so that closing either object does not
+ * affect the other.
+ */
+JNIEXPORT jobject JNICALL
+Java_org_mozilla_jss_CryptoManager_duplicateCertNative
+  (JNIEnv *env, jclass clazz, jobject Cert, jstring nickname)
+{
+    CERTCertificate *cert = NULL;
+    PK11SlotInfo *slot = NULL;
+    const char *nick = NULL;
+    jobject certObject = NULL;
+
+    PR_ASSERT(env!=NULL && Cert!=NULL);
+
+    if( JSS_PK11_getCertPtr(env, Cert, &cert) != PR_SUCCESS) {
+        PR_ASSERT( (*env)->ExceptionOccurred(env) != NULL);
+        goto finish;
+    }
+    if( JSS_PK11_getCertSlotPtr(env, Cert, &slot) != PR_SUCCESS) {
+        PR_ASSERT( (*env)->ExceptionOccurred(env) != NULL);
+        goto finish;
+    }
+
+    cert = CERT_DupCertificate(cert);
+    if(slot != NULL) {
+        slot = PK11_ReferenceSlot(slot);
+    }
+
+    nick = JSS_RefJString(env, nickname);
+
+    certObject = JSS_PK11_wrapCertAndSlotAndNickname(env, &cert, &slot, nick);
+
+finish:
+    JSS_DerefJString(env, nickname, nick);
+    return certObject;
+}
+
+/***********************************************************************
+ *
+ * CryptoManager. d u p l i c a t e P r i v K e y N a t i v e
+ *
+ * Returns a new PK11PrivKey with its own copy of the given key.
+ */
+JNIEXPORT jobject JNICALL
+Java_org_mozilla_jss_CryptoManager_duplicatePrivKeyNative
+  (JNIEnv *env, jclass clazz, jobject Key)
+{
+    SECKEYPrivateKey *privKey = NULL;
+    jobject keyObject = NULL;
+
+    PR_ASSERT(env!=NULL && Key!=NULL);
+
+    if( JSS_PK11_getPrivKeyPtr(env, Key, &privKey) != PR_SUCCESS) {
+        PR_ASSERT( (*env)->ExceptionOccurred(env) != NULL);
+        goto finish;
+    }
+
+    privKey = SECKEY_CopyPrivateKey(privKey);
+    if(privKey == NULL) {
+        JSS_throwMsgPrErr(env, TOKEN_EXCEPTION, "Unable to copy private key");
+        goto finish;
+    }
+
+    keyObject = JSS_PK11_wrapPrivKey(env, &privKey);
+
+finish:
+    return keyObject;
+}
+
 
 /***********************************************************************
  * Node in linked list of certificates
@@ -1000,3 +1000,425 @@ CK_MECHANISM_TYPE getSupportedWrappingMechanism(JNIEnv *env, jobject algObj, PK1
     }
     return mech;
 }
+
+/***********************************************************************
+ *
+ * Records the failure of one item of a batch operation in the errors
+ * array. If errCode is 0, only the message is used.
+ */
+static void
+setBatchError(JNIEnv *env, jobjectArray errors, jsize index,
+    const char *message, PRErrorCode errCode)
+{
+    const char *errStr = NULL;
+    char *msg = NULL;
+    jstring msgStr = NULL;
+
+    if( errCode == 0 ) {
+        msg = PR_smprintf("%s", message);
+    } else {
+        errStr = JSS_strerror(errCode);
+        if( errStr == NULL ) {
+            errStr = "Unknown error";
+        }
+        msg = PR_smprintf("%s: (%ld) %s", message, errCode, errStr);
+    }
+    if( msg == NULL ) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        return;
+    }
+
+    msgStr = (*env)->NewStringUTF(env, msg);
+    PR_smprintf_free(msg);
+    if( msgStr == NULL ) {
+        return; /* exception was thrown */
+    }
+
+    (*env)->SetObjectArrayElement(env, errors, index, msgStr);
+    (*env)->DeleteLocalRef(env, msgStr);
+}
+
+/***********************************************************************
+ *
+ * PK11KeyWrapper.nativeWrapSymWithSymBatch
+ *
+ * Wraps each key in toBeWrappedArray with the same wrapping key and
+ * mechanism parameter. Null entries are skipped. If an entry cannot be
+ * wrapped, its result is null and its error message is stored in errors.
+ */
+JNIEXPORT jobjectArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11KeyWrapper_nativeWrapSymWithSymBatch
+    (JNIEnv *env, jclass clazz, jobject tokenObj,
+        jobjectArray toBeWrappedArray, jobject wrappingKeyObj, jobject algObj,
+        jbyteArray ivBA, jobjectArray errors)
+{
+    PK11SymKey *wrapping = NULL;
+    CK_MECHANISM_TYPE mech;
+    SECItem wrapped;
+    SECItem *iv=NULL, *param=NULL;
+    jclass byteArrayClass;
+    jobjectArray resultArray = NULL;
+    jsize count, i;
+
+    /* initialize so we can goto finish */
+    wrapped.data = NULL;
+    wrapped.len = 0;
+
+    /* get wrapping key */
+    if( JSS_PK11_getSymKeyPtr(env, wrappingKeyObj, &wrapping)!= PR_SUCCESS) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unable to extract symmetric "
+                "wrapping key");
+        return NULL;
+    }
+
+    /* get the mechanism */
+    mech = JSS_getPK11MechFromAlg(env, algObj);
+    if(mech == CKM_INVALID_MECHANISM) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unrecognized algorithm");
+        goto finish;
+    }
+
+    /* get the parameter, shared by all keys */
+    if( ivBA ) {
+        iv = JSS_ByteArrayToSECItem(env, ivBA);
+        if( iv == NULL ) {
+            goto finish; /* exception was thrown */
+        }
+        param = PK11_ParamFromIV(mech, iv);
+        if( param == NULL ) {
+            JSS_throwMsg(env, TOKEN_EXCEPTION, "Unable to create mechanism"
+                " parameter from initialization vector");
+            goto finish;
+        }
+    }
+
+    /* setup space for wrapped key, reused for every key */
+    wrapped.data = PR_Malloc(MAX_WRAPPED_KEY_LEN);
+    if(wrapped.data == NULL) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        goto finish;
+    }
+
+    byteArrayClass = (*env)->FindClass(env, "[B");
+    if( byteArrayClass == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    count = (*env)->GetArrayLength(env, toBeWrappedArray);
+    resultArray = (*env)->NewObjectArray(env, count, byteArrayClass, NULL);
+    if( resultArray == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    for( i = 0; i < count; i++ ) {
+        jobject keyObj;
+        PK11SymKey *toBeWrapped = NULL;
+        jbyteArray wrappedBA = NULL;
+
+        keyObj = (*env)->GetObjectArrayElement(env, toBeWrappedArray, i);
+        if( keyObj == NULL ) {
+            continue;
+        }
+
+        if( JSS_PK11_getSymKeyPtr(env, keyObj, &toBeWrapped) != PR_SUCCESS ) {
+            (*env)->ExceptionClear(env);
+            setBatchError(env, errors, i, "Unable to extract symmetric "
+                "to be wrapped key", 0);
+
+        } else {
+            wrapped.len = MAX_WRAPPED_KEY_LEN;
+            if( PK11_WrapSymKey(mech, param, wrapping, toBeWrapped, &wrapped)
+                    != SECSuccess ) {
+                setBatchError(env, errors, i, "Wrap operation failed on token",
+                    PR_GetError());
+            } else {
+                wrappedBA = JSS_SECItemToByteArray(env, &wrapped);
+                if( wrappedBA != NULL ) {
+                    (*env)->SetObjectArrayElement(env, resultArray, i, wrappedBA);
+                    (*env)->DeleteLocalRef(env, wrappedBA);
+                }
+            }
+        }
+
+        (*env)->DeleteLocalRef(env, keyObj);
+
+        if( (*env)->ExceptionOccurred(env) ) {
+            resultArray = NULL;
+            goto finish;
+        }
+    }
+
+finish:
+    if(iv) {
+        SECITEM_FreeItem(iv, PR_TRUE /*freeit*/);
+    }
+    if(param) {
+        SECITEM_FreeItem(param, PR_TRUE /*freeit*/);
+    }
+    SECITEM_FreeItem(&wrapped, PR_FALSE /*freeit*/);
+
+    return resultArray;
+}
+
+/***********************************************************************
+ *
+ * PK11KeyWrapper.nativeWrapPrivWithSymBatch
+ *
+ * Wraps each private key in toBeWrappedArray with the same wrapping key
+ * and mechanism parameter. Null entries are skipped. If an entry cannot be
+ * wrapped, its result is null and its error message is stored in errors.
+ */
+JNIEXPORT jobjectArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11KeyWrapper_nativeWrapPrivWithSymBatch
+    (JNIEnv *env, jclass clazz, jobject tokenObj,
+        jobjectArray toBeWrappedArray, jobject wrappingKeyObj, jobject algObj,
+        jbyteArray ivBA, jobjectArray errors)
+{
+    PK11SymKey *wrapping = NULL;
+    CK_MECHANISM_TYPE mech;
+    SECItem wrapped;
+    PK11SlotInfo *slot=NULL;
+    SECItem *iv=NULL, *param=NULL;
+    jclass byteArrayClass;
+    jobjectArray resultArray = NULL;
+    jsize count, i;
+
+    /* initialize so we can goto finish */
+    wrapped.data = NULL;
+    wrapped.len = 0;
+
+    /* get wrapping key */
+    if( JSS_PK11_getSymKeyPtr(env, wrappingKeyObj, &wrapping) != PR_SUCCESS) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unable to extract symmetric "
+                "wrapping key");
+        return NULL;
+    }
+
+    /* get the slot */
+    if( JSS_PK11_getTokenSlotPtr(env, tokenObj, &slot) != PR_SUCCESS) {
+        /* exception was thrown */
+        goto finish;
+    }
+
+    /* Get the wrapping mechanism */
+    mech = getSupportedWrappingMechanism(env, algObj, slot);
+    if(mech == CKM_INVALID_MECHANISM) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unrecognized algorithm");
+        goto finish;
+    }
+
+    /* get the mechanism parameter (IV), shared by all keys */
+    if( ivBA ) {
+        iv = JSS_ByteArrayToSECItem(env, ivBA);
+        if( iv == NULL ) {
+            goto finish; /* exception was thrown */
+        }
+        param = PK11_ParamFromIV(mech, iv);
+        if( param == NULL ) {
+            JSS_throwMsg(env, TOKEN_EXCEPTION,
+                "Failed to convert initialization vector to parameter");
+            goto finish;
+        }
+    }
+
+    /* setup space for wrapped key, reused for every key */
+    wrapped.data = PR_Malloc(MAX_WRAPPED_KEY_LEN);
+    if(wrapped.data == NULL) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        goto finish;
+    }
+
+    byteArrayClass = (*env)->FindClass(env, "[B");
+    if( byteArrayClass == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    count = (*env)->GetArrayLength(env, toBeWrappedArray);
+    resultArray = (*env)->NewObjectArray(env, count, byteArrayClass, NULL);
+    if( resultArray == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    for( i = 0; i < count; i++ ) {
+        jobject keyObj;
+        SECKEYPrivateKey *toBeWrapped = NULL;
+        jbyteArray wrappedBA = NULL;
+
+        keyObj = (*env)->GetObjectArrayElement(env, toBeWrappedArray, i);
+        if( keyObj == NULL ) {
+            continue;
+        }
+
+        if( JSS_PK11_getPrivKeyPtr(env, keyObj, &toBeWrapped) != PR_SUCCESS ) {
+            (*env)->ExceptionClear(env);
+            setBatchError(env, errors, i, "Unable to extract private "
+                "to be wrapped key", 0);
+
+        } else {
+            wrapped.len = MAX_WRAPPED_KEY_LEN;
+            if( PK11_WrapPrivKey(slot, wrapping, toBeWrapped, mech, param,
+                    &wrapped, NULL /* wincx */ ) != SECSuccess ) {
+                setBatchError(env, errors, i,
+                    "Wrapping operation failed on token", PR_GetError());
+            } else {
+                wrappedBA = JSS_SECItemToByteArray(env, &wrapped);
+                if( wrappedBA != NULL ) {
+                    (*env)->SetObjectArrayElement(env, resultArray, i, wrappedBA);
+                    (*env)->DeleteLocalRef(env, wrappedBA);
+                }
+            }
+        }
+
+        (*env)->DeleteLocalRef(env, keyObj);
+
+        if( (*env)->ExceptionOccurred(env) ) {
+            resultArray = NULL;
+            goto finish;
+        }
+    }
+
+finish:
+    if(iv) {
+        SECITEM_FreeItem(iv, PR_TRUE /*freeit*/);
+    }
+    if(param) {
+        SECITEM_FreeItem(param, PR_TRUE /*freeit*/);
+    }
+    SECITEM_FreeItem(&wrapped, PR_FALSE /*freeit*/);
+
+    return resultArray;
+}
+
+/***********************************************************************
+ *
+ * PK11KeyWrapper.nativeUnwrapSymWithSymBatch
+ *
+ * Unwraps each entry of wrappedArray with the same unwrapping key and
+ * mechanism parameter. Null entries are skipped. If an entry cannot be
+ * unwrapped, its result is null and its error message is stored in errors.
+ */
+JNIEXPORT jobjectArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11KeyWrapper_nativeUnwrapSymWithSymBatch
+    (JNIEnv *env, jclass clazz, jobject tokenObj, jobject unwrapperObj,
+        jobjectArray wrappedArray, jobject wrapAlgObj, jobject typeAlgObj,
+        jint keyLen, jbyteArray ivBA, jint usageEnum, jboolean temporary,
+        jobjectArray errors)
+{
+    PK11SymKey *wrappingKey=NULL;
+    CK_MECHANISM_TYPE wrappingMech, keyTypeMech;
+    SECItem *iv=NULL, *param=NULL;
+    CK_ULONG operation;
+    CK_FLAGS flags;
+    jclass symKeyClass;
+    jobjectArray resultArray = NULL;
+    jsize count, i;
+
+    /* get key type */
+    keyTypeMech = JSS_getPK11MechFromAlg(env, typeAlgObj);
+    if( keyTypeMech == CKM_INVALID_MECHANISM ) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unrecognized key type algorithm");
+        goto finish;
+    }
+
+    /* get wrapping key */
+    if( JSS_PK11_getSymKeyPtr(env, unwrapperObj, &wrappingKey) != PR_SUCCESS) {
+        /* exception was thrown */
+        goto finish;
+    }
+
+    /* get wrapping mechanism */
+    wrappingMech = JSS_getPK11MechFromAlg(env, wrapAlgObj);
+    if( wrappingMech == CKM_INVALID_MECHANISM ) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unrecognized wrapping algorithm");
+        goto finish;
+    }
+
+    /* get the mechanism parameter (IV), shared by all keys */
+    if (ivBA == NULL) {
+        param = PK11_ParamFromIV(wrappingMech,NULL);
+    } else {
+        iv = JSS_ByteArrayToSECItem(env, ivBA);
+        if( iv == NULL ) {
+            goto finish; /* exception was thrown */
+        }
+        param = PK11_ParamFromIV(wrappingMech, iv);
+        if( param == NULL ) {
+            JSS_throwMsg(env, TOKEN_EXCEPTION,
+                "Failed to convert initialization vector to parameter");
+            goto finish;
+        }
+    }
+
+    if( usageEnum == -1 ) {
+        operation = CKA_ENCRYPT; /* doesn't matter, flags will override */
+        flags = ALL_SYMKEY_OPS;
+    } else {
+        operation = JSS_symkeyUsage[usageEnum];
+        flags = 0;
+    }
+
+    symKeyClass = (*env)->FindClass(env, PK11SYMKEY_CLASS_NAME);
+    if( symKeyClass == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    count = (*env)->GetArrayLength(env, wrappedArray);
+    resultArray = (*env)->NewObjectArray(env, count, symKeyClass, NULL);
+    if( resultArray == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    for( i = 0; i < count; i++ ) {
+        jbyteArray wrappedBA;
+        SECItem *wrappedKey = NULL;
+        PK11SymKey *symKey = NULL;
+        jobject keyObj = NULL;
+
+        wrappedBA = (*env)->GetObjectArrayElement(env, wrappedArray, i);
+        if( wrappedBA == NULL ) {
+            continue;
+        }
+
+        wrappedKey = JSS_ByteArrayToSECItem(env, wrappedBA);
+        if( wrappedKey != NULL ) {
+            if( temporary ) {
+                symKey = PK11_UnwrapSymKeyWithFlags(wrappingKey, wrappingMech,
+                    param, wrappedKey, keyTypeMech, operation, keyLen, flags);
+            } else {
+                symKey = PK11_UnwrapSymKeyWithFlagsPerm(wrappingKey,
+                    wrappingMech, param, wrappedKey, keyTypeMech, operation,
+                    keyLen, flags, PR_TRUE);
+            }
+
+            if( symKey == NULL ) {
+                setBatchError(env, errors, i, "Failed to unwrap key",
+                    PR_GetError());
+            } else {
+                /* this will clear symKey */
+                keyObj = JSS_PK11_wrapSymKey(env, &symKey);
+                if( keyObj != NULL ) {
+                    (*env)->SetObjectArrayElement(env, resultArray, i, keyObj);
+                    (*env)->DeleteLocalRef(env, keyObj);
+                }
+            }
+
+            SECITEM_FreeItem(wrappedKey, PR_TRUE /*free wrappedKey*/);
+        }
+
+        (*env)->DeleteLocalRef(env, wrappedBA);
+
+        if( (*env)->ExceptionOccurred(env) ) {
+            resultArray = NULL;
+            goto finish;
+        }
+    }
+
+finish:
+    if(iv) {
+        SECITEM_FreeItem(iv, PR_TRUE /*free iv*/);
+    }
+    if(param) {
+        SECITEM_FreeItem(param, PR_TRUE /*free param*/);
+    }
+    return resultArray;
+}
@@ -853,3 +853,59 @@ Java_org_mozilla_jss_pkcs11_PK11PrivKey_setTemporary
 
     key->pkcs11IsTemp = isTemporary;
 }
+
+/**********************************************************************
+ * PK11PrivKey.toTokenKeyNative
+ *
+ * Copies a temporary (session) private key to a permanent token object,
+ * along with its public key. Returns the new private key.
+ */
+JNIEXPORT jobject JNICALL
+Java_org_mozilla_jss_pkcs11_PK11PrivKey_toTokenKeyNative
+    (JNIEnv *env, jobject this)
+{
+    SECKEYPrivateKey *privk = NULL;
+    SECKEYPrivateKey *tokenPrivk = NULL;
+    SECKEYPublicKey *pubk = NULL;
+    jobject keyObj = NULL;
+
+    PR_ASSERT(env!=NULL && this!=NULL);
+
+    if( JSS_PK11_getPrivKeyPtr(env, this, &privk) != PR_SUCCESS) {
+        PR_ASSERT( (*env)->ExceptionOccurred(env) != NULL);
+        goto finish;
+    }
+
+    pubk = SECKEY_ConvertToPublicKey(privk);
+    if( pubk == NULL ) {
+        JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+            "Unable to get public key from private key");
+        goto finish;
+    }
+
+    if( PK11_ImportPublicKey(privk->pkcs11Slot, pubk, PR_TRUE /* isToken */)
+            == CK_INVALID_HANDLE ) {
+        JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+            "Failed to copy public key to permanent token object");
+        goto finish;
+    }
+
+    tokenPrivk = PK11_ConvertSessionPrivKeyToTokenPrivKey(privk, NULL);
+    if( tokenPrivk == NULL ) {
+        JSS_throwMsgPrErr(env, TOKEN_EXCEPTION,
+            "Failed to copy private key to permanent token object");
+        goto finish;
+    }
+
+    /* wrapPrivKey takes ownership of tokenPrivk */
+    keyObj = JSS_PK11_wrapPrivKey(env, &tokenPrivk);
+
+finish:
+    if( pubk != NULL ) {
+        SECKEY_DestroyPublicKey(pubk);
+    }
+    if( tokenPrivk != NULL ) {
+        SECKEY_DestroyPrivateKey(tokenPrivk);
+    }
+    return keyObj;
+}
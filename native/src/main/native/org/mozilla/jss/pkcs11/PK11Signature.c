@@ -898,3 +898,177 @@ finish:
     }
     return verified;
 }
+
+/***********************************************************************
+ * PK11Signature.engineRawSignBatchNative
+ *
+ * Signs every hash with the same private key, reusing the signature
+ * buffer, and returns the signatures in a byte[][].
+ */
+JNIEXPORT jobjectArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_engineRawSignBatchNative
+    (JNIEnv *env, jclass clazz, jobject tokenObj, jobject keyObj,
+    jobjectArray hashArray)
+{
+    SECKEYPrivateKey *key = NULL;
+    SECItem sig = { siBuffer, NULL, 0 };
+    int sigLen;
+    jclass byteArrayClass;
+    jobjectArray sigArray = NULL;
+    jsize count, i;
+
+    PR_ASSERT(env!=NULL && tokenObj!=NULL && keyObj!=NULL && hashArray!=NULL);
+
+    /* Get the private key */
+    if( JSS_PK11_getPrivKeyPtr(env, keyObj, &key) != PR_SUCCESS ) {
+        /* exception was thrown */
+        goto finish;
+    }
+
+    /* prepare space for the sig, reused for every hash */
+    sigLen = PK11_SignatureLen(key);
+    if( sigLen <= 0 ) {
+        JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "Unable to determine"
+            " signature length");
+        goto finish;
+    }
+    sig.data = PR_Malloc(sigLen);
+    if( sig.data == NULL ) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        goto finish;
+    }
+
+    byteArrayClass = (*env)->FindClass(env, "[B");
+    if( byteArrayClass == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    count = (*env)->GetArrayLength(env, hashArray);
+    sigArray = (*env)->NewObjectArray(env, count, byteArrayClass, NULL);
+    if( sigArray == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+
+    for( i = 0; i < count; i++ ) {
+        jbyteArray hashBA;
+        jbyteArray sigBA = NULL;
+        SECItem *hash;
+
+        hashBA = (*env)->GetObjectArrayElement(env, hashArray, i);
+        hash = JSS_ByteArrayToSECItem(env, hashBA);
+        (*env)->DeleteLocalRef(env, hashBA);
+        if( hash == NULL ) {
+            sigArray = NULL;
+            goto finish; /* exception was thrown */
+        }
+
+        /* perform the signature operation */
+        sig.len = sigLen;
+        if( PK11_Sign(key, &sig, hash) != SECSuccess ) {
+            SECITEM_FreeItem(hash, PR_TRUE /*freeit*/);
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "Signature operation"
+                " failed on token");
+            sigArray = NULL;
+            goto finish;
+        }
+        SECITEM_FreeItem(hash, PR_TRUE /*freeit*/);
+
+        /* convert signature to byte array */
+        sigBA = JSS_SECItemToByteArray(env, &sig);
+        if( sigBA == NULL ) {
+            sigArray = NULL;
+            goto finish; /* exception was thrown */
+        }
+        (*env)->SetObjectArrayElement(env, sigArray, i, sigBA);
+        (*env)->DeleteLocalRef(env, sigBA);
+    }
+
+finish:
+    SECITEM_FreeItem(&sig, PR_FALSE /*freeit*/);
+    return sigArray;
+}
+
+/***********************************************************************
+ * PK11Signature.engineRawVerifyBatchNative
+ *
+ * Verifies every signature against the corresponding hash with the same
+ * public key. A bad signature sets its result to false; any other error
+ * throws an exception.
+ */
+JNIEXPORT jbooleanArray JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_engineRawVerifyBatchNative
+    (JNIEnv *env, jclass clazz, jobject tokenObj, jobject keyObj,
+    jobjectArray hashArray, jobjectArray sigArray)
+{
+    SECKEYPublicKey *key = NULL;
+    jboolean *verified = NULL;
+    jbooleanArray resultArray = NULL;
+    jsize count, i;
+
+    PR_ASSERT(env!=NULL && tokenObj!=NULL && keyObj!=NULL && hashArray!=NULL
+        && sigArray!=NULL);
+
+    if( JSS_PK11_getPubKeyPtr(env, keyObj, &key) != PR_SUCCESS ) {
+        goto finish;
+    }
+
+    count = (*env)->GetArrayLength(env, hashArray);
+    if( count > 0 ) {
+        verified = PR_Calloc(count, sizeof(jboolean));
+        if( verified == NULL ) {
+            JSS_throw(env, OUT_OF_MEMORY_ERROR);
+            goto finish;
+        }
+    }
+
+    for( i = 0; i < count; i++ ) {
+        jbyteArray hashBA, sigBA;
+        SECItem *hash = NULL;
+        SECItem *sig = NULL;
+        SECStatus status;
+
+        hashBA = (*env)->GetObjectArrayElement(env, hashArray, i);
+        hash = JSS_ByteArrayToSECItem(env, hashBA);
+        (*env)->DeleteLocalRef(env, hashBA);
+
+        sigBA = (*env)->GetObjectArrayElement(env, sigArray, i);
+        if( hash != NULL ) {
+            sig = JSS_ByteArrayToSECItem(env, sigBA);
+        }
+        (*env)->DeleteLocalRef(env, sigBA);
+
+        if( hash == NULL || sig == NULL ) {
+            if(hash) {
+                SECITEM_FreeItem(hash, PR_TRUE /*freeit*/);
+            }
+            goto finish; /* exception was thrown */
+        }
+
+        /* perform the operation */
+        status = PK11_Verify(key, sig, hash, NULL /*wincx*/);
+        SECITEM_FreeItem(sig, PR_TRUE /*freeit*/);
+        SECITEM_FreeItem(hash, PR_TRUE /*freeit*/);
+
+        if( status == SECSuccess ) {
+            verified[i] = JNI_TRUE;
+        } else if( PR_GetError() != SEC_ERROR_BAD_SIGNATURE ) {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "Verification"
+                " operation failed on token");
+            goto finish;
+        }
+    }
+
+    resultArray = (*env)->NewBooleanArray(env, count);
+    if( resultArray == NULL ) {
+        goto finish; /* exception was thrown */
+    }
+    if( count > 0 ) {
+        (*env)->SetBooleanArrayRegion(env, resultArray, 0, count, verified);
+    }
+
+finish:
+    if(verified) {
+        PR_Free(verified);
+    }
+    return resultArray;
+}